@@ -292,4 +292,97 @@ public class CourseController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 批量应用选课人数增量（幂等）
+     * POST /api/courses/enrolled-deltas
+     * Content-Type: application/json
+     * @param request 包含 deltas 列表，每项为 idempotencyKey、courseId、delta
+     * @return 每项增量的处理结果
+     */
+    @PostMapping("/enrolled-deltas")
+    public ResponseEntity<Map<String, Object>> applyEnrolledDeltas(@RequestBody Map<String, List<Map<String, Object>>> request) {
+        try {
+            List<Map<String, Object>> results = courseService.applyEnrolledDeltas(request.get("deltas"));
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 200);
+            response.put("message", "Success");
+            response.put("data", results);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 400);
+            response.put("message", e.getMessage());
+            response.put("data", null);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 500);
+            response.put("message", "更新选课人数失败: " + e.getMessage());
+            response.put("data", null);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
+    /**
+     * 批量查询课程
+     * POST /api/courses/batch
+     * Content-Type: application/json
+     * @param request 包含 ids 列表
+     * @return 存在的课程列表
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<Map<String, Object>> getCoursesByIds(@RequestBody Map<String, List<String>> request) {
+        try {
+            List<Course> courses = courseService.getCoursesByIds(request.get("ids"));
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 200);
+            response.put("message", "Success");
+            response.put("data", courses);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 400);
+            response.put("message", e.getMessage());
+            response.put("data", null);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 500);
+            response.put("message", "批量获取课程失败: " + e.getMessage());
+            response.put("data", null);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
+    /**
+     * 批量修正选课人数（比较并设置）
+     * PUT /api/courses/enrolled
+     * Content-Type: application/json
+     * @param request 包含 updates 列表，每项为 courseId、expected、enrolled
+     * @return 每项修正的处理结果
+     */
+    @PutMapping("/enrolled")
+    public ResponseEntity<Map<String, Object>> repairEnrolledCounts(@RequestBody Map<String, List<Map<String, Object>>> request) {
+        try {
+            List<Map<String, Object>> results = courseService.repairEnrolledCounts(request.get("updates"));
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 200);
+            response.put("message", "Success");
+            response.put("data", results);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 400);
+            response.put("message", e.getMessage());
+            response.put("data", null);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 500);
+            response.put("message", "修正选课人数失败: " + e.getMessage());
+            response.put("data", null);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+}
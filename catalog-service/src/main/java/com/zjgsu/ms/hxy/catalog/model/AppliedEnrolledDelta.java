@@ -0,0 +1,116 @@
+package com.zjgsu.ms.hxy.catalog.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.springframework.data.domain.Persistable;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * AppliedEnrolledDelta 实体类
+ * 记录已应用的选课人数增量，按幂等键去重，保证选课服务重试时同一增量只生效一次
+ * 新建的记录总是以 INSERT 写入（isNew 为 true），重复的幂等键会触发主键冲突，而不是被合并覆盖
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Entity
+@Table(name = "applied_enrolled_deltas",
+        indexes = {
+                @Index(name = "idx_applied_at", columnList = "applied_at")
+        })
+public class AppliedEnrolledDelta implements Persistable<String> {
+
+    /**
+     * 幂等键，由选课服务生成
+     */
+    @Id
+    @Column(name = "idempotency_key", length = 64)
+    private String idempotencyKey;
+
+    /**
+     * 对应的课程ID
+     */
+    @Column(name = "course_id", nullable = false)
+    private UUID courseId;
+
+    /**
+     * 已应用的增量
+     */
+    @Column(nullable = false)
+    private Integer delta;
+
+    /**
+     * 应用时间，系统自动生成
+     */
+    @CreationTimestamp
+    @Column(name = "applied_at", nullable = false, updatable = false)
+    private LocalDateTime appliedAt;
+
+    /**
+     * 是否为尚未写入的新记录，加载或写入后为 false
+     */
+    @Transient
+    private boolean isNew = true;
+
+    // 默认构造函数
+    public AppliedEnrolledDelta() {
+    }
+
+    public AppliedEnrolledDelta(String idempotencyKey, UUID courseId, Integer delta) {
+        this.idempotencyKey = idempotencyKey;
+        this.courseId = courseId;
+        this.delta = delta;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+
+    @Override
+    public String getId() {
+        return idempotencyKey;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    // Getter 和 Setter 方法
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    public UUID getCourseId() {
+        return courseId;
+    }
+
+    public void setCourseId(UUID courseId) {
+        this.courseId = courseId;
+    }
+
+    public Integer getDelta() {
+        return delta;
+    }
+
+    public void setDelta(Integer delta) {
+        this.delta = delta;
+    }
+
+    public LocalDateTime getAppliedAt() {
+        return appliedAt;
+    }
+
+    public void setAppliedAt(LocalDateTime appliedAt) {
+        this.appliedAt = appliedAt;
+    }
+}
@@ -0,0 +1,31 @@
+package com.zjgsu.ms.hxy.catalog.repository;
+
+import com.zjgsu.ms.hxy.catalog.model.AppliedEnrolledDelta;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * AppliedEnrolledDeltaRepository 接口
+ * 提供已应用选课人数增量（幂等键）的持久化操作
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Repository
+public interface AppliedEnrolledDeltaRepository extends JpaRepository<AppliedEnrolledDelta, String> {
+
+    /**
+     * 删除早于指定时间的幂等记录
+     * @param before 截止时间
+     * @return 删除的记录数
+     */
+    @Modifying
+    @Query("DELETE FROM AppliedEnrolledDelta d WHERE d.appliedAt < :before")
+    int deleteAppliedBefore(@Param("before") LocalDateTime before);
+}
@@ -2,7 +2,9 @@ package com.zjgsu.ms.hxy.catalog.repository;
 
 import com.zjgsu.ms.hxy.catalog.model.Course;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -83,4 +85,25 @@ public interface CourseRepository extends JpaRepository<Course, UUID> {
      */
     @Query("SELECT COUNT(c) FROM Course c WHERE c.enrolled < c.capacity")
     long countCoursesWithAvailableCapacity();
-}
\ No newline at end of file
+
+    /**
+     * 原子地调整课程已选人数（结果不低于0）
+     * @param id 课程ID
+     * @param delta 人数增量，可为负数
+     * @return 受影响的行数，课程不存在时为0
+     */
+    @Modifying
+    @Query("UPDATE Course c SET c.enrolled = CASE WHEN c.enrolled + :delta < 0 THEN 0 ELSE c.enrolled + :delta END WHERE c.id = :id")
+    int addEnrolled(@Param("id") UUID id, @Param("delta") int delta);
+
+    /**
+     * 比较并设置课程已选人数，只有当前值与期望值一致时才更新
+     * @param id 课程ID
+     * @param expected 期望的当前人数
+     * @param enrolled 新的人数
+     * @return 受影响的行数，不一致或课程不存在时为0
+     */
+    @Modifying
+    @Query("UPDATE Course c SET c.enrolled = :enrolled WHERE c.id = :id AND c.enrolled = :expected")
+    int compareAndSetEnrolled(@Param("id") UUID id, @Param("expected") int expected, @Param("enrolled") int enrolled);
+}
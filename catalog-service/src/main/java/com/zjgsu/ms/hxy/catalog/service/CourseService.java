@@ -1,11 +1,21 @@
 package com.zjgsu.ms.hxy.catalog.service;
 
+import com.zjgsu.ms.hxy.catalog.model.AppliedEnrolledDelta;
 import com.zjgsu.ms.hxy.catalog.model.Course;
+import com.zjgsu.ms.hxy.catalog.repository.AppliedEnrolledDeltaRepository;
 import com.zjgsu.ms.hxy.catalog.repository.CourseRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -23,9 +33,22 @@ import java.util.UUID;
 public class CourseService {
 
     private final CourseRepository courseRepository;
+    private final AppliedEnrolledDeltaRepository appliedEnrolledDeltaRepository;
+    private final TransactionTemplate transactionTemplate;
 
-    public CourseService(CourseRepository courseRepository) {
+    /**
+     * 幂等记录保留天数
+     */
+    private final int deltaRetentionDays;
+
+    public CourseService(CourseRepository courseRepository,
+                         AppliedEnrolledDeltaRepository appliedEnrolledDeltaRepository,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${catalog.enrolled-deltas.retention-days:7}") int deltaRetentionDays) {
         this.courseRepository = courseRepository;
+        this.appliedEnrolledDeltaRepository = appliedEnrolledDeltaRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.deltaRetentionDays = deltaRetentionDays;
     }
 
     /**
@@ -403,6 +426,137 @@ public class CourseService {
         return Optional.empty();
     }
 
+    /**
+     * 批量应用选课人数增量（幂等）
+     * 每个增量携带幂等键，已应用过的键直接跳过，因此调用方可以安全重试
+     * 每项在独立事务中先 INSERT 幂等键再调整人数：并发重投的同一增量只有一个插入成功，
+     * 其余因主键冲突回滚，按 DUPLICATE 处理
+     * @param deltas 增量列表，每项包含 idempotencyKey、courseId、delta
+     * @return 每项的处理结果，status 为 APPLIED、DUPLICATE、NOT_FOUND 或 INVALID
+     */
+    public List<Map<String, Object>> applyEnrolledDeltas(List<Map<String, Object>> deltas) {
+        if (deltas == null || deltas.isEmpty()) {
+            throw new IllegalArgumentException("增量数据不能为空");
+        }
+
+        List<Map<String, Object>> results = new ArrayList<>(deltas.size());
+        for (Map<String, Object> item : deltas) {
+            Object key = item.get("idempotencyKey");
+            Object courseIdObj = item.get("courseId");
+            Object deltaObj = item.get("delta");
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("idempotencyKey", key);
+            result.put("courseId", courseIdObj);
+            results.add(result);
+
+            UUID courseId;
+            try {
+                courseId = UUID.fromString(String.valueOf(courseIdObj));
+            } catch (IllegalArgumentException e) {
+                result.put("status", "INVALID");
+                continue;
+            }
+            if (!(key instanceof String) || !StringUtils.hasText((String) key) || !(deltaObj instanceof Number)) {
+                result.put("status", "INVALID");
+                continue;
+            }
+
+            String idempotencyKey = (String) key;
+            if (appliedEnrolledDeltaRepository.existsById(idempotencyKey)) {
+                result.put("status", "DUPLICATE");
+                continue;
+            }
+
+            int delta = ((Number) deltaObj).intValue();
+            try {
+                result.put("status", transactionTemplate.execute(status -> {
+                    appliedEnrolledDeltaRepository.saveAndFlush(new AppliedEnrolledDelta(idempotencyKey, courseId, delta));
+                    if (courseRepository.addEnrolled(courseId, delta) == 0) {
+                        // 课程不存在时不保留幂等键，课程创建后重试仍可应用
+                        status.setRollbackOnly();
+                        return "NOT_FOUND";
+                    }
+                    return "APPLIED";
+                }));
+            } catch (DataIntegrityViolationException e) {
+                result.put("status", "DUPLICATE");
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 批量获取课程
+     * @param ids 课程ID列表（无效的ID会被忽略）
+     * @return 存在的课程列表
+     */
+    public List<Course> getCoursesByIds(List<String> ids) {
+        if (ids == null || ids.isEmpty()) {
+            throw new IllegalArgumentException("课程ID列表不能为空");
+        }
+        List<UUID> uuids = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            try {
+                uuids.add(UUID.fromString(id));
+            } catch (IllegalArgumentException | NullPointerException e) {
+                // 忽略无效的ID
+            }
+        }
+        return courseRepository.findAllById(uuids);
+    }
+
+    /**
+     * 批量修正课程已选人数（比较并设置）
+     * 只有课程当前人数仍等于调用方观察到的值时才会修正，避免覆盖期间发生的并发变更
+     * @param updates 修正列表，每项包含 courseId、expected、enrolled
+     * @return 每项的处理结果，status 为 UPDATED、CONFLICT 或 INVALID
+     */
+    @Transactional
+    public List<Map<String, Object>> repairEnrolledCounts(List<Map<String, Object>> updates) {
+        if (updates == null || updates.isEmpty()) {
+            throw new IllegalArgumentException("修正数据不能为空");
+        }
+
+        List<Map<String, Object>> results = new ArrayList<>(updates.size());
+        for (Map<String, Object> item : updates) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("courseId", item.get("courseId"));
+            results.add(result);
+
+            Object expected = item.get("expected");
+            Object enrolled = item.get("enrolled");
+            if (!(expected instanceof Number) || !(enrolled instanceof Number) || ((Number) enrolled).intValue() < 0) {
+                result.put("status", "INVALID");
+                continue;
+            }
+            UUID courseId;
+            try {
+                courseId = UUID.fromString(String.valueOf(item.get("courseId")));
+            } catch (IllegalArgumentException e) {
+                result.put("status", "INVALID");
+                continue;
+            }
+
+            int updated = courseRepository.compareAndSetEnrolled(courseId,
+                    ((Number) expected).intValue(), ((Number) enrolled).intValue());
+            result.put("status", updated > 0 ? "UPDATED" : "CONFLICT");
+        }
+        return results;
+    }
+
+    /**
+     * 定期清理过期的增量幂等记录
+     */
+    @Scheduled(cron = "${catalog.enrolled-deltas.purge-cron:0 30 3 * * *}")
+    @Transactional
+    public void purgeAppliedEnrolledDeltas() {
+        int purged = appliedEnrolledDeltaRepository.deleteAppliedBefore(LocalDateTime.now().minusDays(deltaRetentionDays));
+        if (purged > 0) {
+            System.out.println("清理过期选课人数增量记录: " + purged);
+        }
+    }
+
     /**
      * 检查课程是否已满（基于 enrolled 字段）
      * @param courseId 课程ID
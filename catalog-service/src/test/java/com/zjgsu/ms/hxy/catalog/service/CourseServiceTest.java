@@ -0,0 +1,101 @@
+package com.zjgsu.ms.hxy.catalog.service;
+
+import com.zjgsu.ms.hxy.catalog.model.Course;
+import com.zjgsu.ms.hxy.catalog.repository.AppliedEnrolledDeltaRepository;
+import com.zjgsu.ms.hxy.catalog.repository.CourseRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * CourseService 测试：同一幂等键的增量无论顺序重投还是并发重投都只生效一次，课程不存在时不保留幂等键
+ * 测试方法不在测试事务中运行，每项增量在自己的事务中提交
+ */
+@DataJpaTest
+@Import(CourseService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CourseServiceTest {
+
+    @Autowired
+    private CourseService courseService;
+
+    @Autowired
+    private CourseRepository courseRepository;
+
+    @Autowired
+    private AppliedEnrolledDeltaRepository appliedEnrolledDeltaRepository;
+
+    @AfterEach
+    void cleanUp() {
+        appliedEnrolledDeltaRepository.deleteAll();
+        courseRepository.deleteAll();
+    }
+
+    @Test
+    void redeliveredDeltaIsAppliedOnce() {
+        Course course = courseService.createCourse(new Course("CS101", "计算机科学导论", "INS001", "SCH001", 50));
+        Map<String, Object> delta = Map.of("idempotencyKey", "batch-1", "courseId", course.getId().toString(), "delta", 2);
+
+        assertThat(courseService.applyEnrolledDeltas(List.of(delta)).get(0)).containsEntry("status", "APPLIED");
+        assertThat(courseService.applyEnrolledDeltas(List.of(delta)).get(0)).containsEntry("status", "DUPLICATE");
+
+        assertThat(enrolledOf(course)).isEqualTo(2);
+    }
+
+    @Test
+    void concurrentRedeliveriesApplyOnce() throws Exception {
+        Course course = courseService.createCourse(new Course("CS102", "数据结构", "INS001", "SCH002", 50));
+        Map<String, Object> delta = Map.of("idempotencyKey", "batch-2", "courseId", course.getId().toString(), "delta", 1);
+        int deliveries = 4;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(deliveries);
+        try {
+            List<Future<Object>> statuses = new ArrayList<>();
+            for (int i = 0; i < deliveries; i++) {
+                statuses.add(executor.submit(() -> {
+                    start.await(5, TimeUnit.SECONDS);
+                    return courseService.applyEnrolledDeltas(List.of(delta)).get(0).get("status");
+                }));
+            }
+            start.countDown();
+            List<Object> results = new ArrayList<>();
+            for (Future<Object> status : statuses) {
+                results.add(status.get(10, TimeUnit.SECONDS));
+            }
+
+            assertThat(results).containsOnlyOnce("APPLIED");
+            assertThat(results).filteredOn("DUPLICATE"::equals).hasSize(deliveries - 1);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(enrolledOf(course)).isEqualTo(1);
+    }
+
+    @Test
+    void deltaForMissingCourseKeepsNoKey() {
+        Map<String, Object> delta = Map.of("idempotencyKey", "batch-3", "courseId", UUID.randomUUID().toString(), "delta", 1);
+
+        assertThat(courseService.applyEnrolledDeltas(List.of(delta)).get(0)).containsEntry("status", "NOT_FOUND");
+        assertThat(appliedEnrolledDeltaRepository.existsById("batch-3")).isFalse();
+    }
+
+    private int enrolledOf(Course course) {
+        return courseRepository.findById(course.getId()).orElseThrow().getEnrolled();
+    }
+}
@@ -0,0 +1,22 @@
+package com.zjgsu.ms.hxy.catalog.service;
+
+import com.zjgsu.ms.hxy.catalog.model.Course;
+import com.zjgsu.ms.hxy.catalog.repository.CourseRepository;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+/**
+ * ServiceTestApplication 类
+ * 服务层切片测试（@DataJpaTest）使用的配置：只加载实体与仓库，
+ * 不加载 CatalogServiceApplication 中依赖服务注册与初始化数据的 Bean
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@SpringBootConfiguration
+@EntityScan(basePackageClasses = Course.class)
+@EnableJpaRepositories(basePackageClasses = CourseRepository.class)
+public class ServiceTestApplication {
+}
@@ -3,6 +3,7 @@ package com.zjgsu.ms.hxy.enrollment;
 import com.zjgsu.ms.hxy.enrollment.model.Student;
 import com.zjgsu.ms.hxy.enrollment.service.StudentService;
 import com.zjgsu.ms.hxy.enrollment.service.EnrollmentService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
@@ -10,6 +11,9 @@ import org.springframework.cloud.client.ServiceInstance;
 import org.springframework.cloud.client.discovery.DiscoveryClient;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.List;
@@ -17,6 +21,7 @@ import java.util.List;
 
 @SpringBootApplication
 @EnableDiscoveryClient
+@EnableScheduling
 public class EnrollmentServiceApplication {
 
     public static void main(String[] args) {
@@ -25,10 +30,15 @@ public class EnrollmentServiceApplication {
 
     /**
      * 给 enrollment-service 提供访问 catalog-service 的能力
+     * 设置连接与读取超时，课程服务变慢时调用不会无限等待
      */
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(@Value("${catalog-service.timeouts.connect-ms:1000}") int connectTimeoutMillis,
+                                     @Value("${catalog-service.timeouts.read-ms:3000}") int readTimeoutMillis) {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(connectTimeoutMillis);
+        requestFactory.setReadTimeout(readTimeoutMillis);
+        return new RestTemplate(requestFactory);
     }
 
     /**
@@ -0,0 +1,67 @@
+package com.zjgsu.ms.hxy.enrollment;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * StreamingDataSourceConfiguration 类
+ * 流式读取专用的数据源（可选，docker 配置启用）：MySQL Connector/J 只有开启 useCursorFetch 时才按 fetch size 分批读取，
+ * 否则把整个结果集读入内存；该参数会让连接上的所有语句改用服务端预处理，因此不加在主数据源上，
+ * 而是单独建一个开启 useCursorFetch 的小连接池
+ * 只读事务（本服务中只有流式读取使用只读事务：导出、内存快照重建、成绩统计、事件读取）从该连接池取连接，
+ * 其他事务仍使用主连接池
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Configuration
+@ConditionalOnProperty(name = "enrollment.streaming-datasource.enabled", havingValue = "true")
+public class StreamingDataSourceConfiguration {
+
+    /**
+     * 主连接池，使用 spring.datasource 配置
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    /**
+     * 流式读取连接池，URL 开启 useCursorFetch
+     */
+    @Bean
+    public HikariDataSource streamingDataSource(DataSourceProperties properties,
+                                                @Value("${enrollment.streaming-datasource.url}") String url,
+                                                @Value("${enrollment.streaming-datasource.maximum-pool-size:4}") int maximumPoolSize) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class)
+                .url(url).build();
+        dataSource.setPoolName("enrollment-streaming");
+        dataSource.setMaximumPoolSize(maximumPoolSize);
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    /**
+     * JPA 使用的数据源：连接在执行第一条语句时才获取，此时已知事务是否只读，只读事务路由到流式读取连接池
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 @Qualifier("streamingDataSource") DataSource streamingDataSource) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+        dataSource.setReadOnlyDataSource(streamingDataSource);
+        return dataSource;
+    }
+}
@@ -0,0 +1,426 @@
+package com.zjgsu.ms.hxy.enrollment.client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zjgsu.ms.hxy.enrollment.exception.CatalogUnavailableException;
+import com.zjgsu.ms.hxy.enrollment.exception.CourseNotFoundException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * CatalogClient 类
+ * 封装对 catalog-service 的远程调用
+ * 同一课程的并发查询会合并为一次远程调用（single-flight），并在极短的窗口内复用结果，
+ * 使课程服务的负载随不同课程数增长，而不是随请求速率增长
+ * 课程查询另提供基于 JDK HttpClient 的非阻塞版本，与同步版本共享合并与微缓存
+ * 所有调用都经过 CatalogResilience（舱壁、熔断、对冲），并在多个实例间轮询
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Component
+public class CatalogClient {
+
+    private static final String CATALOG_SERVICE_ID = "catalog-service";
+
+    private final RestTemplate restTemplate;
+    private final DiscoveryClient discoveryClient;
+    private final ObjectMapper objectMapper;
+    private final CatalogResilience resilience;
+
+    /**
+     * 实例轮询计数
+     */
+    private final AtomicInteger nextInstance = new AtomicInteger();
+
+    /**
+     * 非阻塞调用使用的 HTTP 客户端
+     */
+    private final HttpClient httpClient;
+    private final Duration asyncRequestTimeout;
+
+    /**
+     * 微缓存有效期（毫秒），0 表示只合并进行中的请求，不缓存结果
+     */
+    private final long cacheTtlMillis;
+
+    /**
+     * 进行中的课程查询：courseId -> 正在执行的远程调用
+     */
+    private final Map<String, CompletableFuture<Map<String, Object>>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * 最近完成的课程查询结果
+     */
+    private final Map<String, CachedCourse> recentCourses = new ConcurrentHashMap<>();
+
+    private final Counter issuedCounter;
+    private final Counter coalescedCounter;
+    private final Counter cachedCounter;
+
+    public CatalogClient(RestTemplate restTemplate,
+                         DiscoveryClient discoveryClient,
+                         ObjectMapper objectMapper,
+                         CatalogResilience resilience,
+                         MeterRegistry meterRegistry,
+                         @Value("${catalog-service.coalescing.cache-ttl-ms:200}") long cacheTtlMillis,
+                         @Value("${catalog-service.async.connect-timeout-ms:2000}") long asyncConnectTimeoutMillis,
+                         @Value("${catalog-service.async.request-timeout-ms:3000}") long asyncRequestTimeoutMillis) {
+        this.restTemplate = restTemplate;
+        this.discoveryClient = discoveryClient;
+        this.objectMapper = objectMapper;
+        this.resilience = resilience;
+        this.cacheTtlMillis = cacheTtlMillis;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(asyncConnectTimeoutMillis))
+                .build();
+        this.asyncRequestTimeout = Duration.ofMillis(asyncRequestTimeoutMillis);
+        this.issuedCounter = Counter.builder("catalog.client.course.lookups")
+                .description("课程查询次数（按处理方式区分）")
+                .tag("outcome", "issued")
+                .register(meterRegistry);
+        this.coalescedCounter = Counter.builder("catalog.client.course.lookups")
+                .description("课程查询次数（按处理方式区分）")
+                .tag("outcome", "coalesced")
+                .register(meterRegistry);
+        this.cachedCounter = Counter.builder("catalog.client.course.lookups")
+                .description("课程查询次数（按处理方式区分）")
+                .tag("outcome", "cached")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 获取catalog-service的服务URL（按实例轮询）
+     */
+    public String getCatalogServiceUrl() {
+        return getCatalogServiceUrls().get(0);
+    }
+
+    /**
+     * 获取所有catalog-service实例的URL，按轮询顺序排列，第一个为本次首选实例
+     */
+    public List<String> getCatalogServiceUrls() {
+        List<ServiceInstance> instances = discoveryClient.getInstances(CATALOG_SERVICE_ID);
+        if (instances == null || instances.isEmpty()) {
+            throw new RuntimeException("No instances available for catalog-service");
+        }
+        int start = Math.floorMod(nextInstance.getAndIncrement(), instances.size());
+        List<String> urls = new ArrayList<>(instances.size());
+        for (int i = 0; i < instances.size(); i++) {
+            urls.add(instances.get((start + i) % instances.size()).getUri().toString());
+        }
+        return urls;
+    }
+
+    /**
+     * 获取课程信息
+     * 同一课程的并发调用只会发出一次远程请求，其余调用等待并共享该结果
+     * @param courseId 课程ID
+     * @return 课程数据（只读）
+     * @throws CourseNotFoundException 如果课程不存在
+     */
+    public Map<String, Object> getCourse(String courseId) {
+        Map<String, Object> cached = cachedCourse(courseId);
+        if (cached != null) {
+            cachedCounter.increment();
+            return cached;
+        }
+
+        CompletableFuture<Map<String, Object>> call = new CompletableFuture<>();
+        CompletableFuture<Map<String, Object>> existing = inFlight.putIfAbsent(courseId, call);
+        if (existing != null) {
+            coalescedCounter.increment();
+            return await(existing);
+        }
+
+        issuedCounter.increment();
+        try {
+            Map<String, Object> courseData = fetchCourse(courseId);
+            if (cacheTtlMillis > 0) {
+                recentCourses.put(courseId, new CachedCourse(courseData, System.currentTimeMillis() + cacheTtlMillis));
+            }
+            call.complete(courseData);
+            return courseData;
+        } catch (RuntimeException e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(courseId, call);
+        }
+    }
+
+    /**
+     * 获取课程信息（非阻塞）
+     * 等待课程服务响应期间不占用线程；与 getCourse 共享进行中的调用和微缓存，
+     * 并经过同一舱壁、熔断与对冲（舱壁已满时立即拒绝）
+     * @param courseId 课程ID
+     * @return 课程数据（只读）；课程不存在时以 CourseNotFoundException 异常完成
+     */
+    public CompletableFuture<Map<String, Object>> getCourseAsync(String courseId) {
+        Map<String, Object> cached = cachedCourse(courseId);
+        if (cached != null) {
+            cachedCounter.increment();
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        CompletableFuture<Map<String, Object>> call = new CompletableFuture<>();
+        CompletableFuture<Map<String, Object>> existing = inFlight.putIfAbsent(courseId, call);
+        if (existing != null) {
+            coalescedCounter.increment();
+            return existing.copy();
+        }
+
+        issuedCounter.increment();
+        CompletableFuture<Map<String, Object>> fetch;
+        try {
+            fetch = resilience.executeAsync(getCatalogServiceUrls(), true, baseUrl -> fetchCourseAsync(baseUrl, courseId));
+        } catch (RuntimeException e) {
+            fetch = CompletableFuture.failedFuture(e);
+        }
+        fetch.whenComplete((courseData, error) -> {
+            if (error != null) {
+                call.completeExceptionally(translateAsyncFailure(courseId, unwrap(error)));
+            } else {
+                if (cacheTtlMillis > 0) {
+                    recentCourses.put(courseId, new CachedCourse(courseData, System.currentTimeMillis() + cacheTtlMillis));
+                }
+                call.complete(courseData);
+            }
+            inFlight.remove(courseId, call);
+        });
+        return call.copy();
+    }
+
+    /**
+     * 批量应用课程已选人数增量
+     * catalog-service 按幂等键去重，因此同一批次可以安全重试
+     * @param deltas 增量列表，每项包含 idempotencyKey、courseId、delta
+     * @return 每项的处理结果
+     */
+    @SuppressWarnings("unchecked")
+    public List<Map<String, Object>> applyEnrolledDeltas(List<Map<String, Object>> deltas) {
+        try {
+            Map<String, Object> response = resilience.execute(getCatalogServiceUrls(), false, baseUrl ->
+                    restTemplate.postForObject(baseUrl + "/api/courses/enrolled-deltas", Map.of("deltas", deltas), Map.class));
+            if (response == null || !(response.get("data") instanceof List)) {
+                throw new RuntimeException("课程服务返回无效响应");
+            }
+            return (List<Map<String, Object>>) response.get("data");
+        } finally {
+            for (Map<String, Object> delta : deltas) {
+                recentCourses.remove(String.valueOf(delta.get("courseId")));
+            }
+        }
+    }
+
+    /**
+     * 批量获取课程（一次远程调用）
+     * @param courseIds 课程ID列表
+     * @return courseId -> 课程数据，不存在的课程不会出现在结果中
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Map<String, Object>> getCourses(Collection<String> courseIds) {
+        // 批量查询只读，可以对冲
+        Map<String, Object> response = resilience.execute(getCatalogServiceUrls(), true, baseUrl ->
+                restTemplate.postForObject(baseUrl + "/api/courses/batch", Map.of("ids", courseIds), Map.class));
+        if (response == null || !(response.get("data") instanceof List)) {
+            throw new RuntimeException("课程服务返回无效响应");
+        }
+        Map<String, Map<String, Object>> courses = new HashMap<>();
+        for (Map<String, Object> course : (List<Map<String, Object>>) response.get("data")) {
+            courses.put(String.valueOf(course.get("id")), course);
+        }
+        return courses;
+    }
+
+    /**
+     * 批量修正课程已选人数（比较并设置）
+     * @param updates 修正列表，每项包含 courseId、expected、enrolled
+     * @return 每项的处理结果
+     */
+    @SuppressWarnings("unchecked")
+    public List<Map<String, Object>> repairEnrolledCounts(List<Map<String, Object>> updates) {
+        try {
+            ResponseEntity<Map> response = resilience.execute(getCatalogServiceUrls(), false, baseUrl ->
+                    restTemplate.exchange(baseUrl + "/api/courses/enrolled", HttpMethod.PUT,
+                            new HttpEntity<>(Map.of("updates", updates)), Map.class));
+            Map<String, Object> body = response.getBody();
+            if (body == null || !(body.get("data") instanceof List)) {
+                throw new RuntimeException("课程服务返回无效响应");
+            }
+            return (List<Map<String, Object>>) body.get("data");
+        } finally {
+            for (Map<String, Object> update : updates) {
+                recentCourses.remove(String.valueOf(update.get("courseId")));
+            }
+        }
+    }
+
+    /**
+     * 调用课程目录服务查询课程
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> fetchCourse(String courseId) {
+        Map<String, Object> courseResponse;
+        try {
+            courseResponse = resilience.execute(getCatalogServiceUrls(), true, baseUrl ->
+                    restTemplate.getForObject(baseUrl + "/api/courses/" + courseId, Map.class));
+        } catch (HttpClientErrorException.NotFound e) {
+            throw new CourseNotFoundException(courseId);
+        } catch (HttpClientErrorException e) {
+            throw new RuntimeException("调用课程服务失败，状态码: " + e.getStatusCode() + ", 错误信息: " + e.getResponseBodyAsString());
+        } catch (CatalogUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("调用课程服务失败: " + e.getMessage(), e);
+        }
+
+        if (courseResponse == null || courseResponse.get("data") == null) {
+            throw new RuntimeException("课程服务返回无效响应");
+        }
+        return Collections.unmodifiableMap((Map<String, Object>) courseResponse.get("data"));
+    }
+
+    /**
+     * 通过 JDK HttpClient 异步查询单个实例上的课程
+     * 4xx 以 HttpClientErrorException 失败（与 RestTemplate 一致，熔断器不计为失败）
+     */
+    private CompletableFuture<Map<String, Object>> fetchCourseAsync(String baseUrl, String courseId) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/courses/" + courseId))
+                .timeout(asyncRequestTimeout)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .handle((response, error) -> {
+                    if (error != null) {
+                        Throwable cause = unwrap(error);
+                        throw new RuntimeException("调用课程服务失败: " + cause.getMessage(), cause);
+                    }
+                    if (response.statusCode() >= 500) {
+                        throw new RuntimeException("调用课程服务失败，状态码: " + response.statusCode() + ", 错误信息: " + response.body());
+                    }
+                    if (response.statusCode() >= 400) {
+                        throw HttpClientErrorException.create(HttpStatusCode.valueOf(response.statusCode()), "",
+                                HttpHeaders.EMPTY, response.body().getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+                    }
+                    return parseCourse(response.body());
+                });
+    }
+
+    /**
+     * 把非阻塞课程查询的失败转换为与 getCourse 相同的异常
+     */
+    private static Throwable translateAsyncFailure(String courseId, Throwable error) {
+        if (error instanceof HttpClientErrorException.NotFound) {
+            return new CourseNotFoundException(courseId);
+        }
+        if (error instanceof HttpClientErrorException e) {
+            return new RuntimeException("调用课程服务失败，状态码: " + e.getStatusCode() + ", 错误信息: " + e.getResponseBodyAsString());
+        }
+        return error;
+    }
+
+    /**
+     * 解析课程服务的响应体
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> parseCourse(String body) {
+        Map<String, Object> courseResponse;
+        try {
+            courseResponse = objectMapper.readValue(body, new TypeReference<Map<String, Object>>() {});
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("课程服务返回无效响应", e);
+        }
+        if (!(courseResponse.get("data") instanceof Map)) {
+            throw new RuntimeException("课程服务返回无效响应");
+        }
+        return Collections.unmodifiableMap((Map<String, Object>) courseResponse.get("data"));
+    }
+
+    /**
+     * 读取未过期的微缓存
+     */
+    private Map<String, Object> cachedCourse(String courseId) {
+        CachedCourse cached = recentCourses.get(courseId);
+        if (cached == null) {
+            return null;
+        }
+        if (cached.isExpired()) {
+            recentCourses.remove(courseId, cached);
+            return null;
+        }
+        return cached.data;
+    }
+
+    /**
+     * 去掉 CompletableFuture 包装的异常
+     */
+    private static Throwable unwrap(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            return error.getCause();
+        }
+        return error;
+    }
+
+    /**
+     * 等待其他线程发起的同一课程查询完成
+     */
+    private Map<String, Object> await(CompletableFuture<Map<String, Object>> call) {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 微缓存条目
+     */
+    private static final class CachedCourse {
+        private final Map<String, Object> data;
+        private final long expiresAt;
+
+        private CachedCourse(Map<String, Object> data, long expiresAt) {
+            this.data = data;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+    }
+}
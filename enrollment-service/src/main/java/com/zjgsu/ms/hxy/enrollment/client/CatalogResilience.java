@@ -0,0 +1,354 @@
+package com.zjgsu.ms.hxy.enrollment.client;
+
+import com.zjgsu.ms.hxy.enrollment.exception.CatalogUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * CatalogResilience 类
+ * catalog-service 调用的容错层：
+ * 舱壁限制同时进行的调用数，熔断器在失败率过高时快速失败，
+ * 只读查询可在超过近期 p95 延迟后向另一个实例发出对冲请求，取先成功的结果
+ * 同步调用（execute）与非阻塞调用（executeAsync）共用同一舱壁、熔断器与对冲策略
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Component
+public class CatalogResilience {
+
+    private final CircuitBreaker circuitBreaker;
+
+    /**
+     * 舱壁：同时进行的同步调用上限
+     */
+    private final Semaphore bulkhead;
+    private final long bulkheadMaxWaitMillis;
+
+    private final boolean hedgingEnabled;
+    private final long hedgingMinDelayMillis;
+    private final ExecutorService hedgingExecutor;
+    private final LatencyWindow latencies = new LatencyWindow(200);
+
+    private final Counter circuitRejectedCounter;
+    private final Counter bulkheadRejectedCounter;
+    private final Counter hedgedCounter;
+    private final Counter hedgeWonCounter;
+
+    public CatalogResilience(MeterRegistry meterRegistry,
+                             @Value("${catalog-service.resilience.circuit-breaker.window-size:50}") int windowSize,
+                             @Value("${catalog-service.resilience.circuit-breaker.minimum-calls:20}") int minimumCalls,
+                             @Value("${catalog-service.resilience.circuit-breaker.failure-rate-threshold:50}") int failureRateThreshold,
+                             @Value("${catalog-service.resilience.circuit-breaker.open-duration-ms:10000}") long openDurationMillis,
+                             @Value("${catalog-service.resilience.circuit-breaker.half-open-calls:5}") int halfOpenCalls,
+                             @Value("${catalog-service.resilience.bulkhead.max-concurrent-calls:50}") int maxConcurrentCalls,
+                             @Value("${catalog-service.resilience.bulkhead.max-wait-ms:100}") long bulkheadMaxWaitMillis,
+                             @Value("${catalog-service.resilience.hedging.enabled:false}") boolean hedgingEnabled,
+                             @Value("${catalog-service.resilience.hedging.min-delay-ms:50}") long hedgingMinDelayMillis) {
+        this.circuitBreaker = new CircuitBreaker("catalog-service", windowSize, minimumCalls, failureRateThreshold,
+                openDurationMillis, halfOpenCalls, meterRegistry);
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        this.bulkheadMaxWaitMillis = bulkheadMaxWaitMillis;
+        this.hedgingEnabled = hedgingEnabled;
+        this.hedgingMinDelayMillis = hedgingMinDelayMillis;
+        // 对冲时主请求与对冲请求都在该线程池中执行；池满时由调用线程直接执行
+        this.hedgingExecutor = hedgingEnabled
+                ? new ThreadPoolExecutor(0, maxConcurrentCalls * 2, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                        new CustomizableThreadFactory("catalog-hedge-"), new ThreadPoolExecutor.CallerRunsPolicy())
+                : null;
+        this.circuitRejectedCounter = Counter.builder("catalog.client.calls.rejected")
+                .description("被容错层拒绝的课程服务调用")
+                .tag("reason", "circuit_open")
+                .register(meterRegistry);
+        this.bulkheadRejectedCounter = Counter.builder("catalog.client.calls.rejected")
+                .description("被容错层拒绝的课程服务调用")
+                .tag("reason", "bulkhead_full")
+                .register(meterRegistry);
+        this.hedgedCounter = Counter.builder("catalog.client.hedges")
+                .description("课程服务对冲请求")
+                .tag("outcome", "issued")
+                .register(meterRegistry);
+        this.hedgeWonCounter = Counter.builder("catalog.client.hedges")
+                .description("课程服务对冲请求")
+                .tag("outcome", "won")
+                .register(meterRegistry);
+        meterRegistry.gauge("catalog.client.bulkhead.in.use", bulkhead,
+                permits -> maxConcurrentCalls - permits.availablePermits());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (hedgingExecutor != null) {
+            hedgingExecutor.shutdown();
+        }
+    }
+
+    /**
+     * 在舱壁与熔断保护下执行一次同步调用
+     * @param baseUrls 可用的课程服务实例地址，第一个为首选实例
+     * @param idempotent 调用是否只读（只读调用才会对冲）
+     * @param call 针对单个实例执行的调用
+     * @return 调用结果
+     * @throws CatalogUnavailableException 如果被舱壁或熔断拒绝
+     */
+    public <T> T execute(List<String> baseUrls, boolean idempotent, Function<String, T> call) {
+        boolean acquired;
+        try {
+            acquired = bulkhead.tryAcquire(bulkheadMaxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            bulkheadRejectedCounter.increment();
+            throw new CatalogUnavailableException("课程服务调用繁忙，请稍后重试");
+        }
+
+        // 对冲时先返回的请求不代表另一个请求已结束，许可在发出的请求全部结束后才释放
+        List<CompletableFuture<?>> launched = new ArrayList<>(2);
+        try {
+            acquirePermission();
+            long start = System.nanoTime();
+            try {
+                T result = hedgingEnabled && idempotent && baseUrls.size() > 1
+                        ? executeHedged(baseUrls, call, launched)
+                        : call.apply(baseUrls.get(0));
+                recordOutcome(start, null);
+                return result;
+            } catch (RuntimeException e) {
+                recordOutcome(start, e);
+                throw e;
+            }
+        } finally {
+            CompletableFuture.allOf(launched.toArray(CompletableFuture[]::new))
+                    .whenComplete((ignored, error) -> bulkhead.release());
+        }
+    }
+
+    /**
+     * 在舱壁与熔断保护下执行一次非阻塞调用
+     * 舱壁已满时立即拒绝而不等待；许可在调用发出的请求全部结束时释放
+     * @param baseUrls 可用的课程服务实例地址，第一个为首选实例
+     * @param idempotent 调用是否只读（只读调用才会对冲）
+     * @param call 针对单个实例发起的非阻塞调用
+     * @return 调用结果；被舱壁或熔断拒绝时以 CatalogUnavailableException 异常完成
+     */
+    public <T> CompletableFuture<T> executeAsync(List<String> baseUrls, boolean idempotent,
+                                                 Function<String, CompletableFuture<T>> call) {
+        if (!bulkhead.tryAcquire()) {
+            bulkheadRejectedCounter.increment();
+            return CompletableFuture.failedFuture(new CatalogUnavailableException("课程服务调用繁忙，请稍后重试"));
+        }
+        try {
+            acquirePermission();
+        } catch (CatalogUnavailableException e) {
+            bulkhead.release();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        long start = System.nanoTime();
+        boolean hedged = hedgingEnabled && idempotent && baseUrls.size() > 1;
+        CompletableFuture<T> result;
+        if (hedged) {
+            result = executeHedgedAsync(baseUrls, call, bulkhead::release);
+        } else {
+            try {
+                result = call.apply(baseUrls.get(0));
+            } catch (RuntimeException e) {
+                result = CompletableFuture.failedFuture(e);
+            }
+        }
+        return result.whenComplete((value, error) -> {
+            recordOutcome(start, error == null ? null : asRuntime(error));
+            if (!hedged) {
+                bulkhead.release();
+            }
+        });
+    }
+
+    /**
+     * 申请熔断器许可
+     * @throws CatalogUnavailableException 如果熔断器处于打开状态
+     */
+    public void acquirePermission() {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            circuitRejectedCounter.increment();
+            throw new CatalogUnavailableException("课程服务暂时不可用，请稍后重试");
+        }
+    }
+
+    /**
+     * 记录一次调用结果；客户端错误（4xx）说明课程服务正常，不计为失败
+     * @param startNanos 调用开始时间（System.nanoTime）
+     * @param error 调用异常，成功时为null
+     */
+    public void recordOutcome(long startNanos, Throwable error) {
+        if (error == null || error instanceof HttpClientErrorException) {
+            circuitBreaker.onSuccess();
+            latencies.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        } else {
+            circuitBreaker.onFailure();
+        }
+    }
+
+    /**
+     * 首选实例在对冲延迟内未返回时，向第二个实例发出相同请求，取先成功的结果
+     * @param launched 收集已发出的请求，调用方在它们全部结束后释放舱壁许可
+     */
+    private <T> T executeHedged(List<String> baseUrls, Function<String, T> call, List<CompletableFuture<?>> launched) {
+        CompletableFuture<T> primary = CompletableFuture.supplyAsync(() -> call.apply(baseUrls.get(0)), hedgingExecutor);
+        launched.add(primary);
+        try {
+            return primary.get(hedgeDelayMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            hedgedCounter.increment();
+        } catch (ExecutionException e) {
+            throw asRuntime(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("调用课程服务被中断", e);
+        }
+
+        CompletableFuture<T> hedge = CompletableFuture.supplyAsync(() -> call.apply(baseUrls.get(1)), hedgingExecutor);
+        launched.add(hedge);
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(2);
+        primary.whenComplete((result, error) -> {
+            if (error == null) {
+                winner.complete(result);
+            } else if (pending.decrementAndGet() == 0) {
+                winner.completeExceptionally(error);
+            }
+        });
+        hedge.whenComplete((result, error) -> {
+            if (error == null) {
+                if (winner.complete(result)) {
+                    hedgeWonCounter.increment();
+                }
+            } else if (pending.decrementAndGet() == 0) {
+                winner.completeExceptionally(error);
+            }
+        });
+        try {
+            return winner.join();
+        } catch (CompletionException e) {
+            throw asRuntime(e.getCause());
+        }
+    }
+
+    /**
+     * executeHedged 的非阻塞版本：对冲延迟到期时首选实例仍未返回，才向第二个实例发出请求
+     * @param onSettled 发出的请求全部结束后执行一次（用于释放舱壁许可）
+     */
+    private <T> CompletableFuture<T> executeHedgedAsync(List<String> baseUrls, Function<String, CompletableFuture<T>> call,
+                                                        Runnable onSettled) {
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        // 尚未结束的请求数；降到0后不再对冲，全部失败时以最后一个失败结束
+        AtomicInteger outstanding = new AtomicInteger(1);
+        launch(() -> call.apply(baseUrls.get(0))).whenComplete((result, error) -> {
+            if (error == null) {
+                winner.complete(result);
+            }
+            settle(outstanding, winner, error, onSettled);
+        });
+        CompletableFuture.delayedExecutor(hedgeDelayMillis(), TimeUnit.MILLISECONDS).execute(() -> {
+            // 首选请求已结束（成功或失败）时不再对冲
+            if (winner.isDone() || outstanding.getAndUpdate(count -> count == 0 ? 0 : count + 1) == 0) {
+                return;
+            }
+            hedgedCounter.increment();
+            launch(() -> call.apply(baseUrls.get(1))).whenComplete((result, error) -> {
+                if (error == null && winner.complete(result)) {
+                    hedgeWonCounter.increment();
+                }
+                settle(outstanding, winner, error, onSettled);
+            });
+        });
+        return winner;
+    }
+
+    private static <T> CompletableFuture<T> launch(Supplier<CompletableFuture<T>> request) {
+        try {
+            return request.get();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static <T> void settle(AtomicInteger outstanding, CompletableFuture<T> winner, Throwable error,
+                                   Runnable onSettled) {
+        if (outstanding.decrementAndGet() == 0) {
+            if (error != null) {
+                winner.completeExceptionally(error);
+            }
+            onSettled.run();
+        }
+    }
+
+    /**
+     * 对冲延迟：近期调用延迟的 p95，不低于 min-delay-ms
+     */
+    private long hedgeDelayMillis() {
+        return Math.max(hedgingMinDelayMillis, latencies.p95());
+    }
+
+    private static RuntimeException asRuntime(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error instanceof RuntimeException runtime ? runtime : new RuntimeException(error);
+    }
+
+    /**
+     * 最近若干次成功调用的延迟（毫秒），p95 每记录一定次数后重新计算
+     */
+    private static final class LatencyWindow {
+        private final long[] samples;
+        private int index;
+        private int count;
+        private volatile long p95;
+
+        private LatencyWindow(int size) {
+            this.samples = new long[size];
+        }
+
+        private synchronized void record(long millis) {
+            samples[index] = millis;
+            index = (index + 1) % samples.length;
+            if (count < samples.length) {
+                count++;
+            }
+            if (index % 20 == 0) {
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                p95 = sorted[Math.min(count - 1, (int) Math.ceil(count * 0.95) - 1)];
+            }
+        }
+
+        private long p95() {
+            return p95;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.zjgsu.ms.hxy.enrollment.client;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+/**
+ * CircuitBreaker 类
+ * 基于计数滑动窗口的熔断器：最近 windowSize 次调用中失败比例达到阈值时打开，
+ * 打开 openDurationMillis 后进入半开状态，放行少量试探调用，全部成功则关闭，任一失败则重新打开
+ * 状态只在内存中修改，加锁期间不做任何阻塞操作
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final long openDurationMillis;
+    private final int halfOpenPermittedCalls;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 滑动窗口：true 表示该次调用失败
+     */
+    private final boolean[] window;
+    private int windowIndex;
+    private int recordedCalls;
+    private int failedCalls;
+
+    private volatile State state = State.CLOSED;
+    private long openedAt;
+    private int halfOpenInFlight;
+    private int halfOpenSucceeded;
+
+    /**
+     * @param name 熔断器名称（用于指标标签）
+     * @param windowSize 滑动窗口大小（调用次数）
+     * @param minimumCalls 计算失败率所需的最少调用次数
+     * @param failureRateThreshold 打开熔断的失败率阈值（百分比）
+     * @param openDurationMillis 打开状态的持续时间
+     * @param halfOpenPermittedCalls 半开状态放行的试探调用数
+     * @param meterRegistry 指标注册表
+     */
+    public CircuitBreaker(String name, int windowSize, int minimumCalls, int failureRateThreshold,
+                          long openDurationMillis, int halfOpenPermittedCalls, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.window = new boolean[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationMillis = openDurationMillis;
+        this.halfOpenPermittedCalls = halfOpenPermittedCalls;
+        this.meterRegistry = meterRegistry;
+        // 0 = CLOSED, 1 = OPEN, 2 = HALF_OPEN
+        meterRegistry.gauge("catalog.client.circuit.state", Tags.of("name", name), this, breaker -> breaker.state.ordinal());
+    }
+
+    /**
+     * 申请一次调用许可
+     * @return 允许调用返回true；熔断打开或半开名额已满时返回false
+     */
+    public synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < openDurationMillis) {
+                return false;
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenInFlight + halfOpenSucceeded >= halfOpenPermittedCalls) {
+                return false;
+            }
+            halfOpenInFlight++;
+        }
+        return true;
+    }
+
+    /**
+     * 记录一次成功调用
+     */
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            halfOpenInFlight = Math.max(0, halfOpenInFlight - 1);
+            halfOpenSucceeded++;
+            if (halfOpenSucceeded >= halfOpenPermittedCalls) {
+                transitionTo(State.CLOSED);
+            }
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    /**
+     * 记录一次失败调用
+     */
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            transitionTo(State.OPEN);
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (recordedCalls >= minimumCalls && failedCalls * 100L >= (long) failureRateThreshold * recordedCalls) {
+                transitionTo(State.OPEN);
+            }
+        }
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    private void record(boolean failed) {
+        if (recordedCalls == window.length) {
+            if (window[windowIndex]) {
+                failedCalls--;
+            }
+        } else {
+            recordedCalls++;
+        }
+        window[windowIndex] = failed;
+        if (failed) {
+            failedCalls++;
+        }
+        windowIndex = (windowIndex + 1) % window.length;
+    }
+
+    private void transitionTo(State target) {
+        State previous = state;
+        state = target;
+        switch (target) {
+            case OPEN -> openedAt = System.currentTimeMillis();
+            case HALF_OPEN -> {
+                halfOpenInFlight = 0;
+                halfOpenSucceeded = 0;
+            }
+            case CLOSED -> {
+                windowIndex = 0;
+                recordedCalls = 0;
+                failedCalls = 0;
+            }
+        }
+        meterRegistry.counter("catalog.client.circuit.transitions",
+                "name", name, "from", previous.name(), "to", target.name()).increment();
+    }
+}
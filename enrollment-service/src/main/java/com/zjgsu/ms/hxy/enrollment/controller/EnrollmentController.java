@@ -1,15 +1,39 @@
 package com.zjgsu.ms.hxy.enrollment.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zjgsu.ms.hxy.enrollment.exception.AdmissionRejectedException;
+import com.zjgsu.ms.hxy.enrollment.exception.CatalogUnavailableException;
+import com.zjgsu.ms.hxy.enrollment.exception.CourseFullException;
+import com.zjgsu.ms.hxy.enrollment.exception.EnrollmentPendingException;
 import com.zjgsu.ms.hxy.enrollment.model.Enrollment;
+import com.zjgsu.ms.hxy.enrollment.service.EnrollmentAdmissionService;
+import com.zjgsu.ms.hxy.enrollment.service.EnrollmentGroupCommitter;
 import com.zjgsu.ms.hxy.enrollment.service.EnrollmentService;
+import com.zjgsu.ms.hxy.enrollment.service.IdempotencyService;
+import com.zjgsu.ms.hxy.enrollment.service.KeysetPage;
+import com.zjgsu.ms.hxy.enrollment.service.WaitlistService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.util.UriUtils;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.HashMap;
 
 /**
@@ -24,27 +48,55 @@ import java.util.HashMap;
 @RequestMapping("/api/enrollments")
 public class EnrollmentController {
 
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    /**
+     * 列表接口的默认每页条数
+     */
+    private static final String DEFAULT_PAGE_SIZE = "1000";
+
+    /**
+     * 批量查询选课人数时单次最多的课程数
+     */
+    private static final int MAX_COUNT_BATCH = 1000;
+
     private final EnrollmentService enrollmentService;
+    private final WaitlistService waitlistService;
+    private final IdempotencyService idempotencyService;
+    private final EnrollmentAdmissionService admissionService;
+    private final EnrollmentGroupCommitter groupCommitter;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public EnrollmentController(EnrollmentService enrollmentService) {
+    public EnrollmentController(EnrollmentService enrollmentService, WaitlistService waitlistService,
+                                IdempotencyService idempotencyService, EnrollmentAdmissionService admissionService,
+                                EnrollmentGroupCommitter groupCommitter, ObjectMapper objectMapper) {
         this.enrollmentService = enrollmentService;
+        this.waitlistService = waitlistService;
+        this.idempotencyService = idempotencyService;
+        this.admissionService = admissionService;
+        this.groupCommitter = groupCommitter;
+        this.objectMapper = objectMapper;
     }
 
     /**
-     * 查询所有选课记录
-     * GET /api/enrollments
-     * @return 选课记录列表
+     * 分页查询所有选课记录
+     * GET /api/enrollments?after=&limit=
+     * @param after 上一页返回的 nextCursor，省略时从第一页开始
+     * @param limit 每页条数（默认 1000，最多 5000）
+     * @return 选课记录列表，nextCursor 为下一页游标（最后一页为 null）
      */
     @GetMapping
-    public ResponseEntity<Map<String, Object>> getAllEnrollments() {
+    public ResponseEntity<Map<String, Object>> getAllEnrollments(@RequestParam(required = false) UUID after,
+                                                                 @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int limit) {
         try {
-            List<Enrollment> enrollments = enrollmentService.getAllEnrollments();
+            return ResponseEntity.ok(pageResponse(enrollmentService.getEnrollmentsPage(null, null, null, after, limit)));
+        } catch (IllegalArgumentException e) {
             Map<String, Object> response = new HashMap<>();
-            response.put("code", 200);
-            response.put("message", "Success");
-            response.put("data", enrollments);
-            return ResponseEntity.ok(response);
+            response.put("code", 400);
+            response.put("message", e.getMessage());
+            response.put("data", null);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
         } catch (Exception e) {
             Map<String, Object> response = new HashMap<>();
             response.put("code", 500);
@@ -54,6 +106,29 @@ public class EnrollmentController {
         }
     }
 
+    /**
+     * 以 NDJSON 流式导出选课记录，每行一条，服务端逐条读取、写出，不在内存中保留整张表
+     * GET /api/enrollments/stream?courseId=&studentId=&status=
+     * @param courseId 课程ID，省略时不限
+     * @param studentId 学生ID，省略时不限
+     * @param status 选课状态，省略时不限
+     * @return 选课记录流（NDJSON）
+     */
+    @GetMapping(value = "/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> streamEnrollments(@RequestParam(required = false) String courseId,
+                                                                   @RequestParam(required = false) String studentId,
+                                                                   @RequestParam(required = false) String status) {
+        StreamingResponseBody body = out -> {
+            try {
+                enrollmentService.forEachEnrollment(courseId, studentId, status, enrollment -> writeLine(out, enrollment));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.flush();
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
     /**
      * 根据ID查询选课记录
      * GET /api/enrollments/{id}
@@ -91,30 +166,123 @@ public class EnrollmentController {
      * 学生选课
      * POST /api/enrollments
      * Content-Type: application/json
+     * 请求中 joinWaitlist 为 "true" 时，课程已满则自动加入候补队列（返回 202）
+     * 携带 Idempotency-Key 请求头时，重试会直接返回首次执行的结果
+     * 同一课程的并发请求经准入控制排队，过载时返回 429 并带有 Retry-After
      * @param request 选课请求
+     * @param idempotencyKey 幂等键（可选）
      * @return 创建后的选课记录
      */
     @PostMapping
-    public ResponseEntity<Map<String, Object>> enrollCourse(@RequestBody Map<String, String> request) {
+    public ResponseEntity<Map<String, Object>> enrollCourse(
+            @RequestBody Map<String, String> request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        String fingerprint = request.get("courseId") + "|" + request.get("studentId") + "|" + request.get("joinWaitlist");
+        return idempotencyService.execute(idempotencyKey, "enroll", fingerprint, () -> doEnrollCourse(request));
+    }
+
+    private ResponseEntity<Map<String, Object>> doEnrollCourse(Map<String, String> request) {
+        String courseId = request.get("courseId");
+        String studentId = request.get("studentId");
+        if (courseId == null || studentId == null) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 400);
+            response.put("message", "courseId 和 studentId 不能为空");
+            response.put("data", null);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        }
+
         try {
-            String courseId = request.get("courseId");
-            String studentId = request.get("studentId");
+            Enrollment enrollment = admissionService.admit(courseId, () -> groupCommitter.enroll(courseId, studentId));
+            return enrollSuccessResponse(enrollment);
+        } catch (Exception e) {
+            return enrollFailureResponse(e, request);
+        }
+    }
 
-            if (courseId == null || studentId == null) {
-                Map<String, Object> response = new HashMap<>();
-                response.put("code", 400);
-                response.put("message", "courseId 和 studentId 不能为空");
-                response.put("data", null);
-                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+    /**
+     * 学生选课（非阻塞）
+     * POST /api/enrollments/async
+     * Content-Type: application/json
+     * 课程查询通过异步 HTTP 客户端完成，等待课程服务期间不占用请求线程；
+     * 请求体与响应与 POST /api/enrollments 一致，不支持 Idempotency-Key；
+     * 经过同一课程执行通道的准入控制但不排队：没有空闲许可或数据库执行器已满时立即返回 429
+     * @param request 选课请求
+     * @return 创建后的选课记录
+     */
+    @PostMapping("/async")
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> enrollCourseAsync(@RequestBody Map<String, String> request) {
+        String courseId = request.get("courseId");
+        String studentId = request.get("studentId");
+        if (courseId == null || studentId == null) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 400);
+            response.put("message", "courseId 和 studentId 不能为空");
+            response.put("data", null);
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response));
+        }
+
+        CompletableFuture<Enrollment> pipeline;
+        try {
+            pipeline = admissionService.admitAsync(courseId, () -> enrollmentService.enrollCourseAsync(courseId, studentId));
+        } catch (RuntimeException e) {
+            pipeline = CompletableFuture.failedFuture(e);
+        }
+        return pipeline.handle((enrollment, error) -> {
+            if (error == null) {
+                return enrollSuccessResponse(enrollment);
             }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            return enrollFailureResponse(cause instanceof Exception e ? e : new RuntimeException(cause), request);
+        });
+    }
 
-            Enrollment enrollment = enrollmentService.enrollCourse(courseId, studentId);
-            Map<String, Object> response = new HashMap<>();
-            response.put("code", 201);
-            response.put("message", "选课成功");
-            response.put("data", enrollment);
-            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    private ResponseEntity<Map<String, Object>> enrollSuccessResponse(Enrollment enrollment) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("code", 201);
+        response.put("message", "选课成功");
+        response.put("data", enrollment);
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
 
+    /**
+     * 把选课失败转换为响应；课程已满且请求 joinWaitlist 时加入候补队列
+     */
+    private ResponseEntity<Map<String, Object>> enrollFailureResponse(Exception failure, Map<String, String> request) {
+        try {
+            if (failure instanceof CourseFullException && "true".equalsIgnoreCase(request.get("joinWaitlist"))) {
+                Map<String, Object> waitlistEntry = waitlistService.join(request.get("courseId"), request.get("studentId"));
+                Map<String, Object> response = new HashMap<>();
+                response.put("code", 202);
+                response.put("message", "课程容量已满，已加入候补队列");
+                response.put("data", waitlistEntry);
+                return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+            }
+            throw failure;
+        } catch (AdmissionRejectedException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 429);
+            response.put("message", e.getMessage());
+            response.put("data", null);
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(response);
+        } catch (RejectedExecutionException e) {
+            // 非阻塞选课的数据库执行器队列已满
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 429);
+            response.put("message", "选课请求过多，请稍后重试");
+            response.put("data", null);
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(response);
+        } catch (DataIntegrityViolationException e) {
+            // 并发的重复请求被唯一约束拒绝
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 409);
+            response.put("message", "学生已选该课程");
+            response.put("data", null);
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
         } catch (IllegalArgumentException e) {
             Map<String, Object> response = new HashMap<>();
             response.put("code", 400);
@@ -127,6 +295,31 @@ public class EnrollmentController {
             response.put("message", e.getMessage());
             response.put("data", null);
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        } catch (CatalogUnavailableException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 503);
+            response.put("message", e.getMessage());
+            response.put("data", null);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "5")
+                    .body(response);
+        } catch (EnrollmentPendingException e) {
+            // 结果未定：返回查询地址，客户端轮询选课状态而不是重新提交
+            String statusUrl = "/api/enrollments/check-enrollment?courseId="
+                    + UriUtils.encode(e.getCourseId(), StandardCharsets.UTF_8)
+                    + "&studentId=" + UriUtils.encode(e.getStudentId(), StandardCharsets.UTF_8);
+            Map<String, Object> data = new HashMap<>();
+            data.put("courseId", e.getCourseId());
+            data.put("studentId", e.getStudentId());
+            data.put("statusUrl", statusUrl);
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 202);
+            response.put("message", e.getMessage());
+            response.put("data", data);
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .header(HttpHeaders.LOCATION, statusUrl)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(response);
         } catch (Exception e) {
             Map<String, Object> response = new HashMap<>();
             response.put("code", 500);
@@ -136,14 +329,59 @@ public class EnrollmentController {
         }
     }
 
+    /**
+     * 批量选课
+     * POST /api/enrollments/batch
+     * Content-Type: application/json
+     * @param request 包含 items 列表，每项为 courseId 和 studentId
+     * @return 逐项选课结果
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<Map<String, Object>> enrollBatch(@RequestBody Map<String, List<Map<String, String>>> request) {
+        try {
+            List<Map<String, Object>> results = enrollmentService.enrollBatch(request.get("items"));
+            long succeeded = results.stream().filter(result -> Boolean.TRUE.equals(result.get("success"))).count();
+            Map<String, Object> data = new HashMap<>();
+            data.put("total", results.size());
+            data.put("succeeded", succeeded);
+            data.put("failed", results.size() - succeeded);
+            data.put("results", results);
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 200);
+            response.put("message", "批量选课完成");
+            response.put("data", data);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 400);
+            response.put("message", e.getMessage());
+            response.put("data", null);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 500);
+            response.put("message", "批量选课失败: " + e.getMessage());
+            response.put("data", null);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
     /**
      * 学生退课
      * DELETE /api/enrollments/{id}
+     * 携带 Idempotency-Key 请求头时，重试会直接返回首次执行的结果
      * @param id 选课记录ID
+     * @param idempotencyKey 幂等键（可选）
      * @return 退课结果
      */
     @DeleteMapping("/{id}")
-    public ResponseEntity<Map<String, Object>> withdrawEnrollment(@PathVariable UUID id) {
+    public ResponseEntity<Map<String, Object>> withdrawEnrollment(
+            @PathVariable UUID id,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute(idempotencyKey, "withdraw", String.valueOf(id), () -> doWithdrawEnrollment(id));
+    }
+
+    private ResponseEntity<Map<String, Object>> doWithdrawEnrollment(UUID id) {
         try {
             boolean deleted = enrollmentService.deleteEnrollment(id);
             if (deleted) {
@@ -171,14 +409,22 @@ public class EnrollmentController {
     /**
      * 根据课程和学生退课
      * DELETE /api/enrollments/course/{courseId}/student/{studentId}
+     * 携带 Idempotency-Key 请求头时，重试会直接返回首次执行的结果
      * @param courseId 课程ID
      * @param studentId 学生ID
+     * @param idempotencyKey 幂等键（可选）
      * @return 退课结果
      */
     @DeleteMapping("/course/{courseId}/student/{studentId}")
     public ResponseEntity<Map<String, Object>> withdrawCourseByCourseAndStudent(
             @PathVariable String courseId,
-            @PathVariable String studentId) {
+            @PathVariable String studentId,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute(idempotencyKey, "withdraw-course", courseId + "|" + studentId,
+                () -> doWithdrawCourse(courseId, studentId));
+    }
+
+    private ResponseEntity<Map<String, Object>> doWithdrawCourse(String courseId, String studentId) {
         try {
             boolean withdrawn = enrollmentService.withdrawCourse(courseId, studentId);
             if (withdrawn) {
@@ -216,20 +462,19 @@ public class EnrollmentController {
     }
 
     /**
-     * 按课程查询选课记录
-     * GET /api/enrollments/course/{courseId}
+     * 按课程分页查询选课记录
+     * GET /api/enrollments/course/{courseId}?after=&limit=
      * @param courseId 课程ID
-     * @return 该课程的选课记录列表
+     * @param after 上一页返回的 nextCursor，省略时从第一页开始
+     * @param limit 每页条数（默认 1000，最多 5000）
+     * @return 选课记录列表，nextCursor 为下一页游标（最后一页为 null）
      */
     @GetMapping("/course/{courseId}")
-    public ResponseEntity<Map<String, Object>> getEnrollmentsByCourse(@PathVariable String courseId) {
+    public ResponseEntity<Map<String, Object>> getEnrollmentsByCourse(@PathVariable String courseId,
+                                                                  @RequestParam(required = false) UUID after,
+                                                                  @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int limit) {
         try {
-            List<Enrollment> enrollments = enrollmentService.getEnrollmentsByCourse(courseId);
-            Map<String, Object> response = new HashMap<>();
-            response.put("code", 200);
-            response.put("message", "Success");
-            response.put("data", enrollments);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(pageResponse(enrollmentService.getEnrollmentsPage(courseId, null, null, after, limit)));
         } catch (IllegalArgumentException e) {
             Map<String, Object> response = new HashMap<>();
             response.put("code", 400);
@@ -246,20 +491,19 @@ public class EnrollmentController {
     }
 
     /**
-     * 按学生查询选课记录
-     * GET /api/enrollments/student/{studentId}
+     * 按学生分页查询选课记录
+     * GET /api/enrollments/student/{studentId}?after=&limit=
      * @param studentId 学生ID
-     * @return 该学生的选课记录列表
+     * @param after 上一页返回的 nextCursor，省略时从第一页开始
+     * @param limit 每页条数（默认 1000，最多 5000）
+     * @return 选课记录列表，nextCursor 为下一页游标（最后一页为 null）
      */
     @GetMapping("/student/{studentId}")
-    public ResponseEntity<Map<String, Object>> getEnrollmentsByStudent(@PathVariable String studentId) {
+    public ResponseEntity<Map<String, Object>> getEnrollmentsByStudent(@PathVariable String studentId,
+                                                                   @RequestParam(required = false) UUID after,
+                                                                   @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int limit) {
         try {
-            List<Enrollment> enrollments = enrollmentService.getEnrollmentsByStudent(studentId);
-            Map<String, Object> response = new HashMap<>();
-            response.put("code", 200);
-            response.put("message", "Success");
-            response.put("data", enrollments);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(pageResponse(enrollmentService.getEnrollmentsPage(null, studentId, null, after, limit)));
         } catch (IllegalArgumentException e) {
             Map<String, Object> response = new HashMap<>();
             response.put("code", 400);
@@ -276,20 +520,19 @@ public class EnrollmentController {
     }
 
     /**
-     * 按状态查询选课记录
-     * GET /api/enrollments/status/{status}
+     * 按状态分页查询选课记录
+     * GET /api/enrollments/status/{status}?after=&limit=
      * @param status 选课状态
-     * @return 指定状态的选课记录列表
+     * @param after 上一页返回的 nextCursor，省略时从第一页开始
+     * @param limit 每页条数（默认 1000，最多 5000）
+     * @return 选课记录列表，nextCursor 为下一页游标（最后一页为 null）
      */
     @GetMapping("/status/{status}")
-    public ResponseEntity<Map<String, Object>> getEnrollmentsByStatus(@PathVariable String status) {
+    public ResponseEntity<Map<String, Object>> getEnrollmentsByStatus(@PathVariable String status,
+                                                                  @RequestParam(required = false) UUID after,
+                                                                  @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int limit) {
         try {
-            List<Enrollment> enrollments = enrollmentService.getEnrollmentsByStatus(status);
-            Map<String, Object> response = new HashMap<>();
-            response.put("code", 200);
-            response.put("message", "Success");
-            response.put("data", enrollments);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(pageResponse(enrollmentService.getEnrollmentsPage(null, null, status, after, limit)));
         } catch (IllegalArgumentException e) {
             Map<String, Object> response = new HashMap<>();
             response.put("code", 400);
@@ -347,6 +590,20 @@ public class EnrollmentController {
             response.put("message", e.getMessage());
             response.put("data", null);
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        } catch (com.zjgsu.ms.hxy.enrollment.exception.CourseNotFoundException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 404);
+            response.put("message", e.getMessage());
+            response.put("data", null);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        } catch (CatalogUnavailableException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 503);
+            response.put("message", e.getMessage());
+            response.put("data", null);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "5")
+                    .body(response);
         } catch (Exception e) {
             Map<String, Object> response = new HashMap<>();
             response.put("code", 500);
@@ -446,6 +703,40 @@ public class EnrollmentController {
         }
     }
 
+    /**
+     * 批量获取课程选课人数
+     * GET /api/enrollments/counts?courseIds=id1,id2,...
+     * @param courseIds 课程ID列表（逗号分隔）
+     * @return courseId -> 选课人数
+     */
+    @GetMapping("/counts")
+    public ResponseEntity<Map<String, Object>> getEnrollmentCountsByCourse(@RequestParam List<String> courseIds) {
+        try {
+            Set<String> uniqueIds = new LinkedHashSet<>(courseIds);
+            if (uniqueIds.size() > MAX_COUNT_BATCH) {
+                throw new IllegalArgumentException("单次最多查询" + MAX_COUNT_BATCH + "门课程");
+            }
+            Map<String, Long> counts = enrollmentService.getEnrollmentCountsByCourse(uniqueIds);
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 200);
+            response.put("message", "Success");
+            response.put("data", counts);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 400);
+            response.put("message", e.getMessage());
+            response.put("data", null);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 500);
+            response.put("message", "获取选课人数失败: " + e.getMessage());
+            response.put("data", null);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
     /**
      * 获取学生选课数量
      * GET /api/enrollments/student/{studentId}/count
@@ -502,4 +793,22 @@ public class EnrollmentController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
         }
     }
-}
\ No newline at end of file
+
+    private Map<String, Object> pageResponse(KeysetPage<Enrollment> page) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("code", 200);
+        response.put("message", "Success");
+        response.put("data", page.items());
+        response.put("nextCursor", page.nextCursor());
+        return response;
+    }
+
+    private void writeLine(OutputStream out, Object line) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(line));
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.zjgsu.ms.hxy.enrollment.controller;
+
+import com.zjgsu.ms.hxy.enrollment.service.CourseStatisticsService;
+import com.zjgsu.ms.hxy.enrollment.service.GradeImportService;
+import com.zjgsu.ms.hxy.enrollment.service.GradeImportService.GradeImportResult;
+import com.zjgsu.ms.hxy.enrollment.service.GradeImportService.GradeRow;
+import com.zjgsu.ms.hxy.enrollment.service.GradeImportService.RowError;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * GradeController 类
+ * 提供成绩批量导入与课程成绩统计的 RESTful API 接口
+ * 导入结果以 NDJSON 逐行返回：每个校验失败的行一条结果，最后一行为汇总 {code, message, data}
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@RestController
+@RequestMapping("/api/enrollments/grades")
+public class GradeController {
+
+    /**
+     * 单次批量统计的最大课程数
+     */
+    private static final int MAX_STATISTICS_BATCH = 1000;
+
+    private final GradeImportService gradeImportService;
+    private final CourseStatisticsService courseStatisticsService;
+    private final NdjsonResponses ndjsonResponses;
+
+    @Autowired
+    public GradeController(GradeImportService gradeImportService,
+                           CourseStatisticsService courseStatisticsService,
+                           NdjsonResponses ndjsonResponses) {
+        this.gradeImportService = gradeImportService;
+        this.courseStatisticsService = courseStatisticsService;
+        this.ndjsonResponses = ndjsonResponses;
+    }
+
+    /**
+     * 获取课程成绩分布统计
+     * GET /api/enrollments/grades/statistics/course/{courseId}
+     * @param courseId 课程ID
+     * @return 人数、均值、标准差、最值、分位数与直方图
+     */
+    @GetMapping("/statistics/course/{courseId}")
+    public ResponseEntity<Map<String, Object>> getCourseStatistics(@PathVariable String courseId) {
+        try {
+            return ResponseEntity.ok(NdjsonResponses.summary(HttpStatus.OK, "Success", courseStatisticsService.getStatistics(courseId)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(NdjsonResponses.summary(HttpStatus.BAD_REQUEST, e.getMessage(), null));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(NdjsonResponses.summary(HttpStatus.INTERNAL_SERVER_ERROR, "获取成绩统计失败: " + e.getMessage(), null));
+        }
+    }
+
+    /**
+     * 批量获取课程成绩分布统计，一次查询读取所有课程的成绩后并行计算
+     * GET /api/enrollments/grades/statistics?courseIds=id1,id2,...
+     * @param courseIds 课程ID列表（逗号分隔），省略时统计所有有成绩的课程
+     * @return 统计结果列表
+     */
+    @GetMapping("/statistics")
+    public ResponseEntity<Map<String, Object>> getCoursesStatistics(@RequestParam(required = false) List<String> courseIds) {
+        try {
+            Set<String> uniqueIds = courseIds == null ? Set.of() : new LinkedHashSet<>(courseIds);
+            if (uniqueIds.size() > MAX_STATISTICS_BATCH) {
+                throw new IllegalArgumentException("单次最多统计" + MAX_STATISTICS_BATCH + "门课程");
+            }
+            List<Map<String, Object>> data = new ArrayList<>(courseStatisticsService.getStatistics(uniqueIds).values());
+            return ResponseEntity.ok(NdjsonResponses.summary(HttpStatus.OK, "Success", data));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(NdjsonResponses.summary(HttpStatus.BAD_REQUEST, e.getMessage(), null));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(NdjsonResponses.summary(HttpStatus.INTERNAL_SERVER_ERROR, "获取成绩统计失败: " + e.getMessage(), null));
+        }
+    }
+
+    /**
+     * 批量导入成绩（JSON）
+     * POST /api/enrollments/grades/import
+     * Content-Type: application/json
+     * @param request 包含 grades 列表，每项为 courseId、studentId、grade
+     * @return 校验失败的行与导入汇总（NDJSON）
+     */
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> importGradesJson(@RequestBody Map<String, List<Map<String, Object>>> request) {
+        return importGrades(() -> gradeImportService.importItems(request.get("grades")));
+    }
+
+    /**
+     * 批量导入成绩（CSV 请求体）
+     * POST /api/enrollments/grades/import
+     * Content-Type: text/csv，每行 courseId,studentId,grade，首行可为表头
+     * @param request HTTP 请求
+     * @return 校验失败的行与导入汇总（NDJSON）
+     */
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public ResponseEntity<StreamingResponseBody> importGradesCsv(HttpServletRequest request) {
+        return importGrades(() -> gradeImportService.importCsv(request.getInputStream()));
+    }
+
+    /**
+     * 批量导入成绩（CSV 文件上传）
+     * POST /api/enrollments/grades/import
+     * Content-Type: multipart/form-data，文件字段名为 file
+     * @param file CSV 文件
+     * @return 校验失败的行与导入汇总（NDJSON）
+     */
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<StreamingResponseBody> importGradesFile(@RequestParam("file") MultipartFile file) {
+        return importGrades(() -> gradeImportService.importCsv(file.getInputStream()));
+    }
+
+    private ResponseEntity<StreamingResponseBody> importGrades(Callable<GradeImportResult> importer) {
+        GradeImportResult result;
+        try {
+            result = importer.call();
+        } catch (IllegalArgumentException | IOException e) {
+            return ndjsonResponses.summaryOnly(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (Exception e) {
+            return ndjsonResponses.summaryOnly(HttpStatus.INTERNAL_SERVER_ERROR, "导入成绩失败: " + e.getMessage());
+        }
+
+        HttpStatus status = result.applied() ? HttpStatus.OK : HttpStatus.BAD_REQUEST;
+        List<RowError> errors = result.errors();
+        Map<String, Object> data = new HashMap<>();
+        data.put("total", result.total());
+        data.put("updated", result.updated());
+        data.put("failed", result.failed());
+        data.put("applied", result.applied());
+        return ndjsonResponses.lines(status, errors.size(), i -> {
+            GradeRow row = errors.get(i).row();
+            Map<String, Object> line = new HashMap<>();
+            line.put("line", row.line());
+            line.put("courseId", row.courseId());
+            line.put("studentId", row.studentId());
+            line.put("grade", row.grade());
+            line.put("success", false);
+            line.put("message", errors.get(i).message());
+            return line;
+        }, result.applied() ? "成绩导入完成" : "成绩校验失败，未写入任何成绩", data);
+    }
+}
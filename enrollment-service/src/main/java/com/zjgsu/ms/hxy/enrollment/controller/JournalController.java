@@ -0,0 +1,249 @@
+package com.zjgsu.ms.hxy.enrollment.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zjgsu.ms.hxy.enrollment.log.LogRecord;
+import com.zjgsu.ms.hxy.enrollment.model.EnrollmentSnapshot;
+import com.zjgsu.ms.hxy.enrollment.service.EnrollmentEventLog;
+import com.zjgsu.ms.hxy.enrollment.service.EnrollmentJournal;
+import com.zjgsu.ms.hxy.enrollment.service.EnrollmentJournal.EventPage;
+import com.zjgsu.ms.hxy.enrollment.service.KeysetPage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * JournalController 类
+ * 提供选课事件日志与状态快照的 RESTful API 接口
+ * 消费方先读取最新快照（snapshot），再从快照的 lastEventId 之后按序号读取事件（events）
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@RestController
+@RequestMapping("/api/enrollments/journal")
+public class JournalController {
+
+    /**
+     * 事件分页的默认每页条数
+     */
+    private static final String DEFAULT_PAGE_SIZE = "1000";
+
+    /**
+     * 长轮询的最长等待时间（毫秒）
+     */
+    private static final long MAX_TAIL_WAIT_MILLIS = 30000;
+
+    private final EnrollmentJournal enrollmentJournal;
+    private final EnrollmentEventLog enrollmentEventLog;
+    private final NdjsonResponses ndjsonResponses;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public JournalController(EnrollmentJournal enrollmentJournal, EnrollmentEventLog enrollmentEventLog,
+                             NdjsonResponses ndjsonResponses, ObjectMapper objectMapper) {
+        this.enrollmentJournal = enrollmentJournal;
+        this.enrollmentEventLog = enrollmentEventLog;
+        this.ndjsonResponses = ndjsonResponses;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 按序号分页读取事件
+     * GET /api/enrollments/journal/events?after=&limit=
+     * @param after 起始序号（不含），省略时从头读取
+     * @param limit 每页条数（默认 1000，最多 5000）
+     * @return 事件列表，nextCursor 为下一次读取的起始序号，hasMore 为 false 时已读到当前末尾
+     */
+    @GetMapping("/events")
+    public ResponseEntity<Map<String, Object>> getEvents(@RequestParam(defaultValue = "0") long after,
+                                                         @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int limit) {
+        try {
+            EventPage page = enrollmentJournal.getEvents(after, limit);
+            Map<String, Object> response = NdjsonResponses.summary(HttpStatus.OK, "Success", page.items());
+            response.put("nextCursor", page.nextCursor());
+            response.put("hasMore", page.hasMore());
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(NdjsonResponses.summary(HttpStatus.BAD_REQUEST, e.getMessage(), null));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(NdjsonResponses.summary(HttpStatus.INTERNAL_SERVER_ERROR, "获取选课事件失败: " + e.getMessage(), null));
+        }
+    }
+
+    /**
+     * 流式读取事件（NDJSON，每行一个事件）
+     * GET /api/enrollments/journal/events/stream?after=
+     * @param after 起始序号（不含），省略时从头读取
+     * @return 当前已可见的全部后续事件
+     */
+    @GetMapping(value = "/events/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> streamEvents(@RequestParam(defaultValue = "0") long after) {
+        StreamingResponseBody body = out -> {
+            try {
+                enrollmentJournal.forEachEvent(after, event -> writeLine(out, event));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.flush();
+        };
+        return ResponseEntity.ok().contentType(NdjsonResponses.NDJSON).body(body);
+    }
+
+    /**
+     * 长轮询读取分段日志中的事件（NDJSON，每行 {"id":事件序号,"event":事件}，需启用 segment-log）
+     * GET /api/enrollments/journal/events/tail?after=&limit=&waitMs=
+     * 事件 JSON 从映射内存复制到响应中，不经过反序列化；没有新事件时最多等待 waitMs 后返回空响应，
+     * 等待期间不占用请求线程
+     * 事件在提交前写入日志，回滚的事务之后会跟随同一选课记录的 RESYNCED 或 DELETED 事件，按顺序应用即可
+     * @param after 起始序号（不含），即上一次读到的最后一个事件序号
+     * @param limit 最多返回的条数（默认 1000，最多 5000）
+     * @param waitMs 没有新事件时的最长等待时间（最多 30000）
+     * @return 后续事件
+     */
+    @GetMapping(value = "/events/tail", produces = "application/x-ndjson")
+    public DeferredResult<ResponseEntity<byte[]>> tailEvents(@RequestParam(defaultValue = "0") long after,
+                                                             @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int limit,
+                                                             @RequestParam(defaultValue = "0") long waitMs) {
+        long wait = Math.min(Math.max(waitMs, 0), MAX_TAIL_WAIT_MILLIS);
+        // 日志的等待先超时并返回空结果，请求的超时只作为兜底
+        DeferredResult<ResponseEntity<byte[]>> result = new DeferredResult<>(wait + 5000,
+                () -> summaryLine(HttpStatus.SERVICE_UNAVAILABLE, "读取选课事件超时"));
+        if (!enrollmentEventLog.isEnabled()) {
+            result.setResult(summaryLine(HttpStatus.NOT_FOUND, "选课事件分段日志未启用"));
+            return result;
+        }
+        try {
+            KeysetPage.checkLimit(limit);
+        } catch (IllegalArgumentException e) {
+            result.setResult(summaryLine(HttpStatus.BAD_REQUEST, e.getMessage()));
+            return result;
+        }
+        enrollmentEventLog.tail(after, limit, wait).whenComplete((records, error) -> {
+            if (error != null) {
+                result.setResult(summaryLine(HttpStatus.INTERNAL_SERVER_ERROR, "读取选课事件失败: " + error.getMessage()));
+                return;
+            }
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            for (LogRecord record : records) {
+                body.writeBytes(("{\"id\":" + (record.offset() + 1) + ",\"event\":").getBytes(StandardCharsets.UTF_8));
+                body.writeBytes(record.payloadBytes());
+                body.write('}');
+                body.write('\n');
+            }
+            result.setResult(ResponseEntity.ok().contentType(NdjsonResponses.NDJSON).body(body.toByteArray()));
+        });
+        return result;
+    }
+
+    /**
+     * 查询单条选课记录的变更历史
+     * GET /api/enrollments/journal/enrollment/{enrollmentId}
+     * @param enrollmentId 选课记录ID
+     * @return 按序号升序的事件列表
+     */
+    @GetMapping("/enrollment/{enrollmentId}")
+    public ResponseEntity<Map<String, Object>> getEnrollmentHistory(@PathVariable String enrollmentId) {
+        try {
+            return ResponseEntity.ok(NdjsonResponses.summary(HttpStatus.OK, "Success", enrollmentJournal.getEnrollmentHistory(enrollmentId)));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(NdjsonResponses.summary(HttpStatus.NOT_FOUND, e.getMessage(), null));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(NdjsonResponses.summary(HttpStatus.INTERNAL_SERVER_ERROR, "获取选课历史失败: " + e.getMessage(), null));
+        }
+    }
+
+    /**
+     * 读取最新快照（NDJSON）
+     * GET /api/enrollments/journal/snapshot
+     * 首行为快照信息 {code, message, data}，data 含 lastEventId；其后每行一条选课记录的状态
+     * @return 快照内容，尚未拍摄快照时返回 404
+     */
+    @GetMapping(value = "/snapshot", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> getLatestSnapshot() {
+        Optional<EnrollmentSnapshot> latest;
+        try {
+            latest = enrollmentJournal.getLatestSnapshot();
+        } catch (Exception e) {
+            return ndjsonResponses.summaryOnly(HttpStatus.INTERNAL_SERVER_ERROR, "获取快照失败: " + e.getMessage());
+        }
+        if (latest.isEmpty()) {
+            return ndjsonResponses.summaryOnly(HttpStatus.NOT_FOUND, "尚未生成快照");
+        }
+
+        EnrollmentSnapshot snapshot = latest.get();
+        StreamingResponseBody body = out -> {
+            writeLine(out, NdjsonResponses.summary(HttpStatus.OK, "Success", snapshotInfo(snapshot)));
+            try {
+                enrollmentJournal.copySnapshotContent(snapshot, out);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.flush();
+        };
+        return ResponseEntity.ok().contentType(NdjsonResponses.NDJSON).body(body);
+    }
+
+    /**
+     * 立即拍摄快照
+     * POST /api/enrollments/journal/snapshots
+     * @return 新快照信息
+     */
+    @PostMapping("/snapshots")
+    public ResponseEntity<Map<String, Object>> takeSnapshot() {
+        try {
+            EnrollmentSnapshot snapshot = enrollmentJournal.takeSnapshot();
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .body(NdjsonResponses.summary(HttpStatus.CREATED, "快照已生成", snapshotInfo(snapshot)));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(NdjsonResponses.summary(HttpStatus.CONFLICT, e.getMessage(), null));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(NdjsonResponses.summary(HttpStatus.INTERNAL_SERVER_ERROR, "生成快照失败: " + e.getMessage(), null));
+        }
+    }
+
+    private static Map<String, Object> snapshotInfo(EnrollmentSnapshot snapshot) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("id", snapshot.getId());
+        data.put("lastEventId", snapshot.getLastEventId());
+        data.put("enrollmentCount", snapshot.getEnrollmentCount());
+        data.put("createdAt", snapshot.getCreatedAt());
+        return data;
+    }
+
+    private ResponseEntity<byte[]> summaryLine(HttpStatus status, String message) {
+        try {
+            byte[] line = objectMapper.writeValueAsBytes(NdjsonResponses.summary(status, message, null));
+            byte[] body = new byte[line.length + 1];
+            System.arraycopy(line, 0, body, 0, line.length);
+            body[line.length] = '\n';
+            return ResponseEntity.status(status).contentType(NdjsonResponses.NDJSON).body(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeLine(OutputStream out, Object line) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(line));
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
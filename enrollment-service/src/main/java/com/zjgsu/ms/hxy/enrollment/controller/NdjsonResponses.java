@@ -0,0 +1,86 @@
+package com.zjgsu.ms.hxy.enrollment.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * NdjsonResponses 类
+ * 批量导入接口共用的 NDJSON 响应：逐行输出每一行的结果，最后一行为汇总 {code, message, data}
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Component
+public class NdjsonResponses {
+
+    public static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    /**
+     * 每输出多少行刷新一次，让客户端尽早收到结果
+     */
+    private static final int FLUSH_INTERVAL = 1000;
+
+    private final ObjectMapper objectMapper;
+
+    public NdjsonResponses(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 逐行输出结果，最后输出汇总
+     * @param status 响应状态，同时作为汇总的 code
+     * @param lineCount 结果行数
+     * @param line 第 i 行结果
+     * @param message 汇总信息
+     * @param data 汇总数据
+     */
+    public ResponseEntity<StreamingResponseBody> lines(HttpStatus status, int lineCount,
+                                                       IntFunction<Map<String, Object>> line,
+                                                       String message, Object data) {
+        StreamingResponseBody body = out -> {
+            for (int i = 0; i < lineCount; i++) {
+                writeLine(out, line.apply(i));
+                if (i % FLUSH_INTERVAL == FLUSH_INTERVAL - 1) {
+                    out.flush();
+                }
+            }
+            writeLine(out, summary(status, message, data));
+        };
+        return ResponseEntity.status(status).contentType(NDJSON).body(body);
+    }
+
+    /**
+     * 只输出汇总（请求本身无效或导入失败时）
+     */
+    public ResponseEntity<StreamingResponseBody> summaryOnly(HttpStatus status, String message) {
+        return ResponseEntity.status(status).contentType(NDJSON)
+                .body(out -> writeLine(out, summary(status, message, null)));
+    }
+
+    /**
+     * 构建 {code, message, data} 响应
+     */
+    public static Map<String, Object> summary(HttpStatus status, String message, Object data) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("code", status.value());
+        response.put("message", message);
+        response.put("data", data);
+        return response;
+    }
+
+    private void writeLine(OutputStream out, Map<String, Object> line) throws IOException {
+        out.write(objectMapper.writeValueAsBytes(line));
+        out.write('\n');
+    }
+}
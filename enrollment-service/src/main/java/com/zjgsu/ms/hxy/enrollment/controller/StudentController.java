@@ -1,14 +1,27 @@
 package com.zjgsu.ms.hxy.enrollment.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.zjgsu.ms.hxy.enrollment.model.Student;
+import com.zjgsu.ms.hxy.enrollment.service.GradeSummaryService;
+import com.zjgsu.ms.hxy.enrollment.service.KeysetPage;
+import com.zjgsu.ms.hxy.enrollment.service.StudentSearchService;
 import com.zjgsu.ms.hxy.enrollment.service.StudentService;
+import com.zjgsu.ms.hxy.enrollment.service.TimetableService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.HashMap;
 
@@ -24,27 +37,70 @@ import java.util.HashMap;
 @RequestMapping("/api/students")
 public class StudentController {
 
+    /**
+     * 批量查询成绩汇总时单次最多的学生数
+     */
+    private static final int MAX_GPA_BATCH = 1000;
+
+    /**
+     * 批量删除时单次最多的学生数
+     */
+    private static final int MAX_DELETE_BATCH = 1000;
+
     private final StudentService studentService;
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    /**
+     * 列表接口的默认每页条数
+     */
+    private static final String DEFAULT_PAGE_SIZE = "1000";
+
+    /**
+     * 分页搜索的默认每页条数
+     */
+    private static final int DEFAULT_SEARCH_PAGE_SIZE = 20;
+
+    /**
+     * 输入提示的默认条数
+     */
+    private static final int DEFAULT_TYPEAHEAD_SIZE = 10;
+
+    private final GradeSummaryService gradeSummaryService;
+    private final StudentSearchService studentSearchService;
+    private final TimetableService timetableService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public StudentController(StudentService studentService) {
+    public StudentController(StudentService studentService,
+                             GradeSummaryService gradeSummaryService,
+                             StudentSearchService studentSearchService,
+                             TimetableService timetableService,
+                             ObjectMapper objectMapper) {
         this.studentService = studentService;
+        this.gradeSummaryService = gradeSummaryService;
+        this.studentSearchService = studentSearchService;
+        this.timetableService = timetableService;
+        this.objectMapper = objectMapper;
     }
 
     /**
-     * 查询所有学生
-     * GET /api/students
-     * @return 学生列表
+     * 分页查询所有学生
+     * GET /api/students?after=&limit=
+     * @param after 上一页返回的 nextCursor，省略时从第一页开始
+     * @param limit 每页条数（默认 1000，最多 5000）
+     * @return 学生列表，nextCursor 为下一页游标（最后一页为 null）
      */
     @GetMapping
-    public ResponseEntity<Map<String, Object>> getAllStudents() {
+    public ResponseEntity<Map<String, Object>> getAllStudents(@RequestParam(required = false) UUID after,
+                                                              @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int limit) {
         try {
-            List<Student> students = studentService.getAllStudents();
+            return ResponseEntity.ok(pageResponse(studentService.getStudentsPage(null, null, after, limit)));
+        } catch (IllegalArgumentException e) {
             Map<String, Object> response = new HashMap<>();
-            response.put("code", 200);
-            response.put("message", "Success");
-            response.put("data", students);
-            return ResponseEntity.ok(response);
+            response.put("code", 400);
+            response.put("message", e.getMessage());
+            response.put("data", null);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
         } catch (Exception e) {
             Map<String, Object> response = new HashMap<>();
             response.put("code", 500);
@@ -54,6 +110,27 @@ public class StudentController {
         }
     }
 
+    /**
+     * 以 NDJSON 流式导出学生，每行一个学生，服务端逐条读取、写出，不在内存中保留整张表
+     * GET /api/students/stream?major=&grade=
+     * @param major 专业名称，省略时不限
+     * @param grade 入学年份，省略时不限
+     * @return 学生流（NDJSON）
+     */
+    @GetMapping(value = "/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> streamStudents(@RequestParam(required = false) String major,
+                                                                @RequestParam(required = false) Integer grade) {
+        StreamingResponseBody body = out -> {
+            try {
+                studentService.forEachStudent(major, grade, student -> writeLine(out, student));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.flush();
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
     /**
      * 根据ID查询学生
      * GET /api/students/{id}
@@ -87,6 +164,106 @@ public class StudentController {
         }
     }
 
+    /**
+     * 查询学生成绩汇总（平均成绩、已修学分）
+     * GET /api/students/{id}/gpa
+     * @param id 学生ID
+     * @return 成绩汇总
+     */
+    @GetMapping("/{id}/gpa")
+    public ResponseEntity<Map<String, Object>> getStudentGpa(@PathVariable UUID id) {
+        try {
+            return studentService.getStudentById(id)
+                    .map(student -> {
+                        Map<String, Object> response = new HashMap<>();
+                        response.put("code", 200);
+                        response.put("message", "Success");
+                        response.put("data", gradeSummaryService.getGpa(List.of(student)).get(id));
+                        return ResponseEntity.ok(response);
+                    })
+                    .orElseGet(() -> {
+                        Map<String, Object> response = new HashMap<>();
+                        response.put("code", 404);
+                        response.put("message", "学生不存在，ID: " + id);
+                        response.put("data", null);
+                        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+                    });
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 500);
+            response.put("message", "获取成绩汇总失败: " + e.getMessage());
+            response.put("data", null);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
+    /**
+     * 查询学生课表（在读课程及课程信息，按课程时间表排序）
+     * GET /api/students/{id}/timetable
+     * @param id 学生ID
+     * @return 课表，catalogAvailable 为 false 时课程服务不可用，各项课程信息为空
+     */
+    @GetMapping("/{id}/timetable")
+    public ResponseEntity<Map<String, Object>> getStudentTimetable(@PathVariable UUID id) {
+        try {
+            return timetableService.getTimetable(id)
+                    .map(timetable -> {
+                        Map<String, Object> response = new HashMap<>();
+                        response.put("code", 200);
+                        response.put("message", "Success");
+                        response.put("data", timetable);
+                        return ResponseEntity.ok(response);
+                    })
+                    .orElseGet(() -> {
+                        Map<String, Object> response = new HashMap<>();
+                        response.put("code", 404);
+                        response.put("message", "学生不存在，ID: " + id);
+                        response.put("data", null);
+                        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+                    });
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 500);
+            response.put("message", "获取学生课表失败: " + e.getMessage());
+            response.put("data", null);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
+    /**
+     * 批量查询学生成绩汇总
+     * GET /api/students/gpa?ids=id1,id2,...
+     * @param ids 学生ID列表（逗号分隔）
+     * @return 成绩汇总列表，不存在的学生不出现在结果中
+     */
+    @GetMapping("/gpa")
+    public ResponseEntity<Map<String, Object>> getStudentGpaBatch(@RequestParam List<UUID> ids) {
+        try {
+            Set<UUID> uniqueIds = new LinkedHashSet<>(ids);
+            if (uniqueIds.size() > MAX_GPA_BATCH) {
+                throw new IllegalArgumentException("单次最多查询" + MAX_GPA_BATCH + "名学生");
+            }
+            List<Student> students = studentService.getStudentsByIds(uniqueIds);
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 200);
+            response.put("message", "Success");
+            response.put("data", new ArrayList<>(gradeSummaryService.getGpa(students).values()));
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 400);
+            response.put("message", e.getMessage());
+            response.put("data", null);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 500);
+            response.put("message", "获取成绩汇总失败: " + e.getMessage());
+            response.put("data", null);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
     /**
      * 创建学生
      * POST /api/students
@@ -198,6 +375,44 @@ public class StudentController {
         }
     }
 
+    /**
+     * 批量删除学生，存在选课记录或不存在的学生不影响其他学生的删除
+     * POST /api/students/bulk-delete
+     * @param request 包含 ids 列表
+     * @return 已删除、不存在、因存在选课记录未删除的学生ID
+     */
+    @PostMapping("/bulk-delete")
+    public ResponseEntity<Map<String, Object>> deleteStudents(@RequestBody Map<String, List<UUID>> request) {
+        try {
+            List<UUID> ids = request.get("ids");
+            if (ids != null && ids.size() > MAX_DELETE_BATCH) {
+                throw new IllegalArgumentException("单次最多删除" + MAX_DELETE_BATCH + "名学生");
+            }
+            StudentService.BulkDeleteResult result = studentService.deleteStudents(ids);
+            Map<String, Object> data = new HashMap<>();
+            data.put("deleted", result.deleted());
+            data.put("notFound", result.notFound());
+            data.put("hasEnrollments", result.blocked());
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 200);
+            response.put("message", "批量删除完成，已删除" + result.deleted().size() + "名学生");
+            response.put("data", data);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 400);
+            response.put("message", e.getMessage());
+            response.put("data", null);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 500);
+            response.put("message", "批量删除学生失败: " + e.getMessage());
+            response.put("data", null);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
     /**
      * 根据学号查询学生
      * GET /api/students/student-id/{studentId}
@@ -277,20 +492,19 @@ public class StudentController {
     }
 
     /**
-     * 根据专业查询学生
-     * GET /api/students/major/{major}
+     * 根据专业分页查询学生
+     * GET /api/students/major/{major}?after=&limit=
      * @param major 专业名称
-     * @return 学生列表
+     * @param after 上一页返回的 nextCursor，省略时从第一页开始
+     * @param limit 每页条数（默认 1000，最多 5000）
+     * @return 学生列表，nextCursor 为下一页游标（最后一页为 null）
      */
     @GetMapping("/major/{major}")
-    public ResponseEntity<Map<String, Object>> getStudentsByMajor(@PathVariable String major) {
+    public ResponseEntity<Map<String, Object>> getStudentsByMajor(@PathVariable String major,
+                                                                  @RequestParam(required = false) UUID after,
+                                                                  @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int limit) {
         try {
-            List<Student> students = studentService.getStudentsByMajor(major);
-            Map<String, Object> response = new HashMap<>();
-            response.put("code", 200);
-            response.put("message", "Success");
-            response.put("data", students);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(pageResponse(studentService.getStudentsPage(major, null, after, limit)));
         } catch (IllegalArgumentException e) {
             Map<String, Object> response = new HashMap<>();
             response.put("code", 400);
@@ -307,20 +521,19 @@ public class StudentController {
     }
 
     /**
-     * 根据入学年份查询学生
-     * GET /api/students/grade/{grade}
+     * 根据入学年份分页查询学生
+     * GET /api/students/grade/{grade}?after=&limit=
      * @param grade 入学年份
-     * @return 学生列表
+     * @param after 上一页返回的 nextCursor，省略时从第一页开始
+     * @param limit 每页条数（默认 1000，最多 5000）
+     * @return 学生列表，nextCursor 为下一页游标（最后一页为 null）
      */
     @GetMapping("/grade/{grade}")
-    public ResponseEntity<Map<String, Object>> getStudentsByGrade(@PathVariable Integer grade) {
+    public ResponseEntity<Map<String, Object>> getStudentsByGrade(@PathVariable Integer grade,
+                                                                  @RequestParam(required = false) UUID after,
+                                                                  @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int limit) {
         try {
-            List<Student> students = studentService.getStudentsByGrade(grade);
-            Map<String, Object> response = new HashMap<>();
-            response.put("code", 200);
-            response.put("message", "Success");
-            response.put("data", students);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(pageResponse(studentService.getStudentsPage(null, grade, after, limit)));
         } catch (IllegalArgumentException e) {
             Map<String, Object> response = new HashMap<>();
             response.put("code", 400);
@@ -337,19 +550,41 @@ public class StudentController {
     }
 
     /**
-     * 根据姓名搜索学生
-     * GET /api/students/search
+     * 根据姓名或拼音首字母搜索学生，结果按匹配程度排序
+     * GET /api/students/search?keyword=张三
+     * GET /api/students/search?keyword=zs&page=0&size=20（分页）
+     * GET /api/students/search?keyword=zh&mode=typeahead&size=10（输入提示，只匹配前缀）
      * @param keyword 搜索关键词
-     * @return 匹配的学生列表
+     * @param page 页码（从 0 开始），与 size 均省略时返回全部结果
+     * @param size 每页条数或输入提示条数
+     * @param mode 为 typeahead 时返回输入提示
+     * @return 匹配的学生列表、分页结果或输入提示
      */
     @GetMapping("/search")
-    public ResponseEntity<Map<String, Object>> searchStudentsByName(@RequestParam String keyword) {
+    public ResponseEntity<Map<String, Object>> searchStudentsByName(@RequestParam String keyword,
+                                                                    @RequestParam(required = false) Integer page,
+                                                                    @RequestParam(required = false) Integer size,
+                                                                    @RequestParam(required = false) String mode) {
         try {
-            List<Student> students = studentService.searchStudentsByName(keyword);
+            Object data;
+            if ("typeahead".equalsIgnoreCase(mode)) {
+                data = studentSearchService.typeahead(keyword, size != null ? size : DEFAULT_TYPEAHEAD_SIZE);
+            } else if (page != null || size != null) {
+                StudentSearchService.SearchPage result = studentSearchService.search(keyword,
+                        page != null ? page : 0, size != null ? size : DEFAULT_SEARCH_PAGE_SIZE);
+                Map<String, Object> pageData = new HashMap<>();
+                pageData.put("items", result.items());
+                pageData.put("total", result.total());
+                pageData.put("page", result.page());
+                pageData.put("size", result.size());
+                data = pageData;
+            } else {
+                data = studentService.searchStudentsByName(keyword);
+            }
             Map<String, Object> response = new HashMap<>();
             response.put("code", 200);
             response.put("message", "Success");
-            response.put("data", students);
+            response.put("data", data);
             return ResponseEntity.ok(response);
         } catch (IllegalArgumentException e) {
             Map<String, Object> response = new HashMap<>();
@@ -425,4 +660,22 @@ public class StudentController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
         }
     }
-}
\ No newline at end of file
+
+    private Map<String, Object> pageResponse(KeysetPage<Student> page) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("code", 200);
+        response.put("message", "Success");
+        response.put("data", page.items());
+        response.put("nextCursor", page.nextCursor());
+        return response;
+    }
+
+    private void writeLine(OutputStream out, Object line) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(line));
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.zjgsu.ms.hxy.enrollment.controller;
+
+import com.zjgsu.ms.hxy.enrollment.service.StudentImportService;
+import com.zjgsu.ms.hxy.enrollment.service.StudentImportService.StudentImportResult;
+import com.zjgsu.ms.hxy.enrollment.service.StudentImportService.StudentRow;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * StudentImportController 类
+ * 提供学生批量导入的 RESTful API 接口
+ * 结果以 NDJSON 逐行返回：每个输入行一条结果，最后一行为汇总 {code, message, data}
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@RestController
+@RequestMapping("/api/students")
+public class StudentImportController {
+
+    private final StudentImportService studentImportService;
+    private final NdjsonResponses ndjsonResponses;
+
+    @Autowired
+    public StudentImportController(StudentImportService studentImportService, NdjsonResponses ndjsonResponses) {
+        this.studentImportService = studentImportService;
+        this.ndjsonResponses = ndjsonResponses;
+    }
+
+    /**
+     * 批量导入学生（JSON）
+     * POST /api/students/bulk
+     * Content-Type: application/json
+     * @param request 包含 students 列表，每项为 studentId、name、major、grade、email
+     * @return 逐行导入结果（NDJSON）
+     */
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> importStudentsJson(@RequestBody Map<String, List<Map<String, Object>>> request) {
+        return importStudents(() -> studentImportService.fromItems(request.get("students")));
+    }
+
+    /**
+     * 批量导入学生（CSV 请求体）
+     * POST /api/students/bulk
+     * Content-Type: text/csv，每条记录 studentId,name,major,grade,email，首行可为表头；字段可用双引号包围（可含逗号与换行）
+     * @param request HTTP 请求
+     * @return 逐行导入结果（NDJSON）
+     */
+    @PostMapping(value = "/bulk", consumes = "text/csv")
+    public ResponseEntity<StreamingResponseBody> importStudentsCsv(HttpServletRequest request) {
+        return importStudents(() -> studentImportService.parseCsv(request.getInputStream()));
+    }
+
+    /**
+     * 批量导入学生（CSV 文件上传）
+     * POST /api/students/bulk
+     * Content-Type: multipart/form-data，文件字段名为 file
+     * @param file CSV 文件
+     * @return 逐行导入结果（NDJSON）
+     */
+    @PostMapping(value = "/bulk", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<StreamingResponseBody> importStudentsFile(@RequestParam("file") MultipartFile file) {
+        return importStudents(() -> studentImportService.parseCsv(file.getInputStream()));
+    }
+
+    private ResponseEntity<StreamingResponseBody> importStudents(Callable<List<StudentRow>> parser) {
+        StudentImportResult result;
+        try {
+            result = studentImportService.importStudents(parser.call());
+        } catch (IllegalArgumentException | IOException e) {
+            return ndjsonResponses.summaryOnly(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (DataIntegrityViolationException e) {
+            return ndjsonResponses.summaryOnly(HttpStatus.CONFLICT, "导入期间有相同学号或邮箱的学生被创建，请重新导入");
+        } catch (Exception e) {
+            return ndjsonResponses.summaryOnly(HttpStatus.INTERNAL_SERVER_ERROR, "导入学生失败: " + e.getMessage());
+        }
+
+        HttpStatus status = result.applied() ? HttpStatus.CREATED : HttpStatus.BAD_REQUEST;
+        List<StudentRow> rows = result.rows();
+        Map<String, Object> data = new HashMap<>();
+        data.put("total", rows.size());
+        data.put("created", result.created());
+        data.put("failed", result.failed());
+        data.put("applied", result.applied());
+        return ndjsonResponses.lines(status, rows.size(), i -> {
+            String error = result.errors()[i];
+            Map<String, Object> line = new HashMap<>();
+            line.put("line", rows.get(i).line());
+            line.put("studentId", rows.get(i).studentId());
+            line.put("success", result.applied());
+            if (result.applied()) {
+                line.put("message", "学生已创建");
+            } else {
+                line.put("message", error != null ? error : "校验通过，因其他行校验失败未写入");
+            }
+            return line;
+        }, result.applied() ? "学生导入完成" : "学生校验失败，未写入任何学生", data);
+    }
+}
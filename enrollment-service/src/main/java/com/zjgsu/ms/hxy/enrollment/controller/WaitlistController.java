@@ -0,0 +1,147 @@
+package com.zjgsu.ms.hxy.enrollment.controller;
+
+import com.zjgsu.ms.hxy.enrollment.exception.CourseNotFoundException;
+import com.zjgsu.ms.hxy.enrollment.service.WaitlistService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * WaitlistController 类
+ * 提供课程候补队列的 RESTful API 接口
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@RestController
+@RequestMapping("/api/enrollments/waitlist")
+public class WaitlistController {
+
+    private final WaitlistService waitlistService;
+
+    @Autowired
+    public WaitlistController(WaitlistService waitlistService) {
+        this.waitlistService = waitlistService;
+    }
+
+    /**
+     * 加入课程候补队列
+     * POST /api/enrollments/waitlist
+     * Content-Type: application/json
+     * @param request 包含 courseId 和 studentId
+     * @return 排队信息
+     */
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> joinWaitlist(@RequestBody Map<String, String> request) {
+        try {
+            Map<String, Object> entry = waitlistService.join(request.get("courseId"), request.get("studentId"));
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 201);
+            response.put("message", "已加入候补队列");
+            response.put("data", entry);
+            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 400);
+            response.put("message", e.getMessage());
+            response.put("data", null);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        } catch (CourseNotFoundException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 404);
+            response.put("message", e.getMessage());
+            response.put("data", null);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 500);
+            response.put("message", "加入候补失败: " + e.getMessage());
+            response.put("data", null);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
+    /**
+     * 查询候补位置
+     * GET /api/enrollments/waitlist/course/{courseId}/student/{studentId}
+     * @param courseId 课程ID
+     * @param studentId 学生ID
+     * @return 排队信息
+     */
+    @GetMapping("/course/{courseId}/student/{studentId}")
+    public ResponseEntity<Map<String, Object>> getWaitlistPosition(@PathVariable String courseId,
+                                                                   @PathVariable String studentId) {
+        try {
+            return waitlistService.getPosition(courseId, studentId)
+                    .map(entry -> {
+                        Map<String, Object> response = new HashMap<>();
+                        response.put("code", 200);
+                        response.put("message", "Success");
+                        response.put("data", entry);
+                        return ResponseEntity.ok(response);
+                    })
+                    .orElseGet(() -> {
+                        Map<String, Object> response = new HashMap<>();
+                        response.put("code", 404);
+                        response.put("message", "学生不在该课程的候补队列中");
+                        response.put("data", null);
+                        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+                    });
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 400);
+            response.put("message", e.getMessage());
+            response.put("data", null);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 500);
+            response.put("message", "查询候补位置失败: " + e.getMessage());
+            response.put("data", null);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
+    /**
+     * 退出候补队列
+     * DELETE /api/enrollments/waitlist/course/{courseId}/student/{studentId}
+     * @param courseId 课程ID
+     * @param studentId 学生ID
+     * @return 退出结果
+     */
+    @DeleteMapping("/course/{courseId}/student/{studentId}")
+    public ResponseEntity<Map<String, Object>> leaveWaitlist(@PathVariable String courseId,
+                                                             @PathVariable String studentId) {
+        try {
+            if (waitlistService.leave(courseId, studentId)) {
+                Map<String, Object> response = new HashMap<>();
+                response.put("code", 204);
+                response.put("message", "已退出候补队列");
+                response.put("data", null);
+                return ResponseEntity.status(HttpStatus.NO_CONTENT).body(response);
+            }
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 404);
+            response.put("message", "学生不在该课程的候补队列中");
+            response.put("data", null);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 400);
+            response.put("message", e.getMessage());
+            response.put("data", null);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", 500);
+            response.put("message", "退出候补失败: " + e.getMessage());
+            response.put("data", null);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.zjgsu.ms.hxy.enrollment.event;
+
+/**
+ * 课程名额释放事件
+ * 退课等操作提交后发布，用于触发候补递补
+ *
+ * @param courseId 释放名额的课程ID
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+public record SeatReleasedEvent(String courseId) {
+}
@@ -0,0 +1,26 @@
+package com.zjgsu.ms.hxy.enrollment.exception;
+
+/**
+ * AdmissionRejectedException 类
+ * 当选课请求因排队已满或等待超时被准入控制拒绝时抛出此异常
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+public class AdmissionRejectedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public AdmissionRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * 建议客户端重试前等待的秒数
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,16 @@
+package com.zjgsu.ms.hxy.enrollment.exception;
+
+/**
+ * CatalogUnavailableException 类
+ * 当课程服务调用被熔断或舱壁拒绝时抛出此异常，调用方应稍后重试
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+public class CatalogUnavailableException extends RuntimeException {
+
+    public CatalogUnavailableException(String message) {
+        super(message);
+    }
+}
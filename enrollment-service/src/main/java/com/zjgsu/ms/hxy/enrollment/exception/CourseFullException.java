@@ -0,0 +1,23 @@
+package com.zjgsu.ms.hxy.enrollment.exception;
+
+/**
+ * CourseFullException 类
+ * 当课程容量已满（或已有学生在候补）时抛出此异常
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+public class CourseFullException extends IllegalArgumentException {
+
+    private final String courseId;
+
+    public CourseFullException(String courseId) {
+        super("课程容量已满，无法选课");
+        this.courseId = courseId;
+    }
+
+    public String getCourseId() {
+        return courseId;
+    }
+}
@@ -0,0 +1,30 @@
+package com.zjgsu.ms.hxy.enrollment.exception;
+
+/**
+ * EnrollmentPendingException 类
+ * 当选课请求已进入合并提交但在等待时间内未得到结果时抛出此异常
+ * 请求仍可能在稍后提交，客户端应查询选课状态而不是重新提交
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+public class EnrollmentPendingException extends RuntimeException {
+
+    private final String courseId;
+    private final String studentId;
+
+    public EnrollmentPendingException(String courseId, String studentId) {
+        super("选课请求正在处理，请稍后查询选课结果");
+        this.courseId = courseId;
+        this.studentId = studentId;
+    }
+
+    public String getCourseId() {
+        return courseId;
+    }
+
+    public String getStudentId() {
+        return studentId;
+    }
+}
@@ -0,0 +1,28 @@
+package com.zjgsu.ms.hxy.enrollment.log;
+
+import java.nio.ByteBuffer;
+
+/**
+ * LogRecord 类
+ * 分段日志中的一条记录；payload 是映射内存的只读视图（零拷贝），
+ * 段文件被保留策略删除后视图仍然有效，直到记录对象不再被引用
+ *
+ * @param offset 记录序号（从 0 开始连续递增）
+ * @param timestamp 追加时间（毫秒）
+ * @param payload 记录内容
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+public record LogRecord(long offset, long timestamp, ByteBuffer payload) {
+
+    /**
+     * 复制记录内容
+     * @return 内容字节
+     */
+    public byte[] payloadBytes() {
+        byte[] bytes = new byte[payload.remaining()];
+        payload.duplicate().get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,295 @@
+package com.zjgsu.ms.hxy.enrollment.log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * LogSegment 类
+ * 分段日志的一个段：固定大小的预分配文件，整体映射到内存
+ * 记录格式为 [长度 4][CRC32 4][序号 8][时间戳 8][内容]，CRC 覆盖序号、时间戳与内容；
+ * 长度最后写入，长度为 0 表示段内数据结束
+ * 稀疏索引每隔 indexIntervalBytes 记录一次 (序号, 位置)，读取时二分定位后顺序扫描
+ * 写入由 SegmentedLog 的追加锁串行化；读取只使用绝对位置访问，可与写入并发
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+final class LogSegment {
+
+    static final int HEADER_BYTES = 4 + 4 + 8 + 8;
+
+    private static final int ZERO_BLOCK_BYTES = 64 * 1024;
+
+    private final long baseOffset;
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final int indexIntervalBytes;
+
+    /**
+     * 稀疏索引：容量按段大小一次分配，读取方按已发布的 indexSize 访问
+     */
+    private final long[] indexOffsets;
+    private final int[] indexPositions;
+    private volatile int indexSize;
+    private int lastIndexedPosition = -1;
+
+    /**
+     * 已写入数据的末尾位置，写入完整记录后发布
+     */
+    private volatile int position;
+
+    /**
+     * 已刷盘的位置
+     */
+    private int flushedPosition;
+
+    /**
+     * 下一条记录的序号
+     */
+    private volatile long nextOffset;
+
+    /**
+     * 段内最新记录的时间戳，用于按时间保留
+     */
+    private volatile long maxTimestamp;
+
+    private LogSegment(long baseOffset, Path file, FileChannel channel, MappedByteBuffer buffer, int indexIntervalBytes) {
+        this.baseOffset = baseOffset;
+        this.file = file;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = buffer.capacity();
+        this.indexIntervalBytes = indexIntervalBytes;
+        int maxIndexEntries = capacity / Math.max(indexIntervalBytes, HEADER_BYTES) + 2;
+        this.indexOffsets = new long[maxIndexEntries];
+        this.indexPositions = new int[maxIndexEntries];
+        this.nextOffset = baseOffset;
+    }
+
+    /**
+     * 创建或打开段文件并映射；已有文件按其实际大小映射，然后扫描恢复
+     * @param directory 日志目录
+     * @param baseOffset 段内第一条记录的序号
+     * @param segmentBytes 新建段的大小
+     * @param indexIntervalBytes 稀疏索引间隔
+     * @return 段
+     */
+    static LogSegment open(Path directory, long baseOffset, int segmentBytes, int indexIntervalBytes) throws IOException {
+        Path file = directory.resolve(fileName(baseOffset));
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long size = channel.size() > 0 ? channel.size() : segmentBytes;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            LogSegment segment = new LogSegment(baseOffset, file, channel, buffer, indexIntervalBytes);
+            segment.recover();
+            return segment;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    static String fileName(long baseOffset) {
+        return String.format("%020d.log", baseOffset);
+    }
+
+    /**
+     * 从头扫描并校验记录，重建稀疏索引；遇到未写完或校验失败的记录时截断，并清零其后的数据
+     */
+    private void recover() {
+        int pos = 0;
+        long expected = baseOffset;
+        CRC32 crc = new CRC32();
+        while (pos + HEADER_BYTES <= capacity) {
+            int length = buffer.getInt(pos);
+            if (length <= 0 || length > capacity - pos - HEADER_BYTES || buffer.getLong(pos + 8) != expected) {
+                break;
+            }
+            crc.reset();
+            crc.update(buffer.slice(pos + 8, length + HEADER_BYTES - 8));
+            if ((int) crc.getValue() != buffer.getInt(pos + 4)) {
+                break;
+            }
+            index(expected, pos);
+            maxTimestamp = Math.max(maxTimestamp, buffer.getLong(pos + 16));
+            pos += HEADER_BYTES + length;
+            expected++;
+        }
+
+        if (pos + 4 <= capacity && buffer.getInt(pos) != 0) {
+            System.err.println("Truncating enrollment log segment " + file.getFileName() + " at position " + pos);
+            byte[] zeros = new byte[ZERO_BLOCK_BYTES];
+            for (int at = pos; at < capacity; at += ZERO_BLOCK_BYTES) {
+                buffer.put(at, zeros, 0, Math.min(ZERO_BLOCK_BYTES, capacity - at));
+            }
+            buffer.force();
+        }
+        position = pos;
+        flushedPosition = pos;
+        nextOffset = expected;
+    }
+
+    /**
+     * 剩余空间是否能容纳指定大小的内容
+     */
+    boolean fits(int payloadLength) {
+        return (long) position + HEADER_BYTES + payloadLength <= capacity;
+    }
+
+    /**
+     * 能否容纳指定大小的内容（空段）
+     */
+    boolean canEverFit(int payloadLength) {
+        return (long) HEADER_BYTES + payloadLength <= capacity;
+    }
+
+    /**
+     * 追加一条记录（调用方持有追加锁并已确认空间足够）
+     * @return 记录序号
+     */
+    long append(byte[] payload, long timestamp, CRC32 crc) {
+        int pos = position;
+        long offset = nextOffset;
+        buffer.putLong(pos + 8, offset);
+        buffer.putLong(pos + 16, timestamp);
+        buffer.put(pos + HEADER_BYTES, payload);
+        crc.reset();
+        crc.update(buffer.slice(pos + 8, payload.length + HEADER_BYTES - 8));
+        buffer.putInt(pos + 4, (int) crc.getValue());
+        buffer.putInt(pos, payload.length);
+        index(offset, pos);
+        if (timestamp > maxTimestamp) {
+            maxTimestamp = timestamp;
+        }
+        nextOffset = offset + 1;
+        position = pos + HEADER_BYTES + payload.length;
+        return offset;
+    }
+
+    /**
+     * 刷盘自上次刷盘以来写入的数据
+     * @param upTo 刷盘到的位置
+     */
+    void flush(int upTo) {
+        int from;
+        synchronized (this) {
+            from = flushedPosition;
+            if (upTo <= from) {
+                return;
+            }
+            flushedPosition = upTo;
+        }
+        buffer.force(from, upTo - from);
+    }
+
+    /**
+     * 读取序号在 [fromOffset, endOffset) 内的记录
+     * @return 读取的条数
+     */
+    int read(long fromOffset, long endOffset, int maxRecords, List<LogRecord> out) {
+        int limit = position;
+        int pos = lookup(fromOffset);
+        int added = 0;
+        while (added < maxRecords && pos + HEADER_BYTES <= limit) {
+            int length = buffer.getInt(pos);
+            long offset = buffer.getLong(pos + 8);
+            if (offset >= endOffset) {
+                break;
+            }
+            if (offset >= fromOffset) {
+                out.add(new LogRecord(offset, buffer.getLong(pos + 16),
+                        buffer.slice(pos + HEADER_BYTES, length).asReadOnlyBuffer()));
+                added++;
+            }
+            pos += HEADER_BYTES + length;
+        }
+        return added;
+    }
+
+    /**
+     * 稀疏索引中不大于 offset 的最近位置
+     */
+    private int lookup(long offset) {
+        int low = 0;
+        int high = indexSize - 1;
+        int found = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (indexOffsets[mid] <= offset) {
+                found = indexPositions[mid];
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    private void index(long offset, int pos) {
+        if (lastIndexedPosition >= 0 && pos - lastIndexedPosition < indexIntervalBytes) {
+            return;
+        }
+        int size = indexSize;
+        if (size == indexOffsets.length) {
+            return;
+        }
+        indexOffsets[size] = offset;
+        indexPositions[size] = pos;
+        lastIndexedPosition = pos;
+        indexSize = size + 1;
+    }
+
+    /**
+     * 关闭文件通道；映射在不再被引用后由 GC 释放，已交给读取方的视图保持有效
+     */
+    void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close enrollment log segment " + file.getFileName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * 关闭并删除段文件
+     */
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(file);
+    }
+
+    long baseOffset() {
+        return baseOffset;
+    }
+
+    long nextOffset() {
+        return nextOffset;
+    }
+
+    int position() {
+        return position;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    long maxTimestamp() {
+        return maxTimestamp;
+    }
+
+    ByteBuffer buffer() {
+        return buffer;
+    }
+}
@@ -0,0 +1,458 @@
+package com.zjgsu.ms.hxy.enrollment.log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * SegmentedLog 类
+ * 基于内存映射文件的分段追加日志：记录按序号连续编号，写满一段后切换到以下一个序号命名的新段
+ * 追加只写入映射内存，由后台刷盘线程合并提交（group commit）：一次 force 覆盖期间所有追加的记录，
+ * 等待持久化的写入方在同一次刷盘后一起被唤醒
+ * 读取方只能看到已刷盘的记录，返回的内容是映射内存的只读视图，不复制数据
+ * 保留策略按总大小与时间删除最旧的段，当前写入段不会被删除
+ * 打开时对目录中的 .lock 文件加文件锁，同一目录只能被一个进程打开
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+public class SegmentedLog implements Closeable {
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final String LOCK_FILE = ".lock";
+
+    private final Path directory;
+    private final Options options;
+
+    private final ConcurrentSkipListMap<Long, LogSegment> segments = new ConcurrentSkipListMap<>();
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final CRC32 crc = new CRC32();
+    private volatile LogSegment active;
+
+    /**
+     * 已追加（写入映射内存）的下一个序号
+     */
+    private volatile long appendedOffset;
+
+    /**
+     * 已刷盘的下一个序号：序号小于它的记录已持久化且对读取方可见
+     */
+    private volatile long durableOffset;
+
+    /**
+     * 刷盘线程、等待持久化的写入方与等待新记录的读取方共用的监视器
+     */
+    private final Object flushMonitor = new Object();
+
+    /**
+     * durableOffset 下一次推进时完成，供异步等待新记录的读取方使用；每次推进后替换为新的实例
+     */
+    private CompletableFuture<Void> durableAdvanced = new CompletableFuture<>();
+
+    private FileChannel lockChannel;
+    private final Thread flusher;
+    private volatile boolean closed;
+
+    /**
+     * 日志参数
+     * @param segmentBytes 单个段文件大小
+     * @param indexIntervalBytes 稀疏索引间隔
+     * @param retentionBytes 保留的最大总大小
+     * @param retentionMillis 保留的最长时间
+     * @param flushIntervalMillis 没有新记录时刷盘线程的最长等待时间
+     */
+    public record Options(int segmentBytes, int indexIntervalBytes, long retentionBytes,
+                          long retentionMillis, long flushIntervalMillis) {
+    }
+
+    private SegmentedLog(Path directory, Options options) {
+        this.directory = directory;
+        this.options = options;
+        this.flusher = new Thread(this::flushLoop, "enrollment-log-flusher");
+        this.flusher.setDaemon(true);
+    }
+
+    /**
+     * 打开日志目录：按文件名中的起始序号依次恢复已有的段，最后一段作为当前写入段
+     * @param directory 日志目录，不存在时创建
+     * @param options 日志参数
+     * @return 日志
+     */
+    public static SegmentedLog open(Path directory, Options options) throws IOException {
+        if (options.segmentBytes() <= LogSegment.HEADER_BYTES) {
+            throw new IllegalArgumentException("段大小过小: " + options.segmentBytes());
+        }
+        Files.createDirectories(directory);
+        SegmentedLog log = new SegmentedLog(directory, options);
+        try {
+            log.lockDirectory();
+            List<Long> baseOffsets = new ArrayList<>();
+            try (Stream<Path> files = Files.list(directory)) {
+                files.map(file -> file.getFileName().toString())
+                        .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                        .forEach(name -> baseOffsets.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()))));
+            }
+            baseOffsets.sort(null);
+            for (long baseOffset : baseOffsets) {
+                log.segments.put(baseOffset, LogSegment.open(directory, baseOffset, options.segmentBytes(), options.indexIntervalBytes()));
+            }
+            if (log.segments.isEmpty()) {
+                log.segments.put(0L, LogSegment.open(directory, 0L, options.segmentBytes(), options.indexIntervalBytes()));
+            }
+        } catch (IOException | RuntimeException e) {
+            log.segments.values().forEach(LogSegment::close);
+            log.unlockDirectory();
+            throw e;
+        }
+
+        log.active = log.segments.lastEntry().getValue();
+        log.appendedOffset = log.active.nextOffset();
+        log.durableOffset = log.appendedOffset;
+        log.flusher.start();
+        System.out.println("Opened enrollment log " + directory + ": " + log.segments.size()
+                + " segment(s), next offset " + log.appendedOffset);
+        return log;
+    }
+
+    /**
+     * 追加一批记录（只写入映射内存，持久化由刷盘线程完成）
+     * @param payloads 记录内容
+     * @return 最后一条记录的序号；没有记录时为当前末尾序号减一
+     */
+    public long append(List<byte[]> payloads) throws IOException {
+        long last;
+        appendLock.lock();
+        try {
+            ensureOpen();
+            long timestamp = System.currentTimeMillis();
+            last = appendedOffset - 1;
+            for (byte[] payload : payloads) {
+                if (!active.fits(payload.length)) {
+                    if (!active.canEverFit(payload.length)) {
+                        throw new IllegalArgumentException("记录过大: " + payload.length + " 字节");
+                    }
+                    roll();
+                }
+                last = active.append(payload, timestamp, crc);
+            }
+            appendedOffset = last + 1;
+        } finally {
+            appendLock.unlock();
+        }
+        synchronized (flushMonitor) {
+            flushMonitor.notifyAll();
+        }
+        return last;
+    }
+
+    /**
+     * 等待指定序号的记录持久化
+     * @param offset 记录序号
+     * @param timeoutMillis 最长等待时间
+     * @return 是否已持久化
+     */
+    public boolean awaitDurable(long offset, long timeoutMillis) throws InterruptedException {
+        return awaitOffset(offset + 1, timeoutMillis);
+    }
+
+    /**
+     * 读取已持久化的记录
+     * @param fromOffset 起始序号（含）；早于最旧记录时从最旧记录开始
+     * @param maxRecords 最多读取的条数
+     * @return 按序号升序的记录，内容为映射内存的只读视图
+     */
+    public List<LogRecord> read(long fromOffset, int maxRecords) {
+        List<LogRecord> records = new ArrayList<>();
+        long end = durableOffset;
+        long offset = Math.max(fromOffset, firstOffset());
+        while (records.size() < maxRecords && offset < end) {
+            Map.Entry<Long, LogSegment> entry = segments.floorEntry(offset);
+            if (entry == null) {
+                break;
+            }
+            LogSegment segment = entry.getValue();
+            int before = records.size();
+            segment.read(offset, end, maxRecords - before, records);
+            if (records.size() > before) {
+                offset = records.get(records.size() - 1).offset() + 1;
+                continue;
+            }
+            // 段内没有更多记录：转到下一段
+            Long next = segments.higherKey(segment.baseOffset());
+            if (next == null) {
+                break;
+            }
+            offset = next;
+        }
+        return records;
+    }
+
+    /**
+     * 读取已持久化的记录，没有新记录时最多等待 waitMillis；等待不占用调用线程，
+     * 结果在刷盘线程（有新记录时）或超时线程中完成
+     * @param fromOffset 起始序号（含）
+     * @param maxRecords 最多读取的条数
+     * @param waitMillis 最长等待时间
+     * @return 按序号升序的记录
+     */
+    public CompletableFuture<List<LogRecord>> tail(long fromOffset, int maxRecords, long waitMillis) {
+        CompletableFuture<Void> available = new CompletableFuture<>();
+        whenDurable(Math.max(fromOffset, firstOffset()) + 1, available);
+        return available.completeOnTimeout(null, Math.max(waitMillis, 0), TimeUnit.MILLISECONDS)
+                .thenApply(ignored -> read(fromOffset, maxRecords));
+    }
+
+    /**
+     * 最旧记录的序号
+     */
+    public long firstOffset() {
+        Map.Entry<Long, LogSegment> first = segments.firstEntry();
+        return first == null ? 0L : first.getKey();
+    }
+
+    /**
+     * 已持久化的下一个序号
+     */
+    public long durableOffset() {
+        return durableOffset;
+    }
+
+    /**
+     * 已追加（可能尚未刷盘）的下一个序号
+     */
+    public long appendedOffset() {
+        return appendedOffset;
+    }
+
+    /**
+     * 最后一条记录的追加时间（毫秒），没有记录时为 0
+     */
+    public long lastTimestamp() {
+        for (LogSegment segment : segments.descendingMap().values()) {
+            if (segment.maxTimestamp() > 0) {
+                return segment.maxTimestamp();
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * 按段粗略定位追加时间不早于 timestamp 的第一条记录：返回值之前的记录都早于 timestamp，
+     * 之后的记录仍可能早于 timestamp，由调用方按 LogRecord.timestamp() 过滤
+     * @param timestamp 追加时间（毫秒）
+     * @return 起始序号
+     */
+    public long offsetSince(long timestamp) {
+        for (LogSegment segment : segments.descendingMap().values()) {
+            if (segment.maxTimestamp() < timestamp) {
+                return segment.nextOffset();
+            }
+        }
+        return firstOffset();
+    }
+
+    /**
+     * 按总大小与时间删除最旧的段（当前写入段除外）
+     * @return 删除的段数
+     */
+    public int enforceRetention() {
+        long expireBefore = System.currentTimeMillis() - options.retentionMillis();
+        int deleted = 0;
+        while (true) {
+            Map.Entry<Long, LogSegment> oldest = segments.firstEntry();
+            if (oldest == null || oldest.getValue() == active) {
+                break;
+            }
+            LogSegment segment = oldest.getValue();
+            long totalBytes = segments.values().stream().mapToLong(LogSegment::capacity).sum();
+            if (totalBytes <= options.retentionBytes() && segment.maxTimestamp() >= expireBefore) {
+                break;
+            }
+            segments.remove(oldest.getKey());
+            try {
+                segment.delete();
+                deleted++;
+            } catch (IOException e) {
+                System.err.println("Failed to delete enrollment log segment "
+                        + LogSegment.fileName(segment.baseOffset()) + ": " + e.getMessage());
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * 停止刷盘线程，刷盘剩余记录后关闭所有段
+     */
+    @Override
+    public void close() {
+        closed = true;
+        synchronized (flushMonitor) {
+            flushMonitor.notifyAll();
+        }
+        try {
+            flusher.join(options.flushIntervalMillis() + 5000L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        appendLock.lock();
+        try {
+            flush();
+            segments.values().forEach(LogSegment::close);
+        } finally {
+            appendLock.unlock();
+        }
+        CompletableFuture<Void> advanced;
+        synchronized (flushMonitor) {
+            advanced = durableAdvanced;
+        }
+        advanced.complete(null);
+        unlockDirectory();
+    }
+
+    /**
+     * 切换到新段；旧段在切换前刷盘，刷盘线程只需处理当前写入段
+     */
+    private void roll() throws IOException {
+        LogSegment previous = active;
+        previous.flush(previous.position());
+        LogSegment next = LogSegment.open(directory, previous.nextOffset(), options.segmentBytes(), options.indexIntervalBytes());
+        segments.put(next.baseOffset(), next);
+        active = next;
+    }
+
+    private void flushLoop() {
+        while (!closed) {
+            try {
+                synchronized (flushMonitor) {
+                    if (!closed && appendedOffset <= durableOffset) {
+                        flushMonitor.wait(options.flushIntervalMillis());
+                    }
+                }
+                flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                System.err.println("Enrollment log flush failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 刷盘当前写入段中已追加的数据，完成后推进 durableOffset 并唤醒等待方
+     */
+    private void flush() {
+        LogSegment segment;
+        int position;
+        long target;
+        appendLock.lock();
+        try {
+            segment = active;
+            position = segment.position();
+            target = appendedOffset;
+        } finally {
+            appendLock.unlock();
+        }
+        if (target <= durableOffset) {
+            return;
+        }
+        segment.flush(position);
+        CompletableFuture<Void> advanced;
+        synchronized (flushMonitor) {
+            if (target > durableOffset) {
+                durableOffset = target;
+            }
+            flushMonitor.notifyAll();
+            advanced = durableAdvanced;
+            durableAdvanced = new CompletableFuture<>();
+        }
+        advanced.complete(null);
+    }
+
+    /**
+     * 序号小于 offset 的记录都已持久化（或日志已关闭）时完成 result；
+     * 尚未满足时挂到下一次推进上，每次推进后重新检查，result 已完成（如超时）时不再挂回
+     */
+    private void whenDurable(long offset, CompletableFuture<Void> result) {
+        CompletableFuture<Void> advanced;
+        synchronized (flushMonitor) {
+            if (durableOffset >= offset || closed) {
+                result.complete(null);
+                return;
+            }
+            advanced = durableAdvanced;
+        }
+        advanced.thenRun(() -> {
+            if (!result.isDone()) {
+                whenDurable(offset, result);
+            }
+        });
+    }
+
+    private boolean awaitOffset(long offset, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (flushMonitor) {
+            while (durableOffset < offset) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0 || closed) {
+                    return false;
+                }
+                flushMonitor.wait(remaining);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 对目录中的锁文件加排他文件锁，已被其他进程打开时失败
+     */
+    private void lockDirectory() throws IOException {
+        FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IllegalStateException("选课日志目录已被其他进程打开: " + directory);
+        }
+        lockChannel = channel;
+    }
+
+    private void unlockDirectory() {
+        if (lockChannel == null) {
+            return;
+        }
+        try {
+            // 关闭通道同时释放文件锁
+            lockChannel.close();
+        } catch (IOException e) {
+            System.err.println("Failed to release enrollment log lock " + directory + ": " + e.getMessage());
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("选课日志已关闭");
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.zjgsu.ms.hxy.enrollment.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.CreationTimestamp;
+import java.time.LocalDateTime;
+
+/**
+ * CourseCountOutbox 实体类
+ * 课程已选人数变更的发件箱记录，与选课记录在同一事务中写入，
+ * 由后台中继批量合并后同步到 catalog-service
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Entity
+@Table(name = "course_count_outbox",
+        indexes = {
+                @Index(name = "idx_outbox_batch_key", columnList = "batch_key"),
+                @Index(name = "idx_outbox_next_attempt", columnList = "next_attempt_at")
+        })
+public class CourseCountOutbox {
+
+    /**
+     * 自增主键，反映写入顺序
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * 课程ID
+     */
+    @Column(name = "course_id", nullable = false)
+    private String courseId;
+
+    /**
+     * 已选人数增量（选课 +1，退课 -1）
+     */
+    @Column(nullable = false)
+    private Integer delta;
+
+    /**
+     * 批次键，中继合并时分配，同时作为 catalog-service 的幂等键；未分配时为空
+     */
+    @Column(name = "batch_key", length = 64)
+    private String batchKey;
+
+    /**
+     * 已尝试发送的次数
+     */
+    @Column(nullable = false)
+    private Integer attempts = 0;
+
+    /**
+     * 下一次允许发送的时间（用于失败退避）
+     */
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    /**
+     * 创建时间戳，系统自动生成
+     */
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    // 默认构造函数
+    public CourseCountOutbox() {
+    }
+
+    /**
+     * 带参构造函数
+     *
+     * @param courseId 课程ID
+     * @param delta 已选人数增量
+     */
+    public CourseCountOutbox(String courseId, Integer delta) {
+        this.courseId = courseId;
+        this.delta = delta;
+    }
+
+    // Getter 和 Setter 方法
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getCourseId() {
+        return courseId;
+    }
+
+    public void setCourseId(String courseId) {
+        this.courseId = courseId;
+    }
+
+    public Integer getDelta() {
+        return delta;
+    }
+
+    public void setDelta(Integer delta) {
+        this.delta = delta;
+    }
+
+    public String getBatchKey() {
+        return batchKey;
+    }
+
+    public void setBatchKey(String batchKey) {
+        this.batchKey = batchKey;
+    }
+
+    public Integer getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(Integer attempts) {
+        this.attempts = attempts;
+    }
+
+    public LocalDateTime getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    @Override
+    public String toString() {
+        return "CourseCountOutbox{" +
+                "id=" + id +
+                ", courseId='" + courseId + '\'' +
+                ", delta=" + delta +
+                ", batchKey='" + batchKey + '\'' +
+                ", attempts=" + attempts +
+                ", nextAttemptAt=" + nextAttemptAt +
+                '}';
+    }
+}
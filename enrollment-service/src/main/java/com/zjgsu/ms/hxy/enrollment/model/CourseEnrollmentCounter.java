@@ -0,0 +1,80 @@
+package com.zjgsu.ms.hxy.enrollment.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.UpdateTimestamp;
+import java.time.LocalDateTime;
+
+/**
+ * CourseEnrollmentCounter 实体类
+ * 课程的有效选课人数计数（读模型）：未退课（状态不为 WITHDRAWN）的选课数，
+ * 在选课、退课、状态变更与删除选课时与选课记录在同一事务中增量更新，查询人数无需 COUNT 选课记录
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Entity
+@Table(name = "course_enrollment_counters")
+public class CourseEnrollmentCounter {
+
+    /**
+     * 课程ID，与 Enrollment.courseId 相同
+     */
+    @Id
+    @Column(name = "course_id")
+    private String courseId;
+
+    /**
+     * 有效选课数
+     */
+    @Column(name = "active_count", nullable = false)
+    private long activeCount;
+
+    /**
+     * 最近更新时间，系统自动维护
+     */
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    // 默认构造函数
+    public CourseEnrollmentCounter() {
+    }
+
+    /**
+     * 带参构造函数
+     *
+     * @param courseId 课程ID
+     * @param activeCount 有效选课数
+     */
+    public CourseEnrollmentCounter(String courseId, long activeCount) {
+        this.courseId = courseId;
+        this.activeCount = activeCount;
+    }
+
+    // Getter 和 Setter 方法
+
+    public String getCourseId() {
+        return courseId;
+    }
+
+    public void setCourseId(String courseId) {
+        this.courseId = courseId;
+    }
+
+    public long getActiveCount() {
+        return activeCount;
+    }
+
+    public void setActiveCount(long activeCount) {
+        this.activeCount = activeCount;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
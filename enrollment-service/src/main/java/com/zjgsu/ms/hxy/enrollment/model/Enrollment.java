@@ -71,6 +71,13 @@ public class Enrollment {
     @Column(precision = 5)
     private Double grade;
 
+    /**
+     * 课程完成（COMPLETED）时记录的学分快照，成绩汇总按此值累加与扣减，不受课程学分后续修改影响；
+     * 未完成、早于快照功能的记录或完成时课程服务不可用时为空
+     */
+    @Column(name = "completed_credits")
+    private Integer completedCredits;
+
     // 默认构造函数
     public Enrollment() {
     }
@@ -168,6 +175,14 @@ public class Enrollment {
         this.grade = grade;
     }
 
+    public Integer getCompletedCredits() {
+        return completedCredits;
+    }
+
+    public void setCompletedCredits(Integer completedCredits) {
+        this.completedCredits = completedCredits;
+    }
+
     @Override
     public String toString() {
         return "Enrollment{" +
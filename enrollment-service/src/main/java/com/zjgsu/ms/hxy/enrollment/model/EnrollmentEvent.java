@@ -0,0 +1,161 @@
+package com.zjgsu.ms.hxy.enrollment.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * EnrollmentEvent 实体类
+ * 选课事件日志（只追加）：每次选课状态或成绩变更追加一条，与选课记录在同一事务中写入
+ * 事件携带变更后的完整状态（删除事件除外），按 id 顺序重放是幂等的，
+ * 因此可以从任意不晚于快照的位置开始重放；表只按主键范围追加和清理，适合按 id 范围分区
+ * 自增主键按插入顺序而非提交顺序分配，消费方按提交后分配的 seq 读取
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Entity
+@Table(name = "enrollment_events",
+        indexes = {
+                @Index(name = "idx_event_enrollment_id", columnList = "enrollment_id"),
+                @Index(name = "idx_event_seq", columnList = "seq", unique = true),
+                @Index(name = "idx_event_occurred_at", columnList = "occurred_at")
+        })
+public class EnrollmentEvent {
+
+    /**
+     * 自增主键，即事件序号，反映写入顺序
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * 提交顺序序号：事件所在的事务提交后由 EnrollmentJournal 按观察到的顺序分配，连续递增；分配前为空
+     * 分配按序串行进行，读取到某个序号时更小的序号都已可见，不会因长事务较晚提交而被跳过
+     */
+    @Column(name = "seq")
+    private Long seq;
+
+    /**
+     * 选课记录ID
+     */
+    @Column(name = "enrollment_id", nullable = false, length = 36)
+    private String enrollmentId;
+
+    /**
+     * 课程ID
+     */
+    @Column(name = "course_id", nullable = false)
+    private String courseId;
+
+    /**
+     * 学生ID
+     */
+    @Column(name = "student_id", nullable = false)
+    private String studentId;
+
+    /**
+     * 事件类型
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", nullable = false, length = 20)
+    private EnrollmentEventType eventType;
+
+    /**
+     * 变更后的选课状态，删除事件为空
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    private EnrollmentStatus status;
+
+    /**
+     * 变更后的成绩
+     */
+    @Column(precision = 5)
+    private Double grade;
+
+    /**
+     * 事件发生时间
+     */
+    @Column(name = "occurred_at", nullable = false)
+    private LocalDateTime occurredAt;
+
+    // 默认构造函数
+    public EnrollmentEvent() {
+    }
+
+    // Getter 和 Setter 方法
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(Long seq) {
+        this.seq = seq;
+    }
+
+    public String getEnrollmentId() {
+        return enrollmentId;
+    }
+
+    public void setEnrollmentId(String enrollmentId) {
+        this.enrollmentId = enrollmentId;
+    }
+
+    public String getCourseId() {
+        return courseId;
+    }
+
+    public void setCourseId(String courseId) {
+        this.courseId = courseId;
+    }
+
+    public String getStudentId() {
+        return studentId;
+    }
+
+    public void setStudentId(String studentId) {
+        this.studentId = studentId;
+    }
+
+    public EnrollmentEventType getEventType() {
+        return eventType;
+    }
+
+    public void setEventType(EnrollmentEventType eventType) {
+        this.eventType = eventType;
+    }
+
+    public EnrollmentStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(EnrollmentStatus status) {
+        this.status = status;
+    }
+
+    public Double getGrade() {
+        return grade;
+    }
+
+    public void setGrade(Double grade) {
+        this.grade = grade;
+    }
+
+    public LocalDateTime getOccurredAt() {
+        return occurredAt;
+    }
+
+    public void setOccurredAt(LocalDateTime occurredAt) {
+        this.occurredAt = occurredAt;
+    }
+}
@@ -0,0 +1,40 @@
+package com.zjgsu.ms.hxy.enrollment.model;
+
+/**
+ * 选课事件类型枚举
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+public enum EnrollmentEventType {
+    /**
+     * 选课（新建或重新激活已退课的记录）
+     */
+    ENROLLED,
+
+    /**
+     * 退课
+     */
+    WITHDRAWN,
+
+    /**
+     * 选课状态变更
+     */
+    STATUS_CHANGED,
+
+    /**
+     * 成绩变更
+     */
+    GRADE_UPDATED,
+
+    /**
+     * 选课记录删除
+     */
+    DELETED,
+
+    /**
+     * 状态重新同步：携带选课记录当前的完整状态，用于抵消分段日志中未提交事务写入的事件
+     */
+    RESYNCED
+}
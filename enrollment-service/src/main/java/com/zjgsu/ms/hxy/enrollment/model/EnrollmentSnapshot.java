@@ -0,0 +1,141 @@
+package com.zjgsu.ms.hxy.enrollment.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.CreationTimestamp;
+import java.time.LocalDateTime;
+
+/**
+ * EnrollmentSnapshot 实体类
+ * 选课状态快照：拍摄时全部选课记录的状态，内容按块压缩存放在 EnrollmentSnapshotChunk 中
+ * 从快照恢复后，重放序号（seq）大于 lastEventId 的事件即可得到最新状态
+ * enrollment_events 表的序号与分段日志的序号互不相干，segmentLog 标记 lastEventId 属于哪一种
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Entity
+@Table(name = "enrollment_snapshots")
+public class EnrollmentSnapshot {
+
+    /**
+     * 自增主键
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * 快照已包含的最后一个事件序号，重放从其后开始
+     */
+    @Column(name = "last_event_id", nullable = false)
+    private Long lastEventId;
+
+    /**
+     * lastEventId 是否为分段日志的事件序号（旧快照为空，视为 enrollment_events 表的序号）
+     */
+    @Column(name = "segment_log")
+    private Boolean segmentLog;
+
+    /**
+     * 是否已写完全部内容块（旧快照为空，在单个事务中写入，视为已完成）
+     */
+    @Column(name = "completed")
+    private Boolean completed;
+
+    /**
+     * 快照中的选课记录数
+     */
+    @Column(name = "enrollment_count", nullable = false)
+    private Long enrollmentCount;
+
+    /**
+     * 内容块数
+     */
+    @Column(name = "chunk_count", nullable = false)
+    private Integer chunkCount;
+
+    /**
+     * 创建时间戳，系统自动生成
+     */
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    // 默认构造函数
+    public EnrollmentSnapshot() {
+    }
+
+    /**
+     * 带参构造函数
+     *
+     * @param lastEventId 已包含的最后一个事件序号
+     * @param segmentLog lastEventId 是否为分段日志的事件序号
+     */
+    public EnrollmentSnapshot(Long lastEventId, boolean segmentLog) {
+        this.lastEventId = lastEventId;
+        this.segmentLog = segmentLog;
+        this.completed = false;
+        this.enrollmentCount = 0L;
+        this.chunkCount = 0;
+    }
+
+    // Getter 和 Setter 方法
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getLastEventId() {
+        return lastEventId;
+    }
+
+    public void setLastEventId(Long lastEventId) {
+        this.lastEventId = lastEventId;
+    }
+
+    public Boolean getSegmentLog() {
+        return segmentLog;
+    }
+
+    public void setSegmentLog(Boolean segmentLog) {
+        this.segmentLog = segmentLog;
+        this.completed = false;
+    }
+
+    public Boolean getCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(Boolean completed) {
+        this.completed = completed;
+    }
+
+    public Long getEnrollmentCount() {
+        return enrollmentCount;
+    }
+
+    public void setEnrollmentCount(Long enrollmentCount) {
+        this.enrollmentCount = enrollmentCount;
+    }
+
+    public Integer getChunkCount() {
+        return chunkCount;
+    }
+
+    public void setChunkCount(Integer chunkCount) {
+        this.chunkCount = chunkCount;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
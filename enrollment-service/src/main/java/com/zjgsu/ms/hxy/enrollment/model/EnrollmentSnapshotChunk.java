@@ -0,0 +1,96 @@
+package com.zjgsu.ms.hxy.enrollment.model;
+
+import jakarta.persistence.*;
+
+/**
+ * EnrollmentSnapshotChunk 实体类
+ * 选课状态快照的一块内容：GZIP 压缩的 NDJSON，每行一条选课记录的状态
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Entity
+@Table(name = "enrollment_snapshot_chunks",
+        uniqueConstraints = {
+                @UniqueConstraint(columnNames = {"snapshot_id", "chunk_no"})
+        })
+public class EnrollmentSnapshotChunk {
+
+    /**
+     * 自增主键
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * 所属快照ID
+     */
+    @Column(name = "snapshot_id", nullable = false)
+    private Long snapshotId;
+
+    /**
+     * 块序号，从 0 开始
+     */
+    @Column(name = "chunk_no", nullable = false)
+    private Integer chunkNo;
+
+    /**
+     * 压缩后的内容
+     */
+    @Lob
+    @Column(nullable = false)
+    private byte[] payload;
+
+    // 默认构造函数
+    public EnrollmentSnapshotChunk() {
+    }
+
+    /**
+     * 带参构造函数
+     *
+     * @param snapshotId 所属快照ID
+     * @param chunkNo 块序号
+     * @param payload 压缩后的内容
+     */
+    public EnrollmentSnapshotChunk(Long snapshotId, Integer chunkNo, byte[] payload) {
+        this.snapshotId = snapshotId;
+        this.chunkNo = chunkNo;
+        this.payload = payload;
+    }
+
+    // Getter 和 Setter 方法
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getSnapshotId() {
+        return snapshotId;
+    }
+
+    public void setSnapshotId(Long snapshotId) {
+        this.snapshotId = snapshotId;
+    }
+
+    public Integer getChunkNo() {
+        return chunkNo;
+    }
+
+    public void setChunkNo(Integer chunkNo) {
+        this.chunkNo = chunkNo;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public void setPayload(byte[] payload) {
+        this.payload = payload;
+    }
+}
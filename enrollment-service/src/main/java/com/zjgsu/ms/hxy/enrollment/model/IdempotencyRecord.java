@@ -0,0 +1,178 @@
+package com.zjgsu.ms.hxy.enrollment.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.springframework.data.domain.Persistable;
+import java.time.LocalDateTime;
+
+/**
+ * IdempotencyRecord 实体类
+ * 记录带 Idempotency-Key 的写请求及其首次执行的响应，客户端重试时直接返回该响应
+ * 请求执行前先以 INSERT 写入处理中的记录（状态码为 PENDING_STATUS）占用幂等键，执行完成后再写入响应
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Entity
+@Table(name = "idempotency_records",
+        indexes = {
+                @Index(name = "idx_idempotency_expires_at", columnList = "expires_at")
+        })
+public class IdempotencyRecord implements Persistable<String> {
+
+    /**
+     * 处理中的记录的状态码：幂等键已被占用，响应尚未写入
+     */
+    public static final int PENDING_STATUS = 0;
+
+    /**
+     * 作用域内的幂等键：操作名 + ":" + 客户端提供的 Idempotency-Key
+     */
+    @Id
+    @Column(name = "record_key", length = 200)
+    private String recordKey;
+
+    /**
+     * 请求指纹，同一幂等键携带不同请求参数时拒绝重放
+     */
+    @Column(name = "request_hash", nullable = false, length = 64)
+    private String requestHash;
+
+    /**
+     * 首次执行的 HTTP 状态码
+     */
+    @Column(name = "response_status", nullable = false)
+    private Integer responseStatus;
+
+    /**
+     * 首次执行的响应体（JSON）
+     */
+    @Lob
+    @Column(name = "response_body", nullable = false)
+    private String responseBody;
+
+    /**
+     * 创建时间戳，系统自动生成
+     */
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    /**
+     * 过期时间，过期后记录会被定时清理
+     */
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    /**
+     * 是否为尚未写入的新记录，加载或写入后为 false
+     */
+    @Transient
+    private boolean isNew = true;
+
+    // 默认构造函数
+    public IdempotencyRecord() {
+    }
+
+    /**
+     * 带参构造函数
+     *
+     * @param recordKey 作用域内的幂等键
+     * @param requestHash 请求指纹
+     * @param responseStatus HTTP 状态码
+     * @param responseBody 响应体（JSON）
+     * @param expiresAt 过期时间
+     */
+    public IdempotencyRecord(String recordKey, String requestHash, Integer responseStatus,
+                             String responseBody, LocalDateTime expiresAt) {
+        this.recordKey = recordKey;
+        this.requestHash = requestHash;
+        this.responseStatus = responseStatus;
+        this.responseBody = responseBody;
+        this.expiresAt = expiresAt;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+
+    @Override
+    public String getId() {
+        return recordKey;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    /**
+     * 是否为处理中的记录
+     */
+    public boolean isPending() {
+        return responseStatus != null && responseStatus == PENDING_STATUS;
+    }
+
+    // Getter 和 Setter 方法
+
+    public String getRecordKey() {
+        return recordKey;
+    }
+
+    public void setRecordKey(String recordKey) {
+        this.recordKey = recordKey;
+    }
+
+    public String getRequestHash() {
+        return requestHash;
+    }
+
+    public void setRequestHash(String requestHash) {
+        this.requestHash = requestHash;
+    }
+
+    public Integer getResponseStatus() {
+        return responseStatus;
+    }
+
+    public void setResponseStatus(Integer responseStatus) {
+        this.responseStatus = responseStatus;
+    }
+
+    public String getResponseBody() {
+        return responseBody;
+    }
+
+    public void setResponseBody(String responseBody) {
+        this.responseBody = responseBody;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    @Override
+    public String toString() {
+        return "IdempotencyRecord{" +
+                "recordKey='" + recordKey + '\'' +
+                ", responseStatus=" + responseStatus +
+                ", createdAt=" + createdAt +
+                ", expiresAt=" + expiresAt +
+                '}';
+    }
+}
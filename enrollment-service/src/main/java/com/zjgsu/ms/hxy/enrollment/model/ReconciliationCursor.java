@@ -0,0 +1,104 @@
+package com.zjgsu.ms.hxy.enrollment.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * ReconciliationCursor 实体类
+ * 定时对账的持久化游标与租约：游标记录上一段最后处理的ID，重启或切换实例后从游标继续；
+ * 租约保证同一时刻只有一个实例执行对账，持有者异常退出时租约到期后由其他实例接手
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Entity
+@Table(name = "reconciliation_cursors")
+public class ReconciliationCursor {
+
+    /**
+     * 对账任务名称
+     */
+    @Id
+    @Column(name = "name", length = 64)
+    private String name;
+
+    /**
+     * 上一段最后处理的ID，空字符串表示从头开始
+     */
+    @Column(name = "cursor_position", nullable = false)
+    private String position = "";
+
+    /**
+     * 当前持有租约的实例
+     */
+    @Column(name = "lease_owner", length = 64)
+    private String owner;
+
+    /**
+     * 租约到期时间，为空表示未被持有
+     */
+    @Column(name = "lease_until")
+    private LocalDateTime leaseUntil;
+
+    /**
+     * 游标最近推进的时间
+     */
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    // 默认构造函数
+    public ReconciliationCursor() {
+    }
+
+    /**
+     * 带参构造函数
+     *
+     * @param name 对账任务名称
+     */
+    public ReconciliationCursor(String name) {
+        this.name = name;
+    }
+
+    // Getter 和 Setter 方法
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getPosition() {
+        return position;
+    }
+
+    public void setPosition(String position) {
+        this.position = position;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public LocalDateTime getLeaseUntil() {
+        return leaseUntil;
+    }
+
+    public void setLeaseUntil(LocalDateTime leaseUntil) {
+        this.leaseUntil = leaseUntil;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
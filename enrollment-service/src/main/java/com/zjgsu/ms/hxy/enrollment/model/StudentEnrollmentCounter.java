@@ -0,0 +1,80 @@
+package com.zjgsu.ms.hxy.enrollment.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.UpdateTimestamp;
+import java.time.LocalDateTime;
+
+/**
+ * StudentEnrollmentCounter 实体类
+ * 学生的有效选课数量计数（读模型）：未退课（状态不为 WITHDRAWN）的选课数，
+ * 在选课、退课、状态变更与删除选课时与选课记录在同一事务中增量更新，查询人数无需 COUNT 选课记录
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Entity
+@Table(name = "student_enrollment_counters")
+public class StudentEnrollmentCounter {
+
+    /**
+     * 学生ID，与 Enrollment.studentId 相同
+     */
+    @Id
+    @Column(name = "student_id")
+    private String studentId;
+
+    /**
+     * 有效选课数
+     */
+    @Column(name = "active_count", nullable = false)
+    private long activeCount;
+
+    /**
+     * 最近更新时间，系统自动维护
+     */
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    // 默认构造函数
+    public StudentEnrollmentCounter() {
+    }
+
+    /**
+     * 带参构造函数
+     *
+     * @param studentId 学生ID
+     * @param activeCount 有效选课数
+     */
+    public StudentEnrollmentCounter(String studentId, long activeCount) {
+        this.studentId = studentId;
+        this.activeCount = activeCount;
+    }
+
+    // Getter 和 Setter 方法
+
+    public String getStudentId() {
+        return studentId;
+    }
+
+    public void setStudentId(String studentId) {
+        this.studentId = studentId;
+    }
+
+    public long getActiveCount() {
+        return activeCount;
+    }
+
+    public void setActiveCount(long activeCount) {
+        this.activeCount = activeCount;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
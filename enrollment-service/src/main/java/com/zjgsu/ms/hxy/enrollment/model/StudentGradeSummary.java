@@ -0,0 +1,135 @@
+package com.zjgsu.ms.hxy.enrollment.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.UpdateTimestamp;
+import org.springframework.data.domain.Persistable;
+import java.time.LocalDateTime;
+
+/**
+ * StudentGradeSummary 实体类
+ * 学生成绩汇总（读模型）：已完成且有成绩的课程数、成绩总和与已修学分，
+ * 在成绩或选课状态变更时与选课记录在同一事务中增量更新，查询平均成绩无需扫描选课记录
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Entity
+@Table(name = "student_grade_summaries")
+public class StudentGradeSummary implements Persistable<String> {
+
+    /**
+     * 学生ID，与 Enrollment.studentId 相同
+     */
+    @Id
+    @Column(name = "student_id")
+    private String studentId;
+
+    /**
+     * 已完成（COMPLETED）且有成绩的课程数
+     */
+    @Column(name = "graded_count", nullable = false)
+    private long gradedCount;
+
+    /**
+     * 上述课程的成绩总和
+     */
+    @Column(name = "grade_sum", nullable = false)
+    private double gradeSum;
+
+    /**
+     * 已完成课程的学分总和
+     */
+    @Column(name = "completed_credits", nullable = false)
+    private long completedCredits;
+
+    /**
+     * 最近更新时间，系统自动维护
+     */
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    /**
+     * 是否为尚未写入的新记录，加载或写入后为 false；新记录保存时执行 INSERT，已存在时以唯一约束冲突报告
+     */
+    @Transient
+    private boolean isNew = true;
+
+    // 默认构造函数
+    public StudentGradeSummary() {
+    }
+
+    /**
+     * 带参构造函数
+     *
+     * @param studentId 学生ID
+     * @param gradedCount 有成绩的已完成课程数
+     * @param gradeSum 成绩总和
+     * @param completedCredits 已修学分
+     */
+    public StudentGradeSummary(String studentId, long gradedCount, double gradeSum, long completedCredits) {
+        this.studentId = studentId;
+        this.gradedCount = gradedCount;
+        this.gradeSum = gradeSum;
+        this.completedCredits = completedCredits;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+
+    @Override
+    public String getId() {
+        return studentId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    // Getter 和 Setter 方法
+
+    public String getStudentId() {
+        return studentId;
+    }
+
+    public void setStudentId(String studentId) {
+        this.studentId = studentId;
+    }
+
+    public long getGradedCount() {
+        return gradedCount;
+    }
+
+    public void setGradedCount(long gradedCount) {
+        this.gradedCount = gradedCount;
+    }
+
+    public double getGradeSum() {
+        return gradeSum;
+    }
+
+    public void setGradeSum(double gradeSum) {
+        this.gradeSum = gradeSum;
+    }
+
+    public long getCompletedCredits() {
+        return completedCredits;
+    }
+
+    public void setCompletedCredits(long completedCredits) {
+        this.completedCredits = completedCredits;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,156 @@
+package com.zjgsu.ms.hxy.enrollment.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.CreationTimestamp;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * WaitlistEntry 实体类
+ * 代表学生在已满课程上的候补记录，同一课程内按 sequence 先到先得
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Entity
+@Table(name = "waitlist_entries",
+        indexes = {
+                @Index(name = "idx_waitlist_course_sequence", columnList = "course_id,sequence"),
+                @Index(name = "idx_waitlist_status", columnList = "status")
+        })
+public class WaitlistEntry {
+
+    /**
+     * 唯一标识符，系统自动生成 UUID
+     */
+    @Id
+    @GeneratedValue
+    private UUID id;
+
+    /**
+     * 候补的课程ID
+     */
+    @Column(name = "course_id", nullable = false)
+    private String courseId;
+
+    /**
+     * 候补学生ID
+     */
+    @Column(name = "student_id", nullable = false)
+    private String studentId;
+
+    /**
+     * 课程内的排队序号，越小越靠前
+     */
+    @Column(nullable = false)
+    private Long sequence;
+
+    /**
+     * 候补状态，默认 WAITING
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private WaitlistStatus status = WaitlistStatus.WAITING;
+
+    /**
+     * 加入候补的时间，系统自动生成
+     */
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    /**
+     * 递补或取消的时间
+     */
+    @Column(name = "resolved_at")
+    private LocalDateTime resolvedAt;
+
+    // 默认构造函数
+    public WaitlistEntry() {
+    }
+
+    /**
+     * 带参构造函数
+     *
+     * @param courseId 课程ID
+     * @param studentId 学生ID
+     * @param sequence 排队序号
+     */
+    public WaitlistEntry(String courseId, String studentId, Long sequence) {
+        this.courseId = courseId;
+        this.studentId = studentId;
+        this.sequence = sequence;
+        this.status = WaitlistStatus.WAITING;
+    }
+
+    // Getter 和 Setter 方法
+
+    public UUID getId() {
+        return id;
+    }
+
+    public void setId(UUID id) {
+        this.id = id;
+    }
+
+    public String getCourseId() {
+        return courseId;
+    }
+
+    public void setCourseId(String courseId) {
+        this.courseId = courseId;
+    }
+
+    public String getStudentId() {
+        return studentId;
+    }
+
+    public void setStudentId(String studentId) {
+        this.studentId = studentId;
+    }
+
+    public Long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(Long sequence) {
+        this.sequence = sequence;
+    }
+
+    public WaitlistStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(WaitlistStatus status) {
+        this.status = status;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getResolvedAt() {
+        return resolvedAt;
+    }
+
+    public void setResolvedAt(LocalDateTime resolvedAt) {
+        this.resolvedAt = resolvedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "WaitlistEntry{" +
+                "id=" + id +
+                ", courseId='" + courseId + '\'' +
+                ", studentId='" + studentId + '\'' +
+                ", sequence=" + sequence +
+                ", status=" + status +
+                ", createdAt=" + createdAt +
+                '}';
+    }
+}
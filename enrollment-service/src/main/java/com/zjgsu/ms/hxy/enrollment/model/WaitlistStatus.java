@@ -0,0 +1,25 @@
+package com.zjgsu.ms.hxy.enrollment.model;
+
+/**
+ * 候补状态枚举
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+public enum WaitlistStatus {
+    /**
+     * 排队等待中
+     */
+    WAITING,
+
+    /**
+     * 已递补选课
+     */
+    PROMOTED,
+
+    /**
+     * 已取消候补
+     */
+    CANCELLED
+}
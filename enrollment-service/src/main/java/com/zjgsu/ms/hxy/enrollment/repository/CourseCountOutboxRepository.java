@@ -0,0 +1,85 @@
+package com.zjgsu.ms.hxy.enrollment.repository;
+
+import com.zjgsu.ms.hxy.enrollment.model.CourseCountOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * CourseCountOutboxRepository 接口
+ * 提供课程人数发件箱记录的持久化操作
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Repository
+public interface CourseCountOutboxRepository extends JpaRepository<CourseCountOutbox, Long> {
+
+    /**
+     * 按写入顺序查找尚未分配批次的记录
+     * @param pageable 分页参数（限制单次合并的条数）
+     * @return 未分配批次的记录列表
+     */
+    List<CourseCountOutbox> findByBatchKeyIsNullOrderByIdAsc(Pageable pageable);
+
+    /**
+     * 为记录分配批次键（仅处理尚未分配的记录，避免多个实例重复分配）
+     * @param ids 记录ID列表
+     * @param batchKey 批次键
+     * @param nextAttemptAt 首次发送时间
+     * @return 实际分配的记录数
+     */
+    @Modifying
+    @Query("UPDATE CourseCountOutbox o SET o.batchKey = :batchKey, o.nextAttemptAt = :nextAttemptAt " +
+            "WHERE o.id IN :ids AND o.batchKey IS NULL")
+    int assignBatch(@Param("ids") Collection<Long> ids,
+                    @Param("batchKey") String batchKey,
+                    @Param("nextAttemptAt") LocalDateTime nextAttemptAt);
+
+    /**
+     * 汇总已到发送时间的批次
+     * @param now 当前时间
+     * @param pageable 分页参数（限制单次发送的批次数）
+     * @return 每行依次为 batchKey、courseId、增量合计、已尝试次数
+     */
+    @Query("SELECT o.batchKey, o.courseId, SUM(o.delta), MAX(o.attempts) FROM CourseCountOutbox o " +
+            "WHERE o.batchKey IS NOT NULL AND o.nextAttemptAt <= :now " +
+            "GROUP BY o.batchKey, o.courseId")
+    List<Object[]> findDueBatches(@Param("now") LocalDateTime now, Pageable pageable);
+
+    /**
+     * 删除已成功同步的批次
+     * @param batchKeys 批次键列表
+     * @return 删除的记录数
+     */
+    @Modifying
+    @Query("DELETE FROM CourseCountOutbox o WHERE o.batchKey IN :batchKeys")
+    int deleteByBatchKeys(@Param("batchKeys") Collection<String> batchKeys);
+
+    /**
+     * 记录批次发送失败，推迟下一次尝试
+     * @param batchKey 批次键
+     * @param nextAttemptAt 下一次允许发送的时间
+     * @return 更新的记录数
+     */
+    @Modifying
+    @Query("UPDATE CourseCountOutbox o SET o.attempts = o.attempts + 1, o.nextAttemptAt = :nextAttemptAt " +
+            "WHERE o.batchKey = :batchKey")
+    int markBatchFailed(@Param("batchKey") String batchKey, @Param("nextAttemptAt") LocalDateTime nextAttemptAt);
+
+    /**
+     * 查找仍有待同步增量的课程
+     * @param courseIds 课程ID列表
+     * @return 其中仍有待同步增量的课程ID
+     */
+    @Query("SELECT DISTINCT o.courseId FROM CourseCountOutbox o WHERE o.courseId IN :courseIds")
+    List<String> findCourseIdsWithPendingDeltas(@Param("courseIds") Collection<String> courseIds);
+}
@@ -0,0 +1,53 @@
+package com.zjgsu.ms.hxy.enrollment.repository;
+
+import com.zjgsu.ms.hxy.enrollment.model.CourseEnrollmentCounter;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * CourseEnrollmentCounterRepository 接口
+ * 提供课程选课计数的持久化操作
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Repository
+public interface CourseEnrollmentCounterRepository extends JpaRepository<CourseEnrollmentCounter, String> {
+
+    /**
+     * 原子地累加有效选课数，并发的选课变更不会互相覆盖
+     * @param courseId 课程ID
+     * @param delta 增量
+     * @return 更新的行数，计数不存在时为0
+     */
+    @Modifying
+    @Query("UPDATE CourseEnrollmentCounter c SET c.activeCount = c.activeCount + :delta, " +
+            "c.updatedAt = CURRENT_TIMESTAMP WHERE c.courseId = :courseId")
+    int applyDelta(@Param("courseId") String courseId, @Param("delta") long delta);
+
+    /**
+     * 锁定课程计数行并读取有效选课数（SELECT ... FOR UPDATE），同一课程的占座在事务内串行
+     * @param courseId 课程ID
+     * @return 有效选课数，计数不存在时为空
+     */
+    @Query(value = "SELECT active_count FROM course_enrollment_counters WHERE course_id = :courseId FOR UPDATE",
+            nativeQuery = true)
+    Optional<Long> lockActiveCount(@Param("courseId") String courseId);
+
+    /**
+     * 按课程ID顺序分段列出有计数的课程（选课记录已全部删除的课程仍保留计数行）
+     * @param afterCourseId 上一段最后一个课程ID（从头开始时传空字符串）
+     * @param pageable 分页参数（限制每段的课程数）
+     * @return 课程ID列表
+     */
+    @Query("SELECT c.courseId FROM CourseEnrollmentCounter c WHERE c.courseId > :afterCourseId ORDER BY c.courseId")
+    List<String> findCourseIdsAfter(@Param("afterCourseId") String afterCourseId, Pageable pageable);
+}
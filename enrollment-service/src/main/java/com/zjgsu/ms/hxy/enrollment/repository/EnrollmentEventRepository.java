@@ -0,0 +1,84 @@
+package com.zjgsu.ms.hxy.enrollment.repository;
+
+import com.zjgsu.ms.hxy.enrollment.model.EnrollmentEvent;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * EnrollmentEventRepository 接口
+ * 提供选课事件日志的查询与清理操作（事件由 EnrollmentJournal 以 JDBC 批量追加）
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Repository
+public interface EnrollmentEventRepository extends JpaRepository<EnrollmentEvent, Long> {
+
+    /**
+     * 按提交顺序序号分页读取事件
+     * @param after 起始序号（不含）
+     * @param pageable 分页参数（限制条数）
+     * @return 按序号升序的事件列表
+     */
+    @Query("SELECT e FROM EnrollmentEvent e WHERE e.seq > :after ORDER BY e.seq")
+    List<EnrollmentEvent> findPage(@Param("after") long after, Pageable pageable);
+
+    /**
+     * 按提交顺序序号流式读取事件（需在事务中消费并关闭）
+     * @param after 起始序号（不含）
+     * @return 按序号升序的事件流
+     */
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    @Query("SELECT e FROM EnrollmentEvent e WHERE e.seq > :after ORDER BY e.seq")
+    Stream<EnrollmentEvent> streamAfter(@Param("after") long after);
+
+    /**
+     * 查询单条选课记录的全部事件（审计）
+     * @param enrollmentId 选课记录ID
+     * @return 按序号升序的事件列表
+     */
+    List<EnrollmentEvent> findByEnrollmentIdOrderByIdAsc(String enrollmentId);
+
+    /**
+     * 查询已分配的最大提交顺序序号
+     * @return 最大序号，没有事件时为null
+     */
+    @Query("SELECT MAX(e.seq) FROM EnrollmentEvent e")
+    Long findWatermark();
+
+    /**
+     * 查询已提交但尚未分配序号的事件
+     * @param pageable 分页参数（限制条数）
+     * @return 按主键升序的事件ID
+     */
+    @Query("SELECT e.id FROM EnrollmentEvent e WHERE e.seq IS NULL ORDER BY e.id")
+    List<Long> findUnsequencedIds(Pageable pageable);
+
+    /**
+     * 查询最大的事件主键（首次分配序号时作为起点）
+     * @return 最大主键，没有事件时为null
+     */
+    @Query("SELECT MAX(e.id) FROM EnrollmentEvent e")
+    Long findMaxId();
+
+    /**
+     * 清理已被快照覆盖且超过保留期的事件
+     * @param maxSeq 可清理的最大序号（最早保留快照的 lastEventId）
+     * @param occurredBefore 保留期起点
+     * @return 删除的事件数
+     */
+    @Modifying
+    @Query("DELETE FROM EnrollmentEvent e WHERE e.seq <= :maxSeq AND e.occurredAt < :occurredBefore")
+    int deleteCovered(@Param("maxSeq") long maxSeq, @Param("occurredBefore") LocalDateTime occurredBefore);
+}
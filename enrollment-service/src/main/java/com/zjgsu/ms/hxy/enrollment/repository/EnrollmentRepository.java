@@ -2,14 +2,21 @@ package com.zjgsu.ms.hxy.enrollment.repository;
 
 import com.zjgsu.ms.hxy.enrollment.model.Enrollment;
 import com.zjgsu.ms.hxy.enrollment.model.EnrollmentStatus;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 /**
  * EnrollmentRepository 接口
@@ -24,6 +31,15 @@ public interface EnrollmentRepository extends JpaRepository<Enrollment, UUID> {
 
 
 
+    /**
+     * 加行锁读取一批选课记录（SELECT ... FOR UPDATE），持有到事务结束
+     * @param ids 选课记录ID
+     * @return 存在的选课记录
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT e FROM Enrollment e WHERE e.id IN :ids")
+    List<Enrollment> findAllForUpdate(@Param("ids") Collection<UUID> ids);
+
     /**
      * 根据课程ID查找选课记录
      * @param courseId 课程ID
@@ -70,6 +86,24 @@ public interface EnrollmentRepository extends JpaRepository<Enrollment, UUID> {
      */
     boolean existsByCourseIdAndStudentIdAndStatusNot(String courseId, String studentId, EnrollmentStatus status);
 
+    /**
+     * 检查学生是否存在指定状态的选课记录，找到第一条即返回，不加载实体
+     * @param studentId 学生ID
+     * @param statuses 选课状态集合
+     * @return 如果存在返回true
+     */
+    boolean existsByStudentIdAndStatusIn(String studentId, Collection<EnrollmentStatus> statuses);
+
+    /**
+     * 查询给定学生中存在指定状态选课记录的学生ID
+     * @param studentIds 学生ID集合
+     * @param statuses 选课状态集合
+     * @return 去重后的学生ID列表
+     */
+    @Query("SELECT DISTINCT e.studentId FROM Enrollment e WHERE e.studentId IN :studentIds AND e.status IN :statuses")
+    List<String> findDistinctStudentIdsByStudentIdInAndStatusIn(@Param("studentIds") Collection<String> studentIds,
+                                                                @Param("statuses") Collection<EnrollmentStatus> statuses);
+
     /**
      * 获取课程的选课人数（排除已退课的情况）
      * @param courseId 课程ID
@@ -101,4 +135,156 @@ public interface EnrollmentRepository extends JpaRepository<Enrollment, UUID> {
      * @return 如果已选课返回true
      */
     boolean existsByCourseIdAndStudentIdAndStatus(String courseId, String studentId, EnrollmentStatus status);
-}
\ No newline at end of file
+
+    /**
+     * 按课程ID顺序分段列出有选课记录（含已退课记录）的课程
+     * @param afterCourseId 上一段最后一个课程ID（从头开始时传空字符串）
+     * @param pageable 分页参数（限制每段的课程数）
+     * @return 课程ID列表
+     */
+    @Query("SELECT DISTINCT e.courseId FROM Enrollment e WHERE e.courseId > :afterCourseId ORDER BY e.courseId")
+    List<String> findCourseIdsAfter(@Param("afterCourseId") String afterCourseId, Pageable pageable);
+
+    /**
+     * 按课程分组统计有效选课人数（排除指定状态）
+     * @param courseIds 课程ID列表
+     * @param excluded 排除的状态
+     * @return 每行依次为 courseId、有效选课人数；没有有效选课的课程不返回
+     */
+    @Query("SELECT e.courseId, COUNT(e) FROM Enrollment e " +
+            "WHERE e.courseId IN :courseIds AND e.status <> :excluded GROUP BY e.courseId")
+    List<Object[]> countActiveGroupedByCourseIn(@Param("courseIds") Collection<String> courseIds,
+                                                @Param("excluded") EnrollmentStatus excluded);
+
+    /**
+     * 查找学生以任一标识记录的指定状态的选课（使用 student_id 索引）
+     * @param studentIds 学生的标识（UUID 与学号）
+     * @param status 选课状态
+     * @return 选课记录列表
+     */
+    List<Enrollment> findByStudentIdInAndStatus(Collection<String> studentIds, EnrollmentStatus status);
+
+    /**
+     * 按学生分组统计有效选课数量（排除指定状态）
+     * @param studentIds 学生ID列表
+     * @param excluded 排除的状态
+     * @return 每行依次为 studentId、有效选课数量；没有有效选课的学生不返回
+     */
+    @Query("SELECT e.studentId, COUNT(e) FROM Enrollment e " +
+            "WHERE e.studentId IN :studentIds AND e.status <> :excluded GROUP BY e.studentId")
+    List<Object[]> countActiveGroupedByStudentIn(@Param("studentIds") Collection<String> studentIds,
+                                                 @Param("excluded") EnrollmentStatus excluded);
+
+    /**
+     * 查找给定课程与学生组合范围内的选课记录（任意状态）
+     * 返回结果是 courseIds × studentIds 的超集，调用方需按 (courseId, studentId) 精确过滤
+     * @param courseIds 课程ID列表
+     * @param studentIds 学生ID列表
+     * @return 匹配的选课记录列表
+     */
+    List<Enrollment> findByCourseIdInAndStudentIdIn(Collection<String> courseIds, Collection<String> studentIds);
+
+    /**
+     * 批量查询选课记录的状态（只取校验所需的列）
+     * @param courseIds 课程ID集合
+     * @param studentIds 学生ID集合
+     * @return 每行依次为 courseId、studentId、status
+     */
+    @Query("SELECT e.courseId, e.studentId, e.status FROM Enrollment e " +
+            "WHERE e.courseId IN :courseIds AND e.studentId IN :studentIds")
+    List<Object[]> findStatusByCourseIdInAndStudentIdIn(@Param("courseIds") Collection<String> courseIds,
+                                                        @Param("studentIds") Collection<String> studentIds);
+
+    /**
+     * 按学生分组统计指定状态下有成绩的课程数与成绩总和
+     * @param studentIds 学生ID集合
+     * @param status 选课状态
+     * @return 每行依次为 studentId、课程数、成绩总和
+     */
+    @Query("SELECT e.studentId, COUNT(e.grade), SUM(e.grade) FROM Enrollment e " +
+            "WHERE e.studentId IN :studentIds AND e.status = :status AND e.grade IS NOT NULL GROUP BY e.studentId")
+    List<Object[]> sumGradesGroupedByStudentIn(@Param("studentIds") Collection<String> studentIds,
+                                               @Param("status") EnrollmentStatus status);
+
+    /**
+     * 查询学生在指定状态下的选课及其学分快照
+     * @param studentIds 学生ID集合
+     * @param status 选课状态
+     * @return 每行依次为 studentId、courseId、completedCredits（可能为空）
+     */
+    @Query("SELECT e.studentId, e.courseId, e.completedCredits FROM Enrollment e " +
+            "WHERE e.studentId IN :studentIds AND e.status = :status")
+    List<Object[]> findCourseIdsByStudentIdInAndStatus(@Param("studentIds") Collection<String> studentIds,
+                                                       @Param("status") EnrollmentStatus status);
+
+    /**
+     * 计算学生在指定状态下的平均成绩
+     * @param studentId 学生ID
+     * @param status 选课状态
+     * @return 平均成绩，没有成绩时为null
+     */
+    @Query("SELECT AVG(e.grade) FROM Enrollment e WHERE e.studentId = :studentId AND e.status = :status AND e.grade IS NOT NULL")
+    Double averageGradeByStudentIdAndStatus(@Param("studentId") String studentId, @Param("status") EnrollmentStatus status);
+
+    /**
+     * 按ID游标分页查询选课记录，courseId、studentId、status 为空时不作为条件
+     * @param courseId 课程ID
+     * @param studentId 学生ID
+     * @param status 选课状态
+     * @param after 上一页最后一条的ID，为空时从头开始
+     * @param pageable 只使用其中的条数
+     * @return 按ID升序的选课记录列表
+     */
+    @Query("SELECT e FROM Enrollment e WHERE (:courseId IS NULL OR e.courseId = :courseId) " +
+            "AND (:studentId IS NULL OR e.studentId = :studentId) AND (:status IS NULL OR e.status = :status) " +
+            "AND (:after IS NULL OR e.id > :after) ORDER BY e.id")
+    List<Enrollment> findPage(@Param("courseId") String courseId,
+                              @Param("studentId") String studentId,
+                              @Param("status") EnrollmentStatus status,
+                              @Param("after") UUID after,
+                              Pageable pageable);
+
+    /**
+     * 流式读取选课记录，courseId、studentId、status 为空时不作为条件，需在事务中消费
+     * @param courseId 课程ID
+     * @param studentId 学生ID
+     * @param status 选课状态
+     * @return 选课记录流
+     */
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    @Query("SELECT e FROM Enrollment e WHERE (:courseId IS NULL OR e.courseId = :courseId) " +
+            "AND (:studentId IS NULL OR e.studentId = :studentId) AND (:status IS NULL OR e.status = :status)")
+    Stream<Enrollment> streamFiltered(@Param("courseId") String courseId,
+                                      @Param("studentId") String studentId,
+                                      @Param("status") EnrollmentStatus status);
+
+    /**
+     * 流式读取所有有效选课的 (courseId, studentId) 组合，需在事务中消费
+     * @param excluded 排除的状态
+     * @return 每行依次为 courseId、studentId
+     */
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    @Query("SELECT e.courseId, e.studentId FROM Enrollment e WHERE e.status <> :excluded")
+    Stream<Object[]> streamActivePairs(@Param("excluded") EnrollmentStatus excluded);
+
+    /**
+     * 流式读取所有有效选课的成绩，按课程排序，需在事务中消费
+     * @param excluded 排除的状态
+     * @return 每行依次为 courseId、grade
+     */
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    @Query("SELECT e.courseId, e.grade FROM Enrollment e WHERE e.status <> :excluded AND e.grade IS NOT NULL ORDER BY e.courseId")
+    Stream<Object[]> streamGradesOrderByCourse(@Param("excluded") EnrollmentStatus excluded);
+
+    /**
+     * 流式读取指定课程有效选课的成绩，需在事务中消费
+     * @param courseIds 课程ID集合
+     * @param excluded 排除的状态
+     * @return 每行依次为 courseId、grade
+     */
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    @Query("SELECT e.courseId, e.grade FROM Enrollment e " +
+            "WHERE e.courseId IN :courseIds AND e.status <> :excluded AND e.grade IS NOT NULL")
+    Stream<Object[]> streamGradesByCourseIdIn(@Param("courseIds") Collection<String> courseIds,
+                                              @Param("excluded") EnrollmentStatus excluded);
+}
@@ -0,0 +1,39 @@
+package com.zjgsu.ms.hxy.enrollment.repository;
+
+import com.zjgsu.ms.hxy.enrollment.model.EnrollmentSnapshotChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * EnrollmentSnapshotChunkRepository 接口
+ * 提供选课状态快照内容块的持久化操作
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Repository
+public interface EnrollmentSnapshotChunkRepository extends JpaRepository<EnrollmentSnapshotChunk, Long> {
+
+    /**
+     * 读取快照的一块内容
+     * @param snapshotId 快照ID
+     * @param chunkNo 块序号
+     * @return 内容块
+     */
+    Optional<EnrollmentSnapshotChunk> findBySnapshotIdAndChunkNo(Long snapshotId, Integer chunkNo);
+
+    /**
+     * 删除快照的全部内容块
+     * @param snapshotId 快照ID
+     * @return 删除的块数
+     */
+    @Modifying
+    @Query("DELETE FROM EnrollmentSnapshotChunk c WHERE c.snapshotId = :snapshotId")
+    int deleteBySnapshotId(@Param("snapshotId") Long snapshotId);
+}
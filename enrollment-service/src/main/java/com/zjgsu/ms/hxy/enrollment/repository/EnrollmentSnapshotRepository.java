@@ -0,0 +1,46 @@
+package com.zjgsu.ms.hxy.enrollment.repository;
+
+import com.zjgsu.ms.hxy.enrollment.model.EnrollmentSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * EnrollmentSnapshotRepository 接口
+ * 提供选课状态快照的持久化操作
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Repository
+public interface EnrollmentSnapshotRepository extends JpaRepository<EnrollmentSnapshot, Long> {
+
+    /**
+     * 按从新到旧的顺序列出某一种事件序号的已完成快照（没有标记的旧快照视为 enrollment_events 表的序号）
+     * @param segmentLog 是否为分段日志的事件序号
+     * @return 快照列表
+     */
+    @Query("SELECT s FROM EnrollmentSnapshot s WHERE COALESCE(s.segmentLog, false) = :segmentLog " +
+            "AND COALESCE(s.completed, true) = true ORDER BY s.id DESC")
+    List<EnrollmentSnapshot> findByEventSource(@Param("segmentLog") boolean segmentLog);
+
+    /**
+     * 按从新到旧的顺序列出已完成的快照（没有完成标记的旧快照是在单个事务中写入的，视为已完成）
+     * @return 快照列表
+     */
+    @Query("SELECT s FROM EnrollmentSnapshot s WHERE COALESCE(s.completed, true) = true ORDER BY s.id DESC")
+    List<EnrollmentSnapshot> findCompletedByOrderByIdDesc();
+
+    /**
+     * 查找在指定时间之前创建、仍未完成的快照
+     * @param createdBefore 创建时间上限
+     * @return 快照列表
+     */
+    @Query("SELECT s FROM EnrollmentSnapshot s WHERE s.completed = false AND s.createdAt < :createdBefore")
+    List<EnrollmentSnapshot> findIncompleteCreatedBefore(@Param("createdBefore") LocalDateTime createdBefore);
+}
@@ -0,0 +1,67 @@
+package com.zjgsu.ms.hxy.enrollment.repository;
+
+import com.zjgsu.ms.hxy.enrollment.model.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * IdempotencyRecordRepository 接口
+ * 提供幂等记录的持久化操作
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    /**
+     * 删除已过期的幂等记录
+     * @param now 当前时间
+     * @return 删除的记录数
+     */
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+
+    /**
+     * 删除指定幂等键的过期记录（包括执行方异常退出后遗留的处理中记录）
+     * @param recordKey 作用域内的幂等键
+     * @param now 当前时间
+     * @return 删除的记录数
+     */
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.recordKey = :recordKey AND r.expiresAt < :now")
+    int deleteExpiredKey(@Param("recordKey") String recordKey, @Param("now") LocalDateTime now);
+
+    /**
+     * 释放处理中的记录，客户端可以用同一幂等键重试
+     * @param recordKey 作用域内的幂等键
+     * @param pendingStatus 处理中的状态码
+     * @return 删除的记录数
+     */
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.recordKey = :recordKey AND r.responseStatus = :pendingStatus")
+    int deletePending(@Param("recordKey") String recordKey, @Param("pendingStatus") Integer pendingStatus);
+
+    /**
+     * 为处理中的记录写入响应
+     * @param recordKey 作用域内的幂等键
+     * @param pendingStatus 处理中的状态码
+     * @param responseStatus HTTP 状态码
+     * @param responseBody 响应体（JSON）
+     * @param expiresAt 过期时间
+     * @return 更新的记录数
+     */
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.responseStatus = :responseStatus, r.responseBody = :responseBody, " +
+            "r.expiresAt = :expiresAt WHERE r.recordKey = :recordKey AND r.responseStatus = :pendingStatus")
+    int complete(@Param("recordKey") String recordKey, @Param("pendingStatus") Integer pendingStatus,
+                 @Param("responseStatus") Integer responseStatus, @Param("responseBody") String responseBody,
+                 @Param("expiresAt") LocalDateTime expiresAt);
+}
@@ -0,0 +1,70 @@
+package com.zjgsu.ms.hxy.enrollment.repository;
+
+import com.zjgsu.ms.hxy.enrollment.model.ReconciliationCursor;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * ReconciliationCursorRepository 接口
+ * 提供对账游标与租约的持久化操作
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Repository
+public interface ReconciliationCursorRepository extends JpaRepository<ReconciliationCursor, String> {
+
+    /**
+     * 加行锁读取游标（SELECT ... FOR UPDATE），持有到事务结束，用于串行推进的游标
+     * @param name 游标名称
+     * @return 游标，不存在时为空
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM ReconciliationCursor c WHERE c.name = :name")
+    Optional<ReconciliationCursor> findForUpdate(@Param("name") String name);
+
+    /**
+     * 获取（或续期）租约：租约未被持有、已过期或本实例持有时成功
+     * @param name 对账任务名称
+     * @param owner 本实例标识
+     * @param now 当前时间
+     * @param leaseUntil 新的租约到期时间
+     * @return 更新的行数，租约被其他实例持有时为0
+     */
+    @Modifying
+    @Query("UPDATE ReconciliationCursor c SET c.owner = :owner, c.leaseUntil = :leaseUntil " +
+            "WHERE c.name = :name AND (c.leaseUntil IS NULL OR c.leaseUntil < :now OR c.owner = :owner)")
+    int claim(@Param("name") String name, @Param("owner") String owner,
+              @Param("now") LocalDateTime now, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    /**
+     * 推进游标，只有租约持有者可以推进
+     * @param name 对账任务名称
+     * @param owner 本实例标识
+     * @param position 新的游标
+     * @return 更新的行数，租约已被其他实例接手时为0
+     */
+    @Modifying
+    @Query("UPDATE ReconciliationCursor c SET c.position = :position, c.updatedAt = CURRENT_TIMESTAMP " +
+            "WHERE c.name = :name AND c.owner = :owner")
+    int advance(@Param("name") String name, @Param("owner") String owner, @Param("position") String position);
+
+    /**
+     * 释放租约
+     * @param name 对账任务名称
+     * @param owner 本实例标识
+     * @return 更新的行数
+     */
+    @Modifying
+    @Query("UPDATE ReconciliationCursor c SET c.leaseUntil = NULL WHERE c.name = :name AND c.owner = :owner")
+    int release(@Param("name") String name, @Param("owner") String owner);
+}
@@ -0,0 +1,31 @@
+package com.zjgsu.ms.hxy.enrollment.repository;
+
+import com.zjgsu.ms.hxy.enrollment.model.StudentEnrollmentCounter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * StudentEnrollmentCounterRepository 接口
+ * 提供学生选课计数的持久化操作
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Repository
+public interface StudentEnrollmentCounterRepository extends JpaRepository<StudentEnrollmentCounter, String> {
+
+    /**
+     * 原子地累加有效选课数，并发的选课变更不会互相覆盖
+     * @param studentId 学生ID
+     * @param delta 增量
+     * @return 更新的行数，计数不存在时为0
+     */
+    @Modifying
+    @Query("UPDATE StudentEnrollmentCounter c SET c.activeCount = c.activeCount + :delta, " +
+            "c.updatedAt = CURRENT_TIMESTAMP WHERE c.studentId = :studentId")
+    int applyDelta(@Param("studentId") String studentId, @Param("delta") long delta);
+}
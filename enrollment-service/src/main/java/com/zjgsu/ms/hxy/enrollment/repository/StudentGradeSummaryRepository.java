@@ -0,0 +1,46 @@
+package com.zjgsu.ms.hxy.enrollment.repository;
+
+import com.zjgsu.ms.hxy.enrollment.model.StudentGradeSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * StudentGradeSummaryRepository 接口
+ * 提供学生成绩汇总的持久化操作
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Repository
+public interface StudentGradeSummaryRepository extends JpaRepository<StudentGradeSummary, String> {
+
+    /**
+     * 原子地累加汇总值，并发的成绩变更不会互相覆盖
+     * @param studentId 学生ID
+     * @param countDelta 有成绩课程数的增量
+     * @param sumDelta 成绩总和的增量
+     * @param creditsDelta 已修学分的增量
+     * @return 更新的行数，汇总不存在时为0
+     */
+    @Modifying
+    @Query("UPDATE StudentGradeSummary s SET s.gradedCount = s.gradedCount + :countDelta, " +
+            "s.gradeSum = s.gradeSum + :sumDelta, s.completedCredits = s.completedCredits + :creditsDelta, " +
+            "s.updatedAt = CURRENT_TIMESTAMP WHERE s.studentId = :studentId")
+    int applyDelta(@Param("studentId") String studentId,
+                   @Param("countDelta") long countDelta,
+                   @Param("sumDelta") double sumDelta,
+                   @Param("creditsDelta") long creditsDelta);
+
+    /**
+     * 删除汇总，标记为待重建：下次变更或查询时按选课记录重新计算
+     * @param studentId 学生ID
+     * @return 删除的行数
+     */
+    @Modifying
+    @Query("DELETE FROM StudentGradeSummary s WHERE s.studentId = :studentId")
+    int invalidate(@Param("studentId") String studentId);
+}
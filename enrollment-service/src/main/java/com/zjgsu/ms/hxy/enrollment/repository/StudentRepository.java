@@ -1,12 +1,19 @@
 package com.zjgsu.ms.hxy.enrollment.repository;
 
 import com.zjgsu.ms.hxy.enrollment.model.Student;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 /**
  * StudentRepository 接口
@@ -67,4 +74,69 @@ public interface StudentRepository extends JpaRepository<Student, UUID> {
      * @return 如果邮箱存在返回true，否则返回false
      */
     boolean existsByEmail(String email);
-}
\ No newline at end of file
+
+    /**
+     * 根据学号批量查找学生
+     * @param studentIds 学号列表
+     * @return 存在的学生列表
+     */
+    List<Student> findByStudentIdIn(Collection<String> studentIds);
+
+    /**
+     * 查询给定学号中已存在的学号
+     * @param studentIds 学号集合
+     * @return 已存在的学号
+     */
+    @Query("SELECT s.studentId FROM Student s WHERE s.studentId IN :studentIds")
+    List<String> findExistingStudentIds(@Param("studentIds") Collection<String> studentIds);
+
+    /**
+     * 查询给定邮箱中已存在的邮箱
+     * @param emails 邮箱集合
+     * @return 已存在的邮箱
+     */
+    @Query("SELECT s.email FROM Student s WHERE s.email IN :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    /**
+     * 按ID游标分页查询学生，major、grade 为空时不作为条件
+     * @param major 专业名称（忽略大小写）
+     * @param grade 入学年份
+     * @param after 上一页最后一条的ID，为空时从头开始
+     * @param pageable 只使用其中的条数
+     * @return 按ID升序的学生列表
+     */
+    @Query("SELECT s FROM Student s WHERE (:major IS NULL OR LOWER(s.major) = LOWER(:major)) " +
+            "AND (:grade IS NULL OR s.grade = :grade) AND (:after IS NULL OR s.id > :after) ORDER BY s.id")
+    List<Student> findPage(@Param("major") String major,
+                           @Param("grade") Integer grade,
+                           @Param("after") UUID after,
+                           Pageable pageable);
+
+    /**
+     * 流式读取学生，major、grade 为空时不作为条件，需在事务中消费
+     * @param major 专业名称（忽略大小写）
+     * @param grade 入学年份
+     * @return 学生流
+     */
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    @Query("SELECT s FROM Student s WHERE (:major IS NULL OR LOWER(s.major) = LOWER(:major)) " +
+            "AND (:grade IS NULL OR s.grade = :grade)")
+    Stream<Student> streamFiltered(@Param("major") String major, @Param("grade") Integer grade);
+
+    /**
+     * 流式读取所有学生的 (id, studentId)，需在事务中消费
+     * @return 每行依次为 id、studentId
+     */
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    @Query("SELECT s.id, s.studentId FROM Student s")
+    Stream<Object[]> streamIdentities();
+
+    /**
+     * 流式读取所有学生的 (id, studentId, name)，用于构建姓名搜索索引，需在事务中消费
+     * @return 每行依次为 id、studentId、name
+     */
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    @Query("SELECT s.id, s.studentId, s.name FROM Student s")
+    Stream<Object[]> streamSearchFields();
+}
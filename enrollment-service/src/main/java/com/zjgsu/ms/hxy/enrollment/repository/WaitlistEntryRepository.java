@@ -0,0 +1,51 @@
+package com.zjgsu.ms.hxy.enrollment.repository;
+
+import com.zjgsu.ms.hxy.enrollment.model.WaitlistEntry;
+import com.zjgsu.ms.hxy.enrollment.model.WaitlistStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * WaitlistEntryRepository 接口
+ * 提供候补记录的持久化操作
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Repository
+public interface WaitlistEntryRepository extends JpaRepository<WaitlistEntry, UUID> {
+
+    /**
+     * 按课程和排队顺序查找指定状态的候补记录（启动时重建内存队列）
+     * @param status 候补状态
+     * @return 候补记录列表
+     */
+    List<WaitlistEntry> findByStatusOrderByCourseIdAscSequenceAsc(WaitlistStatus status);
+
+    /**
+     * 查询每门课程已使用的最大排队序号
+     * @return 每行依次为 courseId、最大序号
+     */
+    @Query("SELECT w.courseId, MAX(w.sequence) FROM WaitlistEntry w GROUP BY w.courseId")
+    List<Object[]> findMaxSequenceByCourse();
+
+    /**
+     * 结束一条候补记录（递补或取消），仅当其仍在等待中时生效
+     * @param id 候补记录ID
+     * @param status 新状态
+     * @param resolvedAt 结束时间
+     * @return 更新的记录数
+     */
+    @Modifying
+    @Query("UPDATE WaitlistEntry w SET w.status = :status, w.resolvedAt = :resolvedAt " +
+            "WHERE w.id = :id AND w.status = com.zjgsu.ms.hxy.enrollment.model.WaitlistStatus.WAITING")
+    int resolve(@Param("id") UUID id, @Param("status") WaitlistStatus status, @Param("resolvedAt") LocalDateTime resolvedAt);
+}
@@ -0,0 +1,234 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import com.zjgsu.ms.hxy.enrollment.model.EnrollmentStatus;
+import com.zjgsu.ms.hxy.enrollment.repository.EnrollmentRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+/**
+ * ActiveEnrollmentFilter 类
+ * 有效选课 (courseId, studentId) 组合的计数布隆过滤器，用于重复选课检查的预判：
+ * 过滤器判定"一定不存在"时跳过数据库查询，只有"可能存在"时才查询数据库确认
+ * 启动后流式读取 enrollments 表构建，选课/退课提交后增量更新，并定时整体重建以清除累积的误判
+ * 过滤器只会多判"可能存在"，(course_id, student_id) 唯一约束仍是重复选课的最终保障
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Component
+public class ActiveEnrollmentFilter extends RebuildableSnapshot<ActiveEnrollmentFilter.CountingBloomFilter> {
+
+    private final EnrollmentRepository enrollmentRepository;
+
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+
+    private final Counter negativeCounter;
+    private final Counter truePositiveCounter;
+    private final Counter falsePositiveCounter;
+
+    public ActiveEnrollmentFilter(EnrollmentRepository enrollmentRepository,
+                                  PlatformTransactionManager transactionManager,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${enrollment.duplicate-filter.enabled:true}") boolean enabled,
+                                  @Value("${enrollment.duplicate-filter.expected-insertions:1000000}") long expectedInsertions,
+                                  @Value("${enrollment.duplicate-filter.false-positive-rate:0.01}") double falsePositiveRate) {
+        super("active enrollment filter", "enrollment-filter-rebuild", transactionManager, enabled);
+        this.enrollmentRepository = enrollmentRepository;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.negativeCounter = Counter.builder("enrollment.duplicate.filter.checks")
+                .description("重复选课预判结果")
+                .tag("outcome", "negative")
+                .register(meterRegistry);
+        this.truePositiveCounter = Counter.builder("enrollment.duplicate.filter.checks")
+                .description("重复选课预判结果")
+                .tag("outcome", "true_positive")
+                .register(meterRegistry);
+        this.falsePositiveCounter = Counter.builder("enrollment.duplicate.filter.checks")
+                .description("重复选课预判结果")
+                .tag("outcome", "false_positive")
+                .register(meterRegistry);
+        // 实际误判率 = 误判次数 / (误判次数 + 判定不存在的次数)
+        meterRegistry.gauge("enrollment.duplicate.filter.observed.fpp", this, filter -> {
+            double falsePositives = filter.falsePositiveCounter.count();
+            double negatives = filter.negativeCounter.count();
+            return falsePositives + negatives == 0 ? 0 : falsePositives / (falsePositives + negatives);
+        });
+        meterRegistry.gauge("enrollment.duplicate.filter.ready", this, filter -> filter.current() != null ? 1 : 0);
+    }
+
+    /**
+     * 定时整体重建，清除退课后残留的计数和饱和计数器
+     */
+    @Override
+    @Scheduled(cron = "${enrollment.duplicate-filter.rebuild-cron:0 0 4 * * *}")
+    public void rebuild() {
+        super.rebuild();
+    }
+
+    @Override
+    protected CountingBloomFilter createSnapshot() {
+        return new CountingBloomFilter(expectedInsertions, falsePositiveRate);
+    }
+
+    @Override
+    protected long load(CountingBloomFilter filter) {
+        try (Stream<Object[]> pairs = enrollmentRepository.streamActivePairs(EnrollmentStatus.WITHDRAWN)) {
+            return pairs.mapToLong(row -> {
+                filter.add(key((String) row[0], (String) row[1]));
+                return 1;
+            }).sum();
+        }
+    }
+
+    /**
+     * 检查学生是否已有该课程的有效选课
+     * @param courseId 课程ID
+     * @param studentId 学生ID
+     * @param databaseCheck 过滤器判定"可能存在"时执行的数据库查询
+     * @return 如果存在有效选课返回true
+     */
+    public boolean exists(String courseId, String studentId, BooleanSupplier databaseCheck) {
+        CountingBloomFilter filter = current();
+        if (filter == null) {
+            return databaseCheck.getAsBoolean();
+        }
+        if (!filter.mightContain(key(courseId, studentId))) {
+            negativeCounter.increment();
+            return false;
+        }
+        boolean exists = databaseCheck.getAsBoolean();
+        if (exists) {
+            truePositiveCounter.increment();
+        } else {
+            falsePositiveCounter.increment();
+        }
+        return exists;
+    }
+
+    /**
+     * 登记新的有效选课（事务提交后生效）
+     */
+    public void add(String courseId, String studentId) {
+        if (!isEnabled()) {
+            return;
+        }
+        long key = key(courseId, studentId);
+        updateAfterCommit(filter -> filter.add(key));
+    }
+
+    /**
+     * 移除不再有效的选课（事务提交后生效）
+     * 重建中的过滤器不做移除，最多多出误判，不会漏判
+     */
+    public void remove(String courseId, String studentId) {
+        if (!isEnabled()) {
+            return;
+        }
+        long key = key(courseId, studentId);
+        updateCurrentAfterCommit(filter -> filter.remove(key));
+    }
+
+    /**
+     * 组合键的 64 位哈希（FNV-1a）
+     * 忽略大小写：binary-ids 模式下读回的 UUID 为小写，与请求中的大写形式应视为同一键
+     */
+    private static long key(String courseId, String studentId) {
+        long hash = 0xcbf29ce484222325L;
+        String pair = (courseId + '|' + studentId).toLowerCase(Locale.ROOT);
+        for (byte b : pair.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * 4 位计数器的计数布隆过滤器，每个 int 存放 8 个计数器，通过 CAS 无锁更新
+     * 计数器达到 15 后视为饱和，不再增减
+     */
+    static final class CountingBloomFilter {
+        private static final int MAX_COUNT = 15;
+
+        private final AtomicIntegerArray words;
+        private final long counters;
+        private final int hashCount;
+
+        private CountingBloomFilter(long expectedInsertions, double falsePositiveRate) {
+            long n = Math.max(1, expectedInsertions);
+            long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            this.counters = Math.max(64, Math.min(m, (long) Integer.MAX_VALUE * 8 - 8));
+            this.hashCount = Math.max(1, (int) Math.round((double) counters / n * Math.log(2)));
+            this.words = new AtomicIntegerArray((int) ((counters + 7) / 8));
+        }
+
+        private void add(long key) {
+            long h1 = mix(key);
+            long h2 = mix(h1) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                update(Math.floorMod(h1 + i * h2, counters), 1);
+            }
+        }
+
+        private void remove(long key) {
+            long h1 = mix(key);
+            long h2 = mix(h1) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                update(Math.floorMod(h1 + i * h2, counters), -1);
+            }
+        }
+
+        private boolean mightContain(long key) {
+            long h1 = mix(key);
+            long h2 = mix(h1) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                long index = Math.floorMod(h1 + i * h2, counters);
+                if (counterAt(words.get((int) (index >>> 3)), index) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void update(long index, int delta) {
+            int wordIndex = (int) (index >>> 3);
+            int shift = (int) (index & 7) * 4;
+            while (true) {
+                int word = words.get(wordIndex);
+                int count = (word >>> shift) & 0xF;
+                if (count == MAX_COUNT || (delta < 0 && count == 0)) {
+                    return;
+                }
+                int updated = (word & ~(0xF << shift)) | ((count + delta) << shift);
+                if (words.compareAndSet(wordIndex, word, updated)) {
+                    return;
+                }
+            }
+        }
+
+        private static int counterAt(int word, long index) {
+            return (word >>> ((int) (index & 7) * 4)) & 0xF;
+        }
+
+        /**
+         * splitmix64 终结函数，把一个哈希扩展为两个独立哈希
+         */
+        private static long mix(long z) {
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            return z ^ (z >>> 31);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * AfterCommit 类
+ * 在当前事务提交后执行操作：内存索引与缓存只反映已提交的修改，回滚的事务不执行
+ * 没有活动的事务同步时（如在事务之外调用）立即执行
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+public final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    /**
+     * 在当前事务提交后执行，没有事务时立即执行
+     * @param action 操作
+     */
+    public static void run(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
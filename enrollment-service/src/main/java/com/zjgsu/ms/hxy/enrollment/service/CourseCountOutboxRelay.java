@@ -0,0 +1,175 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import com.zjgsu.ms.hxy.enrollment.client.CatalogClient;
+import com.zjgsu.ms.hxy.enrollment.model.CourseCountOutbox;
+import com.zjgsu.ms.hxy.enrollment.repository.CourseCountOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * CourseCountOutboxRelay 类
+ * 后台中继：把发件箱中的课程人数增量按课程合并为批次，批量同步到 catalog-service
+ * 每个批次带有固定的幂等键，失败后按指数退避重试，保证增量不丢失且只生效一次
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Component
+public class CourseCountOutboxRelay {
+
+    private final CourseCountOutboxRepository outboxRepository;
+    private final CatalogClient catalogClient;
+    private final TransactionTemplate transactionTemplate;
+
+    private final int batchSize;
+    private final long backoffInitialMillis;
+    private final long backoffMaxMillis;
+
+    private final Counter sentCounter;
+    private final Counter failedCounter;
+
+    public CourseCountOutboxRelay(CourseCountOutboxRepository outboxRepository,
+                                  CatalogClient catalogClient,
+                                  PlatformTransactionManager transactionManager,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${enrollment.outbox.batch-size:1000}") int batchSize,
+                                  @Value("${enrollment.outbox.backoff-initial-ms:1000}") long backoffInitialMillis,
+                                  @Value("${enrollment.outbox.backoff-max-ms:60000}") long backoffMaxMillis) {
+        this.outboxRepository = outboxRepository;
+        this.catalogClient = catalogClient;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.backoffInitialMillis = backoffInitialMillis;
+        this.backoffMaxMillis = backoffMaxMillis;
+        this.sentCounter = Counter.builder("enrollment.outbox.batches")
+                .description("课程人数增量批次的同步次数")
+                .tag("result", "sent")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("enrollment.outbox.batches")
+                .description("课程人数增量批次的同步次数")
+                .tag("result", "failed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 定时执行：先合并新增记录，再发送到期的批次
+     */
+    @Scheduled(fixedDelayString = "${enrollment.outbox.relay-interval-ms:500}")
+    public void relay() {
+        try {
+            assignBatches();
+            sendDueBatches();
+        } catch (Exception e) {
+            // 记录日志，等待下一轮
+            System.err.println("Failed to relay course count outbox: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 把尚未分配批次的记录按课程分组，每个课程分配一个新的批次键
+     * 批次一旦分配就不再变化，重试时发送的增量与幂等键始终一致
+     */
+    private void assignBatches() {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<CourseCountOutbox> pending = outboxRepository.findByBatchKeyIsNullOrderByIdAsc(PageRequest.of(0, batchSize));
+            if (pending.isEmpty()) {
+                return;
+            }
+
+            Map<String, List<Long>> idsByCourse = new LinkedHashMap<>();
+            for (CourseCountOutbox record : pending) {
+                idsByCourse.computeIfAbsent(record.getCourseId(), k -> new ArrayList<>()).add(record.getId());
+            }
+
+            LocalDateTime now = LocalDateTime.now();
+            for (List<Long> ids : idsByCourse.values()) {
+                outboxRepository.assignBatch(ids, UUID.randomUUID().toString(), now);
+            }
+        });
+    }
+
+    /**
+     * 发送到期的批次：一次远程调用携带所有课程的增量
+     */
+    private void sendDueBatches() {
+        List<Object[]> due = outboxRepository.findDueBatches(LocalDateTime.now(), PageRequest.of(0, batchSize));
+        if (due.isEmpty()) {
+            return;
+        }
+
+        List<Map<String, Object>> deltas = new ArrayList<>();
+        List<String> emptyBatches = new ArrayList<>();
+        Map<String, Integer> attemptsByBatch = new HashMap<>();
+        for (Object[] row : due) {
+            String batchKey = (String) row[0];
+            int delta = ((Number) row[2]).intValue();
+            attemptsByBatch.put(batchKey, ((Number) row[3]).intValue());
+            if (delta == 0) {
+                // 同一批次内选课与退课相互抵消，无需远程调用
+                emptyBatches.add(batchKey);
+                continue;
+            }
+            Map<String, Object> item = new HashMap<>();
+            item.put("idempotencyKey", batchKey);
+            item.put("courseId", row[1]);
+            item.put("delta", delta);
+            deltas.add(item);
+        }
+
+        if (!emptyBatches.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> outboxRepository.deleteByBatchKeys(emptyBatches));
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        try {
+            List<Map<String, Object>> results = catalogClient.applyEnrolledDeltas(deltas);
+            for (Map<String, Object> result : results) {
+                if ("NOT_FOUND".equals(result.get("status")) || "INVALID".equals(result.get("status"))) {
+                    // 课程已被删除或数据无效，重试也无法成功，记录后丢弃
+                    System.err.println("Dropped course count delta: " + result);
+                }
+            }
+            List<String> sentKeys = deltas.stream()
+                    .map(item -> (String) item.get("idempotencyKey"))
+                    .toList();
+            transactionTemplate.executeWithoutResult(status -> outboxRepository.deleteByBatchKeys(sentKeys));
+            sentCounter.increment(sentKeys.size());
+        } catch (Exception e) {
+            System.err.println("Failed to update course enrolled count: " + e.getMessage());
+            LocalDateTime now = LocalDateTime.now();
+            transactionTemplate.executeWithoutResult(status -> {
+                for (Map<String, Object> item : deltas) {
+                    String batchKey = (String) item.get("idempotencyKey");
+                    int attempts = attemptsByBatch.getOrDefault(batchKey, 0);
+                    outboxRepository.markBatchFailed(batchKey, now.plusNanos(backoffMillis(attempts) * 1_000_000L));
+                }
+            });
+            failedCounter.increment(deltas.size());
+        }
+    }
+
+    /**
+     * 计算指数退避时间
+     */
+    private long backoffMillis(int attempts) {
+        long backoff = backoffInitialMillis << Math.min(attempts, 20);
+        return Math.min(backoff, backoffMaxMillis);
+    }
+}
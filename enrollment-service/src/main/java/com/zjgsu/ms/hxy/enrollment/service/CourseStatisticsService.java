@@ -0,0 +1,268 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import com.zjgsu.ms.hxy.enrollment.model.EnrollmentStatus;
+import com.zjgsu.ms.hxy.enrollment.repository.EnrollmentRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * CourseStatisticsService 类
+ * 课程成绩分布统计：人数、均值、标准差、最值、分位数与 10 分一档的直方图
+ * 成绩以流式查询读取一遍，累加到基本类型数组中（均值与方差用 Welford 算法），
+ * 结果按课程缓存，成绩或选课状态变更的事务提交后失效；查询与失效都先把课程ID转换为选课记录中保存的形式
+ * 多门课程的统计只用一次按课程排序的流式查询，各课程的排序与分位数计算并行完成
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Service
+public class CourseStatisticsService {
+
+    private static final double[] PERCENTILES = {10, 25, 50, 75, 90};
+    private static final int HISTOGRAM_BUCKETS = 10;
+
+    /**
+     * IN 子句单次携带的最大参数个数
+     */
+    private static final int IN_CLAUSE_CHUNK_SIZE = 1000;
+
+    private final EnrollmentRepository enrollmentRepository;
+    private final StudentIdentityResolver studentIdentityResolver;
+    private final TransactionTemplate readOnlyTransaction;
+
+    /**
+     * courseId -> 已缓存的统计结果
+     */
+    private final Map<String, CachedStatistics> cache = new ConcurrentHashMap<>();
+
+    /**
+     * courseId -> 失效代数；计算开始后若代数变化，结果不写入缓存
+     */
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    /**
+     * 任一课程失效时递增，统计所有课程期间发生失效则结果不写入缓存
+     */
+    private final AtomicLong globalGeneration = new AtomicLong();
+
+    public CourseStatisticsService(EnrollmentRepository enrollmentRepository,
+                                   StudentIdentityResolver studentIdentityResolver,
+                                   PlatformTransactionManager transactionManager) {
+        this.enrollmentRepository = enrollmentRepository;
+        this.studentIdentityResolver = studentIdentityResolver;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * 获取单门课程的成绩统计
+     * @param courseId 课程ID
+     * @return 统计结果
+     * @throws IllegalArgumentException 课程ID为空或格式无效时抛出
+     */
+    public Map<String, Object> getStatistics(String courseId) {
+        if (!StringUtils.hasText(courseId)) {
+            throw new IllegalArgumentException("课程ID不能为空");
+        }
+        String normalized = studentIdentityResolver.toEnrollmentCourseId(courseId);
+        return getStatistics(List.of(normalized)).get(normalized);
+    }
+
+    /**
+     * 批量获取课程成绩统计，未缓存的课程一起计算
+     * @param courseIds 课程ID集合，为空时统计所有有成绩的课程
+     * @return courseId（选课记录中保存的形式）-> 统计结果
+     * @throws IllegalArgumentException 课程ID格式无效时抛出
+     */
+    public Map<String, Map<String, Object>> getStatistics(Collection<String> courseIds) {
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        Map<String, Long> startGenerations = new HashMap<>();
+
+        boolean allCourses = courseIds == null || courseIds.isEmpty();
+        if (!allCourses) {
+            // 大小写不同的同一课程只统计一次
+            Set<String> normalized = new LinkedHashSet<>();
+            for (String courseId : courseIds) {
+                normalized.add(studentIdentityResolver.toEnrollmentCourseId(courseId));
+            }
+            for (String courseId : normalized) {
+                CachedStatistics cached = cache.get(courseId);
+                long generation = generationOf(courseId).get();
+                if (cached != null && cached.generation == generation) {
+                    result.put(courseId, cached.statistics);
+                } else {
+                    result.put(courseId, null);
+                    missing.add(courseId);
+                    startGenerations.put(courseId, generation);
+                }
+            }
+            if (missing.isEmpty()) {
+                return result;
+            }
+        }
+
+        long startGlobalGeneration = globalGeneration.get();
+        Map<String, GradeAccumulator> accumulators = readOnlyTransaction.execute(status -> {
+            Map<String, GradeAccumulator> byCourse = new HashMap<>();
+            if (allCourses) {
+                try (Stream<Object[]> grades = enrollmentRepository.streamGradesOrderByCourse(EnrollmentStatus.WITHDRAWN)) {
+                    grades.forEach(row -> accumulate(byCourse, row));
+                }
+            } else {
+                for (int from = 0; from < missing.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+                    List<String> chunk = missing.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, missing.size()));
+                    try (Stream<Object[]> grades = enrollmentRepository.streamGradesByCourseIdIn(chunk, EnrollmentStatus.WITHDRAWN)) {
+                        grades.forEach(row -> accumulate(byCourse, row));
+                    }
+                }
+            }
+            return byCourse;
+        });
+
+        // 排序与分位数计算按课程并行
+        Map<String, Map<String, Object>> computed = new ConcurrentHashMap<>();
+        List<String> targets = allCourses ? new ArrayList<>(accumulators.keySet()) : missing;
+        targets.parallelStream().forEach(courseId -> {
+            GradeAccumulator accumulator = accumulators.getOrDefault(courseId, new GradeAccumulator());
+            computed.put(courseId, accumulator.toStatistics(courseId));
+        });
+
+        for (String courseId : targets) {
+            Map<String, Object> statistics = computed.get(courseId);
+            result.put(courseId, statistics);
+            // 统计所有课程时以全局代数判断计算期间是否有失效
+            long generation = allCourses ? generationOf(courseId).get() : startGenerations.get(courseId);
+            if (allCourses && globalGeneration.get() != startGlobalGeneration) {
+                continue;
+            }
+            CachedStatistics entry = new CachedStatistics(generation, statistics);
+            cache.put(courseId, entry);
+            // 写入与失效并发时撤回本次写入
+            if (generationOf(courseId).get() != generation) {
+                cache.remove(courseId, entry);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 课程成绩或选课状态变更后使缓存失效（在事务中调用时于提交后生效）
+     * @param courseId 课程ID
+     */
+    public void invalidate(String courseId) {
+        String normalized = studentIdentityResolver.toEnrollmentCourseId(courseId);
+        Runnable action = () -> {
+            generationOf(normalized).incrementAndGet();
+            globalGeneration.incrementAndGet();
+            cache.remove(normalized);
+        };
+        // 提交前先失效一次，避免提交前后之间读到的旧结果被缓存；失效可重复执行，没有事务时执行两次无影响
+        action.run();
+        AfterCommit.run(action);
+    }
+
+    private AtomicLong generationOf(String courseId) {
+        return generations.computeIfAbsent(courseId, k -> new AtomicLong());
+    }
+
+    private static void accumulate(Map<String, GradeAccumulator> byCourse, Object[] row) {
+        byCourse.computeIfAbsent((String) row[0], k -> new GradeAccumulator()).add(((Number) row[1]).doubleValue());
+    }
+
+    /**
+     * 单门课程的成绩累加器：基本类型数组保存成绩，Welford 算法在线计算均值与方差
+     */
+    private static final class GradeAccumulator {
+        private double[] values = new double[64];
+        private int count;
+        private double mean;
+        private double m2;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+        private final int[] histogram = new int[HISTOGRAM_BUCKETS];
+
+        private void add(double grade) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = grade;
+            double delta = grade - mean;
+            mean += delta / count;
+            m2 += delta * (grade - mean);
+            min = Math.min(min, grade);
+            max = Math.max(max, grade);
+            // 100 分计入最后一档 [90, 100]
+            histogram[Math.min(HISTOGRAM_BUCKETS - 1, Math.max(0, (int) (grade / 10)))]++;
+        }
+
+        private Map<String, Object> toStatistics(String courseId) {
+            Map<String, Object> statistics = new LinkedHashMap<>();
+            statistics.put("courseId", courseId);
+            statistics.put("count", count);
+            if (count == 0) {
+                statistics.put("mean", null);
+                statistics.put("stddev", null);
+                statistics.put("min", null);
+                statistics.put("max", null);
+                statistics.put("percentiles", Map.of());
+            } else {
+                double[] sorted = Arrays.copyOf(values, count);
+                Arrays.sort(sorted);
+                Map<String, Double> percentiles = new LinkedHashMap<>();
+                for (double p : PERCENTILES) {
+                    percentiles.put("p" + (int) p, percentile(sorted, p));
+                }
+                statistics.put("mean", mean);
+                // 总体标准差
+                statistics.put("stddev", Math.sqrt(m2 / count));
+                statistics.put("min", min);
+                statistics.put("max", max);
+                statistics.put("percentiles", percentiles);
+            }
+
+            List<Map<String, Object>> buckets = new ArrayList<>(HISTOGRAM_BUCKETS);
+            for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+                Map<String, Object> bucket = new LinkedHashMap<>();
+                bucket.put("from", i * 10);
+                bucket.put("to", i == HISTOGRAM_BUCKETS - 1 ? 100 : i * 10 + 9.99);
+                bucket.put("count", histogram[i]);
+                buckets.add(bucket);
+            }
+            statistics.put("histogram", buckets);
+            return statistics;
+        }
+
+        /**
+         * 线性插值分位数
+         */
+        private static double percentile(double[] sorted, double p) {
+            double rank = p / 100 * (sorted.length - 1);
+            int lower = (int) Math.floor(rank);
+            int upper = (int) Math.ceil(rank);
+            return sorted[lower] + (sorted[upper] - sorted[lower]) * (rank - lower);
+        }
+    }
+
+    /**
+     * 缓存项：计算时的失效代数与统计结果
+     */
+    private record CachedStatistics(long generation, Map<String, Object> statistics) {
+    }
+}
@@ -0,0 +1,100 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * CsvImportSupport 类
+ * 批量导入（成绩、学生）共用的行来源：CSV 文件以 CsvRecordReader 逐条解析，JSON 列表逐项转换，
+ * 两种来源都以行号标识每一行，并统一检查单次导入的行数上限
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+final class CsvImportSupport {
+
+    private CsvImportSupport() {
+    }
+
+    /**
+     * 逐行提供待导入的数据，没有更多行时返回null
+     */
+    @FunctionalInterface
+    interface RowSource<R> {
+        R next() throws IOException;
+    }
+
+    /**
+     * CSV 记录的行来源，读取时检查行数上限
+     * @param reader CSV 读取器，由调用方关闭
+     * @param maxRows 单次导入的最大行数
+     * @param mapper 把一条记录转换为一行
+     */
+    static <R> RowSource<R> fromCsv(CsvRecordReader reader, int maxRows, Function<CsvRecordReader.CsvRecord, R> mapper) {
+        int[] count = {0};
+        return () -> {
+            CsvRecordReader.CsvRecord record = reader.next();
+            if (record == null) {
+                return null;
+            }
+            checkRowLimit(++count[0], maxRows);
+            return mapper.apply(record);
+        };
+    }
+
+    /**
+     * JSON 列表的行来源，行号为列表下标（从 1 开始），空项视为没有任何字段
+     * @param items 列表项
+     * @param maxRows 单次导入的最大行数
+     * @param mapper 把行号与一项转换为一行
+     */
+    static <R> RowSource<R> fromItems(List<Map<String, Object>> items, int maxRows,
+                                      BiFunction<Integer, Map<String, Object>, R> mapper) {
+        checkRowLimit(items.size(), maxRows);
+        int[] next = {0};
+        return () -> {
+            if (next[0] >= items.size()) {
+                return null;
+            }
+            int index = next[0]++;
+            Map<String, Object> item = items.get(index) != null ? items.get(index) : Map.of();
+            return mapper.apply(index + 1, item);
+        };
+    }
+
+    /**
+     * 读取整份 CSV 文件（需要先校验全部行再写入的导入使用）
+     * @param input CSV 内容（UTF-8）
+     * @param headerFirstField 表头的第一个字段
+     * @param maxRows 单次导入的最大行数
+     * @param mapper 把一条记录转换为一行
+     */
+    static <R> List<R> readCsv(InputStream input, String headerFirstField, int maxRows,
+                               Function<CsvRecordReader.CsvRecord, R> mapper) throws IOException {
+        List<R> rows = new ArrayList<>();
+        try (CsvRecordReader reader = new CsvRecordReader(input, headerFirstField)) {
+            RowSource<R> source = fromCsv(reader, maxRows, mapper);
+            R row;
+            while ((row = source.next()) != null) {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    static void checkRowLimit(int rowCount, int maxRows) {
+        if (rowCount > maxRows) {
+            throw new IllegalArgumentException("单次导入不能超过" + maxRows + "行");
+        }
+    }
+
+    static String textOf(Object value) {
+        return value != null ? value.toString() : null;
+    }
+}
@@ -0,0 +1,182 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CsvRecordReader 类
+ * 逐条读取 CSV 记录（RFC 4180）：字段以逗号分隔，双引号包围的字段中可以包含逗号、换行与转义的双引号（""），
+ * 未加引号的字段去掉首尾空白；跳过空行与 UTF-8 BOM，可选跳过表头
+ * 每次只在内存中保留一条记录，导入大文件时内存占用与文件大小无关
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+public class CsvRecordReader implements Closeable {
+
+    /**
+     * 单条记录的最大字符数，避免引号未闭合时把文件剩余部分读入一个字段
+     */
+    static final int MAX_RECORD_CHARS = 64 * 1024;
+
+    private static final int NONE = -2;
+
+    private final Reader reader;
+    private final String headerFirstField;
+
+    /**
+     * 下一个字符所在的物理行号
+     */
+    private int lineNumber = 1;
+
+    /**
+     * 预读后退回的字符，NONE 表示没有
+     */
+    private int pushedBack = NONE;
+
+    private boolean started;
+
+    /**
+     * @param input CSV 内容（UTF-8）
+     * @param headerFirstField 首条记录的第一个字段与之相同（忽略大小写）时视为表头跳过，为null时不跳过
+     */
+    public CsvRecordReader(InputStream input, String headerFirstField) {
+        this.reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        this.headerFirstField = headerFirstField;
+    }
+
+    /**
+     * 读取下一条记录
+     * @return 记录，已到文件末尾时为null
+     * @throws IllegalArgumentException 引号未闭合或记录超过长度限制时抛出
+     */
+    public CsvRecord next() throws IOException {
+        boolean first = !started;
+        started = true;
+        if (first) {
+            int c = read();
+            if (c != '\uFEFF') {
+                unread(c);
+            }
+        }
+        CsvRecord record = readRecord();
+        if (first && record != null && headerFirstField != null
+                && headerFirstField.equalsIgnoreCase(record.field(0))) {
+            record = readRecord();
+        }
+        return record;
+    }
+
+    private CsvRecord readRecord() throws IOException {
+        while (true) {
+            int startLine = lineNumber;
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean inQuotes = false;
+            boolean quoted = false;
+            boolean afterQuote = false;
+            int length = 0;
+            int c;
+            while ((c = read()) != -1) {
+                if (++length > MAX_RECORD_CHARS) {
+                    throw new IllegalArgumentException("第 " + startLine + " 行超过长度限制（" + MAX_RECORD_CHARS + " 个字符）");
+                }
+                if (inQuotes) {
+                    if (c == '"') {
+                        int next = read();
+                        if (next == '"') {
+                            field.append('"');
+                        } else {
+                            unread(next);
+                            inQuotes = false;
+                            afterQuote = true;
+                        }
+                    } else {
+                        if (c == '\n') {
+                            lineNumber++;
+                        }
+                        field.append((char) c);
+                    }
+                } else if (c == ',') {
+                    fields.add(quoted ? field.toString() : field.toString().trim());
+                    field.setLength(0);
+                    quoted = false;
+                    afterQuote = false;
+                } else if (c == '\r' || c == '\n') {
+                    if (c == '\r') {
+                        int next = read();
+                        if (next != '\n') {
+                            unread(next);
+                        }
+                    }
+                    lineNumber++;
+                    break;
+                } else if (c == '"' && !quoted && field.toString().isBlank()) {
+                    field.setLength(0);
+                    inQuotes = true;
+                    quoted = true;
+                } else if (!(afterQuote && Character.isWhitespace(c))) {
+                    // 右引号之后的空白忽略，其他字符宽松地并入字段
+                    field.append((char) c);
+                }
+            }
+            if (inQuotes) {
+                throw new IllegalArgumentException("第 " + startLine + " 行的引号未闭合");
+            }
+            if (c == -1 && length == 0) {
+                return null;
+            }
+            fields.add(quoted ? field.toString() : field.toString().trim());
+            if (fields.size() == 1 && !quoted && fields.get(0).isEmpty()) {
+                // 空行
+                continue;
+            }
+            return new CsvRecord(startLine, fields);
+        }
+    }
+
+    private int read() throws IOException {
+        if (pushedBack != NONE) {
+            int c = pushedBack;
+            pushedBack = NONE;
+            return c;
+        }
+        return reader.read();
+    }
+
+    private void unread(int c) {
+        pushedBack = c;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * 一条 CSV 记录
+     * @param line 记录开始的行号（从 1 开始，字段中含换行时一条记录跨多行）
+     * @param fields 字段值
+     */
+    public record CsvRecord(int line, List<String> fields) {
+
+        public int size() {
+            return fields.size();
+        }
+
+        /**
+         * @return 第 index 个字段，不存在时为null
+         */
+        public String field(int index) {
+            return index < fields.size() ? fields.get(index) : null;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import com.zjgsu.ms.hxy.enrollment.exception.AdmissionRejectedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * EnrollmentAdmissionService 类
+ * 选课请求的准入控制：每门课程最多 perCourseConcurrency 个请求同时执行，
+ * 其余请求按到达顺序排队；队列已满或等待超时时立即拒绝（429 + Retry-After），
+ * 使高峰期的延迟可预期，而不是所有请求一起耗尽数据库连接后同时超时
+ * 排队的请求占用请求线程等待，因此使用平台线程时排队总数限制在请求线程数的一半以内，
+ * 单门热门课程的排队不会占满 Tomcat 线程池而拖慢其他接口；使用虚拟线程时按配置值排队
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Service
+public class EnrollmentAdmissionService {
+
+    private final boolean enabled;
+    private final int perCourseConcurrency;
+    private final int perCourseQueueCapacity;
+    private final int maxQueuedTotal;
+    private final long maxWaitMillis;
+
+    /**
+     * courseId -> 该课程的执行通道
+     */
+    private final Map<String, CourseLane> lanes = new ConcurrentHashMap<>();
+
+    /**
+     * 所有课程正在排队的请求总数
+     */
+    private final AtomicInteger queuedTotal = new AtomicInteger();
+
+    /**
+     * 单个请求执行时间的指数滑动平均（毫秒），用于估算 Retry-After
+     */
+    private volatile double avgServiceMillis = 50;
+
+    private final Timer waitTimer;
+    private final Counter admittedCounter;
+    private final Counter rejectedCounter;
+    private final Counter timedOutCounter;
+
+    public EnrollmentAdmissionService(MeterRegistry meterRegistry,
+                                      @Value("${enrollment.admission.enabled:true}") boolean enabled,
+                                      @Value("${enrollment.admission.per-course-concurrency:4}") int perCourseConcurrency,
+                                      @Value("${enrollment.admission.per-course-queue-capacity:20}") int perCourseQueueCapacity,
+                                      @Value("${enrollment.admission.max-queued-total:100}") int maxQueuedTotal,
+                                      @Value("${enrollment.admission.max-wait-ms:2000}") long maxWaitMillis,
+                                      @Value("${server.tomcat.threads.max:200}") int maxRequestThreads,
+                                      @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.enabled = enabled;
+        this.perCourseConcurrency = perCourseConcurrency;
+        this.maxWaitMillis = maxWaitMillis;
+        if (!virtualThreads && maxQueuedTotal > maxRequestThreads / 2) {
+            System.out.println("Admission max-queued-total " + maxQueuedTotal + " limited to " + maxRequestThreads / 2
+                    + " (half of " + maxRequestThreads + " request threads)");
+            maxQueuedTotal = Math.max(1, maxRequestThreads / 2);
+        }
+        this.maxQueuedTotal = maxQueuedTotal;
+        this.perCourseQueueCapacity = Math.min(perCourseQueueCapacity, maxQueuedTotal);
+        this.waitTimer = Timer.builder("enrollment.admission.wait")
+                .description("选课请求在准入队列中的等待时间")
+                .register(meterRegistry);
+        this.admittedCounter = Counter.builder("enrollment.admission.requests")
+                .description("准入控制处理的选课请求数")
+                .tag("outcome", "admitted")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("enrollment.admission.requests")
+                .description("准入控制处理的选课请求数")
+                .tag("outcome", "rejected")
+                .register(meterRegistry);
+        this.timedOutCounter = Counter.builder("enrollment.admission.requests")
+                .description("准入控制处理的选课请求数")
+                .tag("outcome", "timed_out")
+                .register(meterRegistry);
+        meterRegistry.gauge("enrollment.admission.queue.depth", queuedTotal);
+        meterRegistry.gauge("enrollment.admission.active.courses", lanes, Map::size);
+    }
+
+    /**
+     * 在课程的执行通道内执行选课请求
+     * @param courseId 课程ID
+     * @param action 选课处理
+     * @return 处理结果
+     * @throws AdmissionRejectedException 如果队列已满或等待超时
+     */
+    public <T> T admit(String courseId, Supplier<T> action) {
+        if (!enabled || courseId == null) {
+            return action.get();
+        }
+
+        CourseLane lane = lanes.computeIfAbsent(courseId, k -> new CourseLane(perCourseConcurrency));
+
+        // 排队名额：超过课程或全局上限时立即拒绝，不占用线程等待
+        if (lane.queued.incrementAndGet() > perCourseQueueCapacity) {
+            lane.queued.decrementAndGet();
+            rejectedCounter.increment();
+            throw new AdmissionRejectedException("该课程选课请求过多，请稍后重试", retryAfterSeconds(perCourseQueueCapacity));
+        }
+        if (queuedTotal.incrementAndGet() > maxQueuedTotal) {
+            queuedTotal.decrementAndGet();
+            lane.queued.decrementAndGet();
+            rejectedCounter.increment();
+            throw new AdmissionRejectedException("选课请求过多，请稍后重试", retryAfterSeconds(lane.queued.get()));
+        }
+
+        long waitStart = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = lane.permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        } finally {
+            lane.queued.decrementAndGet();
+            queuedTotal.decrementAndGet();
+            waitTimer.record(System.nanoTime() - waitStart, TimeUnit.NANOSECONDS);
+        }
+        if (!acquired) {
+            timedOutCounter.increment();
+            throw new AdmissionRejectedException("选课排队超时，请稍后重试", retryAfterSeconds(lane.queued.get()));
+        }
+
+        admittedCounter.increment();
+        long serviceStart = System.nanoTime();
+        try {
+            return action.get();
+        } finally {
+            release(lane, serviceStart);
+        }
+    }
+
+    /**
+     * 非阻塞地在课程的执行通道内执行选课请求：通道有空闲许可且没有排队的请求时立即执行，否则立即拒绝，
+     * 不排队等待（等待会占用调用线程）；许可持有到 action 返回的 future 完成
+     * @param courseId 课程ID
+     * @param action 返回选课结果 future 的处理
+     * @return 处理结果
+     * @throws AdmissionRejectedException 如果通道没有空闲许可
+     */
+    public <T> CompletableFuture<T> admitAsync(String courseId, Supplier<CompletableFuture<T>> action) {
+        if (!enabled || courseId == null) {
+            return action.get();
+        }
+
+        CourseLane lane = lanes.computeIfAbsent(courseId, k -> new CourseLane(perCourseConcurrency));
+        boolean acquired;
+        try {
+            // 带超时的 tryAcquire 遵守公平顺序，不会越过正在排队的同步请求
+            acquired = lane.permits.tryAcquire(0, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejectedCounter.increment();
+            throw new AdmissionRejectedException("该课程选课请求过多，请稍后重试",
+                    retryAfterSeconds(lane.queued.get() + perCourseConcurrency));
+        }
+
+        admittedCounter.increment();
+        long serviceStart = System.nanoTime();
+        CompletableFuture<T> result;
+        try {
+            result = action.get();
+        } catch (RuntimeException e) {
+            release(lane, serviceStart);
+            throw e;
+        }
+        return result.whenComplete((value, error) -> release(lane, serviceStart));
+    }
+
+    /**
+     * 归还执行许可并更新平均执行时间
+     */
+    private void release(CourseLane lane, long serviceStart) {
+        lane.permits.release();
+        double serviceMillis = (System.nanoTime() - serviceStart) / 1_000_000.0;
+        avgServiceMillis = avgServiceMillis * 0.9 + serviceMillis * 0.1;
+    }
+
+    /**
+     * 按排队人数和平均执行时间估算重试等待秒数
+     */
+    private long retryAfterSeconds(int queued) {
+        double drainMillis = queued * avgServiceMillis / perCourseConcurrency;
+        return Math.max(1, (long) Math.ceil(drainMillis / 1000));
+    }
+
+    /**
+     * 单门课程的执行通道
+     * 通道创建后不会回收，数量以课程总数为上限
+     */
+    private static final class CourseLane {
+        private final Semaphore permits;
+        private final AtomicInteger queued = new AtomicInteger();
+
+        private CourseLane(int concurrency) {
+            // 公平模式：按到达顺序获得执行许可
+            this.permits = new Semaphore(concurrency, true);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import com.zjgsu.ms.hxy.enrollment.client.CatalogClient;
+import com.zjgsu.ms.hxy.enrollment.model.EnrollmentStatus;
+import com.zjgsu.ms.hxy.enrollment.model.ReconciliationCursor;
+import com.zjgsu.ms.hxy.enrollment.repository.CourseCountOutboxRepository;
+import com.zjgsu.ms.hxy.enrollment.repository.CourseEnrollmentCounterRepository;
+import com.zjgsu.ms.hxy.enrollment.repository.EnrollmentRepository;
+import com.zjgsu.ms.hxy.enrollment.repository.ReconciliationCursorRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * EnrollmentCountReconciler 类
+ * 定时对账：以 enrollment_db 中的选课记录为准，修正 catalog-service 中课程的已选人数
+ * 每轮按课程ID顺序处理有限数量的分段，内存占用与分段大小成正比
+ * 游标保存在 reconciliation_cursors 表中，重启后从上次的位置继续；多实例部署时通过表中的租约
+ * 保证同一时刻只有一个实例对账，持有者异常退出时租约到期后由其他实例接手
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Component
+public class EnrollmentCountReconciler {
+
+    /**
+     * 对账任务名称（reconciliation_cursors 的主键）
+     */
+    private static final String CURSOR_NAME = "course-enrolled-counts";
+
+    private final EnrollmentRepository enrollmentRepository;
+    private final CourseCountOutboxRepository outboxRepository;
+    private final CourseEnrollmentCounterRepository counterRepository;
+    private final CatalogClient catalogClient;
+    private final ReconciliationCursorRepository cursorRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+    private final int chunkSize;
+    private final int maxChunksPerRun;
+
+    /**
+     * 租约时长（毫秒），应大于一轮对账的耗时
+     */
+    private final long leaseMillis;
+
+    /**
+     * 本实例的租约持有者标识
+     */
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final Counter checkedCounter;
+    private final Counter driftedCounter;
+    private final Counter repairedCounter;
+    private final DistributionSummary driftSummary;
+    private final AtomicLong lastPassDrifted = new AtomicLong();
+    private long currentPassDrifted;
+
+    public EnrollmentCountReconciler(EnrollmentRepository enrollmentRepository,
+                                     CourseCountOutboxRepository outboxRepository,
+                                     CourseEnrollmentCounterRepository counterRepository,
+                                     CatalogClient catalogClient,
+                                     ReconciliationCursorRepository cursorRepository,
+                                     PlatformTransactionManager transactionManager,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${enrollment.reconciliation.enabled:true}") boolean enabled,
+                                     @Value("${enrollment.reconciliation.chunk-size:200}") int chunkSize,
+                                     @Value("${enrollment.reconciliation.max-chunks-per-run:10}") int maxChunksPerRun,
+                                     @Value("${enrollment.reconciliation.lease-ms:600000}") long leaseMillis) {
+        this.enrollmentRepository = enrollmentRepository;
+        this.outboxRepository = outboxRepository;
+        this.counterRepository = counterRepository;
+        this.catalogClient = catalogClient;
+        this.cursorRepository = cursorRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.chunkSize = chunkSize;
+        this.maxChunksPerRun = maxChunksPerRun;
+        this.leaseMillis = leaseMillis;
+        this.checkedCounter = Counter.builder("enrollment.reconciliation.courses")
+                .description("对账处理的课程数")
+                .tag("result", "checked")
+                .register(meterRegistry);
+        this.driftedCounter = Counter.builder("enrollment.reconciliation.courses")
+                .description("对账处理的课程数")
+                .tag("result", "drifted")
+                .register(meterRegistry);
+        this.repairedCounter = Counter.builder("enrollment.reconciliation.courses")
+                .description("对账处理的课程数")
+                .tag("result", "repaired")
+                .register(meterRegistry);
+        this.driftSummary = DistributionSummary.builder("enrollment.reconciliation.drift")
+                .description("课程已选人数偏差的绝对值")
+                .register(meterRegistry);
+        meterRegistry.gauge("enrollment.reconciliation.last.pass.drifted", lastPassDrifted);
+    }
+
+    /**
+     * 定时执行一轮对账；租约被其他实例持有时跳过本轮
+     */
+    @Scheduled(initialDelayString = "${enrollment.reconciliation.initial-delay-ms:60000}",
+            fixedDelayString = "${enrollment.reconciliation.interval-ms:300000}")
+    public void reconcile() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            if (!claimLease()) {
+                return;
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to claim reconciliation lease: " + e.getMessage());
+            return;
+        }
+        try {
+            String cursor = cursorRepository.findById(CURSOR_NAME).map(ReconciliationCursor::getPosition).orElse("");
+            for (int i = 0; i < maxChunksPerRun && cursor != null; i++) {
+                cursor = reconcileNextChunk(cursor);
+                String position = cursor != null ? cursor : "";
+                Integer advanced = transactionTemplate.execute(status ->
+                        cursorRepository.advance(CURSOR_NAME, instanceId, position));
+                if (advanced == null || advanced == 0) {
+                    // 租约已过期并被其他实例接手
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            // 记录日志，下一轮从已保存的游标继续
+            System.err.println("Failed to reconcile course enrolled counts: " + e.getMessage());
+        } finally {
+            try {
+                transactionTemplate.executeWithoutResult(status -> cursorRepository.release(CURSOR_NAME, instanceId));
+            } catch (Exception e) {
+                System.err.println("Failed to release reconciliation lease: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 获取对账租约，游标记录不存在时先创建
+     * @return 是否获得租约
+     */
+    private boolean claimLease() {
+        if (!cursorRepository.existsById(CURSOR_NAME)) {
+            try {
+                cursorRepository.saveAndFlush(new ReconciliationCursor(CURSOR_NAME));
+            } catch (DataIntegrityViolationException e) {
+                // 其他实例已创建
+            }
+        }
+        LocalDateTime now = LocalDateTime.now();
+        Integer claimed = transactionTemplate.execute(status ->
+                cursorRepository.claim(CURSOR_NAME, instanceId, now, now.plusNanos(leaseMillis * 1_000_000L)));
+        return claimed != null && claimed > 0;
+    }
+
+    /**
+     * 对账下一段课程：有选课记录的课程与有计数行的课程（选课记录已全部删除的课程人数按 0 对账）
+     * 先排除仍有增量未同步的课程再统计本地人数；读取 catalog-service 后重新统计并检查增量，
+     * 期间有选课变更或新增量的课程跳过，留待下一轮，避免用过期的本地人数覆盖中继已同步的结果
+     * @param cursor 上一段最后处理的课程ID，空字符串表示从头开始
+     * @return 本段最后处理的课程ID；完成一整遍时返回 null
+     */
+    private String reconcileNextChunk(String cursor) {
+        PageRequest page = PageRequest.of(0, chunkSize);
+        List<String> enrolledCourseIds = enrollmentRepository.findCourseIdsAfter(cursor, page);
+        List<String> counterCourseIds = counterRepository.findCourseIdsAfter(cursor, page);
+        TreeSet<String> merged = new TreeSet<>(enrolledCourseIds);
+        merged.addAll(counterCourseIds);
+        List<String> courseIds = new ArrayList<>(merged).subList(0, Math.min(chunkSize, merged.size()));
+        if (courseIds.isEmpty()) {
+            finishPass();
+            return null;
+        }
+
+        // 仍有增量未同步的课程暂不对账，等待中继完成
+        Set<String> candidates = new LinkedHashSet<>(courseIds);
+        outboxRepository.findCourseIdsWithPendingDeltas(candidates).forEach(candidates::remove);
+
+        if (!candidates.isEmpty()) {
+            Map<String, Integer> localCounts = countLocal(candidates);
+            Map<String, Map<String, Object>> courses = catalogClient.getCourses(candidates);
+            Map<String, Integer> recounted = countLocal(candidates);
+            Set<String> changed = new HashSet<>(outboxRepository.findCourseIdsWithPendingDeltas(candidates));
+            List<Map<String, Object>> repairs = new ArrayList<>();
+            for (String courseId : candidates) {
+                Map<String, Object> course = courses.get(courseId);
+                if (course == null || !(course.get("enrolled") instanceof Number)) {
+                    continue;
+                }
+                int local = recounted.get(courseId);
+                if (changed.contains(courseId) || local != localCounts.get(courseId)) {
+                    // 读取远端期间有选课变更，远端人数可能已包含或尚未包含该变更
+                    continue;
+                }
+                checkedCounter.increment();
+                int remote = ((Number) course.get("enrolled")).intValue();
+                if (remote != local) {
+                    driftedCounter.increment();
+                    driftSummary.record(Math.abs(remote - local));
+                    currentPassDrifted++;
+                    Map<String, Object> repair = new HashMap<>();
+                    repair.put("courseId", courseId);
+                    repair.put("expected", remote);
+                    repair.put("enrolled", local);
+                    repairs.add(repair);
+                }
+            }
+
+            if (!repairs.isEmpty()) {
+                for (Map<String, Object> result : catalogClient.repairEnrolledCounts(repairs)) {
+                    if ("UPDATED".equals(result.get("status"))) {
+                        repairedCounter.increment();
+                    }
+                }
+            }
+        }
+
+        if (enrolledCourseIds.size() < chunkSize && counterCourseIds.size() < chunkSize
+                && merged.size() <= chunkSize) {
+            finishPass();
+            return null;
+        }
+        return courseIds.get(courseIds.size() - 1);
+    }
+
+    /**
+     * 统计课程的有效选课人数（不含已退课），没有有效选课的课程为 0
+     */
+    private Map<String, Integer> countLocal(Collection<String> courseIds) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (String courseId : courseIds) {
+            counts.put(courseId, 0);
+        }
+        for (Object[] row : enrollmentRepository.countActiveGroupedByCourseIn(courseIds, EnrollmentStatus.WITHDRAWN)) {
+            counts.put((String) row[0], ((Number) row[1]).intValue());
+        }
+        return counts;
+    }
+
+    /**
+     * 完成一整遍对账，下一轮从头开始
+     */
+    private void finishPass() {
+        lastPassDrifted.set(currentPassDrifted);
+        currentPassDrifted = 0;
+    }
+}
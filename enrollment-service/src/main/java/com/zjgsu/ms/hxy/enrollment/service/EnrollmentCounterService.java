@@ -0,0 +1,226 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import com.zjgsu.ms.hxy.enrollment.model.EnrollmentStatus;
+import com.zjgsu.ms.hxy.enrollment.repository.CourseEnrollmentCounterRepository;
+import com.zjgsu.ms.hxy.enrollment.repository.EnrollmentRepository;
+import com.zjgsu.ms.hxy.enrollment.repository.StudentEnrollmentCounterRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * EnrollmentCounterService 类
+ * 维护课程与学生的有效选课计数（course_enrollment_counters、student_enrollment_counters）：
+ * 选课变更时与选课记录在同一事务中以原子 UPDATE 累加，查询人数为主键查找，不再 COUNT 选课记录
+ * 计数只在选课写入路径上建立：计数不存在时在当前事务中按选课记录（含本事务已做的变更）计算后插入；
+ * 并发插入同一计数时只有一个成功，其余以已插入的计数为准再累加本事务的增量
+ * 查询尚未建立计数的课程或学生时直接按选课记录计算，不插入计数
+ * 选课占座通过 reserveSeats 锁定课程计数行后判断剩余名额并累加，同一课程的并发选课不会超出容量
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Service
+public class EnrollmentCounterService {
+
+    /**
+     * IN 子句单次携带的最大参数个数
+     */
+    private static final int IN_CLAUSE_CHUNK_SIZE = 1000;
+
+    private final CourseEnrollmentCounterRepository courseCounterRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final CounterTable courseCounters;
+    private final CounterTable studentCounters;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public EnrollmentCounterService(CourseEnrollmentCounterRepository courseCounterRepository,
+                                    StudentEnrollmentCounterRepository studentCounterRepository,
+                                    EnrollmentRepository enrollmentRepository,
+                                    JdbcTemplate jdbcTemplate) {
+        this.courseCounterRepository = courseCounterRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.courseCounters = new CounterTable("course",
+                "INSERT INTO course_enrollment_counters (course_id, active_count, updated_at) VALUES (?, ?, ?)",
+                courseCounterRepository::applyDelta,
+                ids -> {
+                    Map<String, Long> counts = new HashMap<>();
+                    courseCounterRepository.findAllById(ids)
+                            .forEach(counter -> counts.put(counter.getCourseId(), counter.getActiveCount()));
+                    return counts;
+                },
+                ids -> enrollmentRepository.countActiveGroupedByCourseIn(ids, EnrollmentStatus.WITHDRAWN));
+        this.studentCounters = new CounterTable("student",
+                "INSERT INTO student_enrollment_counters (student_id, active_count, updated_at) VALUES (?, ?, ?)",
+                studentCounterRepository::applyDelta,
+                ids -> {
+                    Map<String, Long> counts = new HashMap<>();
+                    studentCounterRepository.findAllById(ids)
+                            .forEach(counter -> counts.put(counter.getStudentId(), counter.getActiveCount()));
+                    return counts;
+                },
+                ids -> enrollmentRepository.countActiveGroupedByStudentIn(ids, EnrollmentStatus.WITHDRAWN));
+    }
+
+    /**
+     * 记录单条选课的有效状态变化（需在修改选课记录的事务中、修改之后调用）
+     * @param courseId 课程ID
+     * @param studentId 学生ID
+     * @param delta 选课变为有效时为 1，变为无效（退课、删除）时为 -1
+     */
+    public void recordChange(String courseId, String studentId, int delta) {
+        apply(Map.of(courseId, delta), Map.of(studentId, delta));
+    }
+
+    /**
+     * 批量应用计数增量，每门课程、每个学生只执行一次更新（需在修改选课记录的事务中、修改之后调用）
+     * 按ID顺序更新，多门课程的并发事务以相同顺序加锁，避免死锁
+     * @param courseDeltas courseId -> 增量
+     * @param studentDeltas studentId -> 增量
+     */
+    public void apply(Map<String, Integer> courseDeltas, Map<String, Integer> studentDeltas) {
+        applyTo(courseCounters, courseDeltas);
+        applyTo(studentCounters, studentDeltas);
+    }
+
+    /**
+     * 为课程占用名额（需在选课事务中、写入选课记录之前调用）
+     * 锁定课程计数行后按容量计算可占用的名额并累加到课程计数，锁持有到事务结束，
+     * 因此并发的选课事务依次判断剩余名额，不会超额；事务回滚时占用的名额一并撤销
+     * 调用方写入选课记录后只需累加学生计数，课程计数已包含本次占用
+     * @param courseId 课程ID
+     * @param requested 请求的名额数
+     * @param capacity 课程容量
+     * @return 实际占用的名额数（0 到 requested）
+     */
+    public int reserveSeats(String courseId, int requested, long capacity) {
+        if (requested <= 0) {
+            return 0;
+        }
+        Optional<Long> active = courseCounterRepository.lockActiveCount(courseId);
+        if (active.isEmpty()) {
+            // 计数尚未建立：建立后重新加锁（并发建立时以先插入的为准）
+            createCounter(courseCounters, courseId);
+            active = courseCounterRepository.lockActiveCount(courseId);
+            if (active.isEmpty()) {
+                throw new IllegalStateException("无法建立选课计数: course " + courseId);
+            }
+        }
+        int granted = (int) Math.max(0, Math.min(requested, capacity - active.get()));
+        if (granted > 0) {
+            courseCounterRepository.applyDelta(courseId, granted);
+        }
+        return granted;
+    }
+
+    /**
+     * 查询课程的有效选课人数
+     * @param courseId 课程ID
+     * @return 有效选课人数
+     */
+    public long getCourseCount(String courseId) {
+        return getCourseCounts(List.of(courseId)).get(courseId);
+    }
+
+    /**
+     * 批量查询课程的有效选课人数
+     * @param courseIds 课程ID集合
+     * @return courseId -> 有效选课人数（与输入顺序一致，没有选课的课程为0）
+     */
+    public Map<String, Long> getCourseCounts(Collection<String> courseIds) {
+        return getCounts(courseCounters, courseIds);
+    }
+
+    /**
+     * 查询学生的有效选课数量
+     * @param studentId 学生ID
+     * @return 有效选课数量
+     */
+    public long getStudentCount(String studentId) {
+        return getCounts(studentCounters, List.of(studentId)).get(studentId);
+    }
+
+    private void applyTo(CounterTable table, Map<String, Integer> deltas) {
+        for (Map.Entry<String, Integer> entry : new TreeMap<>(deltas).entrySet()) {
+            String id = entry.getKey();
+            long delta = entry.getValue();
+            if (delta == 0 || table.applyDelta.apply(id, delta) > 0) {
+                continue;
+            }
+            // 计数不存在：按包含本事务变更的选课记录建立，建立成功时已计入本次增量
+            if (!createCounter(table, id) && table.applyDelta.apply(id, delta) == 0) {
+                throw new IllegalStateException("无法建立选课计数: " + table.name + " " + id);
+            }
+        }
+    }
+
+    private Map<String, Long> getCounts(CounterTable table, Collection<String> ids) {
+        List<String> uniqueIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        Map<String, Long> found = new HashMap<>();
+        for (int from = 0; from < uniqueIds.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            found.putAll(table.find.apply(uniqueIds.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, uniqueIds.size()))));
+        }
+
+        // 尚未建立计数的按选课记录计算（只读，不插入计数）
+        List<String> missing = uniqueIds.stream().filter(id -> !found.containsKey(id)).toList();
+        for (int from = 0; from < missing.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            for (Object[] row : table.countActive.apply(missing.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, missing.size())))) {
+                found.put((String) row[0], ((Number) row[1]).longValue());
+            }
+        }
+
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (String id : uniqueIds) {
+            counts.put(id, found.getOrDefault(id, 0L));
+        }
+        return counts;
+    }
+
+    /**
+     * 在当前事务中建立计数：先刷新本事务的变更，再按选课记录计算并插入
+     * 其他事务已插入同一计数时插入失败（MySQL 会等待对方提交后报告主键冲突），以对方的计数为准
+     * @return 是否由本事务插入（插入的计数已包含本事务的变更）
+     */
+    private boolean createCounter(CounterTable table, String id) {
+        entityManager.flush();
+        long count = 0;
+        for (Object[] row : table.countActive.apply(List.of(id))) {
+            count = ((Number) row[1]).longValue();
+        }
+        try {
+            jdbcTemplate.update(table.insertSql, id, count, Timestamp.valueOf(LocalDateTime.now()));
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 一类计数表的访问方式
+     */
+    private record CounterTable(String name,
+                                String insertSql,
+                                BiFunction<String, Long, Integer> applyDelta,
+                                Function<Collection<String>, Map<String, Long>> find,
+                                Function<Collection<String>, List<Object[]>> countActive) {
+    }
+}
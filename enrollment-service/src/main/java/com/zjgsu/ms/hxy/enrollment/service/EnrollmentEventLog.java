@@ -0,0 +1,270 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zjgsu.ms.hxy.enrollment.log.LogRecord;
+import com.zjgsu.ms.hxy.enrollment.log.SegmentedLog;
+import com.zjgsu.ms.hxy.enrollment.model.EnrollmentEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * EnrollmentEventLog 类
+ * 选课事件的本地分段日志（可选，默认关闭）：启用后 EnrollmentJournal 在修改选课记录的事务中、提交之前
+ * 把事件追加到内存映射的分段日志，代替 enrollment_events 表写入；事件序号为日志序号加一（从 1 开始），连续递增
+ * 追加后等待后台线程合并刷盘（最多 fsync-wait-ms），同一时段内的多个事务共用一次 fsync；
+ * 事务回滚或进程在提交前退出时，日志中已有的事件由 EnrollmentJournal 追加的 RESYNCED 事件抵消
+ * 日志只保存在本实例的磁盘上，只支持单实例部署：多个实例各自写入自己的日志，任何一条都不是完整的事件流；
+ * 日志目录加文件锁，防止两个进程写入同一目录
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Component
+public class EnrollmentEventLog {
+
+    /**
+     * 按序号遍历时每次读取的记录数
+     */
+    private static final int READ_BATCH_SIZE = 1000;
+
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final Path directory;
+    private final SegmentedLog.Options options;
+
+    /**
+     * 追加后等待刷盘的最长时间（毫秒），0 表示不等待
+     */
+    private final long fsyncWaitMillis;
+
+    private volatile SegmentedLog log;
+
+    /**
+     * 尚未结束的事务 -> 该事务开始追加前的下一个日志序号：事务的事件序号都大于它
+     */
+    private final Map<Object, Long> openTransactions = new ConcurrentHashMap<>();
+
+    public EnrollmentEventLog(ObjectMapper objectMapper,
+                              @Value("${enrollment.journal.segment-log.enabled:false}") boolean enabled,
+                              @Value("${enrollment.journal.segment-log.dir:data/enrollment-log}") String directory,
+                              @Value("${enrollment.journal.segment-log.segment-bytes:67108864}") int segmentBytes,
+                              @Value("${enrollment.journal.segment-log.index-interval-bytes:4096}") int indexIntervalBytes,
+                              @Value("${enrollment.journal.segment-log.retention-bytes:1073741824}") long retentionBytes,
+                              @Value("${enrollment.journal.segment-log.retention-hours:168}") long retentionHours,
+                              @Value("${enrollment.journal.segment-log.flush-interval-ms:10}") long flushIntervalMillis,
+                              @Value("${enrollment.journal.segment-log.fsync-wait-ms:1000}") long fsyncWaitMillis) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.options = new SegmentedLog.Options(segmentBytes, indexIntervalBytes, retentionBytes,
+                TimeUnit.HOURS.toMillis(retentionHours), Math.max(1, flushIntervalMillis));
+        this.fsyncWaitMillis = fsyncWaitMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            log = SegmentedLog.open(directory, options);
+        } catch (IOException e) {
+            throw new UncheckedIOException("无法打开选课事件日志: " + directory, e);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (log != null) {
+            log.close();
+        }
+    }
+
+    /**
+     * 是否启用分段日志
+     */
+    public boolean isEnabled() {
+        return log != null;
+    }
+
+    /**
+     * 追加事件并等待刷盘（最多 fsync-wait-ms），失败时抛出异常，由调用方的事务回滚
+     * @param events 事件
+     * @return 最后一个事件的序号
+     * @throws IllegalStateException 如果写入失败或未能在等待时间内刷盘
+     */
+    public long append(List<EnrollmentEvent> events) {
+        SegmentedLog current = requireLog();
+        List<byte[]> payloads = new ArrayList<>(events.size());
+        try {
+            for (EnrollmentEvent event : events) {
+                payloads.add(objectMapper.writeValueAsBytes(event));
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("无法序列化选课事件", e);
+        }
+        try {
+            long last = current.append(payloads);
+            if (fsyncWaitMillis > 0 && !current.awaitDurable(last, fsyncWaitMillis)) {
+                throw new IllegalStateException("选课事件未能在 " + fsyncWaitMillis + "ms 内刷盘");
+            }
+            return last + 1;
+        } catch (IOException e) {
+            throw new UncheckedIOException("无法写入选课事件日志", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待选课事件刷盘被中断", e);
+        }
+    }
+
+    /**
+     * 读取已持久化的记录，没有新记录时最多等待 waitMillis（长轮询），等待期间不占用调用线程
+     * 记录的日志序号为 offset，对应的事件序号为 offset + 1
+     * @param fromOffset 起始日志序号（含），即上一次读到的事件序号
+     * @param maxRecords 最多读取的条数
+     * @param waitMillis 最长等待时间
+     * @return 按序号升序的记录，内容为映射内存的只读视图（事件 JSON）
+     */
+    public CompletableFuture<List<LogRecord>> tail(long fromOffset, int maxRecords, long waitMillis) {
+        return requireLog().tail(fromOffset, maxRecords, waitMillis);
+    }
+
+    /**
+     * 按序号分页读取已持久化的事件
+     * @param after 起始事件序号（不含），从头读取时为 0
+     * @param limit 最多读取的条数
+     * @return 按序号升序的事件
+     */
+    public List<EnrollmentEvent> getEvents(long after, int limit) {
+        List<EnrollmentEvent> events = new ArrayList<>();
+        for (LogRecord record : requireLog().read(after, limit)) {
+            events.add(toEvent(record));
+        }
+        return events;
+    }
+
+    /**
+     * 按序号遍历已持久化的事件
+     * @param after 起始事件序号（不含）
+     * @param action 每个事件的处理
+     * @return 最后一个事件的序号，没有事件时为 after
+     */
+    public long forEachEvent(long after, Consumer<EnrollmentEvent> action) {
+        SegmentedLog current = requireLog();
+        long last = after;
+        List<LogRecord> records;
+        while (!(records = current.read(last, READ_BATCH_SIZE)).isEmpty()) {
+            for (LogRecord record : records) {
+                EnrollmentEvent event = toEvent(record);
+                action.accept(event);
+                last = event.getSeq();
+            }
+        }
+        return last;
+    }
+
+    /**
+     * 登记一个即将追加事件的事务，须在追加之前调用，事务结束后调用 {@link #closeTransaction(Object)}
+     * @return 事务标识
+     */
+    public Object openTransaction() {
+        Object token = new Object();
+        openTransactions.put(token, requireLog().appendedOffset());
+        return token;
+    }
+
+    /**
+     * 注销已结束（提交或回滚）的事务
+     * @param token {@link #openTransaction()} 返回的标识
+     */
+    public void closeTransaction(Object token) {
+        openTransactions.remove(token);
+    }
+
+    /**
+     * 所在事务均已结束的最后一个事件序号：不大于它的事件均已持久化，且不会再因事务回滚被抵消
+     * 用作快照的序号，之后才提交的事务的事件不会被快照跳过
+     * 先读已持久化序号再读未结束事务：读取之后才登记的事务，其事件序号不小于已持久化序号
+     */
+    public long committedEventId() {
+        long resolved = requireLog().durableOffset();
+        for (long floor : openTransactions.values()) {
+            resolved = Math.min(resolved, floor);
+        }
+        return resolved;
+    }
+
+    /**
+     * 最后一条记录之前 windowMillis 内写入的事件，每条选课记录只保留最后一个（启动时用于抵消崩溃前未提交事务的事件）
+     * @param windowMillis 时间范围（毫秒）
+     * @return 事件
+     */
+    public List<EnrollmentEvent> recentEvents(long windowMillis) {
+        SegmentedLog current = requireLog();
+        long since = current.lastTimestamp() - windowMillis;
+        Map<String, EnrollmentEvent> latest = new LinkedHashMap<>();
+        long next = current.offsetSince(since);
+        List<LogRecord> records;
+        while (!(records = current.read(next, READ_BATCH_SIZE)).isEmpty()) {
+            for (LogRecord record : records) {
+                if (record.timestamp() >= since) {
+                    EnrollmentEvent event = toEvent(record);
+                    latest.put(event.getEnrollmentId(), event);
+                }
+            }
+            next = records.get(records.size() - 1).offset() + 1;
+        }
+        return new ArrayList<>(latest.values());
+    }
+
+    /**
+     * 定时按大小与时间清理旧的日志段
+     */
+    @Scheduled(fixedDelayString = "${enrollment.journal.segment-log.retention-check-ms:60000}")
+    public void enforceRetention() {
+        if (log == null) {
+            return;
+        }
+        int deleted = log.enforceRetention();
+        if (deleted > 0) {
+            System.out.println("Deleted " + deleted + " expired enrollment log segment(s), first offset now " + log.firstOffset());
+        }
+    }
+
+    private EnrollmentEvent toEvent(LogRecord record) {
+        try {
+            EnrollmentEvent event = objectMapper.readValue(record.payloadBytes(), EnrollmentEvent.class);
+            // 日志序号连续且与写入顺序一致，主键与序号都取日志序号加一
+            event.setId(record.offset() + 1);
+            event.setSeq(record.offset() + 1);
+            return event;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private SegmentedLog requireLog() {
+        SegmentedLog current = log;
+        if (current == null) {
+            throw new IllegalStateException("选课事件分段日志未启用");
+        }
+        return current;
+    }
+}
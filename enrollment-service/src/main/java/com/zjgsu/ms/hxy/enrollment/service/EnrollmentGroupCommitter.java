@@ -0,0 +1,226 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import com.zjgsu.ms.hxy.enrollment.exception.AdmissionRejectedException;
+import com.zjgsu.ms.hxy.enrollment.exception.EnrollmentPendingException;
+import com.zjgsu.ms.hxy.enrollment.model.Enrollment;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * EnrollmentGroupCommitter 类
+ * 选课合并提交（可选）：几毫秒内到达的选课请求由后台线程收集成一组，
+ * 一起校验并在同一事务中批量写入，再通过 future 把各自的结果交还给等待的调用方
+ * 以极小的固定延迟换取高峰期的写入吞吐；未启用时直接逐条选课
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Component
+public class EnrollmentGroupCommitter {
+
+    private final EnrollmentService enrollmentService;
+
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final long resultTimeoutMillis;
+
+    private final BlockingQueue<PendingEnrollment> queue;
+    private final DistributionSummary batchSizeSummary;
+
+    private volatile boolean running;
+    private Thread batcher;
+
+    public EnrollmentGroupCommitter(EnrollmentService enrollmentService,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${enrollment.group-commit.enabled:false}") boolean enabled,
+                                    @Value("${enrollment.group-commit.max-batch-size:200}") int maxBatchSize,
+                                    @Value("${enrollment.group-commit.linger-ms:5}") long lingerMillis,
+                                    @Value("${enrollment.group-commit.queue-capacity:10000}") int queueCapacity,
+                                    @Value("${enrollment.group-commit.result-timeout-ms:10000}") long resultTimeoutMillis) {
+        this.enrollmentService = enrollmentService;
+        this.enabled = enabled;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.resultTimeoutMillis = resultTimeoutMillis;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.batchSizeSummary = DistributionSummary.builder("enrollment.group.commit.batch.size")
+                .description("每次合并提交的选课请求数")
+                .register(meterRegistry);
+        meterRegistry.gauge("enrollment.group.commit.queue.depth", queue, BlockingQueue::size);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        batcher = new Thread(this::runBatcher, "enrollment-group-commit");
+        batcher.setDaemon(true);
+        batcher.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (batcher != null) {
+            batcher.interrupt();
+        }
+    }
+
+    /**
+     * 学生选课
+     * 启用合并提交时进入队列等待本组提交，否则直接调用 EnrollmentService.enrollCourse
+     * 等待超时时：请求仍在队列中则撤回并按排队超时拒绝（未提交，可安全重试）；
+     * 已被取走提交则抛出 EnrollmentPendingException，由客户端查询选课结果
+     * @param courseId 课程ID
+     * @param studentId 学生ID
+     * @return 创建后的选课记录
+     */
+    public Enrollment enroll(String courseId, String studentId) {
+        if (!enabled) {
+            return enrollmentService.enrollCourse(courseId, studentId);
+        }
+
+        PendingEnrollment pending = new PendingEnrollment(courseId, studentId);
+        if (!queue.offer(pending)) {
+            throw new AdmissionRejectedException("选课请求过多，请稍后重试", 1);
+        }
+        try {
+            return pending.result.get(resultTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException("选课失败: " + e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            if (queue.remove(pending)) {
+                throw new AdmissionRejectedException("选课排队超时，请稍后重试", 1);
+            }
+            // 已在提交中，结果仍可能在稍后提交
+            throw new EnrollmentPendingException(courseId, studentId);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("选课处理被中断");
+        }
+    }
+
+    /**
+     * 后台线程：收集一组请求（达到上限或等待 linger-ms 后），整体提交
+     */
+    private void runBatcher() {
+        List<PendingEnrollment> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                PendingEnrollment first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < maxBatchSize) {
+                    if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    PendingEnrollment next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queue.addAll(batch);
+                break;
+            } catch (Exception e) {
+                System.err.println("Enrollment group commit failed: " + e.getMessage());
+                for (PendingEnrollment pending : batch) {
+                    pending.result.completeExceptionally(e);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+
+        // 停止时未处理的请求直接失败，避免调用方一直等待
+        PendingEnrollment pending;
+        while ((pending = queue.poll()) != null) {
+            pending.result.completeExceptionally(new RuntimeException("选课服务正在停止，请稍后重试"));
+        }
+    }
+
+    /**
+     * 在一个事务中提交一组选课请求，并把结果交还给各调用方
+     */
+    private void commit(List<PendingEnrollment> batch) {
+        batchSizeSummary.record(batch.size());
+        List<Map<String, String>> items = new ArrayList<>(batch.size());
+        for (PendingEnrollment pending : batch) {
+            Map<String, String> item = new HashMap<>();
+            item.put("courseId", pending.courseId);
+            item.put("studentId", pending.studentId);
+            items.add(item);
+        }
+
+        List<EnrollmentService.EnrollmentOutcome> outcomes;
+        try {
+            outcomes = enrollmentService.enrollAll(items);
+        } catch (DataIntegrityViolationException e) {
+            // 与组外的并发选课冲突导致整组回滚，逐条重试，只让冲突的请求失败
+            for (PendingEnrollment pending : batch) {
+                try {
+                    pending.result.complete(enrollmentService.enrollCourse(pending.courseId, pending.studentId));
+                } catch (RuntimeException itemFailure) {
+                    pending.result.completeExceptionally(itemFailure);
+                }
+            }
+            return;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            EnrollmentService.EnrollmentOutcome outcome = outcomes.get(i);
+            if (outcome.succeeded()) {
+                batch.get(i).result.complete(outcome.enrollment());
+            } else {
+                batch.get(i).result.completeExceptionally(outcome.failure());
+            }
+        }
+    }
+
+    /**
+     * 等待提交的选课请求
+     */
+    private static final class PendingEnrollment {
+        private final String courseId;
+        private final String studentId;
+        private final CompletableFuture<Enrollment> result = new CompletableFuture<>();
+
+        private PendingEnrollment(String courseId, String studentId) {
+            this.courseId = courseId;
+            this.studentId = studentId;
+        }
+    }
+}
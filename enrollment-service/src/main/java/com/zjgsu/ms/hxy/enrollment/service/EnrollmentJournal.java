@@ -0,0 +1,642 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zjgsu.ms.hxy.enrollment.model.Enrollment;
+import com.zjgsu.ms.hxy.enrollment.model.EnrollmentEvent;
+import com.zjgsu.ms.hxy.enrollment.model.EnrollmentEventType;
+import com.zjgsu.ms.hxy.enrollment.model.EnrollmentSnapshot;
+import com.zjgsu.ms.hxy.enrollment.model.EnrollmentSnapshotChunk;
+import com.zjgsu.ms.hxy.enrollment.model.ReconciliationCursor;
+import com.zjgsu.ms.hxy.enrollment.repository.EnrollmentEventRepository;
+import com.zjgsu.ms.hxy.enrollment.repository.EnrollmentRepository;
+import com.zjgsu.ms.hxy.enrollment.repository.EnrollmentSnapshotChunkRepository;
+import com.zjgsu.ms.hxy.enrollment.repository.EnrollmentSnapshotRepository;
+import com.zjgsu.ms.hxy.enrollment.repository.ReconciliationCursorRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * EnrollmentJournal 类
+ * 选课事件日志：选课、退课、状态与成绩变更、删除时追加事件，与选课记录在同一事务中以 JDBC 批量写入，
+ * 分析类消费方按序号顺序读取事件流，不再轮询选课表
+ * 定时拍摄全部选课状态的快照（GZIP 压缩的 NDJSON 分块存放），重建读模型时从最新快照开始，
+ * 只需重放快照之后的事件；被保留快照覆盖且超过保留期的事件会被清理
+ *
+ * 自增主键按分配顺序而非提交顺序递增，按主键读取会越过仍未提交的较小主键；因此事件提交后由定时任务
+ * 按观察到的顺序分配连续的提交顺序序号（seq），分配在游标行锁下串行进行，读取方只按 seq 读取：
+ * 读到某个序号时更小的序号都已可见，长事务较晚提交的事件得到较大的序号，不会被跳过
+ * 启用 segment-log 时事件改为在事务中、选课记录写入数据库之后追加到本地分段日志（EnrollmentEventLog），
+ * 追加时持有这些选课记录的行锁，同一选课记录的事件在日志中的顺序与提交顺序一致；分页、流式读取、快照与重放都改从日志读取，
+ * 不再提供按选课记录查询历史。事务回滚时（以及启动时对崩溃前最近写入的事件）在行锁下读取选课记录的当前状态，
+ * 追加 RESYNCED 事件（记录已不存在时为 DELETED），抵消日志中未提交的事件
+ * 表与日志的事件序号互不相干，快照记录其 lastEventId 属于哪一种，重放与清理只使用同一种序号的快照
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Service
+public class EnrollmentJournal {
+
+    private static final String INSERT_EVENT = "INSERT INTO enrollment_events " +
+            "(enrollment_id, course_id, student_id, event_type, status, grade, occurred_at) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * 两次定时快照的最小间隔，避免多个实例同时拍摄
+     */
+    private static final long MIN_SNAPSHOT_INTERVAL_MINUTES = 60;
+
+    /**
+     * 未完成的快照创建超过该时长仍未完成时，视为拍摄中断（如实例退出）后遗留，清理时删除
+     */
+    private static final long ABANDONED_SNAPSHOT_HOURS = 24;
+
+    private static final String ASSIGN_SEQ = "UPDATE enrollment_events SET seq = ? WHERE id = ?";
+
+    /**
+     * 保存已分配的最大序号的游标名称
+     */
+    private static final String SEQUENCE_CURSOR = "enrollment-event-seq";
+
+    /**
+     * 重新同步时每次加锁读取的选课记录数
+     */
+    private static final int RESYNC_BATCH_SIZE = 1000;
+
+    private final EnrollmentEventRepository eventRepository;
+    private final EnrollmentSnapshotRepository snapshotRepository;
+    private final EnrollmentSnapshotChunkRepository chunkRepository;
+    private final EnrollmentRepository enrollmentRepository;
+    private final ReconciliationCursorRepository cursorRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final EnrollmentEventLog eventLog;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final TransactionTemplate newTransaction;
+    private final boolean enabled;
+
+    /**
+     * 每个事务最多分配序号的事件数
+     */
+    private final int sequenceBatchSize;
+
+    /**
+     * 快照每块的选课记录数
+     */
+    private final int snapshotChunkSize;
+
+    /**
+     * 保留的快照数
+     */
+    private final int retainedSnapshots;
+
+    /**
+     * 事件保留天数（只清理已被保留快照覆盖的事件）
+     */
+    private final int retentionDays;
+
+    /**
+     * 启动时重新同步的时间范围（毫秒，以日志最后一条记录为准），需大于追加事件到事务提交的最长时间
+     */
+    private final long recoveryWindowMillis;
+
+    private final AtomicBoolean snapshotInProgress = new AtomicBoolean();
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public EnrollmentJournal(EnrollmentEventRepository eventRepository,
+                             EnrollmentSnapshotRepository snapshotRepository,
+                             EnrollmentSnapshotChunkRepository chunkRepository,
+                             EnrollmentRepository enrollmentRepository,
+                             ReconciliationCursorRepository cursorRepository,
+                             JdbcTemplate jdbcTemplate,
+                             EnrollmentEventLog eventLog,
+                             ObjectMapper objectMapper,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${enrollment.journal.enabled:true}") boolean enabled,
+                             @Value("${enrollment.journal.sequence-batch-size:5000}") int sequenceBatchSize,
+                             @Value("${enrollment.journal.snapshot-chunk-size:10000}") int snapshotChunkSize,
+                             @Value("${enrollment.journal.retained-snapshots:2}") int retainedSnapshots,
+                             @Value("${enrollment.journal.retention-days:30}") int retentionDays,
+                             @Value("${enrollment.journal.segment-log.recovery-window-ms:60000}") long recoveryWindowMillis) {
+        this.eventRepository = eventRepository;
+        this.snapshotRepository = snapshotRepository;
+        this.chunkRepository = chunkRepository;
+        this.enrollmentRepository = enrollmentRepository;
+        this.cursorRepository = cursorRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventLog = eventLog;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = enabled;
+        this.sequenceBatchSize = sequenceBatchSize;
+        this.snapshotChunkSize = snapshotChunkSize;
+        this.retainedSnapshots = Math.max(1, retainedSnapshots);
+        this.retentionDays = retentionDays;
+        this.recoveryWindowMillis = recoveryWindowMillis;
+    }
+
+    /**
+     * 启动时重新同步崩溃前最近写入分段日志的选课记录：这些事件所在的事务可能未提交
+     */
+    @PostConstruct
+    public void recoverEventLog() {
+        if (!enabled || !eventLog.isEnabled()) {
+            return;
+        }
+        try {
+            List<EnrollmentEvent> recent = eventLog.recentEvents(recoveryWindowMillis);
+            resync(recent);
+            if (!recent.isEmpty()) {
+                System.out.println("Resynced " + recent.size() + " enrollment(s) from the tail of the enrollment log");
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to resync enrollments from the enrollment log: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 追加一条事件（需在修改选课记录的事务中调用）
+     * @param enrollment 变更后的选课记录
+     * @param type 事件类型
+     */
+    public void record(Enrollment enrollment, EnrollmentEventType type) {
+        recordAll(List.of(enrollment), type);
+    }
+
+    /**
+     * 批量追加同一类型的事件，一次 JDBC 批处理写入（需在修改选课记录的事务中调用）
+     * 启用分段日志时改为先把选课记录的修改写入数据库（持有行锁），再追加到日志并等待刷盘；
+     * 事务回滚时追加这些选课记录当前状态的事件
+     * @param enrollments 变更后的选课记录
+     * @param type 事件类型
+     */
+    public void recordAll(Collection<Enrollment> enrollments, EnrollmentEventType type) {
+        if (!enabled || enrollments.isEmpty()) {
+            return;
+        }
+        if (eventLog.isEnabled()) {
+            appendToLog(toEvents(enrollments, type));
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        boolean deleted = type == EnrollmentEventType.DELETED;
+        List<Object[]> rows = new ArrayList<>(enrollments.size());
+        for (Enrollment enrollment : enrollments) {
+            rows.add(new Object[]{
+                    enrollment.getId().toString(),
+                    enrollment.getCourseId(),
+                    enrollment.getStudentId(),
+                    type.name(),
+                    deleted || enrollment.getStatus() == null ? null : enrollment.getStatus().name(),
+                    deleted ? null : enrollment.getGrade(),
+                    now
+            });
+        }
+        jdbcTemplate.batchUpdate(INSERT_EVENT, rows);
+    }
+
+    /**
+     * 按序号分页读取事件
+     * @param after 起始序号（不含），从头读取时为 0
+     * @param limit 每页条数
+     * @return 事件列表与下一次读取的起始序号
+     */
+    public EventPage getEvents(long after, int limit) {
+        KeysetPage.checkLimit(limit);
+        List<EnrollmentEvent> fetched = eventLog.isEnabled()
+                ? eventLog.getEvents(after, limit + 1)
+                : eventRepository.findPage(after, PageRequest.of(0, limit + 1));
+        boolean hasMore = fetched.size() > limit;
+        List<EnrollmentEvent> items = hasMore ? fetched.subList(0, limit) : fetched;
+        long nextCursor = items.isEmpty() ? after : items.get(items.size() - 1).getSeq();
+        return new EventPage(items, nextCursor, hasMore);
+    }
+
+    /**
+     * 按序号流式遍历已分配序号的事件
+     * @param after 起始序号（不含）
+     * @param action 每个事件的处理
+     * @return 最后一个事件的序号，没有事件时为 after
+     */
+    public long forEachEvent(long after, Consumer<EnrollmentEvent> action) {
+        if (eventLog.isEnabled()) {
+            return eventLog.forEachEvent(after, action);
+        }
+        return readOnlyTransaction.execute(status -> {
+            long last = after;
+            try (Stream<EnrollmentEvent> events = eventRepository.streamAfter(after)) {
+                Iterator<EnrollmentEvent> iterator = events.iterator();
+                while (iterator.hasNext()) {
+                    EnrollmentEvent event = iterator.next();
+                    action.accept(event);
+                    entityManager.detach(event);
+                    last = event.getSeq();
+                }
+            }
+            return last;
+        });
+    }
+
+    /**
+     * 查询单条选课记录的全部事件（审计）
+     * @param enrollmentId 选课记录ID
+     * @return 按序号升序的事件列表
+     * @throws IllegalStateException 如果启用了分段日志（事件不再写入 enrollment_events 表）
+     */
+    public List<EnrollmentEvent> getEnrollmentHistory(String enrollmentId) {
+        if (eventLog.isEnabled()) {
+            throw new IllegalStateException("启用选课事件分段日志时不提供按选课记录查询历史");
+        }
+        return eventRepository.findByEnrollmentIdOrderByIdAsc(enrollmentId);
+    }
+
+    /**
+     * 重放：先读取最新快照中的选课状态，再按序号读取快照之后的事件
+     * 重建读模型时以 SnapshotEntry 初始化状态，再按事件携带的完整状态覆盖（DELETED 事件移除）
+     * @param onSnapshotEntry 快照中每条选课记录的处理
+     * @param onEvent 快照之后每个事件的处理
+     * @return 最后处理的事件序号，下次增量读取从其后开始
+     */
+    public long replay(Consumer<SnapshotEntry> onSnapshotEntry, Consumer<EnrollmentEvent> onEvent) {
+        Optional<EnrollmentSnapshot> snapshot = getLatestSnapshot();
+        long after = 0;
+        if (snapshot.isPresent()) {
+            forEachSnapshotChunk(snapshot.get(), payload -> {
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                        new GZIPInputStream(new ByteArrayInputStream(payload)), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        onSnapshotEntry.accept(objectMapper.readValue(line, SnapshotEntry.class));
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            after = snapshot.get().getLastEventId();
+        }
+        return forEachEvent(after, onEvent);
+    }
+
+    /**
+     * 查询当前事件来源（表或分段日志）的最新快照
+     * @return 最新快照，尚未拍摄时为空
+     */
+    public Optional<EnrollmentSnapshot> getLatestSnapshot() {
+        return snapshotRepository.findByEventSource(eventLog.isEnabled()).stream().findFirst();
+    }
+
+    /**
+     * 将快照内容（NDJSON，每行一条 SnapshotEntry）解压写出，逐块读取，不整体载入内存
+     * @param snapshot 快照
+     * @param out 输出流
+     */
+    public void copySnapshotContent(EnrollmentSnapshot snapshot, OutputStream out) {
+        forEachSnapshotChunk(snapshot, payload -> {
+            try (GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(payload))) {
+                input.transferTo(out);
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * 定时为已提交的事件分配提交顺序序号（启用分段日志时不需要）
+     * 各实例都会执行，在游标行锁下串行分配；一轮分配满一批时继续下一批
+     */
+    @Scheduled(fixedDelayString = "${enrollment.journal.sequence-interval-ms:200}")
+    public void assignSequence() {
+        if (!enabled || eventLog.isEnabled()) {
+            return;
+        }
+        try {
+            Integer assigned;
+            do {
+                assigned = transactionTemplate.execute(status -> assignSequenceBatch());
+            } while (assigned != null && assigned >= sequenceBatchSize);
+        } catch (Exception e) {
+            // 记录日志，等待下一轮
+            System.err.println("Failed to assign enrollment event sequence: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 锁定序号游标后，按主键顺序为本事务可见（已提交）且尚未分配序号的事件分配后续序号
+     * 游标行锁持有到提交，下一批只能在本批提交后分配，已分配的序号总是连续地变为可见
+     * @return 本批分配的事件数
+     */
+    private int assignSequenceBatch() {
+        ReconciliationCursor cursor = cursorRepository.findForUpdate(SEQUENCE_CURSOR).orElseGet(() -> {
+            // 首次分配：从当前最大主键之后编号，已有快照的 lastEventId（旧版本为主键）不会越过尚未编号的旧事件
+            ReconciliationCursor created = new ReconciliationCursor(SEQUENCE_CURSOR);
+            Long maxId = eventRepository.findMaxId();
+            created.setPosition(String.valueOf(maxId != null ? maxId : 0L));
+            return cursorRepository.saveAndFlush(created);
+        });
+        List<Long> ids = eventRepository.findUnsequencedIds(PageRequest.of(0, sequenceBatchSize));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        long seq = cursor.getPosition().isEmpty() ? 0L : Long.parseLong(cursor.getPosition());
+        List<Object[]> rows = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            rows.add(new Object[]{++seq, id});
+        }
+        jdbcTemplate.batchUpdate(ASSIGN_SEQ, rows);
+        cursor.setPosition(String.valueOf(seq));
+        return ids.size();
+    }
+
+    /**
+     * 定时拍摄快照并清理旧快照与已覆盖的事件；最近已有快照时跳过
+     */
+    @Scheduled(cron = "${enrollment.journal.snapshot-cron:0 30 3 * * *}")
+    public void scheduledSnapshot() {
+        if (!enabled) {
+            return;
+        }
+        Optional<EnrollmentSnapshot> latest = getLatestSnapshot();
+        if (latest.isPresent() && latest.get().getCreatedAt()
+                .isAfter(LocalDateTime.now().minusMinutes(MIN_SNAPSHOT_INTERVAL_MINUTES))) {
+            return;
+        }
+        try {
+            EnrollmentSnapshot snapshot = takeSnapshot();
+            System.out.println("Enrollment snapshot " + snapshot.getId() + " written with "
+                    + snapshot.getEnrollmentCount() + " enrollments up to event " + snapshot.getLastEventId());
+        } catch (Exception e) {
+            System.err.println("Failed to write enrollment snapshot: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 拍摄快照：先取已分配的最大事件序号（分段日志取所在事务均已结束的最后一个事件序号），再流式读取全部选课记录
+     * 读取到的状态可能已包含该序号之后的变更，由于事件携带完整状态，重放这些事件结果不变
+     * 选课记录在只读事务中流式读取（走流式读取连接池，逐批取行），快照头与每块内容各自在独立的短事务中写入；
+     * 全部写完后才把快照标记为完成，读取方只会看到已完成的快照，失败时删除已写入的部分
+     * @return 新快照
+     * @throws IllegalStateException 如果已有快照正在拍摄
+     */
+    public EnrollmentSnapshot takeSnapshot() {
+        if (!snapshotInProgress.compareAndSet(false, true)) {
+            throw new IllegalStateException("快照正在生成，请稍后重试");
+        }
+        try {
+            EnrollmentSnapshot snapshot = writeSnapshot();
+            transactionTemplate.executeWithoutResult(status -> prune());
+            return snapshot;
+        } finally {
+            snapshotInProgress.set(false);
+        }
+    }
+
+    private EnrollmentSnapshot writeSnapshot() {
+        boolean segmentLog = eventLog.isEnabled();
+        Long watermark = segmentLog ? eventLog.committedEventId() : eventRepository.findWatermark();
+        long lastEventId = watermark != null ? watermark : 0L;
+        EnrollmentSnapshot snapshot = newTransaction.execute(status ->
+                snapshotRepository.save(new EnrollmentSnapshot(lastEventId, segmentLog)));
+        try {
+            long[] totals = readOnlyTransaction.execute(status -> writeSnapshotChunks(snapshot.getId()));
+            snapshot.setEnrollmentCount(totals[0]);
+            snapshot.setChunkCount((int) totals[1]);
+            snapshot.setCompleted(true);
+            return newTransaction.execute(status -> snapshotRepository.save(snapshot));
+        } catch (RuntimeException e) {
+            newTransaction.executeWithoutResult(status -> deleteSnapshot(snapshot));
+            throw e;
+        }
+    }
+
+    /**
+     * 流式读取全部选课记录并分块写入快照内容（需在只读事务中调用）
+     * @return {选课记录数, 块数}
+     */
+    private long[] writeSnapshotChunks(Long snapshotId) {
+        long count = 0;
+        int chunkNo = 0;
+        int inChunk = 0;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (Stream<Enrollment> enrollments = enrollmentRepository.streamFiltered(null, null, null)) {
+            GZIPOutputStream gzip = new GZIPOutputStream(buffer);
+            Iterator<Enrollment> iterator = enrollments.iterator();
+            while (iterator.hasNext()) {
+                Enrollment enrollment = iterator.next();
+                gzip.write(objectMapper.writeValueAsBytes(SnapshotEntry.of(enrollment)));
+                gzip.write('\n');
+                entityManager.detach(enrollment);
+                count++;
+                if (++inChunk == snapshotChunkSize) {
+                    gzip.finish();
+                    saveChunk(snapshotId, chunkNo++, buffer.toByteArray());
+                    buffer.reset();
+                    gzip = new GZIPOutputStream(buffer);
+                    inChunk = 0;
+                }
+            }
+            if (inChunk > 0) {
+                gzip.finish();
+                saveChunk(snapshotId, chunkNo++, buffer.toByteArray());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new long[]{count, chunkNo};
+    }
+
+    /**
+     * 在独立的事务中写入一块快照内容（挂起外层的只读事务，写入走主连接池）
+     */
+    private void saveChunk(Long snapshotId, int chunkNo, byte[] payload) {
+        newTransaction.executeWithoutResult(status ->
+                chunkRepository.save(new EnrollmentSnapshotChunk(snapshotId, chunkNo, payload)));
+    }
+
+    private void deleteSnapshot(EnrollmentSnapshot snapshot) {
+        chunkRepository.deleteBySnapshotId(snapshot.getId());
+        snapshotRepository.deleteById(snapshot.getId());
+    }
+
+    /**
+     * 删除超出保留数的旧快照与拍摄中断后遗留的未完成快照，清理被最早保留的表快照覆盖且超过保留期的事件
+     * 分段日志的快照序号不对应表中的序号，不用于清理表；日志由自身的保留策略清理
+     */
+    private void prune() {
+        List<EnrollmentSnapshot> snapshots = snapshotRepository.findCompletedByOrderByIdDesc();
+        for (EnrollmentSnapshot old : snapshots.subList(Math.min(retainedSnapshots, snapshots.size()), snapshots.size())) {
+            deleteSnapshot(old);
+        }
+        for (EnrollmentSnapshot abandoned : snapshotRepository.findIncompleteCreatedBefore(
+                LocalDateTime.now().minusHours(ABANDONED_SNAPSHOT_HOURS))) {
+            deleteSnapshot(abandoned);
+        }
+        List<EnrollmentSnapshot> tableSnapshots = snapshotRepository.findByEventSource(false);
+        if (!tableSnapshots.isEmpty()) {
+            EnrollmentSnapshot oldestRetained = tableSnapshots.get(tableSnapshots.size() - 1);
+            int deleted = eventRepository.deleteCovered(oldestRetained.getLastEventId(),
+                    LocalDateTime.now().minusDays(retentionDays));
+            if (deleted > 0) {
+                System.out.println("Pruned " + deleted + " enrollment events up to " + oldestRetained.getLastEventId());
+            }
+        }
+    }
+
+    /**
+     * 追加到分段日志：先刷出选课记录的修改，使本事务持有这些记录的行锁，再追加并等待刷盘
+     * 事务未提交（回滚或状态未知）时重新同步这些选课记录；追加失败时部分事件可能已写入，同样需要重新同步，
+     * 因此在追加之前注册
+     */
+    private void appendToLog(List<EnrollmentEvent> events) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            entityManager.flush();
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // 事务结束前其事件不计入快照序号，见 EnrollmentEventLog.committedEventId
+            Object transaction = eventLog.openTransaction();
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    try {
+                        if (status != STATUS_COMMITTED) {
+                            resync(events);
+                        }
+                    } catch (Exception e) {
+                        System.err.println("Failed to resync " + events.size()
+                                + " enrollment(s) after rollback: " + e.getMessage());
+                    } finally {
+                        eventLog.closeTransaction(transaction);
+                    }
+                }
+            });
+        }
+        eventLog.append(events);
+    }
+
+    /**
+     * 为事件涉及的选课记录追加当前状态：在新事务中加行锁读取，存在时追加 RESYNCED 事件，已不存在时追加 DELETED 事件
+     * 追加时持有行锁，同一选课记录的其他事务只能在其后追加，日志中该记录的最后一个事件与数据库一致
+     * @param events 需要重新同步的事件（按选课记录去重）
+     */
+    private void resync(List<EnrollmentEvent> events) {
+        Map<UUID, EnrollmentEvent> byId = new HashMap<>();
+        for (EnrollmentEvent event : events) {
+            byId.put(UUID.fromString(event.getEnrollmentId()), event);
+        }
+        List<UUID> ids = new ArrayList<>(byId.keySet());
+        for (int from = 0; from < ids.size(); from += RESYNC_BATCH_SIZE) {
+            List<UUID> batch = ids.subList(from, Math.min(from + RESYNC_BATCH_SIZE, ids.size()));
+            newTransaction.executeWithoutResult(status -> {
+                List<Enrollment> current = enrollmentRepository.findAllForUpdate(batch);
+                List<EnrollmentEvent> resynced = toEvents(current, EnrollmentEventType.RESYNCED);
+                List<Enrollment> removed = new ArrayList<>();
+                for (UUID id : batch) {
+                    if (current.stream().noneMatch(enrollment -> enrollment.getId().equals(id))) {
+                        EnrollmentEvent last = byId.get(id);
+                        Enrollment gone = new Enrollment();
+                        gone.setId(id);
+                        gone.setCourseId(last.getCourseId());
+                        gone.setStudentId(last.getStudentId());
+                        removed.add(gone);
+                    }
+                }
+                resynced.addAll(toEvents(removed, EnrollmentEventType.DELETED));
+                if (!resynced.isEmpty()) {
+                    eventLog.append(resynced);
+                }
+            });
+        }
+    }
+
+    /**
+     * 逐块读取快照内容（每块在独立的只读事务中加载）
+     */
+    private void forEachSnapshotChunk(EnrollmentSnapshot snapshot, Consumer<byte[]> action) {
+        for (int chunkNo = 0; chunkNo < snapshot.getChunkCount(); chunkNo++) {
+            int current = chunkNo;
+            byte[] payload = readOnlyTransaction.execute(status -> chunkRepository
+                    .findBySnapshotIdAndChunkNo(snapshot.getId(), current)
+                    .map(EnrollmentSnapshotChunk::getPayload)
+                    .orElseThrow(() -> new IllegalStateException("快照内容已被清理，请重新读取最新快照")));
+            action.accept(payload);
+        }
+    }
+
+    private static List<EnrollmentEvent> toEvents(Collection<Enrollment> enrollments, EnrollmentEventType type) {
+        LocalDateTime now = LocalDateTime.now();
+        boolean deleted = type == EnrollmentEventType.DELETED;
+        List<EnrollmentEvent> events = new ArrayList<>(enrollments.size());
+        for (Enrollment enrollment : enrollments) {
+            EnrollmentEvent event = new EnrollmentEvent();
+            event.setEnrollmentId(enrollment.getId().toString());
+            event.setCourseId(enrollment.getCourseId());
+            event.setStudentId(enrollment.getStudentId());
+            event.setEventType(type);
+            event.setStatus(deleted ? null : enrollment.getStatus());
+            event.setGrade(deleted ? null : enrollment.getGrade());
+            event.setOccurredAt(now);
+            events.add(event);
+        }
+        return events;
+    }
+
+    /**
+     * 快照中一条选课记录的状态
+     */
+    public record SnapshotEntry(String enrollmentId, String courseId, String studentId, String status, Double grade) {
+
+        static SnapshotEntry of(Enrollment enrollment) {
+            return new SnapshotEntry(enrollment.getId().toString(), enrollment.getCourseId(), enrollment.getStudentId(),
+                    enrollment.getStatus() != null ? enrollment.getStatus().name() : null, enrollment.getGrade());
+        }
+    }
+
+    /**
+     * 一页事件：nextCursor 为下一次读取的起始序号（读到末尾后继续以它轮询新事件），
+     * hasMore 为 false 表示已读到当前可见的末尾
+     */
+    public record EventPage(List<EnrollmentEvent> items, long nextCursor, boolean hasMore) {
+    }
+}
@@ -1,23 +1,48 @@
 package com.zjgsu.ms.hxy.enrollment.service;
 
+import com.zjgsu.ms.hxy.enrollment.client.CatalogClient;
+import com.zjgsu.ms.hxy.enrollment.event.SeatReleasedEvent;
+import com.zjgsu.ms.hxy.enrollment.exception.CourseFullException;
+import com.zjgsu.ms.hxy.enrollment.exception.CourseNotFoundException;
+import com.zjgsu.ms.hxy.enrollment.model.CourseCountOutbox;
 import com.zjgsu.ms.hxy.enrollment.model.Enrollment;
+import com.zjgsu.ms.hxy.enrollment.model.EnrollmentEventType;
 import com.zjgsu.ms.hxy.enrollment.model.EnrollmentStatus;
+import com.zjgsu.ms.hxy.enrollment.repository.CourseCountOutboxRepository;
 import com.zjgsu.ms.hxy.enrollment.repository.EnrollmentRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Lazy;
-import org.springframework.cloud.client.ServiceInstance;
-import org.springframework.cloud.client.discovery.DiscoveryClient;
-import org.springframework.http.HttpStatus;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
-import org.springframework.web.client.HttpClientErrorException;
-import org.springframework.web.client.RestTemplate;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
  * EnrollmentService 类
@@ -31,33 +56,106 @@ import java.util.UUID;
 @Service
 public class EnrollmentService {
 
+    /**
+     * 单次批量选课的最大条数
+     */
+    private static final int MAX_BATCH_ITEMS = 10000;
+
+    /**
+     * IN 子句单次携带的最大参数个数
+     */
+    private static final int IN_CLAUSE_CHUNK_SIZE = 1000;
+
+    /**
+     * 活跃选课状态（未退课）
+     */
+    private static final Set<EnrollmentStatus> ACTIVE_STATUSES =
+            EnumSet.of(EnrollmentStatus.ENROLLED, EnrollmentStatus.COMPLETED);
+
     private final EnrollmentRepository enrollmentRepository;
     private final StudentService studentService;
-    private final RestTemplate restTemplate;
-    private final DiscoveryClient discoveryClient;
+    private final CatalogClient catalogClient;
+    private final CourseCountOutboxRepository outboxRepository;
+    private final WaitlistService waitlistService;
+    private final ActiveEnrollmentFilter activeEnrollmentFilter;
+    private final StudentIdentityResolver studentIdentityResolver;
+    private final GradeSummaryService gradeSummaryService;
+    private final CourseStatisticsService courseStatisticsService;
+    private final EnrollmentCounterService enrollmentCounterService;
+    private final EnrollmentJournal enrollmentJournal;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * 非阻塞选课流水线中执行数据库访问的执行器：平台线程时为固定大小、有界队列的线程池，队列满时拒绝；
+     * 虚拟线程时每个任务一个虚拟线程，并发数超过上限时提交方等待
+     * 不注册为容器中的 Executor Bean：Spring Boot 发现任意 Executor Bean 后不再创建 applicationTaskExecutor，
+     * 流式导出（StreamingResponseBody）会退回到不受限的 SimpleAsyncTaskExecutor
+     */
+    private final AsyncTaskExecutor jdbcExecutor;
 
     public EnrollmentService(EnrollmentRepository enrollmentRepository,
                              @Lazy StudentService studentService,
-                             RestTemplate restTemplate,
-                             DiscoveryClient discoveryClient) {
+                             CatalogClient catalogClient,
+                             CourseCountOutboxRepository outboxRepository,
+                             @Lazy WaitlistService waitlistService,
+                             ActiveEnrollmentFilter activeEnrollmentFilter,
+                             StudentIdentityResolver studentIdentityResolver,
+                             GradeSummaryService gradeSummaryService,
+                             CourseStatisticsService courseStatisticsService,
+                             EnrollmentCounterService enrollmentCounterService,
+                             EnrollmentJournal enrollmentJournal,
+                             ApplicationEventPublisher eventPublisher,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${enrollment.async.jdbc-pool-size:10}") int jdbcPoolSize,
+                             @Value("${enrollment.async.queue-capacity:1000}") int jdbcQueueCapacity,
+                             @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
         this.enrollmentRepository = enrollmentRepository;
         this.studentService = studentService;
-        this.restTemplate = restTemplate;
-        this.discoveryClient = discoveryClient;
+        this.catalogClient = catalogClient;
+        this.outboxRepository = outboxRepository;
+        this.waitlistService = waitlistService;
+        this.activeEnrollmentFilter = activeEnrollmentFilter;
+        this.studentIdentityResolver = studentIdentityResolver;
+        this.gradeSummaryService = gradeSummaryService;
+        this.courseStatisticsService = courseStatisticsService;
+        this.enrollmentCounterService = enrollmentCounterService;
+        this.enrollmentJournal = enrollmentJournal;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.jdbcExecutor = createJdbcExecutor(jdbcPoolSize, jdbcQueueCapacity, virtualThreads);
     }
-    
-    /**
-     * 获取catalog-service的服务URL
-     */
-    private String getCatalogServiceUrl() {
-        List<ServiceInstance> instances = discoveryClient.getInstances("catalog-service");
-        if (instances == null || instances.isEmpty()) {
-            throw new RuntimeException("No instances available for catalog-service");
+
+    private static AsyncTaskExecutor createJdbcExecutor(int poolSize, int queueCapacity, boolean virtualThreads) {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("enrollment-jdbc-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(poolSize + queueCapacity);
+            return executor;
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("enrollment-jdbc-");
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        executor.initialize();
+        return executor;
+    }
+
+    @PreDestroy
+    public void shutdownJdbcExecutor() {
+        if (jdbcExecutor instanceof ThreadPoolTaskExecutor pool) {
+            pool.shutdown();
+        } else if (jdbcExecutor instanceof SimpleAsyncTaskExecutor simple) {
+            simple.close();
         }
-        // 使用第一个实例，实际生产环境中可以实现负载均衡
-        ServiceInstance instance = instances.get(0);
-        return instance.getUri().toString();
     }
+
     /**
      * 获取所有选课记录
      * @return 选课记录列表
@@ -84,7 +182,7 @@ public class EnrollmentService {
         if (!StringUtils.hasText(courseId)) {
             throw new IllegalArgumentException("课程ID不能为空");
         }
-        return enrollmentRepository.findByCourseId(courseId);
+        return enrollmentRepository.findByCourseId(toEnrollmentCourseId(courseId));
     }
 
     /**
@@ -96,7 +194,36 @@ public class EnrollmentService {
         if (!StringUtils.hasText(studentId)) {
             throw new IllegalArgumentException("学生ID不能为空");
         }
-        return enrollmentRepository.findByStudentId(studentId);
+        return enrollmentRepository.findByStudentId(toEnrollmentStudentId(studentId));
+    }
+
+    /**
+     * 检查学生是否有活跃的选课记录（ENROLLED 或 COMPLETED）
+     * @param studentId 学生ID
+     * @return 如果有活跃选课记录返回true
+     */
+    public boolean hasActiveEnrollments(String studentId) {
+        if (!StringUtils.hasText(studentId)) {
+            throw new IllegalArgumentException("学生ID不能为空");
+        }
+        return enrollmentRepository.existsByStudentIdAndStatusIn(toEnrollmentStudentId(studentId), ACTIVE_STATUSES);
+    }
+
+    /**
+     * 批量检查学生是否有活跃的选课记录（ENROLLED 或 COMPLETED）
+     * binary-ids 配置下选课记录中不会有学号，学号直接跳过
+     * @param studentIds 学生ID集合
+     * @return 其中有活跃选课记录的学生ID
+     */
+    public Set<String> findStudentsWithActiveEnrollments(Collection<String> studentIds) {
+        Set<String> result = new HashSet<>();
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(studentIds));
+        ids.removeIf(id -> !studentIdentityResolver.isEnrollmentIdStorable(id));
+        for (int from = 0; from < ids.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            List<String> chunk = ids.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, ids.size()));
+            result.addAll(enrollmentRepository.findDistinctStudentIdsByStudentIdInAndStatusIn(chunk, ACTIVE_STATUSES));
+        }
+        return result;
     }
 
     /**
@@ -105,12 +232,60 @@ public class EnrollmentService {
      * @return 指定状态的所有选课记录列表
      */
     public List<Enrollment> getEnrollmentsByStatus(String status) {
+        if (!StringUtils.hasText(status)) {
+            throw new IllegalArgumentException("状态不能为空");
+        }
+        return enrollmentRepository.findByStatus(parseStatus(status));
+    }
+
+    /**
+     * 按ID游标分页查询选课记录
+     * @param courseId 课程ID，为空时不限
+     * @param studentId 学生ID，为空时不限
+     * @param status 选课状态字符串，为空时不限
+     * @param after 上一页的 nextCursor，为空时从第一页开始
+     * @param limit 每页条数
+     * @return 一页选课记录
+     */
+    public KeysetPage<Enrollment> getEnrollmentsPage(String courseId, String studentId, String status,
+                                                     UUID after, int limit) {
+        KeysetPage.checkLimit(limit);
+        List<Enrollment> fetched = enrollmentRepository.findPage(
+                toEnrollmentCourseId(courseId), toEnrollmentStudentId(studentId),
+                status != null ? parseStatus(status) : null, after, PageRequest.of(0, limit + 1));
+        return KeysetPage.of(fetched, limit, Enrollment::getId);
+    }
+
+    /**
+     * 流式遍历选课记录，逐条处理后立即从持久化上下文中分离，内存占用与总条数无关
+     * @param courseId 课程ID，为空时不限
+     * @param studentId 学生ID，为空时不限
+     * @param status 选课状态字符串，为空时不限
+     * @param action 每条选课记录的处理
+     * @return 遍历的记录数
+     */
+    @Transactional(readOnly = true)
+    public long forEachEnrollment(String courseId, String studentId, String status, Consumer<Enrollment> action) {
+        long count = 0;
+        try (Stream<Enrollment> enrollments = enrollmentRepository.streamFiltered(
+                toEnrollmentCourseId(courseId), toEnrollmentStudentId(studentId), status != null ? parseStatus(status) : null)) {
+            Iterator<Enrollment> iterator = enrollments.iterator();
+            while (iterator.hasNext()) {
+                Enrollment enrollment = iterator.next();
+                action.accept(enrollment);
+                entityManager.detach(enrollment);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static EnrollmentStatus parseStatus(String status) {
         if (!StringUtils.hasText(status)) {
             throw new IllegalArgumentException("状态不能为空");
         }
         try {
-            EnrollmentStatus statusEnum = EnrollmentStatus.valueOf(status.toUpperCase());
-            return enrollmentRepository.findByStatus(statusEnum);
+            return EnrollmentStatus.valueOf(status.toUpperCase());
         } catch (IllegalArgumentException e) {
             throw new IllegalArgumentException("无效的选课状态: " + status);
         }
@@ -129,7 +304,7 @@ public class EnrollmentService {
     }
 
     /**
-     * 获取课程的选课人数
+     * 获取课程的选课人数（读取预计算的计数）
      * @param courseId 课程ID
      * @return 该课程的选课人数
      */
@@ -137,11 +312,28 @@ public class EnrollmentService {
         if (!StringUtils.hasText(courseId)) {
             throw new IllegalArgumentException("课程ID不能为空");
         }
-        return enrollmentRepository.countByCourseIdAndStatusNot(courseId, EnrollmentStatus.WITHDRAWN);
+        return enrollmentCounterService.getCourseCount(courseId);
+    }
+
+    /**
+     * 批量获取课程的选课人数（读取预计算的计数）
+     * @param courseIds 课程ID集合
+     * @return courseId -> 选课人数，与输入顺序一致
+     */
+    public Map<String, Long> getEnrollmentCountsByCourse(Collection<String> courseIds) {
+        if (courseIds == null || courseIds.isEmpty()) {
+            throw new IllegalArgumentException("课程ID不能为空");
+        }
+        for (String courseId : courseIds) {
+            if (!StringUtils.hasText(courseId)) {
+                throw new IllegalArgumentException("课程ID不能为空");
+            }
+        }
+        return enrollmentCounterService.getCourseCounts(courseIds);
     }
 
     /**
-     * 获取学生的选课数量
+     * 获取学生的选课数量（读取预计算的计数）
      * @param studentId 学生ID
      * @return 该学生的选课数量
      */
@@ -149,7 +341,7 @@ public class EnrollmentService {
         if (!StringUtils.hasText(studentId)) {
             throw new IllegalArgumentException("学生ID不能为空");
         }
-        return enrollmentRepository.countByStudentIdAndStatusNot(studentId, EnrollmentStatus.WITHDRAWN);
+        return enrollmentCounterService.getStudentCount(toEnrollmentStudentId(studentId));
     }
 
     /**
@@ -163,19 +355,23 @@ public class EnrollmentService {
         if (!StringUtils.hasText(status)) {
             throw new IllegalArgumentException("状态不能为空");
         }
+        EnrollmentStatus statusEnum;
         try {
-            EnrollmentStatus statusEnum = EnrollmentStatus.valueOf(status.toUpperCase());
-            return updateEnrollmentStatus(id, statusEnum);
+            statusEnum = EnrollmentStatus.valueOf(status.toUpperCase());
         } catch (IllegalArgumentException e) {
             throw new IllegalArgumentException("无效的选课状态: " + status);
         }
+        // 课程已满等业务异常不能被当作无效状态
+        return updateEnrollmentStatus(id, statusEnum);
     }
 
     /**
      * 更新选课状态（枚举版本）
+     * 已退课的记录恢复为有效状态时与选课一样占用名额
      * @param id 选课记录ID
      * @param status 新状态枚举
      * @return 更新后的选课记录Optional
+     * @throws CourseFullException 恢复有效状态时课程容量已满
      */
     @Transactional
     public Optional<Enrollment> updateEnrollmentStatus(UUID id, EnrollmentStatus status) {
@@ -186,12 +382,51 @@ public class EnrollmentService {
         Optional<Enrollment> enrollment = enrollmentRepository.findById(id);
         if (enrollment.isPresent()) {
             Enrollment enroll = enrollment.get();
+            EnrollmentStatus oldStatus = enroll.getStatus();
+            boolean wasActive = !EnrollmentStatus.WITHDRAWN.equals(oldStatus);
+            boolean isActive = !EnrollmentStatus.WITHDRAWN.equals(status);
+            if (!wasActive && isActive) {
+                reserveSeat(enroll.getCourseId());
+            }
             enroll.setStatus(status);
-            return Optional.of(enrollmentRepository.save(enroll));
+            Enrollment saved = enrollmentRepository.save(enroll);
+            if (oldStatus != status) {
+                enrollmentJournal.record(saved, EnrollmentEventType.STATUS_CHANGED);
+                gradeSummaryService.recordChange(enroll, oldStatus, enroll.getGrade(), status, enroll.getGrade());
+                if (enroll.getGrade() != null) {
+                    courseStatisticsService.invalidate(enroll.getCourseId());
+                }
+            }
+            if (wasActive != isActive) {
+                recordEnrolledDelta(enroll.getCourseId(), isActive ? 1 : -1);
+                if (isActive) {
+                    // 课程计数已在占座时累加
+                    enrollmentCounterService.apply(Map.of(), Map.of(enroll.getStudentId(), 1));
+                    activeEnrollmentFilter.add(enroll.getCourseId(), enroll.getStudentId());
+                } else {
+                    enrollmentCounterService.recordChange(enroll.getCourseId(), enroll.getStudentId(), -1);
+                    activeEnrollmentFilter.remove(enroll.getCourseId(), enroll.getStudentId());
+                }
+            }
+            return Optional.of(saved);
         }
         return Optional.empty();
     }
 
+    /**
+     * 按课程服务中的容量为课程占用一个名额（需在修改选课记录的事务中、修改之前调用）
+     * @throws CourseFullException 课程容量已满
+     */
+    private void reserveSeat(String courseId) {
+        Object capacity = catalogClient.getCourse(courseId).get("capacity");
+        if (!(capacity instanceof Number)) {
+            throw new RuntimeException("课程信息不完整，无法选课");
+        }
+        if (enrollmentCounterService.reserveSeats(courseId, 1, ((Number) capacity).longValue()) == 0) {
+            throw new CourseFullException(courseId);
+        }
+    }
+
     /**
      * 更新学生成绩
      * @param id 选课记录ID
@@ -212,8 +447,13 @@ public class EnrollmentService {
             Enrollment enroll = enrollment.get();
             // 只有在特定状态下才能更新成绩
             if (canUpdateGrade(enroll)) {
+                Double oldGrade = enroll.getGrade();
                 enroll.setGrade(grade);
-                return Optional.of(enrollmentRepository.save(enroll));
+                Enrollment saved = enrollmentRepository.save(enroll);
+                enrollmentJournal.record(saved, EnrollmentEventType.GRADE_UPDATED);
+                gradeSummaryService.recordChange(enroll, enroll.getStatus(), oldGrade, enroll.getStatus(), grade);
+                courseStatisticsService.invalidate(enroll.getCourseId());
+                return Optional.of(saved);
             } else {
                 throw new IllegalArgumentException("当前无法更新成绩，选课状态为: " + enroll.getStatus());
             }
@@ -229,35 +469,48 @@ public class EnrollmentService {
      * @return 更新成功的数量
      */
     @Transactional
-    public int updateGradesForCourse(String courseId, Map<String, Double> grades) {
-        if (!StringUtils.hasText(courseId)) {
+    public int updateGradesForCourse(String requestedCourseId, Map<String, Double> requestedGrades) {
+        if (!StringUtils.hasText(requestedCourseId)) {
             throw new IllegalArgumentException("课程ID不能为空");
         }
-        if (grades == null || grades.isEmpty()) {
+        if (requestedGrades == null || requestedGrades.isEmpty()) {
             throw new IllegalArgumentException("成绩数据不能为空");
         }
 
         // 验证所有成绩值
-        for (Double grade : grades.values()) {
+        for (Double grade : requestedGrades.values()) {
             if (grade == null || grade < 0.0 || grade > 100.0) {
                 throw new IllegalArgumentException("成绩必须在0-100之间");
             }
         }
+        String courseId = toEnrollmentCourseId(requestedCourseId);
+        Map<String, Double> grades = new HashMap<>();
+        requestedGrades.forEach((studentId, grade) -> grades.put(toEnrollmentStudentId(studentId), grade));
 
-        // 获取该课程的所有选课记录
-        List<Enrollment> enrollments = enrollmentRepository.findByCourseId(courseId);
-        int updatedCount = 0;
-
-        for (Enrollment enrollment : enrollments) {
-            String studentId = enrollment.getStudentId();
-            if (grades.containsKey(studentId) && canUpdateGrade(enrollment)) {
-                enrollment.setGrade(grades.get(studentId));
-                enrollmentRepository.save(enrollment);
-                updatedCount++;
+        // 只加载成绩表中涉及的选课记录；实体处于托管状态，修改后在提交时由 JDBC 批处理统一写入
+        List<Enrollment> updated = new ArrayList<>();
+        GradeSummaryService.GradeDeltas deltas = new GradeSummaryService.GradeDeltas();
+        List<String> studentIds = new ArrayList<>(grades.keySet());
+        for (int from = 0; from < studentIds.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            List<String> chunk = studentIds.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, studentIds.size()));
+            for (Enrollment enrollment : enrollmentRepository.findByCourseIdInAndStudentIdIn(List.of(courseId), chunk)) {
+                if (canUpdateGrade(enrollment)) {
+                    Double oldGrade = enrollment.getGrade();
+                    enrollment.setGrade(grades.get(enrollment.getStudentId()));
+                    if (EnrollmentStatus.COMPLETED.equals(enrollment.getStatus())) {
+                        deltas.add(enrollment.getStudentId(), oldGrade, enrollment.getGrade());
+                    }
+                    updated.add(enrollment);
+                }
             }
         }
+        enrollmentJournal.recordAll(updated, EnrollmentEventType.GRADE_UPDATED);
+        gradeSummaryService.apply(deltas);
+        if (!updated.isEmpty()) {
+            courseStatisticsService.invalidate(courseId);
+        }
 
-        return updatedCount;
+        return updated.size();
     }
 
     /**
@@ -267,8 +520,20 @@ public class EnrollmentService {
      */
     @Transactional
     public boolean deleteEnrollment(UUID id) {
-        if (enrollmentRepository.existsById(id)) {
-            enrollmentRepository.deleteById(id);
+        Optional<Enrollment> enrollment = enrollmentRepository.findById(id);
+        if (enrollment.isPresent()) {
+            Enrollment enroll = enrollment.get();
+            enrollmentRepository.delete(enroll);
+            enrollmentJournal.record(enroll, EnrollmentEventType.DELETED);
+            if (!EnrollmentStatus.WITHDRAWN.equals(enroll.getStatus())) {
+                recordEnrolledDelta(enroll.getCourseId(), -1);
+                enrollmentCounterService.recordChange(enroll.getCourseId(), enroll.getStudentId(), -1);
+                activeEnrollmentFilter.remove(enroll.getCourseId(), enroll.getStudentId());
+            }
+            gradeSummaryService.recordChange(enroll, enroll.getStatus(), enroll.getGrade(), null, null);
+            if (enroll.getGrade() != null) {
+                courseStatisticsService.invalidate(enroll.getCourseId());
+            }
             return true;
         }
         return false;
@@ -284,7 +549,15 @@ public class EnrollmentService {
         if (!StringUtils.hasText(courseId) || !StringUtils.hasText(studentId)) {
             return false;
         }
-        return enrollmentRepository.existsByCourseIdAndStudentIdAndStatusNot(courseId, studentId, EnrollmentStatus.WITHDRAWN);
+        return hasActiveEnrollment(toEnrollmentCourseId(courseId), toEnrollmentStudentId(studentId));
+    }
+
+    /**
+     * 检查是否存在有效选课：先查布隆过滤器，可能存在时再查询数据库
+     */
+    private boolean hasActiveEnrollment(String courseId, String studentId) {
+        return activeEnrollmentFilter.exists(courseId, studentId, () ->
+                enrollmentRepository.existsByCourseIdAndStudentIdAndStatusNot(courseId, studentId, EnrollmentStatus.WITHDRAWN));
     }
 
     /**
@@ -294,7 +567,8 @@ public class EnrollmentService {
      * @return 成绩Optional
      */
     public Optional<Double> getStudentGrade(String studentId, String courseId) {
-        Optional<Enrollment> enrollment = enrollmentRepository.findByCourseIdAndStudentId(courseId, studentId);
+        Optional<Enrollment> enrollment = enrollmentRepository.findByCourseIdAndStudentId(
+                toEnrollmentCourseId(courseId), toEnrollmentStudentId(studentId));
         return enrollment.map(Enrollment::getGrade);
     }
 
@@ -304,24 +578,9 @@ public class EnrollmentService {
      * @return 平均成绩，如果没有成绩返回空Optional
      */
     public Optional<Double> getStudentAverageGrade(String studentId) {
-        List<Enrollment> enrollments = enrollmentRepository.findByStudentId(studentId);
-
-        List<Double> grades = enrollments.stream()
-                .filter(enrollment -> enrollment.getGrade() != null &&
-                        EnrollmentStatus.COMPLETED.equals(enrollment.getStatus()))
-                .map(Enrollment::getGrade)
-                .toList();
-
-        if (grades.isEmpty()) {
-            return Optional.empty();
-        }
-
-        double average = grades.stream()
-                .mapToDouble(Double::doubleValue)
-                .average()
-                .orElse(0.0);
-
-        return Optional.of(average);
+        // 在数据库中聚合，不加载选课记录
+        return Optional.ofNullable(enrollmentRepository.averageGradeByStudentIdAndStatus(
+                toEnrollmentStudentId(studentId), EnrollmentStatus.COMPLETED));
     }
 
     /**
@@ -337,17 +596,10 @@ public class EnrollmentService {
     }
 
     /**
-     * 检查学生是否存在
+     * 检查学生是否存在，studentId 可以是学生 UUID 或学号
      */
     private boolean studentExists(String studentId) {
-        // 这里假设studentId是UUID字符串，需要转换为UUID查询
-        try {
-            UUID studentUUID = UUID.fromString(studentId);
-            return studentService.studentExists(studentUUID);
-        } catch (IllegalArgumentException e) {
-            // 如果studentId不是UUID格式，可能需要其他查询方式
-            return studentService.getStudentByStudentId(studentId).isPresent();
-        }
+        return studentIdentityResolver.exists(studentId);
     }
 
 
@@ -395,76 +647,326 @@ public class EnrollmentService {
      * 学生选课（完善版）
      */
     @Transactional
-    public Enrollment enrollCourse(String courseId, String studentId) {
+    public Enrollment enrollCourse(String requestedCourseId, String requestedStudentId) {
         // 验证输入参数
-        validateCourseAndStudentIds(courseId, studentId);
+        validateCourseAndStudentIds(requestedCourseId, requestedStudentId);
+        String courseId = toEnrollmentCourseId(requestedCourseId);
+        String studentId = toEnrollmentStudentId(requestedStudentId);
 
         // 检查学生是否存在
         if (!studentExists(studentId)) {
             throw new IllegalArgumentException("学生不存在，ID: " + studentId);
         }
 
-        // 1. 调用课程目录服务验证课程是否存在
-        String catalogServiceUrl = getCatalogServiceUrl();
-        String courseUrl = catalogServiceUrl + "/api/courses/" + courseId;
-        Map<String, Object> courseResponse;
-        try {
-            courseResponse = restTemplate.getForObject(courseUrl, Map.class);
-        } catch (HttpClientErrorException.NotFound e) {
-            throw new com.zjgsu.ms.hxy.enrollment.exception.CourseNotFoundException(courseId);
-        } catch (HttpClientErrorException e) {
-            throw new RuntimeException("调用课程服务失败，状态码: " + e.getStatusCode() + ", 错误信息: " + e.getResponseBodyAsString());
-        } catch (Exception e) {
-            throw new RuntimeException("调用课程服务失败: " + e.getMessage(), e);
-        }
+        // 1. 调用课程目录服务验证课程是否存在（并发的同课程查询会被合并）
+        Map<String, Object> courseData = catalogClient.getCourse(courseId);
+
+        return createEnrollment(courseId, studentId, courseData);
+    }
 
+    /**
+     * 学生选课（非阻塞）
+     * 课程查询与学生校验并行进行：课程查询通过异步 HTTP 客户端完成，不占用线程；
+     * 学生校验与写入选课记录在数据库执行器中执行，写入在独立事务中完成；执行器队列已满时以 RejectedExecutionException 失败
+     * @param courseId 课程ID
+     * @param studentId 学生ID
+     * @return 选课记录；失败时以与 enrollCourse 相同的异常完成
+     */
+    public CompletableFuture<Enrollment> enrollCourseAsync(String requestedCourseId, String requestedStudentId) {
+        validateCourseAndStudentIds(requestedCourseId, requestedStudentId);
+        String courseId = toEnrollmentCourseId(requestedCourseId);
+
+        // 学号换成 UUID 时可能查询数据库，与学生校验一起在数据库线程池中完成
+        CompletableFuture<String> studentCheck = CompletableFuture.supplyAsync(() -> {
+            String studentId = toEnrollmentStudentId(requestedStudentId);
+            if (!studentExists(studentId)) {
+                throw new IllegalArgumentException("学生不存在，ID: " + studentId);
+            }
+            return studentId;
+        }, jdbcExecutor);
+        return catalogClient.getCourseAsync(courseId)
+                .thenCombine(studentCheck, (courseData, studentId) -> (Supplier<Enrollment>)
+                        () -> createEnrollment(courseId, studentId, courseData))
+                .thenApplyAsync(create -> transactionTemplate.execute(status -> create.get()), jdbcExecutor);
+    }
+
+    /**
+     * 按已获取的课程信息校验容量与重复选课，并写入选课记录（需在事务中调用）
+     */
+    private Enrollment createEnrollment(String courseId, String studentId, Map<String, Object> courseData) {
         // 2. 从响应中提取课程信息
-        if (courseResponse == null || courseResponse.get("data") == null) {
-            throw new RuntimeException("课程服务返回无效响应");
-        }
-        Map<String, Object> courseData = (Map<String, Object>) courseResponse.get("data");
         Integer capacity = (Integer) courseData.get("capacity");
-        Integer enrolled = (Integer) courseData.get("enrolled");
 
-        // 3. 检查课程容量
-        if (capacity == null || enrolled == null) {
+        if (capacity == null) {
             throw new RuntimeException("课程信息不完整，无法选课");
         }
-        if (enrolled >= capacity) {
-            throw new IllegalArgumentException("课程容量已满，无法选课");
+        if (waitlistService.hasWaiting(courseId)) {
+            // 有学生在候补时，释放的名额留给候补学生
+            throw new CourseFullException(courseId);
         }
 
-        // 4. 检查重复选课
-        if (enrollmentRepository.existsByCourseIdAndStudentIdAndStatusNot(courseId, studentId, EnrollmentStatus.WITHDRAWN)) {
+        // 3. 检查重复选课；曾经退课的记录在占座后重新激活
+        Optional<Enrollment> existing = enrollmentRepository.findByCourseIdAndStudentId(courseId, studentId);
+        if (existing.isPresent() && !EnrollmentStatus.WITHDRAWN.equals(existing.get().getStatus())) {
             throw new IllegalArgumentException("学生已选该课程，无法重复选课");
         }
 
-        // 5. 创建选课记录
-        Enrollment enrollment = new Enrollment(courseId, studentId);
-        Enrollment savedEnrollment = enrollmentRepository.save(enrollment);
+        // 4. 占用名额（锁定课程计数行后判断，已选人数以本地计数为准，课程服务中的 enrolled 为异步同步的副本）
+        if (enrollmentCounterService.reserveSeats(courseId, 1, capacity) == 0) {
+            throw new CourseFullException(courseId);
+        }
+
+        // 5. 创建（或重新激活）选课记录
+        Enrollment savedEnrollment = enrollmentRepository.save(reactivateOrCreate(existing.orElse(null), courseId, studentId));
+        enrollmentJournal.record(savedEnrollment, EnrollmentEventType.ENROLLED);
+        activeEnrollmentFilter.add(courseId, studentId);
 
-        // 6. 更新课程的已选人数
-        updateCourseEnrolledCount(courseId, enrolled + 1);
+        // 6. 记录课程已选人数变更，由后台中继异步同步到课程服务；课程计数已在占座时累加
+        recordEnrolledDelta(courseId, 1);
+        enrollmentCounterService.apply(Map.of(), Map.of(studentId, 1));
 
         return savedEnrollment;
     }
 
     /**
-     * 更新课程的已选人数
+     * 批量选课
+     * 按课程分组处理：课程信息一次批量远程调用获取，重复选课用一次集合查询检查，
+     * 选课记录通过 JDBC 批量写入；单项失败不影响其他项
+     * @param items 选课项列表，每项包含 courseId 和 studentId
+     * @return 与输入顺序一致的逐项结果
      */
-    private void updateCourseEnrolledCount(String courseId, int newCount) {
-        String catalogServiceUrl = getCatalogServiceUrl();
-        String updateUrl = catalogServiceUrl + "/api/courses/" + courseId;
-        Map<String, Object> updateData = new HashMap<>();
-        Map<String, Object> courseData = new HashMap<>();
-        courseData.put("enrolled", newCount);
-        updateData.put("data", courseData);
-        
-        try {
-            restTemplate.put(updateUrl, updateData);
-        } catch (Exception e) {
-            // 记录日志但不影响主流程
-            System.err.println("Failed to update course enrolled count: " + e.getMessage());
+    @Transactional
+    public List<Map<String, Object>> enrollBatch(List<Map<String, String>> items) {
+        if (items == null || items.isEmpty()) {
+            throw new IllegalArgumentException("选课列表不能为空");
+        }
+        if (items.size() > MAX_BATCH_ITEMS) {
+            throw new IllegalArgumentException("单次批量选课不能超过" + MAX_BATCH_ITEMS + "条");
+        }
+
+        List<EnrollmentOutcome> outcomes = enrollAll(items);
+        List<Map<String, Object>> results = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            Map<String, String> item = items.get(i) != null ? items.get(i) : Map.of();
+            EnrollmentOutcome outcome = outcomes.get(i);
+            Map<String, Object> result = new HashMap<>();
+            result.put("index", i);
+            result.put("courseId", item.get("courseId"));
+            result.put("studentId", item.get("studentId"));
+            result.put("success", outcome.succeeded());
+            if (outcome.succeeded()) {
+                result.put("message", "选课成功");
+                result.put("enrollmentId", outcome.enrollment().getId());
+            } else {
+                result.put("message", outcome.failure().getMessage());
+            }
+            results.add(result);
+        }
+        return results;
+    }
+
+    /**
+     * 在同一事务中处理一组选课请求（批量选课与合并提交共用）
+     * 学生与课程各用一次批量查询校验，通过校验的选课项按课程一次占用名额（按课程ID顺序加锁，避免死锁），
+     * 选课记录通过 JDBC 批量写入，每门课程只记录一条人数变更；单项失败不影响其他项
+     * @param items 选课项列表，每项包含 courseId 和 studentId
+     * @return 与输入顺序一致的逐项结果
+     */
+    @Transactional
+    public List<EnrollmentOutcome> enrollAll(List<Map<String, String>> requestedItems) {
+        EnrollmentOutcome[] outcomes = new EnrollmentOutcome[requestedItems.size()];
+        List<Map<String, String>> items = new ArrayList<>(requestedItems.size());
+        for (int i = 0; i < requestedItems.size(); i++) {
+            Map<String, String> item = requestedItems.get(i);
+            Map<String, String> normalized = new HashMap<>();
+            if (item != null) {
+                try {
+                    normalized.put("courseId", toEnrollmentCourseId(item.get("courseId")));
+                    normalized.put("studentId", toEnrollmentStudentId(item.get("studentId")));
+                } catch (IllegalArgumentException e) {
+                    outcomes[i] = EnrollmentOutcome.failed(e);
+                }
+            }
+            items.add(normalized);
+        }
+        Set<String> courseIds = new HashSet<>();
+        Set<String> studentIds = new HashSet<>();
+        for (int i = 0; i < items.size(); i++) {
+            if (outcomes[i] != null) {
+                continue;
+            }
+            Map<String, String> item = items.get(i);
+            String courseId = item.get("courseId");
+            String studentId = item.get("studentId");
+            if (!StringUtils.hasText(courseId) || !StringUtils.hasText(studentId)) {
+                outcomes[i] = EnrollmentOutcome.failed(new IllegalArgumentException("courseId 和 studentId 不能为空"));
+                continue;
+            }
+            courseIds.add(courseId);
+            studentIds.add(studentId);
+        }
+        if (courseIds.isEmpty()) {
+            return List.of(outcomes);
+        }
+
+        // 1. 批量校验学生与课程
+        Set<String> existingStudents = studentService.findExistingStudentIdentifiers(studentIds);
+        Map<String, Map<String, Object>> courses = catalogClient.getCourses(courseIds);
+
+        // 2. 一次集合查询取出已有的 (courseId, studentId) 记录
+        Map<String, Enrollment> existingEnrollments = new HashMap<>();
+        List<String> studentIdList = new ArrayList<>(studentIds);
+        for (int from = 0; from < studentIdList.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            List<String> chunk = studentIdList.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, studentIdList.size()));
+            for (Enrollment enrollment : enrollmentRepository.findByCourseIdInAndStudentIdIn(courseIds, chunk)) {
+                existingEnrollments.put(enrollmentKey(enrollment.getCourseId(), enrollment.getStudentId()), enrollment);
+            }
+        }
+
+        // 3. 逐项校验，通过的选课项按课程分组等待占座
+        Map<String, List<Integer>> candidatesByCourse = new TreeMap<>();
+        Set<String> seenInBatch = new HashSet<>();
+        for (int i = 0; i < items.size(); i++) {
+            if (outcomes[i] != null) {
+                continue;
+            }
+            String courseId = items.get(i).get("courseId");
+            String studentId = items.get(i).get("studentId");
+            String key = enrollmentKey(courseId, studentId);
+
+            if (!seenInBatch.add(key)) {
+                outcomes[i] = EnrollmentOutcome.failed(new IllegalArgumentException("请求中存在重复的选课项"));
+                continue;
+            }
+            if (!existingStudents.contains(studentId)) {
+                outcomes[i] = EnrollmentOutcome.failed(new IllegalArgumentException("学生不存在，ID: " + studentId));
+                continue;
+            }
+            if (!courses.containsKey(courseId)) {
+                outcomes[i] = EnrollmentOutcome.failed(new CourseNotFoundException(courseId));
+                continue;
+            }
+            Enrollment existing = existingEnrollments.get(key);
+            if (existing != null && !EnrollmentStatus.WITHDRAWN.equals(existing.getStatus())) {
+                outcomes[i] = EnrollmentOutcome.failed(new IllegalArgumentException("学生已选该课程，无法重复选课"));
+                continue;
+            }
+            candidatesByCourse.computeIfAbsent(courseId, k -> new ArrayList<>()).add(i);
+        }
+
+        // 4. 按课程占用名额，名额不足时按请求顺序先到先得
+        List<Enrollment> toSave = new ArrayList<>();
+        List<Integer> acceptedIndexes = new ArrayList<>();
+        Map<String, Integer> deltas = new HashMap<>();
+        for (Map.Entry<String, List<Integer>> entry : candidatesByCourse.entrySet()) {
+            String courseId = entry.getKey();
+            List<Integer> candidates = entry.getValue();
+            Object capacity = courses.get(courseId).get("capacity");
+            int granted = 0;
+            if (capacity instanceof Number && !waitlistService.hasWaiting(courseId)) {
+                granted = enrollmentCounterService.reserveSeats(courseId, candidates.size(), ((Number) capacity).longValue());
+            }
+            for (int n = 0; n < candidates.size(); n++) {
+                int i = candidates.get(n);
+                if (n >= granted) {
+                    outcomes[i] = EnrollmentOutcome.failed(new CourseFullException(courseId));
+                    continue;
+                }
+                String studentId = items.get(i).get("studentId");
+                toSave.add(reactivateOrCreate(existingEnrollments.get(enrollmentKey(courseId, studentId)), courseId, studentId));
+                acceptedIndexes.add(i);
+            }
+            if (granted > 0) {
+                deltas.put(courseId, granted);
+            }
+        }
+
+        // 5. 批量写入，并为每门课程记录一条人数变更
+        List<Enrollment> saved = enrollmentRepository.saveAll(toSave);
+        enrollmentJournal.recordAll(saved, EnrollmentEventType.ENROLLED);
+        Map<String, Integer> studentDeltas = new HashMap<>();
+        for (int i = 0; i < saved.size(); i++) {
+            outcomes[acceptedIndexes.get(i)] = EnrollmentOutcome.enrolled(saved.get(i));
+            activeEnrollmentFilter.add(saved.get(i).getCourseId(), saved.get(i).getStudentId());
+            studentDeltas.merge(saved.get(i).getStudentId(), 1, Integer::sum);
+        }
+        deltas.forEach(this::recordEnrolledDelta);
+        enrollmentCounterService.apply(Map.of(), studentDeltas);
+
+        return List.of(outcomes);
+    }
+
+    /**
+     * 转换为选课记录中保存的课程ID（UUID 转为小写；binary-ids 配置下只接受 UUID）
+     */
+    private String toEnrollmentCourseId(String courseId) {
+        return studentIdentityResolver.toEnrollmentCourseId(courseId);
+    }
+
+    /**
+     * 转换为选课记录中保存的学生ID（UUID 转为小写；binary-ids 配置下学号换成学生的 UUID）
+     */
+    private String toEnrollmentStudentId(String studentId) {
+        return studentIdentityResolver.toEnrollmentStudentId(studentId);
+    }
+
+    /**
+     * 重新激活曾经退课的选课记录（避免违反 (course_id, student_id) 唯一约束），没有记录时新建
+     * @param existing 已有的已退课记录，没有时为 null
+     */
+    private static Enrollment reactivateOrCreate(Enrollment existing, String courseId, String studentId) {
+        if (existing == null) {
+            return new Enrollment(courseId, studentId);
+        }
+        existing.setStatus(EnrollmentStatus.ENROLLED);
+        existing.setGrade(null);
+        return existing;
+    }
+
+    /**
+     * 生成 (courseId, studentId) 组合键
+     */
+    private static String enrollmentKey(String courseId, String studentId) {
+        return courseId + '|' + studentId;
+    }
+
+    /**
+     * 候补递补选课
+     * 与普通选课一样先占用名额，再创建（或重新激活）选课记录
+     * @param courseId 课程ID
+     * @param studentId 学生ID
+     * @param capacity 课程容量
+     * @return 如果成功选课返回true，学生已选该课程时返回false
+     * @throws CourseFullException 没有剩余名额时抛出
+     */
+    @Transactional
+    public boolean enrollFromWaitlist(String requestedCourseId, String requestedStudentId, long capacity) {
+        String courseId = toEnrollmentCourseId(requestedCourseId);
+        String studentId = toEnrollmentStudentId(requestedStudentId);
+        Optional<Enrollment> existing = enrollmentRepository.findByCourseIdAndStudentId(courseId, studentId);
+        if (existing.isPresent() && !EnrollmentStatus.WITHDRAWN.equals(existing.get().getStatus())) {
+            return false;
+        }
+        if (enrollmentCounterService.reserveSeats(courseId, 1, capacity) == 0) {
+            throw new CourseFullException(courseId);
+        }
+        Enrollment saved = enrollmentRepository.save(reactivateOrCreate(existing.orElse(null), courseId, studentId));
+        enrollmentJournal.record(saved, EnrollmentEventType.ENROLLED);
+        recordEnrolledDelta(courseId, 1);
+        enrollmentCounterService.apply(Map.of(), Map.of(studentId, 1));
+        activeEnrollmentFilter.add(courseId, studentId);
+        return true;
+    }
+
+    /**
+     * 记录课程已选人数变更
+     * 写入发件箱表，与选课记录处于同一事务，由 CourseCountOutboxRelay 批量同步到课程服务；
+     * 名额减少时发布名额释放事件，事务提交后触发候补递补
+     */
+    private void recordEnrolledDelta(String courseId, int delta) {
+        outboxRepository.save(new CourseCountOutbox(courseId, delta));
+        if (delta < 0) {
+            eventPublisher.publishEvent(new SeatReleasedEvent(courseId));
         }
     }
 
@@ -472,9 +974,11 @@ public class EnrollmentService {
      * 学生退课（完善版）
      */
     @Transactional
-    public boolean withdrawCourse(String courseId, String studentId) {
+    public boolean withdrawCourse(String requestedCourseId, String requestedStudentId) {
         // 验证输入参数
-        validateCourseAndStudentIds(courseId, studentId);
+        validateCourseAndStudentIds(requestedCourseId, requestedStudentId);
+        String courseId = toEnrollmentCourseId(requestedCourseId);
+        String studentId = toEnrollmentStudentId(requestedStudentId);
 
         Optional<Enrollment> enrollment = enrollmentRepository.findByCourseIdAndStudentId(courseId, studentId);
 
@@ -483,26 +987,13 @@ public class EnrollmentService {
             // 检查是否可以退课
             if (canWithdrawCourse(enroll)) {
                 enroll.setStatus(EnrollmentStatus.WITHDRAWN);
-                enrollmentRepository.save(enroll);
-
-                // 调用课程目录服务获取当前课程信息
-            String catalogServiceUrl = getCatalogServiceUrl();
-            String courseUrl = catalogServiceUrl + "/api/courses/" + courseId;
-            Map<String, Object> courseResponse;
-            try {
-                courseResponse = restTemplate.getForObject(courseUrl, Map.class);
-                Map<String, Object> courseData = (Map<String, Object>) courseResponse.get("data");
-                Integer enrolled = (Integer) courseData.get("enrolled");
-                
-                // 减少课程选课人数
-                updateCourseEnrolledCount(courseId, enrolled - 1);
-            } catch (HttpClientErrorException.NotFound e) {
-                // 课程不存在时，记录日志但不影响主流程
-                System.err.println("Course not found during withdraw: " + courseId + " - " + e.getMessage());
-            } catch (Exception e) {
-                // 其他异常，记录日志但不影响主流程
-                System.err.println("Failed to update course enrolled count during withdraw: " + e.getMessage());
-            }
+                Enrollment saved = enrollmentRepository.save(enroll);
+                enrollmentJournal.record(saved, EnrollmentEventType.WITHDRAWN);
+
+                // 减少课程选课人数（异步同步到课程服务）
+                recordEnrolledDelta(courseId, -1);
+                enrollmentCounterService.recordChange(courseId, studentId, -1);
+                activeEnrollmentFilter.remove(courseId, studentId);
 
                 return true;
             } else {
@@ -513,4 +1004,21 @@ public class EnrollmentService {
         return false;
     }
 
-}
\ No newline at end of file
+    /**
+     * 批量选课中单项的处理结果：成功时为选课记录，失败时为对应的业务异常
+     */
+    public record EnrollmentOutcome(Enrollment enrollment, RuntimeException failure) {
+
+        static EnrollmentOutcome enrolled(Enrollment enrollment) {
+            return new EnrollmentOutcome(enrollment, null);
+        }
+
+        static EnrollmentOutcome failed(RuntimeException failure) {
+            return new EnrollmentOutcome(null, failure);
+        }
+
+        public boolean succeeded() {
+            return failure == null;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import com.zjgsu.ms.hxy.enrollment.model.Enrollment;
+import com.zjgsu.ms.hxy.enrollment.model.EnrollmentEventType;
+import com.zjgsu.ms.hxy.enrollment.model.EnrollmentStatus;
+import com.zjgsu.ms.hxy.enrollment.repository.EnrollmentRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * GradeImportService 类
+ * 成绩批量导入：逐行读取（CSV 以 CsvRecordReader 流式解析，不把整份文件读入内存），
+ * 按块校验格式、分数范围、文件内重复以及选课记录是否存在且可评分，校验通过的块立即写入；
+ * 写入由 Hibernate JDBC 批处理合并为批量 UPDATE，每块写入后清空持久化上下文
+ * 整个导入在一个事务中完成：任何一行校验失败后停止写入、继续校验剩余行，最后回滚，不留下部分写入的成绩
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Service
+public class GradeImportService {
+
+    private final EnrollmentRepository enrollmentRepository;
+    private final GradeSummaryService gradeSummaryService;
+    private final CourseStatisticsService courseStatisticsService;
+    private final EnrollmentJournal enrollmentJournal;
+    private final StudentIdentityResolver studentIdentityResolver;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * 单次导入的最大行数
+     */
+    private final int maxRows;
+
+    /**
+     * 每块处理的行数（与 hibernate.jdbc.batch_size 一致时每块一次批量提交）
+     */
+    private final int chunkSize;
+
+    public GradeImportService(EnrollmentRepository enrollmentRepository,
+                              GradeSummaryService gradeSummaryService,
+                              CourseStatisticsService courseStatisticsService,
+                              EnrollmentJournal enrollmentJournal,
+                              StudentIdentityResolver studentIdentityResolver,
+                              @Value("${enrollment.grade-import.max-rows:500000}") int maxRows,
+                              @Value("${enrollment.grade-import.chunk-size:500}") int chunkSize) {
+        this.enrollmentRepository = enrollmentRepository;
+        this.gradeSummaryService = gradeSummaryService;
+        this.courseStatisticsService = courseStatisticsService;
+        this.enrollmentJournal = enrollmentJournal;
+        this.studentIdentityResolver = studentIdentityResolver;
+        this.maxRows = maxRows;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * 导入 CSV 成绩文件，每行为 courseId,studentId,grade，首行可以是表头
+     * @param input CSV 内容（UTF-8）
+     * @return 导入结果
+     * @throws IllegalArgumentException 文件为空、超过行数限制或 CSV 格式无法解析时抛出（整体回滚）
+     */
+    @Transactional(rollbackFor = IOException.class)
+    public GradeImportResult importCsv(InputStream input) throws IOException {
+        try (CsvRecordReader reader = new CsvRecordReader(input, "courseId")) {
+            return importRows(CsvImportSupport.fromCsv(reader, maxRows, record -> record.size() == 3
+                    ? new GradeRow(record.line(), record.field(0), record.field(1), record.field(2))
+                    : new GradeRow(record.line(), null, null, null)));
+        }
+    }
+
+    /**
+     * 导入 JSON 请求中的成绩列表
+     * @param items 每项包含 courseId、studentId、grade，行号为列表下标（从 1 开始）
+     * @return 导入结果
+     */
+    @Transactional
+    public GradeImportResult importItems(List<Map<String, Object>> items) {
+        if (items == null) {
+            throw new IllegalArgumentException("成绩列表不能为空");
+        }
+        try {
+            return importRows(CsvImportSupport.fromItems(items, maxRows, (line, item) -> new GradeRow(line,
+                    CsvImportSupport.textOf(item.get("courseId")), CsvImportSupport.textOf(item.get("studentId")),
+                    CsvImportSupport.textOf(item.get("grade")))));
+        } catch (IOException e) {
+            // 列表来源不会抛出 IOException
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 逐行导入：行内校验后攒成块，按块查询选课记录；出现第一个错误之前，校验通过的块直接写入
+     */
+    private GradeImportResult importRows(CsvImportSupport.RowSource<GradeRow> source) throws IOException {
+        ImportProgress progress = new ImportProgress();
+        Map<String, Integer> firstLineByKey = new HashMap<>();
+        List<ValidRow> chunk = new ArrayList<>(chunkSize);
+        GradeRow row;
+        while ((row = source.next()) != null) {
+            progress.total++;
+            ValidRow valid = validate(row, firstLineByKey, progress);
+            if (valid == null) {
+                continue;
+            }
+            chunk.add(valid);
+            if (chunk.size() >= chunkSize) {
+                processChunk(chunk, progress);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            processChunk(chunk, progress);
+        }
+        if (progress.total == 0) {
+            throw new IllegalArgumentException("成绩数据不能为空");
+        }
+
+        if (!progress.errors.isEmpty()) {
+            // 已写入的块随事务回滚
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            progress.errors.sort(Comparator.comparingInt(error -> error.row().line()));
+            return new GradeImportResult(false, progress.total, 0, progress.errors);
+        }
+        gradeSummaryService.apply(progress.deltas);
+        progress.touchedCourses.forEach(courseStatisticsService::invalidate);
+        return new GradeImportResult(true, progress.total, progress.updated, List.of());
+    }
+
+    /**
+     * 行内校验与文件内重复检查；课程ID与学生ID转换为选课记录中保存的形式，
+     * 大小写不同的同一 UUID 视为同一选课
+     * @return 校验通过的行，失败时记录错误并返回null
+     */
+    private ValidRow validate(GradeRow row, Map<String, Integer> firstLineByKey, ImportProgress progress) {
+        if (!StringUtils.hasText(row.courseId()) || !StringUtils.hasText(row.studentId())
+                || !StringUtils.hasText(row.grade())) {
+            progress.fail(row, "格式错误，应为 courseId,studentId,grade");
+            return null;
+        }
+        if (!studentIdentityResolver.isEnrollmentIdStorable(row.courseId())
+                || !studentIdentityResolver.isEnrollmentIdStorable(row.studentId())) {
+            // binary-ids 配置下选课记录只保存 UUID，学号等其他格式无法匹配
+            progress.fail(row, "课程ID与学生ID必须是UUID");
+            return null;
+        }
+        double grade;
+        try {
+            grade = Double.parseDouble(row.grade());
+        } catch (NumberFormatException e) {
+            progress.fail(row, "成绩不是数字: " + row.grade());
+            return null;
+        }
+        if (!(grade >= 0.0 && grade <= 100.0)) {
+            progress.fail(row, "成绩必须在0-100之间");
+            return null;
+        }
+        String courseId = studentIdentityResolver.toEnrollmentCourseId(row.courseId());
+        String studentId = studentIdentityResolver.toEnrollmentStudentId(row.studentId());
+        Integer firstLine = firstLineByKey.putIfAbsent(enrollmentKey(courseId, studentId), row.line());
+        if (firstLine != null) {
+            progress.fail(row, "与第 " + firstLine + " 行重复");
+            return null;
+        }
+        return new ValidRow(row, courseId, studentId, grade);
+    }
+
+    /**
+     * 校验并写入一块：按课程分组，每门课程一次查询（成绩文件通常按课程组织，一块只涉及少数课程）；
+     * 已有错误时只查询状态做校验，不再加载实体与写入
+     */
+    private void processChunk(List<ValidRow> chunk, ImportProgress progress) {
+        Map<String, List<ValidRow>> byCourse = new LinkedHashMap<>();
+        for (ValidRow valid : chunk) {
+            byCourse.computeIfAbsent(valid.courseId(), k -> new ArrayList<>()).add(valid);
+        }
+
+        List<Enrollment> updated = new ArrayList<>(chunk.size());
+        for (Map.Entry<String, List<ValidRow>> entry : byCourse.entrySet()) {
+            List<ValidRow> rows = entry.getValue();
+            Set<String> studentIds = new HashSet<>();
+            rows.forEach(valid -> studentIds.add(valid.studentId()));
+
+            if (!progress.errors.isEmpty()) {
+                Map<String, EnrollmentStatus> statuses = new HashMap<>();
+                for (Object[] record : enrollmentRepository.findStatusByCourseIdInAndStudentIdIn(
+                        List.of(entry.getKey()), studentIds)) {
+                    statuses.put((String) record[1], (EnrollmentStatus) record[2]);
+                }
+                for (ValidRow valid : rows) {
+                    checkGradeable(valid.row(), statuses.get(valid.studentId()), progress);
+                }
+                continue;
+            }
+
+            Map<String, Enrollment> enrollments = new HashMap<>();
+            for (Enrollment enrollment : enrollmentRepository.findByCourseIdInAndStudentIdIn(
+                    List.of(entry.getKey()), studentIds)) {
+                enrollments.put(enrollment.getStudentId(), enrollment);
+            }
+            for (ValidRow valid : rows) {
+                Enrollment enrollment = enrollments.get(valid.studentId());
+                if (!checkGradeable(valid.row(), enrollment != null ? enrollment.getStatus() : null, progress)
+                        || !progress.errors.isEmpty()) {
+                    continue;
+                }
+                if (EnrollmentStatus.COMPLETED.equals(enrollment.getStatus())) {
+                    progress.deltas.add(enrollment.getStudentId(), enrollment.getGrade(), valid.grade());
+                }
+                enrollment.setGrade(valid.grade());
+                progress.touchedCourses.add(enrollment.getCourseId());
+                updated.add(enrollment);
+            }
+        }
+
+        if (progress.errors.isEmpty()) {
+            enrollmentJournal.recordAll(updated, EnrollmentEventType.GRADE_UPDATED);
+            progress.updated += updated.size();
+            entityManager.flush();
+        }
+        entityManager.clear();
+    }
+
+    private static boolean checkGradeable(GradeRow row, EnrollmentStatus status, ImportProgress progress) {
+        if (status == null) {
+            progress.fail(row, "选课记录不存在");
+            return false;
+        }
+        if (!isGradeable(status)) {
+            progress.fail(row, "当前无法更新成绩，选课状态为: " + status);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 只有在课程进行中或已完成的状态下才能更新成绩（与 EnrollmentService 一致）
+     */
+    private static boolean isGradeable(EnrollmentStatus status) {
+        return EnrollmentStatus.ENROLLED.equals(status) || EnrollmentStatus.COMPLETED.equals(status);
+    }
+
+    private static String enrollmentKey(String courseId, String studentId) {
+        return courseId + '|' + studentId;
+    }
+
+    /**
+     * 通过行内校验的一行：选课记录中保存形式的课程ID与学生ID，以及解析后的成绩
+     */
+    private record ValidRow(GradeRow row, String courseId, String studentId, double grade) {
+    }
+
+    /**
+     * 导入过程中累计的状态：只保留失败的行，通过的行处理后即丢弃
+     */
+    private static final class ImportProgress {
+        private final List<RowError> errors = new ArrayList<>();
+        private final GradeSummaryService.GradeDeltas deltas = new GradeSummaryService.GradeDeltas();
+        private final Set<String> touchedCourses = new HashSet<>();
+        private int total;
+        private int updated;
+
+        void fail(GradeRow row, String message) {
+            errors.add(new RowError(row, message));
+        }
+    }
+
+    /**
+     * 待导入的一行成绩，grade 保留原文以便报告格式错误
+     */
+    public record GradeRow(int line, String courseId, String studentId, String grade) {
+    }
+
+    /**
+     * 校验失败的一行及原因
+     */
+    public record RowError(GradeRow row, String message) {
+    }
+
+    /**
+     * 导入结果：applied 为 false 时没有写入任何成绩，errors 为全部校验失败的行（按行号排序）
+     */
+    public record GradeImportResult(boolean applied, int total, int updated, List<RowError> errors) {
+
+        public int failed() {
+            return errors.size();
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import com.zjgsu.ms.hxy.enrollment.client.CatalogClient;
+import com.zjgsu.ms.hxy.enrollment.model.Enrollment;
+import com.zjgsu.ms.hxy.enrollment.model.EnrollmentStatus;
+import com.zjgsu.ms.hxy.enrollment.model.Student;
+import com.zjgsu.ms.hxy.enrollment.model.StudentGradeSummary;
+import com.zjgsu.ms.hxy.enrollment.repository.EnrollmentRepository;
+import com.zjgsu.ms.hxy.enrollment.repository.StudentGradeSummaryRepository;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * GradeSummaryService 类
+ * 维护学生成绩汇总（student_grade_summaries）：选课的成绩或状态变更时计算对汇总的增量，
+ * 以原子 UPDATE 累加；汇总尚不存在时由分组查询从选课记录计算完整值后写入
+ * 只有 COMPLETED 且有成绩的选课计入平均成绩，COMPLETED 的选课计入已修学分
+ * 学分在选课完成时快照到选课记录（completedCredits），撤销完成或删除时扣减快照值；
+ * 完成时课程服务不可用则不快照，汇总标记为待重建，不影响选课记录的修改
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Service
+public class GradeSummaryService {
+
+    /**
+     * IN 子句单次携带的最大参数个数
+     */
+    private static final int IN_CLAUSE_CHUNK_SIZE = 1000;
+
+    private final StudentGradeSummaryRepository summaryRepository;
+    private final EnrollmentRepository enrollmentRepository;
+    private final CatalogClient catalogClient;
+    private final StudentIdentityResolver studentIdentityResolver;
+
+    public GradeSummaryService(StudentGradeSummaryRepository summaryRepository,
+                               EnrollmentRepository enrollmentRepository,
+                               CatalogClient catalogClient,
+                               StudentIdentityResolver studentIdentityResolver) {
+        this.summaryRepository = summaryRepository;
+        this.enrollmentRepository = enrollmentRepository;
+        this.catalogClient = catalogClient;
+        this.studentIdentityResolver = studentIdentityResolver;
+    }
+
+    /**
+     * 记录单条选课的状态或成绩变更（需在修改选课记录的事务中调用）
+     * 进入 COMPLETED 时把课程学分快照到选课记录，离开 COMPLETED 时扣减快照值；
+     * 学分无法确定时（课程服务不可用或记录没有快照）只把汇总标记为待重建，不抛出异常
+     * @param enrollment 选课记录（删除时为已删除的记录）
+     * @param oldStatus 变更前状态，新建时为null
+     * @param oldGrade 变更前成绩
+     * @param newStatus 变更后状态，删除时为null
+     * @param newGrade 变更后成绩
+     */
+    public void recordChange(Enrollment enrollment,
+                             EnrollmentStatus oldStatus, Double oldGrade,
+                             EnrollmentStatus newStatus, Double newGrade) {
+        String studentId = enrollment.getStudentId();
+        boolean wasCompleted = EnrollmentStatus.COMPLETED.equals(oldStatus);
+        boolean isCompleted = EnrollmentStatus.COMPLETED.equals(newStatus);
+        GradeDeltas deltas = new GradeDeltas();
+        deltas.add(studentId, wasCompleted ? oldGrade : null, isCompleted ? newGrade : null);
+
+        Integer credits = null;
+        if (!wasCompleted && isCompleted) {
+            credits = fetchCredits(enrollment.getCourseId());
+            enrollment.setCompletedCredits(credits);
+        } else if (wasCompleted && !isCompleted) {
+            credits = enrollment.getCompletedCredits() != null ? -enrollment.getCompletedCredits() : null;
+            if (newStatus != null) {
+                enrollment.setCompletedCredits(null);
+            }
+        }
+        if (wasCompleted != isCompleted) {
+            if (credits == null) {
+                summaryRepository.invalidate(studentId);
+                return;
+            }
+            deltas.addCredits(studentId, credits);
+        }
+        apply(deltas);
+    }
+
+    /**
+     * 批量应用成绩变更，每个学生只执行一次更新
+     * 汇总不存在（首次变更或已标记待重建）时按选课记录计算完整值后 INSERT；
+     * 与并发的查询同时建立汇总时 INSERT 因主键冲突失败，当前事务回滚，由调用方重试
+     * @param deltas 按学生累计的增量
+     */
+    public void apply(GradeDeltas deltas) {
+        for (Map.Entry<String, long[]> entry : deltas.counts.entrySet()) {
+            String studentId = entry.getKey();
+            long countDelta = entry.getValue()[0];
+            long creditsDelta = entry.getValue()[1];
+            double sumDelta = deltas.sums.getOrDefault(studentId, 0.0);
+            if (countDelta == 0 && sumDelta == 0 && creditsDelta == 0) {
+                continue;
+            }
+            if (summaryRepository.applyDelta(studentId, countDelta, sumDelta, creditsDelta) == 0) {
+                // 选课记录已包含本次变更；学分无法确定时不写入，留待查询时重建
+                ComputedSummaries computed = computeFromEnrollments(List.of(studentId));
+                if (computed.creditsComplete()) {
+                    summaryRepository.saveAndFlush(computed.summaries().get(studentId));
+                }
+            }
+        }
+    }
+
+    /**
+     * 批量查询学生的成绩汇总
+     * 学生的选课可能以 UUID 或学号记录，两者的汇总合并计算
+     * @param students 学生列表
+     * @return 学生 UUID -> 成绩汇总
+     */
+    public Map<UUID, Map<String, Object>> getGpa(Collection<Student> students) {
+        Set<String> identifiers = new LinkedHashSet<>();
+        for (Student student : students) {
+            identifiers.addAll(identifiersOf(student));
+        }
+        Map<String, StudentGradeSummary> summaries = getSummaries(identifiers);
+
+        Map<UUID, Map<String, Object>> result = new LinkedHashMap<>();
+        for (Student student : students) {
+            long gradedCount = 0;
+            double gradeSum = 0;
+            long completedCredits = 0;
+            for (String identifier : identifiersOf(student)) {
+                StudentGradeSummary summary = summaries.get(identifier);
+                if (summary != null) {
+                    gradedCount += summary.getGradedCount();
+                    gradeSum += summary.getGradeSum();
+                    completedCredits += summary.getCompletedCredits();
+                }
+            }
+            Map<String, Object> gpa = new HashMap<>();
+            gpa.put("id", student.getId());
+            gpa.put("studentId", student.getStudentId());
+            gpa.put("gradedCourses", gradedCount);
+            gpa.put("averageGrade", gradedCount > 0 ? gradeSum / gradedCount : null);
+            gpa.put("completedCredits", completedCredits);
+            result.put(student.getId(), gpa);
+        }
+        return result;
+    }
+
+    /**
+     * 读取汇总；尚未建立汇总的学生按选课记录计算后写入（学分无法确定时只返回、不写入）
+     */
+    private Map<String, StudentGradeSummary> getSummaries(Collection<String> studentIds) {
+        Map<String, StudentGradeSummary> summaries = new HashMap<>();
+        summaryRepository.findAllById(studentIds).forEach(summary -> summaries.put(summary.getStudentId(), summary));
+
+        List<String> missing = studentIds.stream().filter(id -> !summaries.containsKey(id)).toList();
+        if (!missing.isEmpty()) {
+            ComputedSummaries computed = computeFromEnrollments(missing);
+            for (StudentGradeSummary summary : computed.summaries().values()) {
+                if (!computed.creditsComplete()) {
+                    summaries.put(summary.getStudentId(), summary);
+                    continue;
+                }
+                try {
+                    // 新记录执行 INSERT，不会覆盖并发建立的汇总
+                    summaries.put(summary.getStudentId(), summaryRepository.saveAndFlush(summary));
+                } catch (DataIntegrityViolationException e) {
+                    // 并发的成绩变更已建立汇总，以已写入的为准
+                    summaries.put(summary.getStudentId(),
+                            summaryRepository.findById(summary.getStudentId()).orElse(summary));
+                }
+            }
+        }
+        return summaries;
+    }
+
+    /**
+     * 用分组查询从选课记录计算汇总：学分取选课记录中的快照，
+     * 没有快照的已完成选课（早于快照功能或完成时课程服务不可用）通过一次批量课程查询获取当前学分
+     */
+    private ComputedSummaries computeFromEnrollments(Collection<String> studentIds) {
+        Map<String, StudentGradeSummary> summaries = new HashMap<>();
+        for (String studentId : studentIds) {
+            summaries.put(studentId, new StudentGradeSummary(studentId, 0, 0, 0));
+        }
+
+        List<String> ids = new ArrayList<>(studentIds);
+        List<Object[]> completedCourses = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            List<String> chunk = ids.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, ids.size()));
+            for (Object[] row : enrollmentRepository.sumGradesGroupedByStudentIn(chunk, EnrollmentStatus.COMPLETED)) {
+                StudentGradeSummary summary = summaries.get((String) row[0]);
+                if (summary != null) {
+                    summary.setGradedCount(((Number) row[1]).longValue());
+                    summary.setGradeSum(((Number) row[2]).doubleValue());
+                }
+            }
+            completedCourses.addAll(enrollmentRepository.findCourseIdsByStudentIdInAndStatus(chunk, EnrollmentStatus.COMPLETED));
+        }
+
+        List<Object[]> withoutSnapshot = new ArrayList<>();
+        for (Object[] row : completedCourses) {
+            StudentGradeSummary summary = summaries.get((String) row[0]);
+            if (summary == null) {
+                continue;
+            }
+            if (row[2] instanceof Number credits) {
+                summary.setCompletedCredits(summary.getCompletedCredits() + credits.longValue());
+            } else {
+                withoutSnapshot.add(row);
+            }
+        }
+
+        if (!withoutSnapshot.isEmpty()) {
+            Set<String> courseIds = new HashSet<>();
+            withoutSnapshot.forEach(row -> courseIds.add((String) row[1]));
+            Map<String, Map<String, Object>> courses;
+            try {
+                courses = catalogClient.getCourses(courseIds);
+            } catch (RuntimeException e) {
+                System.err.println("获取课程学分失败，成绩汇总暂不写入: " + e.getMessage());
+                return new ComputedSummaries(summaries, false);
+            }
+            for (Object[] row : withoutSnapshot) {
+                StudentGradeSummary summary = summaries.get((String) row[0]);
+                summary.setCompletedCredits(summary.getCompletedCredits() + credits(courses.get((String) row[1])));
+            }
+        }
+        return new ComputedSummaries(summaries, true);
+    }
+
+    /**
+     * 查询课程当前学分，用于完成时的快照
+     * @return 学分（课程没有学分信息时为0），课程服务不可用或课程不存在时为null
+     */
+    private Integer fetchCredits(String courseId) {
+        try {
+            return (int) credits(catalogClient.getCourse(courseId));
+        } catch (RuntimeException e) {
+            System.err.println("获取课程学分失败，成绩汇总标记为待重建: courseId=" + courseId + ", " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static long credits(Map<String, Object> course) {
+        return course != null && course.get("credits") instanceof Number credits ? credits.longValue() : 0;
+    }
+
+    /**
+     * 学生在选课记录中可能使用的标识：UUID 与学号（binary-ids 配置下只有 UUID）
+     */
+    private List<String> identifiersOf(Student student) {
+        String id = student.getId().toString();
+        if (student.getStudentId() == null || student.getStudentId().equals(id)
+                || !studentIdentityResolver.isEnrollmentIdStorable(student.getStudentId())) {
+            return List.of(id);
+        }
+        return List.of(id, student.getStudentId());
+    }
+
+    /**
+     * 从选课记录计算的汇总；creditsComplete 为 false 时部分学分无法确定，汇总不应写入
+     */
+    private record ComputedSummaries(Map<String, StudentGradeSummary> summaries, boolean creditsComplete) {
+    }
+
+    /**
+     * 按学生累计的汇总增量（批量导入成绩时使用）
+     */
+    public static final class GradeDeltas {
+        /**
+         * studentId -> [有成绩课程数增量, 学分增量]
+         */
+        private final Map<String, long[]> counts = new HashMap<>();
+        private final Map<String, Double> sums = new HashMap<>();
+
+        /**
+         * 记录一条选课计入平均成绩的成绩变化
+         * @param studentId 学生ID
+         * @param oldGrade 变更前计入的成绩，未计入时为null
+         * @param newGrade 变更后计入的成绩，不计入时为null
+         */
+        public void add(String studentId, Double oldGrade, Double newGrade) {
+            long[] count = counts.computeIfAbsent(studentId, k -> new long[2]);
+            count[0] += (newGrade != null ? 1 : 0) - (oldGrade != null ? 1 : 0);
+            sums.merge(studentId, (newGrade != null ? newGrade : 0.0) - (oldGrade != null ? oldGrade : 0.0), Double::sum);
+        }
+
+        private void addCredits(String studentId, long creditsDelta) {
+            counts.computeIfAbsent(studentId, k -> new long[2])[1] += creditsDelta;
+        }
+    }
+}
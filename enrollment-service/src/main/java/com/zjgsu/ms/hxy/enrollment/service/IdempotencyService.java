@@ -0,0 +1,358 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zjgsu.ms.hxy.enrollment.model.IdempotencyRecord;
+import com.zjgsu.ms.hxy.enrollment.repository.IdempotencyRecordRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * IdempotencyService 类
+ * 处理带 Idempotency-Key 请求头的写请求：首次执行后保存响应，
+ * 重试时直接返回原响应而不重新执行业务逻辑
+ * 最近的记录保存在有界 LRU 中，其余从 idempotency_records 表读取；
+ * 执行前先以 INSERT 写入处理中的记录占用幂等键，插入因主键冲突失败说明其他请求（可能在其他实例上）
+ * 已占用该键：已完成时重放其响应，仍在处理时返回 409；
+ * 同一实例内同一幂等键的并发请求只执行一次，其余请求等待并共享结果
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Service
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 128;
+
+    private final IdempotencyRecordRepository recordRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * 记录保留时长（小时）
+     */
+    private final long ttlHours;
+
+    /**
+     * 处理中记录的有效时长（秒）：执行方异常退出时，超过该时长后幂等键可被重新占用
+     */
+    private final long claimTimeoutSeconds;
+
+    /**
+     * 最近使用的记录：作用域内的幂等键 -> 已保存的响应
+     */
+    private final Map<String, StoredResponse> recentResponses;
+
+    /**
+     * 进行中的请求：作用域内的幂等键 -> 正在执行的请求
+     */
+    private final Map<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter executedCounter;
+    private final Counter replayedCounter;
+
+    public IdempotencyService(IdempotencyRecordRepository recordRepository,
+                              ObjectMapper objectMapper,
+                              PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry,
+                              @Value("${enrollment.idempotency.ttl-hours:24}") long ttlHours,
+                              @Value("${enrollment.idempotency.claim-timeout-seconds:300}") long claimTimeoutSeconds,
+                              @Value("${enrollment.idempotency.cache-size:10000}") int cacheSize) {
+        this.recordRepository = recordRepository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ttlHours = ttlHours;
+        this.claimTimeoutSeconds = claimTimeoutSeconds;
+        this.recentResponses = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StoredResponse> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        this.executedCounter = Counter.builder("enrollment.idempotency.requests")
+                .description("带幂等键的写请求数")
+                .tag("outcome", "executed")
+                .register(meterRegistry);
+        this.replayedCounter = Counter.builder("enrollment.idempotency.requests")
+                .description("带幂等键的写请求数")
+                .tag("outcome", "replayed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 按幂等键执行写请求
+     * 未提供幂等键时直接执行；5xx 和 429 响应不会保存（释放占用），客户端可以用同一幂等键重试
+     * @param idempotencyKey 客户端提供的幂等键，可为空
+     * @param operation 操作名，幂等键在操作内唯一
+     * @param fingerprint 请求参数摘要，用于识别幂等键被复用于不同请求
+     * @param action 实际执行的请求处理
+     * @return 首次执行或重放的响应
+     */
+    public ResponseEntity<Map<String, Object>> execute(String idempotencyKey, String operation, String fingerprint,
+                                                       Supplier<ResponseEntity<Map<String, Object>>> action) {
+        if (!StringUtils.hasText(idempotencyKey)) {
+            return action.get();
+        }
+        if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+            return error(HttpStatus.BAD_REQUEST, HEADER + " 长度不能超过 " + MAX_KEY_LENGTH);
+        }
+
+        String recordKey = operation + ":" + idempotencyKey;
+        String requestHash = sha256(fingerprint);
+
+        StoredResponse stored = lookup(recordKey);
+        if (stored != null) {
+            return replay(stored, requestHash);
+        }
+
+        CompletableFuture<StoredResponse> call = new CompletableFuture<>();
+        CompletableFuture<StoredResponse> existing = inFlight.putIfAbsent(recordKey, call);
+        if (existing != null) {
+            // 同一幂等键的请求正在执行，等待其结果
+            StoredResponse shared = await(existing);
+            if (shared != null) {
+                return replay(shared, requestHash);
+            }
+            return error(HttpStatus.CONFLICT, "相同 " + HEADER + " 的请求执行失败，请重试");
+        }
+
+        try {
+            // 再次检查：可能在查询与登记之间刚刚完成
+            stored = lookup(recordKey);
+            if (stored != null) {
+                call.complete(stored);
+                return replay(stored, requestHash);
+            }
+
+            if (!claim(recordKey, requestHash)) {
+                // 幂等键已被其他请求占用：已完成时重放，仍在处理时拒绝
+                stored = lookup(recordKey);
+                call.complete(stored);
+                if (stored != null) {
+                    return replay(stored, requestHash);
+                }
+                return error(HttpStatus.CONFLICT, "相同 " + HEADER + " 的请求正在处理，请稍后重试");
+            }
+
+            ResponseEntity<Map<String, Object>> response;
+            try {
+                response = action.get();
+            } catch (RuntimeException e) {
+                release(recordKey);
+                throw e;
+            }
+            executedCounter.increment();
+            if (response.getStatusCode().is5xxServerError()
+                    || response.getStatusCode().value() == HttpStatus.TOO_MANY_REQUESTS.value()) {
+                release(recordKey);
+                call.complete(null);
+                return response;
+            }
+
+            stored = save(recordKey, requestHash, response);
+            call.complete(stored);
+            return response;
+        } catch (RuntimeException e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(recordKey, call);
+        }
+    }
+
+    /**
+     * 定时清理过期的幂等记录
+     */
+    @Scheduled(cron = "${enrollment.idempotency.purge-cron:0 0 * * * *}")
+    @Transactional
+    public void purgeExpired() {
+        recordRepository.deleteExpired(LocalDateTime.now());
+    }
+
+    /**
+     * 先查 LRU，再查数据库；只返回已完成的记录
+     */
+    private StoredResponse lookup(String recordKey) {
+        StoredResponse stored;
+        synchronized (recentResponses) {
+            stored = recentResponses.get(recordKey);
+        }
+        if (stored != null) {
+            if (!stored.isExpired()) {
+                return stored;
+            }
+            synchronized (recentResponses) {
+                recentResponses.remove(recordKey, stored);
+            }
+        }
+
+        IdempotencyRecord record = recordRepository.findById(recordKey).orElse(null);
+        if (record == null || record.isPending() || record.getExpiresAt().isBefore(LocalDateTime.now())) {
+            return null;
+        }
+        stored = new StoredResponse(record.getRequestHash(), record.getResponseStatus(),
+                readBody(record.getResponseBody()), record.getExpiresAt());
+        remember(recordKey, stored);
+        return stored;
+    }
+
+    /**
+     * 以 INSERT 写入处理中的记录占用幂等键
+     * 主键冲突时，如果已有的记录已过期（包括执行方异常退出后遗留的占用），删除后再尝试一次
+     * @return 是否占用成功
+     */
+    private boolean claim(String recordKey, String requestHash) {
+        if (insertPending(recordKey, requestHash)) {
+            return true;
+        }
+        Integer deleted = transactionTemplate.execute(status ->
+                recordRepository.deleteExpiredKey(recordKey, LocalDateTime.now()));
+        return deleted != null && deleted > 0 && insertPending(recordKey, requestHash);
+    }
+
+    private boolean insertPending(String recordKey, String requestHash) {
+        try {
+            recordRepository.saveAndFlush(new IdempotencyRecord(recordKey, requestHash,
+                    IdempotencyRecord.PENDING_STATUS, "{}", LocalDateTime.now().plusSeconds(claimTimeoutSeconds)));
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 释放占用，客户端可以用同一幂等键重试
+     */
+    private void release(String recordKey) {
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    recordRepository.deletePending(recordKey, IdempotencyRecord.PENDING_STATUS));
+        } catch (RuntimeException e) {
+            // 释放失败时占用在 claim-timeout-seconds 后过期
+            System.err.println("Failed to release idempotency key " + recordKey + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * 为占用的记录写入首次执行的响应
+     */
+    private StoredResponse save(String recordKey, String requestHash, ResponseEntity<Map<String, Object>> response) {
+        LocalDateTime expiresAt = LocalDateTime.now().plusHours(ttlHours);
+        String body = writeBody(response.getBody());
+        StoredResponse stored = new StoredResponse(requestHash, response.getStatusCode().value(),
+                readBody(body), expiresAt);
+        transactionTemplate.executeWithoutResult(status -> recordRepository.complete(recordKey,
+                IdempotencyRecord.PENDING_STATUS, stored.status, body, expiresAt));
+        remember(recordKey, stored);
+        return stored;
+    }
+
+    private void remember(String recordKey, StoredResponse stored) {
+        synchronized (recentResponses) {
+            recentResponses.put(recordKey, stored);
+        }
+    }
+
+    /**
+     * 重放已保存的响应；请求参数不一致时拒绝
+     */
+    private ResponseEntity<Map<String, Object>> replay(StoredResponse stored, String requestHash) {
+        if (!stored.requestHash.equals(requestHash)) {
+            return error(HttpStatus.UNPROCESSABLE_ENTITY, HEADER + " 已用于参数不同的请求");
+        }
+        replayedCounter.increment();
+        return ResponseEntity.status(stored.status)
+                .header(REPLAYED_HEADER, "true")
+                .body(stored.body);
+    }
+
+    private StoredResponse await(CompletableFuture<StoredResponse> call) {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            return null;
+        }
+    }
+
+    private ResponseEntity<Map<String, Object>> error(HttpStatus status, String message) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("code", status.value());
+        response.put("message", message);
+        response.put("data", null);
+        return ResponseEntity.status(status).body(response);
+    }
+
+    private String writeBody(Map<String, Object> body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("序列化响应失败: " + e.getMessage(), e);
+        }
+    }
+
+    private Map<String, Object> readBody(String body) {
+        try {
+            return objectMapper.readValue(body, new TypeReference<Map<String, Object>>() {});
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("解析已保存的响应失败: " + e.getMessage(), e);
+        }
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 已保存的响应
+     */
+    private static final class StoredResponse {
+        private final String requestHash;
+        private final int status;
+        private final Map<String, Object> body;
+        private final LocalDateTime expiresAt;
+
+        private StoredResponse(String requestHash, int status, Map<String, Object> body, LocalDateTime expiresAt) {
+            this.requestHash = requestHash;
+            this.status = status;
+            this.body = body;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return expiresAt.isBefore(LocalDateTime.now());
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * KeysetPage 类
+ * 按主键游标分页的一页结果：下一页从 nextCursor 之后开始读取，nextCursor 为空表示已是最后一页
+ * 游标分页以 WHERE id > :after ORDER BY id LIMIT n 读取，翻页代价与页码无关
+ *
+ * @param items 当前页记录
+ * @param nextCursor 下一页游标（当前页最后一条记录的ID）
+ * @param <T> 记录类型
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+public record KeysetPage<T>(List<T> items, UUID nextCursor) {
+
+    /**
+     * 单页最大条数
+     */
+    public static final int MAX_LIMIT = 5000;
+
+    /**
+     * 由多读取一条的查询结果构造一页：多出的一条存在时说明还有下一页
+     * @param fetched 按ID升序、最多 limit + 1 条的查询结果
+     * @param limit 每页条数
+     * @param idOf 取记录ID的函数
+     * @return 一页结果
+     */
+    public static <T> KeysetPage<T> of(List<T> fetched, int limit, Function<T, UUID> idOf) {
+        if (fetched.size() <= limit) {
+            return new KeysetPage<>(fetched, null);
+        }
+        List<T> items = fetched.subList(0, limit);
+        return new KeysetPage<>(items, idOf.apply(items.get(limit - 1)));
+    }
+
+    /**
+     * 校验每页条数
+     * @param limit 每页条数
+     * @throws IllegalArgumentException 如果超出 1 到 MAX_LIMIT 的范围
+     */
+    public static void checkLimit(int limit) {
+        if (limit <= 0 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("每页条数必须在1-" + MAX_LIMIT + "之间");
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * RebuildableSnapshot 类
+ * 由数据库表构建的内存快照（过滤器、映射、索引）的公共部分：
+ * 启动完成后在后台构建，事务提交后增量更新，并定时整体重建以清除累积的误差、同步其他实例的修改
+ * 重建时先发布新快照再读取，读取开始后提交的增量修改同时写入新旧快照，读取完成后替换当前快照
+ * 子类覆盖 rebuild() 并以 @Scheduled 声明各自的重建周期
+ *
+ * @param <S> 快照类型
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+public abstract class RebuildableSnapshot<S> {
+
+    private final String description;
+    private final String threadName;
+    private final boolean enabled;
+    private final TransactionTemplate readOnlyTransaction;
+
+    /**
+     * 当前使用的快照；为空表示尚未构建完成，此时调用方回退为查询数据库
+     */
+    private volatile S current;
+
+    /**
+     * 正在重建的快照；重建期间的增量修改同时写入，完成后替换 current
+     */
+    private volatile S rebuilding;
+
+    private final AtomicBoolean rebuildInProgress = new AtomicBoolean();
+
+    /**
+     * @param description 日志中的快照名称
+     * @param threadName 启动时构建快照的线程名
+     * @param transactionManager 事务管理器，读取在只读事务中进行
+     * @param enabled 未启用时不构建快照，也不做增量更新
+     */
+    protected RebuildableSnapshot(String description, String threadName,
+                                  PlatformTransactionManager transactionManager, boolean enabled) {
+        this.description = description;
+        this.threadName = threadName;
+        this.enabled = enabled;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * 启动完成后在后台构建快照，构建期间调用方直接查询数据库
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        Thread builder = new Thread(this::rebuild, threadName);
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    /**
+     * 整体重建快照；已有重建在进行时直接返回
+     */
+    public void rebuild() {
+        if (!enabled || !rebuildInProgress.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            S snapshot = createSnapshot();
+            // 先发布再读取：读取开始后提交的修改会同时写入新快照
+            rebuilding = snapshot;
+            long loaded = readOnlyTransaction.execute(status -> load(snapshot));
+            // 先替换 current 再清空 rebuilding，增量更新按相反顺序读取，保证不会漏写
+            current = snapshot;
+            rebuilding = null;
+            published(snapshot);
+            System.out.println("Rebuilt " + description + " with " + loaded + " entries");
+        } catch (Exception e) {
+            rebuilding = null;
+            System.err.println("Failed to rebuild " + description + ": " + e.getMessage());
+        } finally {
+            rebuildInProgress.set(false);
+        }
+    }
+
+    /**
+     * 创建空快照
+     */
+    protected abstract S createSnapshot();
+
+    /**
+     * 在只读事务中把表中的数据装入快照
+     * @return 装入的条数
+     */
+    protected abstract long load(S snapshot);
+
+    /**
+     * 快照替换为当前快照之后调用，可以释放重建期间才需要的状态
+     */
+    protected void published(S snapshot) {
+    }
+
+    protected final boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return 当前快照，尚未构建完成时为null
+     */
+    protected final S current() {
+        return current;
+    }
+
+    /**
+     * 事务提交后把增量修改写入重建中的快照与当前快照（没有事务时立即写入）
+     * @param update 对单个快照的修改，两个快照各执行一次
+     */
+    protected final void updateAfterCommit(Consumer<S> update) {
+        AfterCommit.run(() -> {
+            S next = rebuilding;
+            S snapshot = current;
+            if (next != null) {
+                update.accept(next);
+            }
+            if (snapshot != null && snapshot != next) {
+                update.accept(snapshot);
+            }
+        });
+    }
+
+    /**
+     * 事务提交后只修改当前快照，不修改重建中的快照（没有事务时立即修改）
+     * 用于在尚未装入的快照上执行会出错的修改，如计数过滤器的减计数
+     * @param update 对当前快照的修改
+     */
+    protected final void updateCurrentAfterCommit(Consumer<S> update) {
+        AfterCommit.run(() -> {
+            S snapshot = current;
+            if (snapshot != null && snapshot != rebuilding) {
+                update.accept(snapshot);
+            }
+        });
+    }
+}
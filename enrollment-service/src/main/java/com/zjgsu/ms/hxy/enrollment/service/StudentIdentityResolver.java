@@ -0,0 +1,319 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import com.zjgsu.ms.hxy.enrollment.model.Student;
+import com.zjgsu.ms.hxy.enrollment.repository.StudentRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.StringUtils;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * StudentIdentityResolver 类
+ * 学生标识解析：调用方传入的学生标识可以是 UUID 或学号，统一解析为学生 UUID
+ * 内存中维护 UUID 与学号的双向映射，启动后流式读取 students 表构建，
+ * 学生新建、修改、删除的事务提交后增量更新，并定时整体重建以同步其他实例的修改
+ * 命中映射时无锁查找、不查询数据库；映射尚未构建或未命中（如其他实例刚新建的学生）时查询数据库，命中后登记
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Component
+public class StudentIdentityResolver extends RebuildableSnapshot<StudentIdentityResolver.IdentityMap> {
+
+    private final StudentRepository studentRepository;
+
+    /**
+     * 选课表的课程ID与学生ID是否以 BINARY(16) 存储（binary-ids 配置），此时只能保存 UUID
+     */
+    private final boolean binaryIds;
+
+    public StudentIdentityResolver(StudentRepository studentRepository,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${enrollment.student-identity.enabled:true}") boolean enabled,
+                                   @Value("${enrollment.ids.binary:false}") boolean binaryIds) {
+        super("student identity map", "student-identity-rebuild", transactionManager, enabled);
+        this.studentRepository = studentRepository;
+        this.binaryIds = binaryIds;
+    }
+
+    /**
+     * 定时整体重建，清除其他实例已删除的学生
+     */
+    @Override
+    @Scheduled(cron = "${enrollment.student-identity.rebuild-cron:0 */10 * * * *}")
+    public void rebuild() {
+        super.rebuild();
+    }
+
+    @Override
+    protected IdentityMap createSnapshot() {
+        return new IdentityMap();
+    }
+
+    @Override
+    protected long load(IdentityMap map) {
+        try (Stream<Object[]> identities = studentRepository.streamIdentities()) {
+            return identities.mapToLong(row -> {
+                map.load((UUID) row[0], (String) row[1]);
+                return 1;
+            }).sum();
+        }
+    }
+
+    @Override
+    protected void published(IdentityMap map) {
+        map.loaded();
+    }
+
+    /**
+     * 将 UUID 或学号解析为学生 UUID
+     * @param identifier 学生标识
+     * @return 学生 UUID，学生不存在时为空
+     */
+    public Optional<UUID> resolve(String identifier) {
+        if (!StringUtils.hasText(identifier)) {
+            return Optional.empty();
+        }
+        UUID cached = resolveCached(identifier);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        UUID uuid = parseUuid(identifier);
+        Optional<Student> student = uuid != null ? studentRepository.findById(uuid) : Optional.empty();
+        if (student.isEmpty()) {
+            student = studentRepository.findByStudentId(identifier);
+        }
+        student.ifPresent(found -> {
+            IdentityMap map = current();
+            if (map != null) {
+                map.put(found.getId(), found.getStudentId());
+            }
+        });
+        return student.map(Student::getId);
+    }
+
+    /**
+     * 查询学生的学号，命中映射时不查询数据库
+     * @param id 学生 UUID
+     * @return 学号，学生不存在时为空
+     */
+    public Optional<String> studentNumberOf(UUID id) {
+        IdentityMap map = current();
+        String cached = map != null ? map.studentNumbers.get(id) : null;
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        Optional<Student> student = studentRepository.findById(id);
+        student.ifPresent(found -> {
+            if (map != null && found.getStudentId() != null) {
+                map.put(found.getId(), found.getStudentId());
+            }
+        });
+        return student.map(Student::getStudentId);
+    }
+
+    /**
+     * 检查学生是否存在
+     * @param identifier 学生 UUID 或学号
+     * @return 如果学生存在返回true
+     */
+    public boolean exists(String identifier) {
+        return resolve(identifier).isPresent();
+    }
+
+    /**
+     * 转换为选课记录中保存的学生ID：UUID 统一为小写；
+     * binary-ids 配置下学号换成学生的 UUID，其他配置下学号原样保留
+     * @param identifier 学生 UUID 或学号
+     * @return 选课记录中的学生ID
+     * @throws IllegalArgumentException binary-ids 配置下学号对应的学生不存在时抛出
+     */
+    public String toEnrollmentStudentId(String identifier) {
+        if (!StringUtils.hasText(identifier)) {
+            return identifier;
+        }
+        if (parseUuid(identifier) != null) {
+            return identifier.toLowerCase(Locale.ROOT);
+        }
+        if (!binaryIds) {
+            return identifier;
+        }
+        return resolve(identifier).map(UUID::toString)
+                .orElseThrow(() -> new IllegalArgumentException("学生不存在，ID: " + identifier));
+    }
+
+    /**
+     * 转换为选课记录中保存的课程ID：UUID 格式的课程ID转为小写，与数据库中保存的形式一致；
+     * binary-ids 配置下课程ID必须是 UUID，其他格式作为参数错误拒绝，不交给存储层转换
+     * @param courseId 课程ID
+     * @return 选课记录中的课程ID
+     * @throws IllegalArgumentException binary-ids 配置下课程ID不是 UUID 时抛出
+     */
+    public String toEnrollmentCourseId(String courseId) {
+        if (!StringUtils.hasText(courseId)) {
+            return courseId;
+        }
+        if (!isEnrollmentIdStorable(courseId)) {
+            throw new IllegalArgumentException("无效的课程ID格式（需要UUID）: " + courseId);
+        }
+        return parseUuid(courseId) != null ? courseId.toLowerCase(Locale.ROOT) : courseId;
+    }
+
+    /**
+     * 检查标识符能否保存在选课记录中：binary-ids 配置下只能是 UUID，其他配置下不限
+     * @param id 课程ID或学生ID
+     * @return 可以保存或作为查询条件时返回true
+     */
+    public boolean isEnrollmentIdStorable(String id) {
+        return !binaryIds || parseUuid(id) != null;
+    }
+
+    /**
+     * 只在内存映射中解析，不查询数据库
+     * @param identifier 学生 UUID 或学号
+     * @return 学生 UUID，映射未构建或未命中时为null
+     */
+    UUID resolveCached(String identifier) {
+        IdentityMap map = current();
+        if (map == null || identifier == null) {
+            return null;
+        }
+        UUID uuid = parseUuid(identifier);
+        if (uuid != null && map.studentNumbers.containsKey(uuid)) {
+            return uuid;
+        }
+        return map.ids.get(identifier);
+    }
+
+    /**
+     * 登记新建或修改后的学生（事务提交后生效）
+     */
+    public void registered(Student student) {
+        if (!isEnabled() || student.getId() == null || student.getStudentId() == null) {
+            return;
+        }
+        UUID id = student.getId();
+        String studentNumber = student.getStudentId();
+        updateAfterCommit(map -> map.put(id, studentNumber));
+    }
+
+    /**
+     * 移除已删除的学生（事务提交后生效）
+     */
+    public void removed(UUID id) {
+        if (!isEnabled() || id == null) {
+            return;
+        }
+        updateAfterCommit(map -> map.remove(id));
+    }
+
+    /**
+     * 解析标准格式的 UUID 字符串（8-4-4-4-12，忽略大小写），格式不符时返回null而不抛出异常
+     * @param value 字符串
+     * @return UUID，格式不符时为null
+     */
+    public static UUID parseUuid(String value) {
+        if (value == null || value.length() != 36) {
+            return null;
+        }
+        long msb = 0;
+        long lsb = 0;
+        int digits = 0;
+        for (int i = 0; i < 36; i++) {
+            char c = value.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return null;
+                }
+                continue;
+            }
+            int digit;
+            if (c >= '0' && c <= '9') {
+                digit = c - '0';
+            } else if (c >= 'a' && c <= 'f') {
+                digit = c - 'a' + 10;
+            } else if (c >= 'A' && c <= 'F') {
+                digit = c - 'A' + 10;
+            } else {
+                return null;
+            }
+            if (digits < 16) {
+                msb = (msb << 4) | digit;
+            } else {
+                lsb = (lsb << 4) | digit;
+            }
+            digits++;
+        }
+        return new UUID(msb, lsb);
+    }
+
+    /**
+     * UUID 与学号的双向映射
+     */
+    static final class IdentityMap {
+        /**
+         * 学生 UUID -> 学号
+         */
+        private final Map<UUID, String> studentNumbers = new ConcurrentHashMap<>();
+
+        /**
+         * 学号 -> 学生 UUID
+         */
+        private final Map<String, UUID> ids = new ConcurrentHashMap<>();
+
+        /**
+         * 重建期间删除的学生，读取到的旧行不再装入
+         */
+        private final Set<UUID> removedDuringRebuild = ConcurrentHashMap.newKeySet();
+
+        /**
+         * 是否仍在装入；装入完成后不再记录删除的学生
+         */
+        private volatile boolean loading = true;
+
+        /**
+         * 装入重建时读取的行；已由增量修改写入的学生以增量为准
+         */
+        private void load(UUID id, String studentNumber) {
+            if (removedDuringRebuild.contains(id) || studentNumbers.putIfAbsent(id, studentNumber) != null) {
+                return;
+            }
+            ids.put(studentNumber, id);
+        }
+
+        private void put(UUID id, String studentNumber) {
+            String previous = studentNumbers.put(id, studentNumber);
+            if (previous != null && !previous.equals(studentNumber)) {
+                ids.remove(previous, id);
+            }
+            ids.put(studentNumber, id);
+        }
+
+        private void remove(UUID id) {
+            if (loading) {
+                removedDuringRebuild.add(id);
+            }
+            String studentNumber = studentNumbers.remove(id);
+            if (studentNumber != null) {
+                ids.remove(studentNumber, id);
+            }
+        }
+
+        private void loaded() {
+            loading = false;
+            removedDuringRebuild.clear();
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import com.zjgsu.ms.hxy.enrollment.model.Student;
+import com.zjgsu.ms.hxy.enrollment.repository.StudentRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * StudentImportService 类
+ * 学生批量导入：CSV 以 CsvRecordReader 解析（引号内可以包含逗号与换行），先校验整份文件（必填项、入学年份、邮箱格式、文件内学号/邮箱重复、与已有学生冲突），
+ * 全部通过后才在一个事务中写入；与已有学生的冲突按块以 IN 查询检查，
+ * 写入按块持久化，由 Hibernate JDBC 批处理合并为批量 INSERT，每块写入后清空持久化上下文
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Service
+public class StudentImportService {
+
+    private final StudentRepository studentRepository;
+    private final StudentService studentService;
+    private final StudentIdentityResolver studentIdentityResolver;
+    private final StudentSearchService studentSearchService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * 单次导入的最大行数
+     */
+    private final int maxRows;
+
+    /**
+     * 每块处理的行数（与 hibernate.jdbc.batch_size 一致时每块一次批量提交）
+     */
+    private final int chunkSize;
+
+    public StudentImportService(StudentRepository studentRepository,
+                                StudentService studentService,
+                                StudentIdentityResolver studentIdentityResolver,
+                                StudentSearchService studentSearchService,
+                                @Value("${enrollment.student-import.max-rows:100000}") int maxRows,
+                                @Value("${enrollment.student-import.chunk-size:500}") int chunkSize) {
+        this.studentRepository = studentRepository;
+        this.studentService = studentService;
+        this.studentIdentityResolver = studentIdentityResolver;
+        this.studentSearchService = studentSearchService;
+        this.maxRows = maxRows;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * 解析 CSV 学生文件，每条记录为 studentId,name,major,grade,email，首行可以是表头
+     * @param input CSV 内容（UTF-8）
+     * @return 学生行列表；字段数不对的行保留行号，由 importStudents 报告
+     * @throws IllegalArgumentException 超过行数限制或 CSV 格式无法解析（如引号未闭合）时抛出
+     */
+    public List<StudentRow> parseCsv(InputStream input) throws IOException {
+        return CsvImportSupport.readCsv(input, "studentId", maxRows, record -> record.size() == 5
+                ? new StudentRow(record.line(), record.field(0), record.field(1), record.field(2),
+                        record.field(3), record.field(4))
+                : new StudentRow(record.line(), null, null, null, null, null));
+    }
+
+    /**
+     * 转换 JSON 请求中的学生列表
+     * @param items 每项包含 studentId、name、major、grade、email
+     * @return 学生行列表，行号为列表下标（从 1 开始）
+     */
+    public List<StudentRow> fromItems(List<Map<String, Object>> items) {
+        if (items == null) {
+            throw new IllegalArgumentException("学生列表不能为空");
+        }
+        CsvImportSupport.RowSource<StudentRow> source = CsvImportSupport.fromItems(items, maxRows,
+                (line, item) -> new StudentRow(line, CsvImportSupport.textOf(item.get("studentId")),
+                        CsvImportSupport.textOf(item.get("name")), CsvImportSupport.textOf(item.get("major")),
+                        CsvImportSupport.textOf(item.get("grade")), CsvImportSupport.textOf(item.get("email"))));
+        List<StudentRow> rows = new ArrayList<>(items.size());
+        try {
+            StudentRow row;
+            while ((row = source.next()) != null) {
+                rows.add(row);
+            }
+        } catch (IOException e) {
+            // 列表来源不会抛出 IOException
+            throw new UncheckedIOException(e);
+        }
+        return rows;
+    }
+
+    /**
+     * 导入学生
+     * 任何一行校验失败时不写入任何学生，返回全部行的校验结果
+     * @param rows 学生行
+     * @return 导入结果
+     * @throws org.springframework.dao.DataIntegrityViolationException 如果校验后有同学号或邮箱的学生被并发创建（整体回滚）
+     */
+    @Transactional
+    public StudentImportResult importStudents(List<StudentRow> rows) {
+        if (rows.isEmpty()) {
+            throw new IllegalArgumentException("学生数据不能为空");
+        }
+
+        // 1. 行内校验与文件内重复检查
+        String[] errors = new String[rows.size()];
+        Student[] students = new Student[rows.size()];
+        Map<String, Integer> lineByStudentId = new HashMap<>();
+        Map<String, Integer> lineByEmail = new HashMap<>();
+        for (int i = 0; i < rows.size(); i++) {
+            StudentRow row = rows.get(i);
+            if (row.studentId() == null && row.name() == null && row.email() == null) {
+                errors[i] = "格式错误，应为 studentId,name,major,grade,email";
+                continue;
+            }
+            Integer grade = parseGrade(row.grade());
+            if (StringUtils.hasText(row.grade()) && grade == null) {
+                errors[i] = "入学年份不是整数: " + row.grade();
+                continue;
+            }
+            Student student = new Student(row.studentId(), row.name(), row.major(), grade, row.email());
+            try {
+                studentService.validateStudent(student);
+            } catch (IllegalArgumentException e) {
+                errors[i] = e.getMessage();
+                continue;
+            }
+            Integer firstLine = lineByStudentId.putIfAbsent(row.studentId(), row.line());
+            if (firstLine != null) {
+                errors[i] = "学号与第 " + firstLine + " 行重复";
+                continue;
+            }
+            firstLine = lineByEmail.putIfAbsent(row.email().toLowerCase(Locale.ROOT), row.line());
+            if (firstLine != null) {
+                errors[i] = "邮箱与第 " + firstLine + " 行重复";
+                continue;
+            }
+            students[i] = student;
+        }
+
+        // 2. 按块查询与已有学生的学号、邮箱冲突
+        List<Integer> valid = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            if (errors[i] == null) {
+                valid.add(i);
+            }
+        }
+        for (int from = 0; from < valid.size(); from += chunkSize) {
+            List<Integer> chunk = valid.subList(from, Math.min(from + chunkSize, valid.size()));
+            Set<String> existingStudentIds = studentService.findExistingStudentNumbers(
+                    chunk.stream().map(i -> students[i].getStudentId()).toList());
+            Set<String> existingEmails = studentService.findExistingEmails(
+                    chunk.stream().map(i -> students[i].getEmail()).toList());
+            for (int index : chunk) {
+                if (existingStudentIds.contains(students[index].getStudentId())) {
+                    errors[index] = "学号已存在: " + students[index].getStudentId();
+                } else if (existingEmails.contains(students[index].getEmail().toLowerCase(Locale.ROOT))) {
+                    errors[index] = "邮箱地址已存在: " + students[index].getEmail();
+                }
+            }
+        }
+
+        int failed = 0;
+        for (String error : errors) {
+            if (error != null) {
+                failed++;
+            }
+        }
+        if (failed > 0) {
+            return new StudentImportResult(false, rows, errors, 0, failed);
+        }
+
+        // 3. 全部通过后按块写入：持久化本块学生后批量刷新
+        for (int from = 0; from < students.length; from += chunkSize) {
+            List<Student> chunk = Arrays.asList(students).subList(from, Math.min(from + chunkSize, students.length));
+            studentRepository.saveAll(chunk);
+            // 通过仓库刷新，唯一约束冲突转换为 DataIntegrityViolationException
+            studentRepository.flush();
+            chunk.forEach(studentIdentityResolver::registered);
+            chunk.forEach(studentSearchService::indexed);
+            entityManager.clear();
+        }
+
+        return new StudentImportResult(true, rows, errors, rows.size(), 0);
+    }
+
+    private static Integer parseGrade(String grade) {
+        if (!StringUtils.hasText(grade)) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(grade.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 待导入的一行学生，grade 保留原文以便报告格式错误
+     */
+    public record StudentRow(int line, String studentId, String name, String major, String grade, String email) {
+    }
+
+    /**
+     * 导入结果：applied 为 false 时没有写入任何学生，errors 中非空的位置为对应行的错误
+     */
+    public record StudentImportResult(boolean applied, List<StudentRow> rows, String[] errors, int created, int failed) {
+    }
+}
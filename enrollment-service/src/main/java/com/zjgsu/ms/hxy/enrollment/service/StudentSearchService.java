@@ -0,0 +1,439 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import com.zjgsu.ms.hxy.enrollment.model.Student;
+import com.zjgsu.ms.hxy.enrollment.repository.StudentRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * StudentSearchService 类
+ * 学生姓名搜索：内存中维护姓名的 n-gram（单字与双字）倒排索引和拼音首字母前缀索引，
+ * 支持按姓名片段（如"三"、"张三"）或拼音首字母（如"zs"）搜索，结果按匹配程度排序并分页
+ * 启动后流式读取 students 表构建，学生新建、修改、删除的事务提交后增量更新，并定时整体重建；
+ * 索引尚未构建完成时回退为数据库模糊查询（只匹配姓名片段），排序规则相同
+ * 拼音首字母按 GBK 一级汉字的拼音排序区间计算，不引入拼音库：二级汉字与多音字的非常用读音不计入首字母索引
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Service
+public class StudentSearchService extends RebuildableSnapshot<StudentSearchService.SearchIndex> {
+
+    /**
+     * 拼音首字母前缀索引的最大长度，更长的查询先按此长度取候选再逐个比较
+     */
+    private static final int MAX_INITIALS_PREFIX = 8;
+
+    /**
+     * GBK 一级汉字按拼音排序，各首字母区间的起始编码（最后一项为一级汉字的结束编码）
+     */
+    private static final int[] GBK_INITIAL_BOUNDARIES = {
+            0xB0A1, 0xB0C5, 0xB2C1, 0xB4EE, 0xB6EA, 0xB7A2, 0xB8C1, 0xB9FE, 0xBBF7, 0xBFA6, 0xC0AC, 0xC2E8,
+            0xC4C3, 0xC5B6, 0xC5BE, 0xC6DA, 0xC8BB, 0xC8F6, 0xCBFA, 0xCDDA, 0xCEF4, 0xD1B9, 0xD4D1, 0xD7FA};
+    private static final char[] GBK_INITIALS = "abcdefghjklmnopqrstwxyz".toCharArray();
+    private static final Charset GBK = Charset.forName("GBK");
+
+    private final StudentRepository studentRepository;
+
+    public StudentSearchService(StudentRepository studentRepository,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${enrollment.student-search.enabled:true}") boolean enabled) {
+        super("student search index", "student-search-rebuild", transactionManager, enabled);
+        this.studentRepository = studentRepository;
+    }
+
+    /**
+     * 定时整体重建，同步其他实例的修改
+     */
+    @Override
+    @Scheduled(cron = "${enrollment.student-search.rebuild-cron:0 */10 * * * *}")
+    public void rebuild() {
+        super.rebuild();
+    }
+
+    @Override
+    protected SearchIndex createSnapshot() {
+        return new SearchIndex();
+    }
+
+    @Override
+    protected long load(SearchIndex index) {
+        try (Stream<Object[]> rows = studentRepository.streamSearchFields()) {
+            return rows.mapToLong(row -> {
+                index.load(document((UUID) row[0], (String) row[1], (String) row[2]));
+                return 1;
+            }).sum();
+        }
+    }
+
+    @Override
+    protected void published(SearchIndex index) {
+        index.loaded();
+    }
+
+    /**
+     * 搜索学生，返回全部匹配结果（按匹配程度排序）
+     * @param keyword 姓名片段或拼音首字母
+     * @return 匹配的学生列表
+     */
+    public List<Student> search(String keyword) {
+        List<Document> hits = rank(keyword, false);
+        return loadStudents(hits);
+    }
+
+    /**
+     * 分页搜索学生
+     * @param keyword 姓名片段或拼音首字母
+     * @param page 页码（从 0 开始）
+     * @param size 每页条数
+     * @return 当前页学生与匹配总数
+     */
+    public SearchPage search(String keyword, int page, int size) {
+        if (page < 0 || size <= 0) {
+            throw new IllegalArgumentException("页码不能小于0，每页条数必须大于0");
+        }
+        List<Document> hits = rank(keyword, false);
+        long from = (long) page * size;
+        if (from >= hits.size()) {
+            return new SearchPage(List.of(), hits.size(), page, size);
+        }
+        List<Document> pageHits = hits.subList((int) from, (int) Math.min(from + size, hits.size()));
+        return new SearchPage(loadStudents(pageHits), hits.size(), page, size);
+    }
+
+    /**
+     * 输入提示：只匹配姓名前缀或拼音首字母前缀，结果只含索引中的字段，不查询学生详情
+     * @param prefix 已输入的内容
+     * @param limit 最多返回条数
+     * @return 每项为 id、studentId、name
+     */
+    public List<Map<String, Object>> typeahead(String prefix, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("返回条数必须大于0");
+        }
+        List<Document> hits = rank(prefix, true);
+        List<Map<String, Object>> suggestions = new ArrayList<>(Math.min(limit, hits.size()));
+        for (Document document : hits.subList(0, Math.min(limit, hits.size()))) {
+            Map<String, Object> suggestion = new LinkedHashMap<>();
+            suggestion.put("id", document.id());
+            suggestion.put("studentId", document.studentId());
+            suggestion.put("name", document.name());
+            suggestions.add(suggestion);
+        }
+        return suggestions;
+    }
+
+    /**
+     * 登记新建或修改后的学生（事务提交后生效）
+     */
+    public void indexed(Student student) {
+        if (!isEnabled() || student.getId() == null || student.getName() == null) {
+            return;
+        }
+        Document document = document(student.getId(), student.getStudentId(), student.getName());
+        updateAfterCommit(index -> index.put(document));
+    }
+
+    /**
+     * 移除已删除的学生（事务提交后生效）
+     */
+    public void removed(UUID id) {
+        if (!isEnabled() || id == null) {
+            return;
+        }
+        updateAfterCommit(index -> index.remove(id));
+    }
+
+    /**
+     * 按匹配程度排序的候选：姓名完全相同 > 姓名前缀 > 拼音首字母完全相同 > 拼音首字母前缀 > 姓名包含（越靠前越优先）
+     */
+    private List<Document> rank(String keyword, boolean prefixOnly) {
+        if (!StringUtils.hasText(keyword)) {
+            throw new IllegalArgumentException("搜索关键词不能为空");
+        }
+        String query = keyword.trim().toLowerCase(Locale.ROOT);
+
+        Collection<Document> candidates;
+        SearchIndex index = current();
+        if (index != null) {
+            candidates = index.candidates(query);
+        } else {
+            // 索引尚未构建完成：姓名包含关键词的学生由数据库查询，拼音首字母匹配暂不可用
+            candidates = studentRepository.findByNameContainingIgnoreCase(query).stream()
+                    .map(student -> document(student.getId(), student.getStudentId(), student.getName()))
+                    .toList();
+        }
+
+        Map<Document, Integer> scores = new HashMap<>();
+        for (Document document : candidates) {
+            int score = score(document, query);
+            if (score > 0 && (!prefixOnly || score >= 70)) {
+                scores.put(document, score);
+            }
+        }
+        List<Document> hits = new ArrayList<>(scores.keySet());
+        hits.sort(Comparator.comparingInt((Document document) -> -scores.get(document))
+                .thenComparingInt(document -> document.name().length())
+                .thenComparing(Document::studentId, Comparator.nullsLast(Comparator.naturalOrder())));
+        return hits;
+    }
+
+    private static int score(Document document, String query) {
+        if (document.normalizedName().equals(query)) {
+            return 100;
+        }
+        if (document.normalizedName().startsWith(query)) {
+            return 90;
+        }
+        if (!document.initials().isEmpty() && document.initials().equals(query)) {
+            return 80;
+        }
+        if (!document.initials().isEmpty() && document.initials().startsWith(query)) {
+            return 70;
+        }
+        int position = document.normalizedName().indexOf(query);
+        return position >= 0 ? 50 - Math.min(position, 10) : 0;
+    }
+
+    /**
+     * 按排序后的顺序加载当前页的学生详情（按主键批量查询）
+     */
+    private List<Student> loadStudents(List<Document> hits) {
+        Map<UUID, Student> byId = new HashMap<>();
+        studentRepository.findAllById(hits.stream().map(Document::id).toList())
+                .forEach(student -> byId.put(student.getId(), student));
+        List<Student> students = new ArrayList<>(hits.size());
+        for (Document document : hits) {
+            Student student = byId.get(document.id());
+            if (student != null) {
+                students.add(student);
+            }
+        }
+        return students;
+    }
+
+    private static Document document(UUID id, String studentId, String name) {
+        String normalized = name.trim().toLowerCase(Locale.ROOT);
+        return new Document(id, studentId, name, normalized, initialsOf(normalized));
+    }
+
+    /**
+     * 姓名的拼音首字母：汉字取拼音首字母，拉丁字母取每个单词的首字母，其他字符忽略
+     */
+    static String initialsOf(String name) {
+        StringBuilder initials = new StringBuilder(name.length());
+        boolean wordStart = true;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c >= '\u4e00' && c <= '\u9fff') {
+                char initial = pinyinInitial(c);
+                if (initial != 0) {
+                    initials.append(initial);
+                }
+                wordStart = true;
+            } else if (Character.isLetterOrDigit(c)) {
+                if (wordStart) {
+                    initials.append(Character.toLowerCase(c));
+                }
+                wordStart = false;
+            } else {
+                wordStart = true;
+            }
+        }
+        return initials.toString();
+    }
+
+    private static char pinyinInitial(char c) {
+        byte[] bytes = String.valueOf(c).getBytes(GBK);
+        if (bytes.length != 2) {
+            return 0;
+        }
+        int code = ((bytes[0] & 0xFF) << 8) | (bytes[1] & 0xFF);
+        if (code < GBK_INITIAL_BOUNDARIES[0] || code >= GBK_INITIAL_BOUNDARIES[GBK_INITIAL_BOUNDARIES.length - 1]) {
+            return 0;
+        }
+        for (int i = GBK_INITIALS.length - 1; i >= 0; i--) {
+            if (code >= GBK_INITIAL_BOUNDARIES[i]) {
+                return GBK_INITIALS[i];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 分页搜索结果
+     */
+    public record SearchPage(List<Student> items, long total, int page, int size) {
+    }
+
+    /**
+     * 索引中的学生：姓名、小写姓名与拼音首字母
+     */
+    private record Document(UUID id, String studentId, String name, String normalizedName, String initials) {
+    }
+
+    /**
+     * 倒排索引：姓名的单字、双字 n-gram 与拼音首字母前缀到学生的映射
+     * 读取无锁；写入（新建、修改、删除学生）很少，串行执行以保证同一学生的新旧词条一致
+     */
+    static final class SearchIndex {
+        private final Map<UUID, Document> documents = new ConcurrentHashMap<>();
+        private final Map<String, Set<UUID>> grams = new ConcurrentHashMap<>();
+        private final Map<String, Set<UUID>> initialPrefixes = new ConcurrentHashMap<>();
+
+        /**
+         * 重建期间删除的学生，读取到的旧行不再装入
+         */
+        private final Set<UUID> removedDuringRebuild = ConcurrentHashMap.newKeySet();
+
+        /**
+         * 是否仍在装入；装入完成后不再记录删除的学生
+         */
+        private volatile boolean loading = true;
+
+        /**
+         * 查询的候选文档，需再按 score 过滤
+         */
+        private Collection<Document> candidates(String query) {
+            List<Document> result = new ArrayList<>();
+            Set<UUID> byName = nameCandidates(query);
+            if (byName != null) {
+                byName.forEach(id -> addDocument(result, id));
+            }
+            Set<UUID> byInitials = initialPrefixes.get(query.length() > MAX_INITIALS_PREFIX
+                    ? query.substring(0, MAX_INITIALS_PREFIX) : query);
+            if (byInitials != null) {
+                for (UUID id : byInitials) {
+                    if (byName == null || !byName.contains(id)) {
+                        addDocument(result, id);
+                    }
+                }
+            }
+            return result;
+        }
+
+        /**
+         * 单字查询取单字倒排表；多字查询取所有双字倒排表中最短的一个，其余由 score 校验
+         */
+        private Set<UUID> nameCandidates(String query) {
+            if (query.length() == 1) {
+                return grams.get(query);
+            }
+            Set<UUID> smallest = null;
+            for (int i = 0; i + 2 <= query.length(); i++) {
+                Set<UUID> posting = grams.get(query.substring(i, i + 2));
+                if (posting == null) {
+                    return null;
+                }
+                if (smallest == null || posting.size() < smallest.size()) {
+                    smallest = posting;
+                }
+            }
+            return smallest;
+        }
+
+        private void addDocument(List<Document> result, UUID id) {
+            Document document = documents.get(id);
+            if (document != null) {
+                result.add(document);
+            }
+        }
+
+        /**
+         * 装入重建时读取的行；已由增量修改写入的学生以增量为准
+         */
+        private synchronized void load(Document document) {
+            if (removedDuringRebuild.contains(document.id()) || documents.containsKey(document.id())) {
+                return;
+            }
+            add(document);
+        }
+
+        private synchronized void put(Document document) {
+            Document previous = documents.get(document.id());
+            if (previous != null) {
+                drop(previous);
+            }
+            add(document);
+        }
+
+        private synchronized void remove(UUID id) {
+            if (loading) {
+                removedDuringRebuild.add(id);
+            }
+            Document previous = documents.remove(id);
+            if (previous != null) {
+                drop(previous);
+            }
+        }
+
+        private synchronized void loaded() {
+            loading = false;
+            removedDuringRebuild.clear();
+        }
+
+        private void add(Document document) {
+            documents.put(document.id(), document);
+            for (String key : gramsOf(document.normalizedName())) {
+                grams.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(document.id());
+            }
+            for (String key : prefixesOf(document.initials())) {
+                initialPrefixes.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(document.id());
+            }
+        }
+
+        private void drop(Document document) {
+            documents.remove(document.id(), document);
+            for (String key : gramsOf(document.normalizedName())) {
+                removePosting(grams, key, document.id());
+            }
+            for (String key : prefixesOf(document.initials())) {
+                removePosting(initialPrefixes, key, document.id());
+            }
+        }
+
+        private static void removePosting(Map<String, Set<UUID>> postings, String key, UUID id) {
+            postings.computeIfPresent(key, (k, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+
+        private static List<String> gramsOf(String name) {
+            List<String> keys = new ArrayList<>(name.length() * 2);
+            for (int i = 0; i < name.length(); i++) {
+                keys.add(name.substring(i, i + 1));
+                if (i + 2 <= name.length()) {
+                    keys.add(name.substring(i, i + 2));
+                }
+            }
+            return keys;
+        }
+
+        private static List<String> prefixesOf(String initials) {
+            List<String> keys = new ArrayList<>(MAX_INITIALS_PREFIX);
+            for (int length = 1; length <= Math.min(initials.length(), MAX_INITIALS_PREFIX); length++) {
+                keys.add(initials.substring(0, length));
+            }
+            return keys;
+        }
+    }
+}
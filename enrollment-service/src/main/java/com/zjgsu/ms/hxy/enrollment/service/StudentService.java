@@ -2,19 +2,31 @@ package com.zjgsu.ms.hxy.enrollment.service;
 
 import com.zjgsu.ms.hxy.enrollment.exception.BusinessException;
 import com.zjgsu.ms.hxy.enrollment.exception.ResourceNotFoundException;
-import com.zjgsu.ms.hxy.enrollment.model.Enrollment;
-import com.zjgsu.ms.hxy.enrollment.model.EnrollmentStatus;
 import com.zjgsu.ms.hxy.enrollment.model.Student;
 import com.zjgsu.ms.hxy.enrollment.repository.StudentRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 /**
  * StudentService 类
@@ -29,13 +41,28 @@ public class StudentService {
 
     private final StudentRepository studentRepository;
     private final EnrollmentService enrollmentService;
+    private final StudentIdentityResolver studentIdentityResolver;
+    private final StudentSearchService studentSearchService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * IN 子句单次携带的最大参数个数
+     */
+    private static final int IN_CLAUSE_CHUNK_SIZE = 1000;
 
     // 邮箱正则表达式
     private static final Pattern EMAIL_PATTERN = Pattern.compile("^[A-Za-z0-9+_.-]+@(.+)$");
 
-    public StudentService(StudentRepository studentRepository, @Lazy EnrollmentService enrollmentService) {
+    public StudentService(StudentRepository studentRepository,
+                          @Lazy EnrollmentService enrollmentService,
+                          StudentIdentityResolver studentIdentityResolver,
+                          StudentSearchService studentSearchService) {
         this.studentRepository = studentRepository;
         this.enrollmentService = enrollmentService;
+        this.studentIdentityResolver = studentIdentityResolver;
+        this.studentSearchService = studentSearchService;
     }
 
     /**
@@ -55,6 +82,15 @@ public class StudentService {
         return studentRepository.findById(id);
     }
 
+    /**
+     * 根据ID批量获取学生
+     * @param ids 学生ID集合
+     * @return 存在的学生列表
+     */
+    public List<Student> getStudentsByIds(Collection<UUID> ids) {
+        return studentRepository.findAllById(ids);
+    }
+
     /**
      * 根据学号获取学生
      * @param studentId 学号
@@ -103,7 +139,10 @@ public class StudentService {
         // 设置ID为null，确保创建新学生
         student.setId(null);
 
-        return studentRepository.save(student);
+        Student saved = studentRepository.save(student);
+        studentIdentityResolver.registered(saved);
+        studentSearchService.indexed(saved);
+        return saved;
     }
 
     /**
@@ -138,7 +177,10 @@ public class StudentService {
         }
 
         student.setId(id);
-        return Optional.of(studentRepository.save(student));
+        Student saved = studentRepository.save(student);
+        studentIdentityResolver.registered(saved);
+        studentSearchService.indexed(saved);
+        return Optional.of(saved);
     }
 
     /**
@@ -149,16 +191,66 @@ public class StudentService {
      */
     @Transactional
     public void deleteStudent(UUID id) {
-        if (!studentRepository.existsById(id)) {
+        Optional<Student> student = studentRepository.findById(id);
+        if (student.isEmpty()) {
             throw new ResourceNotFoundException("学生", id.toString());
         }
 
-        if (hasActiveEnrollments(id)) {
+        if (hasActiveEnrollments(student.get())) {
             throw new BusinessException("无法删除：该学生存在选课记录");
         }
 
         // Spring Data JPA的deleteById方法返回void
         studentRepository.deleteById(id);
+        studentIdentityResolver.removed(id);
+        studentSearchService.removed(id);
+    }
+
+    /**
+     * 批量删除学生：一次查询检查所有学生的选课记录（选课可能以 UUID 或学号记录，两者都检查），
+     * 没有活跃选课的学生一次删除
+     * @param ids 学生ID集合
+     * @return 删除结果：已删除、不存在、因存在选课记录未删除的学生ID
+     */
+    @Transactional
+    public BulkDeleteResult deleteStudents(Collection<UUID> ids) {
+        if (ids == null || ids.isEmpty()) {
+            throw new IllegalArgumentException("学生ID列表不能为空");
+        }
+        Set<UUID> requested = new LinkedHashSet<>(ids);
+        requested.remove(null);
+
+        Map<UUID, String> existing = new HashMap<>();
+        List<String> identifiers = new ArrayList<>();
+        studentRepository.findAllById(requested).forEach(student -> {
+            existing.put(student.getId(), student.getStudentId());
+            identifiers.add(student.getId().toString());
+            if (student.getStudentId() != null) {
+                identifiers.add(student.getStudentId());
+            }
+        });
+        Set<String> withEnrollments = enrollmentService.findStudentsWithActiveEnrollments(identifiers);
+
+        List<UUID> deleted = new ArrayList<>();
+        List<UUID> notFound = new ArrayList<>();
+        List<UUID> blocked = new ArrayList<>();
+        for (UUID id : requested) {
+            String studentNumber = existing.get(id);
+            if (!existing.containsKey(id)) {
+                notFound.add(id);
+            } else if (withEnrollments.contains(id.toString())
+                    || (studentNumber != null && withEnrollments.contains(studentNumber))) {
+                blocked.add(id);
+            } else {
+                deleted.add(id);
+            }
+        }
+        if (!deleted.isEmpty()) {
+            studentRepository.deleteAllByIdInBatch(deleted);
+            deleted.forEach(studentIdentityResolver::removed);
+            deleted.forEach(studentSearchService::removed);
+        }
+        return new BulkDeleteResult(deleted, notFound, blocked);
     }
 
     /**
@@ -178,12 +270,14 @@ public class StudentService {
         }
 
         // 检查是否有活跃的选课记录
-        if (hasActiveEnrollments(student.get().getId())) {
+        if (hasActiveEnrollments(student.get())) {
             throw new IllegalArgumentException("无法删除：该学生存在选课记录");
         }
 
         // 执行删除
         studentRepository.delete(student.get());
+        studentIdentityResolver.removed(student.get().getId());
+        studentSearchService.removed(student.get().getId());
     }
 
     /**
@@ -195,6 +289,77 @@ public class StudentService {
         return studentRepository.existsById(id);
     }
 
+    /**
+     * 批量检查学生是否存在
+     * 标识可以是学生UUID或学号，UUID与学号各用一次查询
+     * @param identifiers 学生标识列表
+     * @return 其中存在的学生标识（与传入形式一致）
+     */
+    public Set<String> findExistingStudentIdentifiers(Collection<String> identifiers) {
+        // 内存映射命中的标识直接返回，其余按 UUID 与学号各查询一次
+        Set<String> known = new HashSet<>();
+        List<UUID> uuids = new ArrayList<>();
+        List<String> studentIds = new ArrayList<>();
+        for (String identifier : identifiers) {
+            if (studentIdentityResolver.resolveCached(identifier) != null) {
+                known.add(identifier);
+                continue;
+            }
+            UUID uuid = StudentIdentityResolver.parseUuid(identifier);
+            if (uuid != null) {
+                uuids.add(uuid);
+            } else {
+                studentIds.add(identifier);
+            }
+        }
+
+        Set<String> existing = new HashSet<>();
+        if (!uuids.isEmpty()) {
+            studentRepository.findAllById(uuids).forEach(student -> existing.add(student.getId().toString()));
+        }
+        if (!studentIds.isEmpty()) {
+            studentRepository.findByStudentIdIn(studentIds).forEach(student -> existing.add(student.getStudentId()));
+        }
+        // UUID 的字符串形式可能与传入的大小写不同，按传入形式返回
+        Set<String> result = new HashSet<>(known);
+        for (String identifier : identifiers) {
+            if (existing.contains(identifier) || existing.contains(identifier.toLowerCase(Locale.ROOT))) {
+                result.add(identifier);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 批量查询已存在的学号
+     * @param studentIds 学号集合
+     * @return 其中已存在的学号
+     */
+    public Set<String> findExistingStudentNumbers(Collection<String> studentIds) {
+        Set<String> existing = new HashSet<>();
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(studentIds));
+        for (int from = 0; from < ids.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            existing.addAll(studentRepository.findExistingStudentIds(
+                    ids.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, ids.size()))));
+        }
+        return existing;
+    }
+
+    /**
+     * 批量查询已存在的邮箱
+     * @param emails 邮箱集合
+     * @return 其中已存在的邮箱（小写）
+     */
+    public Set<String> findExistingEmails(Collection<String> emails) {
+        Set<String> existing = new HashSet<>();
+        List<String> values = new ArrayList<>(new LinkedHashSet<>(emails));
+        for (int from = 0; from < values.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            studentRepository.findExistingEmails(values.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, values.size())))
+                    .forEach(email -> existing.add(email.toLowerCase(Locale.ROOT)));
+        }
+        return existing;
+    }
+
     /**
      * 检查学号是否存在
      * @param studentId 学号
@@ -255,15 +420,59 @@ public class StudentService {
     }
 
     /**
-     * 根据姓名关键词搜索学生
+     * 按ID游标分页查询学生
+     * @param major 专业名称，为空时不限
+     * @param grade 入学年份，为空时不限
+     * @param after 上一页的 nextCursor，为空时从第一页开始
+     * @param limit 每页条数
+     * @return 一页学生
+     */
+    public KeysetPage<Student> getStudentsPage(String major, Integer grade, UUID after, int limit) {
+        KeysetPage.checkLimit(limit);
+        checkFilters(major, grade);
+        List<Student> fetched = studentRepository.findPage(major, grade, after, PageRequest.of(0, limit + 1));
+        return KeysetPage.of(fetched, limit, Student::getId);
+    }
+
+    /**
+     * 流式遍历学生，逐条处理后立即从持久化上下文中分离，内存占用与总条数无关
+     * @param major 专业名称，为空时不限
+     * @param grade 入学年份，为空时不限
+     * @param action 每个学生的处理
+     * @return 遍历的学生数
+     */
+    @Transactional(readOnly = true)
+    public long forEachStudent(String major, Integer grade, Consumer<Student> action) {
+        checkFilters(major, grade);
+        long count = 0;
+        try (Stream<Student> students = studentRepository.streamFiltered(major, grade)) {
+            Iterator<Student> iterator = students.iterator();
+            while (iterator.hasNext()) {
+                Student student = iterator.next();
+                action.accept(student);
+                entityManager.detach(student);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void checkFilters(String major, Integer grade) {
+        if (major != null && !StringUtils.hasText(major)) {
+            throw new IllegalArgumentException("专业名称不能为空");
+        }
+        if (grade != null && (grade < 2000 || grade > 2100)) {
+            throw new IllegalArgumentException("入学年份必须在2000-2100之间");
+        }
+    }
+
+    /**
+     * 根据姓名关键词或拼音首字母搜索学生
      * @param keyword 关键词
-     * @return 匹配的学生列表
+     * @return 匹配的学生列表，按匹配程度排序
      */
     public List<Student> searchStudentsByName(String keyword) {
-        if (!StringUtils.hasText(keyword)) {
-            throw new IllegalArgumentException("搜索关键词不能为空");
-        }
-        return studentRepository.findByNameContainingIgnoreCase(keyword);
+        return studentSearchService.search(keyword);
     }
 
     /**
@@ -271,7 +480,7 @@ public class StudentService {
      * @param student 学生对象
      * @throws IllegalArgumentException 如果数据验证失败
      */
-    private void validateStudent(Student student) {
+    void validateStudent(Student student) {
         if (student == null) {
             throw new IllegalArgumentException("学生不能为空");
         }
@@ -329,21 +538,28 @@ public class StudentService {
         // 验证所有学生数据
         for (Student student : students) {
             validateStudent(student);
+            student.setId(null);
+        }
 
-            // 检查学号唯一性
-            if (studentRepository.existsByStudentId(student.getStudentId())) {
+        // 学号、邮箱唯一性：各用分块的 IN 查询检查，列表内重复同样拒绝
+        Set<String> existingStudentIds = findExistingStudentNumbers(students.stream().map(Student::getStudentId).toList());
+        Set<String> existingEmails = findExistingEmails(students.stream().map(Student::getEmail).toList());
+        Set<String> seenStudentIds = new HashSet<>();
+        Set<String> seenEmails = new HashSet<>();
+        for (Student student : students) {
+            if (existingStudentIds.contains(student.getStudentId()) || !seenStudentIds.add(student.getStudentId())) {
                 throw new IllegalArgumentException("学号已存在: " + student.getStudentId());
             }
-
-            // 检查邮箱唯一性
-            if (studentRepository.existsByEmail(student.getEmail())) {
+            String email = student.getEmail().toLowerCase(Locale.ROOT);
+            if (existingEmails.contains(email) || !seenEmails.add(email)) {
                 throw new IllegalArgumentException("邮箱地址已存在: " + student.getEmail());
             }
-
-            student.setId(null);
         }
 
-        return studentRepository.saveAll(students);
+        List<Student> saved = studentRepository.saveAll(students);
+        saved.forEach(studentIdentityResolver::registered);
+        saved.forEach(studentSearchService::indexed);
+        return saved;
     }
 
     /**
@@ -360,24 +576,30 @@ public class StudentService {
     }
 
     /**
-     * 检查学生是否有活跃的选课记录
-     * @param studentId 学生ID
+     * 检查学生是否有活跃的选课记录，选课可能以 UUID 或学号记录，两者都检查
+     * @param student 学生
      * @return 如果有活跃选课记录返回true
      */
-    private boolean hasActiveEnrollments(UUID studentId) {
-        // 这里需要注入 EnrollmentService 或 EnrollmentRepository
-        // 假设我们注入了 EnrollmentService
-        List<Enrollment> enrollments = enrollmentService.getEnrollmentsByStudent(studentId.toString());
-
-        // 活跃记录：状态为 ENROLLED 或 COMPLETED（未退课的）
-        return enrollments.stream()
-                .anyMatch(enrollment ->
-                        EnrollmentStatus.ENROLLED.equals(enrollment.getStatus()) ||
-                                EnrollmentStatus.COMPLETED.equals(enrollment.getStatus()));
+    private boolean hasActiveEnrollments(Student student) {
+        // 活跃记录：状态为 ENROLLED 或 COMPLETED（未退课的），存在性查询不加载选课实体
+        if (enrollmentService.hasActiveEnrollments(student.getId().toString())) {
+            return true;
+        }
+        return StringUtils.hasText(student.getStudentId())
+                && enrollmentService.hasActiveEnrollments(student.getStudentId());
     }
 
     //
     public boolean isInitialized() {
         return studentRepository.count() > 0;
     }
+
+    /**
+     * 批量删除结果
+     * @param deleted 已删除的学生ID
+     * @param notFound 不存在的学生ID
+     * @param blocked 存在选课记录而未删除的学生ID
+     */
+    public record BulkDeleteResult(List<UUID> deleted, List<UUID> notFound, List<UUID> blocked) {
+    }
 }
\ No newline at end of file
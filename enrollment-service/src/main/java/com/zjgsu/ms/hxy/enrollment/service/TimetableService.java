@@ -0,0 +1,186 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import com.zjgsu.ms.hxy.enrollment.client.CatalogClient;
+import com.zjgsu.ms.hxy.enrollment.model.Enrollment;
+import com.zjgsu.ms.hxy.enrollment.model.EnrollmentStatus;
+import com.zjgsu.ms.hxy.enrollment.repository.EnrollmentRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * TimetableService 类
+ * 学生课表：一次索引查询取出学生的在读选课，一次批量课程查询补全课程信息，
+ * 合并后按课程时间表排序返回，取代逐门课程查询课程服务
+ * 课程信息在本地缓存一段时间，缓存内的课程不再远程查询；课程服务不可用时仍返回选课，课程信息为空
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Service
+public class TimetableService {
+
+    /**
+     * 课表展示的课程字段；不缓存选课人数等频繁变化的字段
+     */
+    private static final List<String> COURSE_FIELDS =
+            List.of("code", "title", "instructorId", "scheduleId", "location", "credits", "description");
+
+    /**
+     * 按时间表、课程代码排序，缺少课程信息的条目排在最后
+     */
+    private static final Comparator<Map<String, Object>> SCHEDULE_ORDER = Comparator
+            .comparing((Map<String, Object> entry) -> courseField(entry, "scheduleId"),
+                    Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(entry -> courseField(entry, "code"), Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(entry -> (String) entry.get("courseId"));
+
+    private final EnrollmentRepository enrollmentRepository;
+    private final StudentIdentityResolver studentIdentityResolver;
+    private final CatalogClient catalogClient;
+
+    /**
+     * 课程缓存有效期（毫秒）
+     */
+    private final long courseCacheTtlMillis;
+
+    /**
+     * 课程缓存条目上限，超出时清理过期条目
+     */
+    private final int courseCacheMaxEntries;
+
+    /**
+     * courseId -> 课表所需的课程字段
+     */
+    private final Map<String, CachedCourse> courses = new ConcurrentHashMap<>();
+
+    public TimetableService(EnrollmentRepository enrollmentRepository,
+                            StudentIdentityResolver studentIdentityResolver,
+                            CatalogClient catalogClient,
+                            @Value("${enrollment.timetable.course-cache-ttl-ms:300000}") long courseCacheTtlMillis,
+                            @Value("${enrollment.timetable.course-cache-max-entries:10000}") int courseCacheMaxEntries) {
+        this.enrollmentRepository = enrollmentRepository;
+        this.studentIdentityResolver = studentIdentityResolver;
+        this.catalogClient = catalogClient;
+        this.courseCacheTtlMillis = courseCacheTtlMillis;
+        this.courseCacheMaxEntries = courseCacheMaxEntries;
+    }
+
+    /**
+     * 查询学生课表
+     * 学生的选课可能以 UUID 或学号记录，两者合并（binary-ids 配置下只有 UUID）
+     * @param id 学生 UUID
+     * @return 课表，学生不存在时为空
+     */
+    public Optional<Timetable> getTimetable(UUID id) {
+        Optional<String> studentNumber = studentIdentityResolver.studentNumberOf(id);
+        if (studentNumber.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Set<String> identifiers = new LinkedHashSet<>();
+        identifiers.add(id.toString());
+        if (studentIdentityResolver.isEnrollmentIdStorable(studentNumber.get())) {
+            identifiers.add(studentNumber.get());
+        }
+        List<Enrollment> enrollments = enrollmentRepository.findByStudentIdInAndStatus(identifiers, EnrollmentStatus.ENROLLED);
+
+        Set<String> courseIds = new HashSet<>();
+        enrollments.forEach(enrollment -> courseIds.add(enrollment.getCourseId()));
+        Map<String, Map<String, Object>> courseData = new HashMap<>();
+        boolean catalogAvailable = resolveCourses(courseIds, courseData);
+
+        List<Map<String, Object>> entries = new ArrayList<>(enrollments.size());
+        long totalCredits = 0;
+        for (Enrollment enrollment : enrollments) {
+            Map<String, Object> course = courseData.get(enrollment.getCourseId());
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("enrollmentId", enrollment.getId());
+            entry.put("courseId", enrollment.getCourseId());
+            entry.put("enrolledAt", enrollment.getEnrolledAt());
+            entry.put("status", enrollment.getStatusString());
+            entry.put("course", course);
+            entries.add(entry);
+            if (course != null && course.get("credits") instanceof Number credits) {
+                totalCredits += credits.longValue();
+            }
+        }
+        entries.sort(SCHEDULE_ORDER);
+        return Optional.of(new Timetable(id, studentNumber.get(), entries, totalCredits, catalogAvailable));
+    }
+
+    /**
+     * 从本地缓存和一次批量课程查询解析课程
+     * @return 课程服务可用（或无需调用）时返回true
+     */
+    private boolean resolveCourses(Set<String> courseIds, Map<String, Map<String, Object>> resolved) {
+        long now = System.currentTimeMillis();
+        List<String> missing = new ArrayList<>();
+        for (String courseId : courseIds) {
+            CachedCourse cached = courses.get(courseId);
+            if (cached != null && cached.expiresAt > now) {
+                resolved.put(courseId, cached.fields);
+            } else {
+                missing.add(courseId);
+            }
+        }
+        if (missing.isEmpty()) {
+            return true;
+        }
+
+        Map<String, Map<String, Object>> fetched;
+        try {
+            fetched = catalogClient.getCourses(missing);
+        } catch (RuntimeException e) {
+            System.err.println("Failed to load courses for timetable: " + e.getMessage());
+            return false;
+        }
+        if (courses.size() + fetched.size() > courseCacheMaxEntries) {
+            courses.values().removeIf(cached -> cached.expiresAt <= now);
+        }
+        for (Map.Entry<String, Map<String, Object>> course : fetched.entrySet()) {
+            Map<String, Object> fields = new HashMap<>();
+            for (String field : COURSE_FIELDS) {
+                fields.put(field, course.getValue().get(field));
+            }
+            resolved.put(course.getKey(), fields);
+            if (courses.size() < courseCacheMaxEntries) {
+                courses.put(course.getKey(), new CachedCourse(fields, now + courseCacheTtlMillis));
+            }
+        }
+        return true;
+    }
+
+    private static String courseField(Map<String, Object> entry, String field) {
+        Object course = entry.get("course");
+        if (course instanceof Map<?, ?> fields && fields.get(field) != null) {
+            return fields.get(field).toString();
+        }
+        return null;
+    }
+
+    /**
+     * 课程缓存条目
+     */
+    private record CachedCourse(Map<String, Object> fields, long expiresAt) {
+    }
+
+    /**
+     * 学生课表：entries 按时间表排序，每项的 course 为课程信息（课程不存在或课程服务不可用时为空）
+     */
+    public record Timetable(UUID id, String studentId, List<Map<String, Object>> entries,
+                            long totalCredits, boolean catalogAvailable) {
+    }
+}
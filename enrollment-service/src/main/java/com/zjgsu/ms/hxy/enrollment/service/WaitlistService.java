@@ -0,0 +1,399 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import com.zjgsu.ms.hxy.enrollment.client.CatalogClient;
+import com.zjgsu.ms.hxy.enrollment.event.SeatReleasedEvent;
+import com.zjgsu.ms.hxy.enrollment.exception.CourseFullException;
+import com.zjgsu.ms.hxy.enrollment.model.EnrollmentStatus;
+import com.zjgsu.ms.hxy.enrollment.model.WaitlistEntry;
+import com.zjgsu.ms.hxy.enrollment.model.WaitlistStatus;
+import com.zjgsu.ms.hxy.enrollment.repository.EnrollmentRepository;
+import com.zjgsu.ms.hxy.enrollment.repository.WaitlistEntryRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * WaitlistService 类
+ * 已满课程的候补队列：每门课程一个先进先出队列，持久化在 waitlist_entries 表中，
+ * 内存中保留有序队列用于 O(1) 查询排队位置；名额释放后按顺序自动递补
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@Service
+public class WaitlistService {
+
+    private final WaitlistEntryRepository waitlistRepository;
+    private final EnrollmentRepository enrollmentRepository;
+    private final EnrollmentService enrollmentService;
+    private final StudentService studentService;
+    private final StudentIdentityResolver studentIdentityResolver;
+    private final CatalogClient catalogClient;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * 每门课程单轮最多递补的人数
+     */
+    private final int maxPromotionsPerPass;
+
+    /**
+     * courseId -> 该课程的候补队列
+     */
+    private final Map<String, CourseWaitlist> waitlists = new ConcurrentHashMap<>();
+
+    /**
+     * 等待递补处理的课程
+     */
+    private final Set<String> coursesToPromote = ConcurrentHashMap.newKeySet();
+
+    public WaitlistService(WaitlistEntryRepository waitlistRepository,
+                           EnrollmentRepository enrollmentRepository,
+                           @Lazy EnrollmentService enrollmentService,
+                           @Lazy StudentService studentService,
+                           StudentIdentityResolver studentIdentityResolver,
+                           CatalogClient catalogClient,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${enrollment.waitlist.max-promotions-per-pass:50}") int maxPromotionsPerPass) {
+        this.waitlistRepository = waitlistRepository;
+        this.enrollmentRepository = enrollmentRepository;
+        this.enrollmentService = enrollmentService;
+        this.studentService = studentService;
+        this.studentIdentityResolver = studentIdentityResolver;
+        this.catalogClient = catalogClient;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxPromotionsPerPass = maxPromotionsPerPass;
+    }
+
+    /**
+     * 启动时从数据库重建内存中的候补队列
+     */
+    @PostConstruct
+    public void loadWaitlists() {
+        for (Object[] row : waitlistRepository.findMaxSequenceByCourse()) {
+            waitlistOf((String) row[0]).nextSequence = ((Number) row[1]).longValue() + 1;
+        }
+        for (WaitlistEntry entry : waitlistRepository.findByStatusOrderByCourseIdAscSequenceAsc(WaitlistStatus.WAITING)) {
+            waitlistOf(entry.getCourseId()).add(new Ticket(entry.getId(), entry.getStudentId(), entry.getSequence()));
+        }
+        // 停机期间可能有名额释放，启动后检查一遍
+        waitlists.forEach((courseId, waitlist) -> {
+            if (waitlist.size() > 0) {
+                coursesToPromote.add(courseId);
+            }
+        });
+    }
+
+    /**
+     * 加入课程候补队列
+     * 只有课程已满或已有学生在排队时才能加入
+     * 课程ID与学生ID按选课记录中保存的形式归一后作为队列的键，与选课时的 hasWaiting 检查一致
+     * @param requestedCourseId 课程ID
+     * @param requestedStudentId 学生ID（UUID 或学号）
+     * @return 排队信息
+     */
+    public Map<String, Object> join(String requestedCourseId, String requestedStudentId) {
+        if (!StringUtils.hasText(requestedCourseId)) {
+            throw new IllegalArgumentException("课程ID不能为空");
+        }
+        if (!StringUtils.hasText(requestedStudentId)) {
+            throw new IllegalArgumentException("学生ID不能为空");
+        }
+        String courseId = studentIdentityResolver.toEnrollmentCourseId(requestedCourseId);
+        String studentId = studentIdentityResolver.toEnrollmentStudentId(requestedStudentId);
+        if (studentService.findExistingStudentIdentifiers(List.of(studentId)).isEmpty()) {
+            throw new IllegalArgumentException("学生不存在，ID: " + studentId);
+        }
+        Object capacity = catalogClient.getCourse(courseId).get("capacity");
+        if (!(capacity instanceof Number)) {
+            throw new RuntimeException("课程信息不完整，无法候补");
+        }
+        if (enrollmentService.isStudentEnrolled(courseId, studentId)) {
+            throw new IllegalArgumentException("学生已选该课程，无需候补");
+        }
+
+        CourseWaitlist waitlist = waitlistOf(courseId);
+        waitlist.lock.lock();
+        try {
+            if (waitlist.contains(studentId)) {
+                throw new IllegalArgumentException("学生已在该课程的候补队列中");
+            }
+            if (waitlist.size() == 0 &&
+                    enrollmentRepository.countByCourseIdAndStatusNot(courseId, EnrollmentStatus.WITHDRAWN) < ((Number) capacity).longValue()) {
+                throw new IllegalArgumentException("课程尚有名额，请直接选课");
+            }
+
+            long sequence = waitlist.nextSequence;
+            WaitlistEntry saved = waitlistRepository.save(new WaitlistEntry(courseId, studentId, sequence));
+            waitlist.nextSequence = sequence + 1;
+            Ticket ticket = new Ticket(saved.getId(), studentId, sequence);
+            waitlist.add(ticket);
+            return toView(courseId, waitlist, ticket);
+        } finally {
+            waitlist.lock.unlock();
+        }
+    }
+
+    /**
+     * 查询学生在课程候补队列中的位置
+     * @param requestedCourseId 课程ID
+     * @param requestedStudentId 学生ID（UUID 或学号）
+     * @return 排队信息，不在队列中时返回空Optional
+     */
+    public Optional<Map<String, Object>> getPosition(String requestedCourseId, String requestedStudentId) {
+        String courseId = studentIdentityResolver.toEnrollmentCourseId(requestedCourseId);
+        CourseWaitlist waitlist = waitlists.get(courseId);
+        if (waitlist == null) {
+            return Optional.empty();
+        }
+        String studentId = studentIdentityResolver.toEnrollmentStudentId(requestedStudentId);
+        waitlist.lock.lock();
+        try {
+            Ticket ticket = waitlist.get(studentId);
+            return ticket == null ? Optional.empty() : Optional.of(toView(courseId, waitlist, ticket));
+        } finally {
+            waitlist.lock.unlock();
+        }
+    }
+
+    /**
+     * 退出课程候补队列
+     * @param requestedCourseId 课程ID
+     * @param requestedStudentId 学生ID（UUID 或学号）
+     * @return 如果学生在队列中并已退出返回true
+     */
+    public boolean leave(String requestedCourseId, String requestedStudentId) {
+        String courseId = studentIdentityResolver.toEnrollmentCourseId(requestedCourseId);
+        CourseWaitlist waitlist = waitlists.get(courseId);
+        if (waitlist == null) {
+            return false;
+        }
+        String studentId = studentIdentityResolver.toEnrollmentStudentId(requestedStudentId);
+        waitlist.lock.lock();
+        try {
+            Ticket ticket = waitlist.get(studentId);
+            if (ticket == null) {
+                return false;
+            }
+            transactionTemplate.executeWithoutResult(status ->
+                    waitlistRepository.resolve(ticket.entryId, WaitlistStatus.CANCELLED, LocalDateTime.now()));
+            waitlist.remove(ticket);
+            return true;
+        } finally {
+            waitlist.lock.unlock();
+        }
+    }
+
+    /**
+     * 课程是否有学生正在候补
+     * 有学生排队时释放的名额优先留给候补学生
+     * @param courseId 课程ID
+     * @return 如果有学生在排队返回true
+     */
+    public boolean hasWaiting(String courseId) {
+        CourseWaitlist waitlist = waitlists.get(courseId);
+        return waitlist != null && waitlist.size() > 0;
+    }
+
+    /**
+     * 名额释放事件（事务提交后），登记课程等待递补
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onSeatReleased(SeatReleasedEvent event) {
+        if (hasWaiting(event.courseId())) {
+            coursesToPromote.add(event.courseId());
+        }
+    }
+
+    /**
+     * 定时处理等待递补的课程
+     */
+    @Scheduled(fixedDelayString = "${enrollment.waitlist.promotion-interval-ms:200}")
+    public void promotePending() {
+        for (String courseId : coursesToPromote) {
+            coursesToPromote.remove(courseId);
+            try {
+                promote(courseId);
+            } catch (Exception e) {
+                System.err.println("Failed to promote waitlist for course " + courseId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 定时全量检查，处理容量调整等未触发事件的名额变化
+     */
+    @Scheduled(fixedDelayString = "${enrollment.waitlist.sweep-interval-ms:60000}")
+    public void sweep() {
+        waitlists.forEach((courseId, waitlist) -> {
+            if (waitlist.size() > 0) {
+                coursesToPromote.add(courseId);
+            }
+        });
+    }
+
+    /**
+     * 按排队顺序为课程递补学生，单轮最多 maxPromotionsPerPass 人，剩余的留到下一轮
+     */
+    private void promote(String courseId) {
+        CourseWaitlist waitlist = waitlists.get(courseId);
+        if (waitlist == null) {
+            return;
+        }
+        waitlist.lock.lock();
+        try {
+            if (waitlist.size() == 0) {
+                return;
+            }
+            Object capacity = catalogClient.getCourse(courseId).get("capacity");
+            if (!(capacity instanceof Number)) {
+                return;
+            }
+            long capacityValue = ((Number) capacity).longValue();
+            // 剩余名额只是估计值，递补时以占座结果为准
+            long freeSeats = capacityValue
+                    - enrollmentRepository.countByCourseIdAndStatusNot(courseId, EnrollmentStatus.WITHDRAWN);
+
+            int promoted = 0;
+            while (freeSeats > 0 && promoted < maxPromotionsPerPass) {
+                Ticket head = waitlist.peek();
+                if (head == null) {
+                    break;
+                }
+                Boolean enrolled;
+                try {
+                    enrolled = transactionTemplate.execute(status -> {
+                        boolean ok = enrollmentService.enrollFromWaitlist(courseId, head.studentId, capacityValue);
+                        waitlistRepository.resolve(head.entryId,
+                                ok ? WaitlistStatus.PROMOTED : WaitlistStatus.CANCELLED, LocalDateTime.now());
+                        return ok;
+                    });
+                } catch (CourseFullException e) {
+                    // 名额已被其他选课占用，排队保持不变，等待下一次名额释放
+                    freeSeats = 0;
+                    break;
+                }
+                waitlist.remove(head);
+                if (Boolean.TRUE.equals(enrolled)) {
+                    promoted++;
+                    freeSeats--;
+                }
+            }
+
+            if (freeSeats > 0 && waitlist.size() > 0) {
+                coursesToPromote.add(courseId);
+            }
+        } finally {
+            waitlist.lock.unlock();
+        }
+    }
+
+    /**
+     * 获取（或创建）课程的候补队列
+     */
+    private CourseWaitlist waitlistOf(String courseId) {
+        return waitlists.computeIfAbsent(courseId, k -> new CourseWaitlist());
+    }
+
+    /**
+     * 生成排队信息
+     */
+    private Map<String, Object> toView(String courseId, CourseWaitlist waitlist, Ticket ticket) {
+        Map<String, Object> view = new HashMap<>();
+        view.put("entryId", ticket.entryId);
+        view.put("courseId", courseId);
+        view.put("studentId", ticket.studentId);
+        view.put("position", waitlist.positionOf(ticket));
+        view.put("waitingCount", waitlist.size());
+        return view;
+    }
+
+    /**
+     * 候补排队号
+     */
+    private static final class Ticket {
+        private final UUID entryId;
+        private final String studentId;
+        private final long sequence;
+        private boolean cancelled;
+
+        private Ticket(UUID entryId, String studentId, long sequence) {
+            this.entryId = entryId;
+            this.studentId = studentId;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * 单门课程的候补队列，除 size() 外的访问都需持有 lock
+     * 持锁期间会访问数据库，使用 ReentrantLock 而不是 synchronized，避免在虚拟线程上钉住载体线程
+     * 退出候补的排队号只做标记，到达队首时再丢弃，因此位置计算为 O(1)；
+     * 前方尚未丢弃的已退出排队号仍计入位置，位置可能略大于实际人数
+     */
+    private static final class CourseWaitlist {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ArrayDeque<Ticket> queue = new ArrayDeque<>();
+        private final Map<String, Ticket> waitingByStudent = new HashMap<>();
+        private long nextSequence = 1;
+        private volatile int waiting;
+
+        private void add(Ticket ticket) {
+            queue.addLast(ticket);
+            waitingByStudent.put(ticket.studentId, ticket);
+            waiting = waitingByStudent.size();
+        }
+
+        private void remove(Ticket ticket) {
+            ticket.cancelled = true;
+            waitingByStudent.remove(ticket.studentId, ticket);
+            waiting = waitingByStudent.size();
+            dropCancelledHead();
+        }
+
+        private Ticket peek() {
+            dropCancelledHead();
+            return queue.peekFirst();
+        }
+
+        private Ticket get(String studentId) {
+            return waitingByStudent.get(studentId);
+        }
+
+        private boolean contains(String studentId) {
+            return waitingByStudent.containsKey(studentId);
+        }
+
+        private int size() {
+            return waiting;
+        }
+
+        private long positionOf(Ticket ticket) {
+            Ticket head = peek();
+            return head == null ? 1 : ticket.sequence - head.sequence + 1;
+        }
+
+        private void dropCancelledHead() {
+            while (!queue.isEmpty() && queue.peekFirst().cancelled) {
+                queue.pollFirst();
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.zjgsu.ms.hxy.enrollment.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * CatalogClient 测试：同一课程的并发查询只发出一次远程请求，微缓存过期后重新查询，
+ * 修改课程已选人数后不再返回缓存的课程
+ */
+class CatalogClientTest {
+
+    private static final String COURSE_URL = "http://catalog:8081/api/courses/course-1";
+
+    private final RestTemplate restTemplate = mock(RestTemplate.class);
+    private final DiscoveryClient discoveryClient = mock(DiscoveryClient.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void concurrentLookupsOfOneCourseIssueOneRemoteCall() throws Exception {
+        CatalogClient client = client(200);
+        CountDownLatch release = new CountDownLatch(1);
+        when(restTemplate.getForObject(eq(COURSE_URL), eq(Map.class))).thenAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            return courseResponse();
+        });
+
+        int callers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<Map<String, Object>>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> client.getCourse("course-1")));
+            }
+            // 等其余调用都已合并到进行中的请求上再放行
+            long deadline = System.currentTimeMillis() + 10000;
+            while (lookups("coalesced") < callers - 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+            for (Future<Map<String, Object>> result : results) {
+                assertThat(result.get(10, TimeUnit.SECONDS)).containsEntry("id", "course-1");
+            }
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+
+        verify(restTemplate, times(1)).getForObject(eq(COURSE_URL), eq(Map.class));
+        assertThat(lookups("issued")).isEqualTo(1);
+        assertThat(lookups("coalesced")).isEqualTo(callers - 1);
+    }
+
+    @Test
+    void cachedCourseExpiresAfterTtl() throws Exception {
+        CatalogClient client = client(100);
+        when(restTemplate.getForObject(eq(COURSE_URL), eq(Map.class))).thenReturn(courseResponse());
+
+        client.getCourse("course-1");
+        client.getCourse("course-1");
+        verify(restTemplate, times(1)).getForObject(eq(COURSE_URL), eq(Map.class));
+
+        Thread.sleep(150);
+        client.getCourse("course-1");
+        verify(restTemplate, times(2)).getForObject(eq(COURSE_URL), eq(Map.class));
+    }
+
+    @Test
+    void changingEnrolledCountsInvalidatesTheCachedCourse() {
+        CatalogClient client = client(60000);
+        when(restTemplate.getForObject(eq(COURSE_URL), eq(Map.class))).thenReturn(courseResponse());
+        when(restTemplate.postForObject(anyString(), any(), eq(Map.class))).thenReturn(Map.of("data", List.of()));
+
+        client.getCourse("course-1");
+        client.applyEnrolledDeltas(List.of(Map.of("idempotencyKey", "k-1", "courseId", "course-1", "delta", 1)));
+        client.getCourse("course-1");
+
+        verify(restTemplate, times(2)).getForObject(eq(COURSE_URL), eq(Map.class));
+    }
+
+    private CatalogClient client(long cacheTtlMillis) {
+        ServiceInstance instance = mock(ServiceInstance.class);
+        when(instance.getUri()).thenReturn(URI.create("http://catalog:8081"));
+        when(discoveryClient.getInstances("catalog-service")).thenReturn(List.of(instance));
+        CatalogResilience resilience = new CatalogResilience(meterRegistry, 50, 20, 50, 10000, 5, 50, 100, false, 50);
+        return new CatalogClient(restTemplate, discoveryClient, new ObjectMapper(), resilience, meterRegistry,
+                cacheTtlMillis, 2000, 3000);
+    }
+
+    private double lookups(String outcome) {
+        return meterRegistry.get("catalog.client.course.lookups").tag("outcome", outcome).counter().count();
+    }
+
+    private static Map<String, Object> courseResponse() {
+        return Map.of("code", 200, "data", Map.of("id", "course-1", "capacity", 30));
+    }
+}
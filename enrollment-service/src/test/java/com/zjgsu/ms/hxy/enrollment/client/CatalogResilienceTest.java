@@ -0,0 +1,95 @@
+package com.zjgsu.ms.hxy.enrollment.client;
+
+import com.zjgsu.ms.hxy.enrollment.exception.CatalogUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * CatalogResilience 测试：对冲请求先返回时，仍在进行的首选请求继续占用舱壁许可，结束后才释放
+ */
+class CatalogResilienceTest {
+
+    private static final List<String> BASE_URLS = List.of("http://catalog-1", "http://catalog-2");
+
+    private final CatalogResilience resilience = new CatalogResilience(new SimpleMeterRegistry(),
+            50, 20, 50, 10000, 5, 1, 10, true, 10);
+
+    private final CountDownLatch primaryRelease = new CountDownLatch(1);
+
+    @AfterEach
+    void shutdown() {
+        primaryRelease.countDown();
+        resilience.shutdown();
+    }
+
+    @Test
+    void hedgedCallHoldsPermitUntilTheSlowPrimaryFinishes() throws Exception {
+        CountDownLatch primaryDone = new CountDownLatch(1);
+        String result = resilience.execute(BASE_URLS, true, baseUrl -> {
+            if (baseUrl.equals(BASE_URLS.get(0))) {
+                await(primaryRelease);
+                primaryDone.countDown();
+                return "primary";
+            }
+            return "hedge";
+        });
+        assertThat(result).isEqualTo("hedge");
+
+        assertThatThrownBy(() -> resilience.execute(BASE_URLS, false, baseUrl -> "next"))
+                .isInstanceOf(CatalogUnavailableException.class);
+
+        primaryRelease.countDown();
+        assertThat(primaryDone.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(executeWhenPermitFree()).isEqualTo("next");
+    }
+
+    @Test
+    void hedgedAsyncCallHoldsPermitUntilTheSlowPrimaryFinishes() throws Exception {
+        CompletableFuture<String> primary = new CompletableFuture<>();
+        String result = resilience.<String>executeAsync(BASE_URLS, true,
+                baseUrl -> baseUrl.equals(BASE_URLS.get(0)) ? primary : CompletableFuture.completedFuture("hedge"))
+                .get(10, TimeUnit.SECONDS);
+        assertThat(result).isEqualTo("hedge");
+
+        assertThat(resilience.<String>executeAsync(BASE_URLS, false, baseUrl -> CompletableFuture.completedFuture("next")))
+                .failsWithin(10, TimeUnit.SECONDS);
+
+        primary.complete("primary");
+        assertThat(resilience.<String>executeAsync(BASE_URLS, false, baseUrl -> CompletableFuture.completedFuture("next"))
+                .get(10, TimeUnit.SECONDS)).isEqualTo("next");
+    }
+
+    /**
+     * 首选请求结束后许可在其完成回调中释放，稍等片刻再调用
+     */
+    private String executeWhenPermitFree() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (true) {
+            try {
+                return resilience.execute(BASE_URLS, false, baseUrl -> "next");
+            } catch (CatalogUnavailableException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(5);
+            }
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
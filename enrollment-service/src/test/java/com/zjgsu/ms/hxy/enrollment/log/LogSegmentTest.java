@@ -0,0 +1,125 @@
+package com.zjgsu.ms.hxy.enrollment.log;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * LogSegment 测试：记录格式与 CRC，恢复时截断校验失败或未写完的记录
+ */
+class LogSegmentTest {
+
+    private static final int SEGMENT_BYTES = 4096;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordIsLengthCrcOffsetTimestampThenPayload() throws IOException {
+        LogSegment segment = LogSegment.open(directory, 10, SEGMENT_BYTES, 64);
+        try {
+            byte[] payload = bytes("hello");
+            assertThat(segment.append(payload, 42L, new CRC32())).isEqualTo(10L);
+
+            ByteBuffer buffer = segment.buffer();
+            assertThat(buffer.getInt(0)).isEqualTo(payload.length);
+            assertThat(buffer.getLong(8)).isEqualTo(10L);
+            assertThat(buffer.getLong(16)).isEqualTo(42L);
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(8, LogSegment.HEADER_BYTES - 8 + payload.length));
+            assertThat(buffer.getInt(4)).isEqualTo((int) crc.getValue());
+            assertThat(segment.position()).isEqualTo(LogSegment.HEADER_BYTES + payload.length);
+            assertThat(segment.nextOffset()).isEqualTo(11L);
+        } finally {
+            segment.close();
+        }
+    }
+
+    @Test
+    void recordWithBadCrcIsTruncatedOnRecovery() throws IOException {
+        int secondPosition = writeRecords("a", "b", "c").get(1);
+        // 改动第二条记录的内容，长度与序号仍然有效，只有 CRC 不匹配
+        overwrite(secondPosition + LogSegment.HEADER_BYTES, bytes("x"));
+
+        LogSegment segment = LogSegment.open(directory, 0, SEGMENT_BYTES, 64);
+        try {
+            assertThat(segment.nextOffset()).isEqualTo(1L);
+            assertThat(segment.position()).isEqualTo(secondPosition);
+            assertThat(segment.buffer().getInt(secondPosition)).isZero();
+            assertThat(payloads(segment)).containsExactly("a");
+            assertThat(segment.append(bytes("d"), 1L, new CRC32())).isEqualTo(1L);
+            assertThat(payloads(segment)).containsExactly("a", "d");
+        } finally {
+            segment.close();
+        }
+    }
+
+    @Test
+    void partiallyWrittenRecordIsDiscardedOnRecovery() throws IOException {
+        int end = writeRecords("a", "b").get(2);
+        // 模拟写到一半时崩溃：长度已写入，序号、CRC 与内容没有写入
+        overwrite(end, ByteBuffer.allocate(4).putInt(0, 100).array());
+
+        LogSegment segment = LogSegment.open(directory, 0, SEGMENT_BYTES, 64);
+        try {
+            assertThat(segment.nextOffset()).isEqualTo(2L);
+            assertThat(segment.position()).isEqualTo(end);
+            assertThat(segment.buffer().getInt(end)).isZero();
+            assertThat(payloads(segment)).containsExactly("a", "b");
+        } finally {
+            segment.close();
+        }
+    }
+
+    /**
+     * 写入记录并关闭段
+     * @return 每条记录的起始位置，最后一项为数据末尾
+     */
+    private List<Integer> writeRecords(String... payloads) throws IOException {
+        LogSegment segment = LogSegment.open(directory, 0, SEGMENT_BYTES, 64);
+        try {
+            CRC32 crc = new CRC32();
+            List<Integer> positions = new ArrayList<>();
+            for (String payload : payloads) {
+                positions.add(segment.position());
+                segment.append(bytes(payload), 1L, crc);
+            }
+            positions.add(segment.position());
+            segment.flush(segment.position());
+            return positions;
+        } finally {
+            segment.close();
+        }
+    }
+
+    private void overwrite(int position, byte[] data) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory.resolve(LogSegment.fileName(0)), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(data), position);
+        }
+    }
+
+    private static List<String> payloads(LogSegment segment) {
+        List<LogRecord> records = new ArrayList<>();
+        segment.read(0, Long.MAX_VALUE, 100, records);
+        List<String> payloads = new ArrayList<>();
+        for (LogRecord record : records) {
+            payloads.add(new String(record.payloadBytes(), StandardCharsets.UTF_8));
+        }
+        return payloads;
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
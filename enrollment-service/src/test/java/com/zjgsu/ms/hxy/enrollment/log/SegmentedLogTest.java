@@ -0,0 +1,142 @@
+package com.zjgsu.ms.hxy.enrollment.log;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * SegmentedLog 测试：跨段读取与重新打开，并发追加的序号连续，长轮询在新记录刷盘后完成，同一目录只能打开一次
+ */
+class SegmentedLogTest {
+
+    @TempDir
+    Path directory;
+
+    private final List<SegmentedLog> opened = new ArrayList<>();
+
+    @AfterEach
+    void close() {
+        opened.forEach(SegmentedLog::close);
+    }
+
+    @Test
+    void recordsSurviveRollAndReopen() throws Exception {
+        SegmentedLog log = open(256);
+        List<byte[]> payloads = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            payloads.add(bytes("record-" + i));
+        }
+        long last = log.append(payloads);
+        assertThat(log.awaitDurable(last, 5000)).isTrue();
+        log.close();
+        opened.remove(log);
+
+        SegmentedLog reopened = open(256);
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files.filter(file -> file.toString().endsWith(".log")).count()).isGreaterThan(1L);
+        }
+        assertThat(reopened.durableOffset()).isEqualTo(20L);
+        List<LogRecord> records = reopened.read(0, 100);
+        assertThat(records).hasSize(20);
+        for (int i = 0; i < 20; i++) {
+            assertThat(records.get(i).offset()).isEqualTo(i);
+            assertThat(text(records.get(i))).isEqualTo("record-" + i);
+        }
+        assertThat(reopened.append(List.of(bytes("next")))).isEqualTo(20L);
+    }
+
+    @Test
+    void concurrentAppendsGetContiguousOffsets() throws Exception {
+        SegmentedLog log = open(4096);
+        int threads = 8;
+        int perThread = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        long offset = log.append(List.of(bytes(thread + "-" + i)));
+                        if (!log.awaitDurable(offset, 5000)) {
+                            throw new IllegalStateException("offset " + offset + " not durable");
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<LogRecord> records = log.read(0, threads * perThread + 1);
+        assertThat(records).hasSize(threads * perThread);
+        Set<String> payloads = new HashSet<>();
+        for (int i = 0; i < records.size(); i++) {
+            assertThat(records.get(i).offset()).isEqualTo(i);
+            payloads.add(text(records.get(i)));
+        }
+        assertThat(payloads).hasSize(threads * perThread);
+    }
+
+    @Test
+    void tailCompletesWhenANewRecordIsDurable() throws Exception {
+        SegmentedLog log = open(4096);
+        CompletableFuture<List<LogRecord>> tail = log.tail(0, 10, 10000);
+        assertThat(tail.isDone()).isFalse();
+
+        log.append(List.of(bytes("first")));
+
+        List<LogRecord> records = tail.get(5, TimeUnit.SECONDS);
+        assertThat(records).hasSize(1);
+        assertThat(text(records.get(0))).isEqualTo("first");
+    }
+
+    @Test
+    void tailReturnsEmptyWhenNothingArrivesInTime() throws Exception {
+        SegmentedLog log = open(4096);
+        assertThat(log.tail(0, 10, 50).get(5, TimeUnit.SECONDS)).isEmpty();
+    }
+
+    @Test
+    void directoryCanOnlyBeOpenedOnce() throws IOException {
+        open(4096);
+        assertThatThrownBy(() -> open(4096)).isInstanceOf(IllegalStateException.class);
+    }
+
+    private SegmentedLog open(int segmentBytes) throws IOException {
+        SegmentedLog log = SegmentedLog.open(directory,
+                new SegmentedLog.Options(segmentBytes, 64, Long.MAX_VALUE, Long.MAX_VALUE, 5));
+        opened.add(log);
+        return log;
+    }
+
+    private static String text(LogRecord record) {
+        return new String(record.payloadBytes(), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,124 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import com.zjgsu.ms.hxy.enrollment.model.Enrollment;
+import com.zjgsu.ms.hxy.enrollment.repository.EnrollmentRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ActiveEnrollmentFilter 测试：启动构建装入已有选课，登记与移除在事务提交后才生效，回滚的事务不改变过滤器
+ * 测试方法不在测试事务中运行，各事务各自提交
+ */
+@DataJpaTest
+@Import({ActiveEnrollmentFilter.class, ActiveEnrollmentFilterTest.Config.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ActiveEnrollmentFilterTest {
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    // 过滤器在测试之间共用，每个测试使用新的课程与学生
+    private final String courseId = UUID.randomUUID().toString();
+    private final String studentId = UUID.randomUUID().toString();
+
+    @Autowired
+    private ActiveEnrollmentFilter filter;
+
+    @Autowired
+    private EnrollmentRepository enrollmentRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final AtomicInteger databaseChecks = new AtomicInteger();
+
+    private TransactionTemplate transaction;
+
+    @BeforeEach
+    void setUp() {
+        transaction = new TransactionTemplate(transactionManager);
+    }
+
+    @Test
+    void rebuildLoadsExistingEnrollmentsIgnoringCase() {
+        enrollmentRepository.save(new Enrollment(courseId, studentId));
+        filter.rebuild();
+
+        assertThat(exists(courseId.toUpperCase(Locale.ROOT), studentId)).isTrue();
+        assertThat(databaseChecks).hasValue(1);
+    }
+
+    @Test
+    void addTakesEffectOnlyAfterCommit() {
+        filter.rebuild();
+
+        transaction.executeWithoutResult(status -> {
+            filter.add(courseId, studentId);
+            assertThat(exists(courseId, studentId)).isFalse();
+            assertThat(databaseChecks).hasValue(0);
+        });
+
+        assertThat(exists(courseId, studentId)).isTrue();
+        assertThat(databaseChecks).hasValue(1);
+    }
+
+    @Test
+    void rolledBackAddLeavesFilterUnchanged() {
+        filter.rebuild();
+
+        transaction.executeWithoutResult(status -> {
+            filter.add(courseId, studentId);
+            status.setRollbackOnly();
+        });
+
+        assertThat(exists(courseId, studentId)).isFalse();
+        assertThat(databaseChecks).hasValue(0);
+    }
+
+    @Test
+    void removeTakesEffectOnlyAfterCommit() {
+        filter.rebuild();
+        filter.add(courseId, studentId);
+
+        transaction.executeWithoutResult(status -> {
+            filter.remove(courseId, studentId);
+            assertThat(exists(courseId, studentId)).isTrue();
+        });
+
+        databaseChecks.set(0);
+        assertThat(exists(courseId, studentId)).isFalse();
+        assertThat(databaseChecks).hasValue(0);
+    }
+
+    /**
+     * 过滤器判定"可能存在"时由数据库查询确认，这里以计数代替查询，结果恒为存在
+     */
+    private boolean exists(String course, String student) {
+        return filter.exists(course, student, () -> {
+            databaseChecks.incrementAndGet();
+            return true;
+        });
+    }
+}
@@ -0,0 +1,119 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import com.zjgsu.ms.hxy.enrollment.client.CatalogClient;
+import com.zjgsu.ms.hxy.enrollment.model.CourseCountOutbox;
+import com.zjgsu.ms.hxy.enrollment.repository.CourseCountOutboxRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * CourseCountOutboxRelay 测试：同一课程的增量合并为一个批次，发送失败后按退避时间推迟，
+ * 重试时增量与幂等键不变，成功后删除发件箱记录
+ * 测试方法不在测试事务中运行，中继的每一步各自提交
+ */
+@DataJpaTest(properties = {
+        "enrollment.outbox.backoff-initial-ms=30000",
+        "enrollment.outbox.backoff-max-ms=60000"
+})
+@Import({CourseCountOutboxRelay.class, CourseCountOutboxRelayTest.Config.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CourseCountOutboxRelayTest {
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @MockitoBean
+    private CatalogClient catalogClient;
+
+    @Autowired
+    private CourseCountOutboxRelay relay;
+
+    @Autowired
+    private CourseCountOutboxRepository outboxRepository;
+
+    private final List<List<Map<String, Object>>> calls = new ArrayList<>();
+
+    @AfterEach
+    void cleanUp() {
+        outboxRepository.deleteAll();
+    }
+
+    @Test
+    void failedBatchIsRetriedAfterBackoffWithTheSameKey() {
+        outboxRepository.save(new CourseCountOutbox("course-1", 1));
+        outboxRepository.save(new CourseCountOutbox("course-1", 1));
+        outboxRepository.save(new CourseCountOutbox("course-1", -1));
+        when(catalogClient.applyEnrolledDeltas(anyList())).thenAnswer(invocation -> {
+            calls.add(List.copyOf(invocation.getArgument(0)));
+            throw new IllegalStateException("catalog-service unavailable");
+        });
+
+        LocalDateTime before = LocalDateTime.now();
+        relay.relay();
+
+        assertThat(calls).hasSize(1);
+        Map<String, Object> sent = calls.get(0).get(0);
+        assertThat(sent).containsEntry("courseId", "course-1").containsEntry("delta", 1);
+        List<CourseCountOutbox> pending = outboxRepository.findAll();
+        assertThat(pending).hasSize(3).allSatisfy(record -> {
+            assertThat(record.getAttempts()).isEqualTo(1);
+            assertThat(record.getNextAttemptAt()).isAfterOrEqualTo(before.plusSeconds(30));
+        });
+
+        // 退避期间不重发
+        relay.relay();
+        assertThat(calls).hasSize(1);
+
+        // 退避到期后重发，增量与幂等键不变
+        for (CourseCountOutbox record : pending) {
+            record.setNextAttemptAt(LocalDateTime.now().minusSeconds(1));
+        }
+        outboxRepository.saveAll(pending);
+        doAnswer(invocation -> {
+            calls.add(List.copyOf(invocation.getArgument(0)));
+            return List.of(Map.of("idempotencyKey", sent.get("idempotencyKey"), "status", "DUPLICATE"));
+        }).when(catalogClient).applyEnrolledDeltas(anyList());
+        relay.relay();
+
+        assertThat(calls).hasSize(2);
+        assertThat(calls.get(1)).containsExactly(sent);
+        assertThat(outboxRepository.count()).isZero();
+    }
+
+    @Test
+    void batchThatCancelsOutIsDroppedWithoutRemoteCall() {
+        outboxRepository.save(new CourseCountOutbox("course-1", 1));
+        outboxRepository.save(new CourseCountOutbox("course-1", -1));
+
+        relay.relay();
+
+        assertThat(outboxRepository.count()).isZero();
+        verifyNoInteractions(catalogClient);
+    }
+}
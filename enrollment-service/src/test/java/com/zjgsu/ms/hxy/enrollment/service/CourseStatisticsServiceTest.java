@@ -0,0 +1,60 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import com.zjgsu.ms.hxy.enrollment.model.Enrollment;
+import com.zjgsu.ms.hxy.enrollment.model.EnrollmentStatus;
+import com.zjgsu.ms.hxy.enrollment.repository.EnrollmentRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * CourseStatisticsService 测试：大小写不同的课程ID共用一个缓存项，任一写法的失效都使缓存重新计算
+ */
+@DataJpaTest
+@Import({CourseStatisticsService.class, StudentIdentityResolver.class})
+class CourseStatisticsServiceTest {
+
+    // 服务在测试之间共用缓存，每个测试使用新的课程
+    private final String courseId = UUID.randomUUID().toString();
+
+    @Autowired
+    private CourseStatisticsService courseStatisticsService;
+
+    @Autowired
+    private EnrollmentRepository enrollmentRepository;
+
+    @Test
+    void differentlyCasedIdsShareOneCacheEntry() {
+        grade(80.0);
+        assertThat(courseStatisticsService.getStatistics(upper(courseId)))
+                .containsEntry("courseId", courseId).containsEntry("count", 1);
+
+        // 未失效时两种写法都读到缓存的结果
+        grade(90.0);
+        assertThat(courseStatisticsService.getStatistics(courseId)).containsEntry("count", 1);
+        assertThat(courseStatisticsService.getStatistics(List.of(courseId, upper(courseId))))
+                .containsOnlyKeys(courseId);
+
+        courseStatisticsService.invalidate(upper(courseId));
+
+        Map<String, Object> statistics = courseStatisticsService.getStatistics(courseId);
+        assertThat(statistics).containsEntry("count", 2).containsEntry("mean", 85.0);
+        assertThat(courseStatisticsService.getStatistics(upper(courseId))).isSameAs(statistics);
+    }
+
+    private void grade(double grade) {
+        enrollmentRepository.save(new Enrollment(courseId, UUID.randomUUID().toString(), EnrollmentStatus.ENROLLED, grade));
+    }
+
+    private static String upper(String id) {
+        return id.toUpperCase(Locale.ROOT);
+    }
+}
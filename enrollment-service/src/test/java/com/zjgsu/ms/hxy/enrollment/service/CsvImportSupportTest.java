@@ -0,0 +1,38 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * CsvImportSupport 测试：学生文件中带引号的逗号不再拆分字段，行数上限在读取时检查
+ */
+class CsvImportSupportTest {
+
+    @Test
+    void quotedCommaStaysInsideTheField() throws IOException {
+        List<List<String>> rows = CsvImportSupport.readCsv(input(
+                "studentId,name,major,grade,email\n2024001,\"Zhang, San\",CS,2024,zs@example.com\n"),
+                "studentId", 10, CsvRecordReader.CsvRecord::fields);
+
+        assertThat(rows).containsExactly(List.of("2024001", "Zhang, San", "CS", "2024", "zs@example.com"));
+    }
+
+    @Test
+    void rowLimitIsCheckedWhileReading() {
+        assertThatThrownBy(() -> CsvImportSupport.readCsv(input("a\nb\nc\n"), null, 2,
+                CsvRecordReader.CsvRecord::line))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("2");
+    }
+
+    private static ByteArrayInputStream input(String csv) {
+        return new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,59 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * CsvRecordReader 测试：引号内的逗号、换行与转义引号，表头、BOM 与空行
+ */
+class CsvRecordReaderTest {
+
+    @Test
+    void quotedFieldsMayContainCommasNewlinesAndQuotes() throws IOException {
+        List<CsvRecordReader.CsvRecord> records = readAll(
+                "c1,\"Zhang, San\",\"say \"\"hi\"\"\"\r\nc2,\"two\nlines\",x\n", null);
+
+        assertThat(records).hasSize(2);
+        assertThat(records.get(0).fields()).containsExactly("c1", "Zhang, San", "say \"hi\"");
+        assertThat(records.get(1).fields()).containsExactly("c2", "two\nlines", "x");
+        assertThat(records.get(1).line()).isEqualTo(2);
+    }
+
+    @Test
+    void headerBomAndBlankLinesAreSkipped() throws IOException {
+        List<CsvRecordReader.CsvRecord> records = readAll(
+                "\uFEFFcourseId,studentId,grade\n\n c1 , s1 , 90 \n   \nc2,s2,80", "courseId");
+
+        assertThat(records).hasSize(2);
+        assertThat(records.get(0).fields()).containsExactly("c1", "s1", "90");
+        assertThat(records.get(0).line()).isEqualTo(3);
+        assertThat(records.get(1).fields()).containsExactly("c2", "s2", "80");
+    }
+
+    @Test
+    void unterminatedQuoteIsRejected() {
+        assertThatThrownBy(() -> readAll("c1,\"never closed\nc2,s2,80\n", null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("第 1 行");
+    }
+
+    private static List<CsvRecordReader.CsvRecord> readAll(String csv, String header) throws IOException {
+        List<CsvRecordReader.CsvRecord> records = new ArrayList<>();
+        try (CsvRecordReader reader = new CsvRecordReader(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), header)) {
+            CsvRecordReader.CsvRecord record;
+            while ((record = reader.next()) != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+}
@@ -0,0 +1,143 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import com.zjgsu.ms.hxy.enrollment.exception.AdmissionRejectedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * EnrollmentAdmissionService 测试：同一课程的并发执行数与排队数受限，超出时立即拒绝；非阻塞请求的许可持有到结果完成
+ */
+class EnrollmentAdmissionServiceTest {
+
+    @Test
+    void requestsBeyondConcurrencyAndQueueAreRejected() throws Exception {
+        EnrollmentAdmissionService admission = new EnrollmentAdmissionService(new SimpleMeterRegistry(),
+                true, 1, 1, 100, 5000, 200, false);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> holder = executor.submit(() -> admission.admit("course-1", () -> {
+                running.countDown();
+                await(release);
+                return "first";
+            }));
+            assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+            Future<String> queued = executor.submit(() -> admission.admit("course-1", () -> "second"));
+            // 等待第二个请求进入排队，之后同一课程的第三个请求因队列已满被拒绝
+            Thread.sleep(100);
+
+            assertThatThrownBy(() -> admission.admit("course-1", () -> "third"))
+                    .isInstanceOf(AdmissionRejectedException.class);
+            // 其他课程不受影响
+            assertThat(admission.admit("course-2", () -> "other")).isEqualTo("other");
+
+            release.countDown();
+            assertThat(holder.get(5, TimeUnit.SECONDS)).isEqualTo("first");
+            assertThat(queued.get(5, TimeUnit.SECONDS)).isEqualTo("second");
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void queuedRequestTimesOutWhenNoPermitIsReleased() throws Exception {
+        EnrollmentAdmissionService admission = new EnrollmentAdmissionService(new SimpleMeterRegistry(),
+                true, 1, 10, 100, 50, 200, false);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(() -> admission.admit("course-1", () -> {
+                running.countDown();
+                await(release);
+                return null;
+            }));
+            assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+
+            assertThatThrownBy(() -> admission.admit("course-1", () -> "late"))
+                    .isInstanceOf(AdmissionRejectedException.class);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void queueIsKeptWellBelowTheRequestThreadPool() throws Exception {
+        int requestThreads = 8;
+        EnrollmentAdmissionService admission = new EnrollmentAdmissionService(new SimpleMeterRegistry(),
+                true, 1, 200, 5000, 5000, requestThreads, false);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(requestThreads);
+        try {
+            List<Future<?>> calls = new ArrayList<>();
+            for (int i = 0; i < requestThreads; i++) {
+                calls.add(executor.submit(() -> {
+                    try {
+                        admission.admit("course-1", () -> {
+                            await(release);
+                            return null;
+                        });
+                    } catch (AdmissionRejectedException e) {
+                        rejected.incrementAndGet();
+                    }
+                }));
+            }
+            // 排队上限被限制为 requestThreads / 2：最多 1 个执行加 requestThreads / 2 个排队，其余立即拒绝
+            int minRejected = requestThreads - 1 - requestThreads / 2;
+            long deadline = System.currentTimeMillis() + 5000;
+            while (rejected.get() < minRejected && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(rejected.get()).isBetween(minRejected, minRejected + 1);
+            release.countDown();
+            for (Future<?> call : calls) {
+                call.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void asyncRequestHoldsPermitUntilItsFutureCompletes() {
+        EnrollmentAdmissionService admission = new EnrollmentAdmissionService(new SimpleMeterRegistry(),
+                true, 1, 1, 100, 5000, 200, false);
+        CompletableFuture<String> pending = new CompletableFuture<>();
+
+        CompletableFuture<String> first = admission.admitAsync("course-1", () -> pending);
+        // 许可被未完成的 future 占用，非阻塞请求不排队，立即拒绝
+        assertThatThrownBy(() -> admission.admitAsync("course-1", () -> CompletableFuture.completedFuture("second")))
+                .isInstanceOf(AdmissionRejectedException.class);
+
+        pending.complete("first");
+        assertThat(first.join()).isEqualTo("first");
+        assertThat(admission.admitAsync("course-1", () -> CompletableFuture.completedFuture("third")).join())
+                .isEqualTo("third");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import com.zjgsu.ms.hxy.enrollment.client.CatalogClient;
+import com.zjgsu.ms.hxy.enrollment.model.CourseCountOutbox;
+import com.zjgsu.ms.hxy.enrollment.model.CourseEnrollmentCounter;
+import com.zjgsu.ms.hxy.enrollment.model.Enrollment;
+import com.zjgsu.ms.hxy.enrollment.model.EnrollmentStatus;
+import com.zjgsu.ms.hxy.enrollment.repository.CourseCountOutboxRepository;
+import com.zjgsu.ms.hxy.enrollment.repository.CourseEnrollmentCounterRepository;
+import com.zjgsu.ms.hxy.enrollment.repository.EnrollmentRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.when;
+
+/**
+ * EnrollmentCountReconciler 测试：修正偏差（包括选课记录已全部删除的课程），
+ * 有未同步增量或在读取远端期间发生选课变更的课程跳过
+ */
+@DataJpaTest
+@Import({EnrollmentCountReconciler.class, EnrollmentCountReconcilerTest.Config.class})
+class EnrollmentCountReconcilerTest {
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @MockitoBean
+    private CatalogClient catalogClient;
+
+    @Autowired
+    private EnrollmentCountReconciler reconciler;
+
+    @Autowired
+    private EnrollmentRepository enrollmentRepository;
+
+    @Autowired
+    private CourseEnrollmentCounterRepository counterRepository;
+
+    @Autowired
+    private CourseCountOutboxRepository outboxRepository;
+
+    private final List<Map<String, Object>> repairs = new ArrayList<>();
+    private final List<String> requestedCourseIds = new ArrayList<>();
+
+    @Test
+    void repairsDriftIncludingCoursesWhoseEnrollmentsWereAllDeleted() {
+        enroll("course-a", "student-1");
+        enroll("course-a", "student-2");
+        Enrollment withdrawn = enroll("course-a", "student-3");
+        withdrawn.setStatus(EnrollmentStatus.WITHDRAWN);
+        enrollmentRepository.save(withdrawn);
+        // 选课记录已全部删除，只剩计数行
+        counterRepository.save(new CourseEnrollmentCounter("course-b", 0));
+        enroll("course-c", "student-1");
+        outboxRepository.save(new CourseCountOutbox("course-c", 1));
+        stubCatalog(Map.of("course-a", 3, "course-b", 4, "course-c", 0), null);
+
+        reconciler.reconcile();
+
+        assertThat(requestedCourseIds).containsExactlyInAnyOrder("course-a", "course-b");
+        assertThat(repairs).containsExactlyInAnyOrder(
+                Map.of("courseId", "course-a", "expected", 3, "enrolled", 2),
+                Map.of("courseId", "course-b", "expected", 4, "enrolled", 0));
+    }
+
+    @Test
+    void skipsCourseEnrolledIntoWhileCatalogWasRead() {
+        enroll("course-a", "student-1");
+        // 读取远端期间有新的选课提交，远端人数已包含它
+        stubCatalog(Map.of("course-a", 2), () -> enroll("course-a", "student-2"));
+
+        reconciler.reconcile();
+
+        assertThat(requestedCourseIds).containsExactly("course-a");
+        assertThat(repairs).isEmpty();
+    }
+
+    @Test
+    void skipsCourseThatGainsPendingDeltaWhileCatalogWasRead() {
+        enroll("course-a", "student-1");
+        // 读取远端期间一次选课与一次退课先后提交，本地人数不变，但中继只同步了其中一个增量
+        stubCatalog(Map.of("course-a", 2), () -> outboxRepository.save(new CourseCountOutbox("course-a", -1)));
+
+        reconciler.reconcile();
+
+        assertThat(repairs).isEmpty();
+    }
+
+    private Enrollment enroll(String courseId, String studentId) {
+        return enrollmentRepository.save(new Enrollment(courseId, studentId));
+    }
+
+    private void stubCatalog(Map<String, Integer> enrolled, Runnable duringRead) {
+        when(catalogClient.getCourses(anyCollection())).thenAnswer(invocation -> {
+            Collection<String> courseIds = invocation.getArgument(0);
+            requestedCourseIds.addAll(courseIds);
+            if (duringRead != null) {
+                duringRead.run();
+            }
+            Map<String, Map<String, Object>> courses = new HashMap<>();
+            for (String courseId : courseIds) {
+                courses.put(courseId, Map.of("id", courseId, "enrolled", enrolled.get(courseId)));
+            }
+            return courses;
+        });
+        when(catalogClient.repairEnrolledCounts(anyList())).thenAnswer(invocation -> {
+            repairs.addAll(invocation.getArgument(0));
+            return List.of();
+        });
+    }
+}
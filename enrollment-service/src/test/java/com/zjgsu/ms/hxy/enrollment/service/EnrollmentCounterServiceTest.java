@@ -0,0 +1,151 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import com.zjgsu.ms.hxy.enrollment.model.Enrollment;
+import com.zjgsu.ms.hxy.enrollment.model.EnrollmentStatus;
+import com.zjgsu.ms.hxy.enrollment.repository.CourseEnrollmentCounterRepository;
+import com.zjgsu.ms.hxy.enrollment.repository.EnrollmentRepository;
+import com.zjgsu.ms.hxy.enrollment.repository.StudentEnrollmentCounterRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * EnrollmentCounterService 测试：读取不建立计数，写入路径建立的计数包含本事务的变更，
+ * 并发占座不会超出容量
+ */
+@DataJpaTest
+@Import(EnrollmentCounterService.class)
+class EnrollmentCounterServiceTest {
+
+    @Autowired
+    private EnrollmentCounterService counterService;
+
+    @Autowired
+    private EnrollmentRepository enrollmentRepository;
+
+    @Autowired
+    private CourseEnrollmentCounterRepository courseCounterRepository;
+
+    @Autowired
+    private StudentEnrollmentCounterRepository studentCounterRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void readsComputeMissingCountsWithoutInsertingCounters() {
+        enrollmentRepository.save(new Enrollment("course-1", "student-1"));
+        Enrollment withdrawn = new Enrollment("course-1", "student-2");
+        withdrawn.setStatus(EnrollmentStatus.WITHDRAWN);
+        enrollmentRepository.save(withdrawn);
+
+        Map<String, Long> counts = counterService.getCourseCounts(List.of("course-1", "no-such-course"));
+
+        assertThat(counts).containsExactly(Map.entry("course-1", 1L), Map.entry("no-such-course", 0L));
+        assertThat(counterService.getStudentCount("no-such-student")).isZero();
+        assertThat(courseCounterRepository.count()).isZero();
+        assertThat(studentCounterRepository.count()).isZero();
+    }
+
+    @Test
+    void firstChangeCreatesCounterThatAlreadyIncludesTheChange() {
+        enrollmentRepository.save(new Enrollment("course-1", "student-1"));
+        counterService.recordChange("course-1", "student-1", 1);
+
+        assertThat(courseCounterRepository.count()).isEqualTo(1);
+        assertThat(counterService.getCourseCount("course-1")).isEqualTo(1);
+        assertThat(counterService.getStudentCount("student-1")).isEqualTo(1);
+    }
+
+    @Test
+    void laterChangesAreAppliedAsDeltas() {
+        enrollmentRepository.save(new Enrollment("course-1", "student-1"));
+        counterService.recordChange("course-1", "student-1", 1);
+        enrollmentRepository.save(new Enrollment("course-1", "student-2"));
+        counterService.recordChange("course-1", "student-2", 1);
+
+        Enrollment first = enrollmentRepository.findByCourseIdAndStudentId("course-1", "student-1").orElseThrow();
+        first.setStatus(EnrollmentStatus.WITHDRAWN);
+        enrollmentRepository.save(first);
+        counterService.recordChange("course-1", "student-1", -1);
+
+        assertThat(counterService.getCourseCount("course-1")).isEqualTo(1);
+        assertThat(counterService.getStudentCount("student-1")).isZero();
+        assertThat(counterService.getStudentCount("student-2")).isEqualTo(1);
+    }
+
+    @Test
+    void reserveSeatsGrantsOnlyTheRemainingCapacity() {
+        enrollmentRepository.save(new Enrollment("course-1", "student-1"));
+        counterService.recordChange("course-1", "student-1", 1);
+
+        assertThat(counterService.reserveSeats("course-1", 5, 3)).isEqualTo(2);
+        assertThat(counterService.reserveSeats("course-1", 1, 3)).isZero();
+        assertThat(counterService.getCourseCount("course-1")).isEqualTo(3);
+    }
+
+    @Test
+    void reserveSeatsCreatesMissingCounterFromExistingEnrollments() {
+        enrollmentRepository.save(new Enrollment("course-1", "student-1"));
+
+        assertThat(counterService.reserveSeats("course-1", 1, 2)).isEqualTo(1);
+        assertThat(counterService.reserveSeats("course-1", 1, 2)).isZero();
+        assertThat(counterService.getCourseCount("course-1")).isEqualTo(2);
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void concurrentReservationsNeverExceedCapacity() throws Exception {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        int capacity = 5;
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            // 先在独立事务中建立计数，并发事务只竞争同一行锁
+            transactionTemplate.executeWithoutResult(status -> {
+                counterService.reserveSeats("course-c", 1, capacity);
+                enrollmentRepository.save(new Enrollment("course-c", "student-0"));
+            });
+
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return transactionTemplate.execute(status -> counterService.reserveSeats("course-c", 1, capacity));
+                }));
+            }
+            start.countDown();
+
+            int granted = 0;
+            for (Future<Integer> result : results) {
+                granted += result.get(30, TimeUnit.SECONDS);
+            }
+            assertThat(granted).isEqualTo(capacity - 1);
+            assertThat(counterService.getCourseCount("course-c")).isEqualTo(capacity);
+        } finally {
+            executor.shutdownNow();
+            transactionTemplate.executeWithoutResult(status -> {
+                enrollmentRepository.deleteAll();
+                courseCounterRepository.deleteAll();
+                studentCounterRepository.deleteAll();
+            });
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import com.zjgsu.ms.hxy.enrollment.exception.CourseFullException;
+import com.zjgsu.ms.hxy.enrollment.exception.EnrollmentPendingException;
+import com.zjgsu.ms.hxy.enrollment.model.Enrollment;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * EnrollmentGroupCommitter 测试：同组请求一次提交并各自得到结果，结果未定时提示客户端查询而不是失败
+ */
+class EnrollmentGroupCommitterTest {
+
+    private final EnrollmentService enrollmentService = mock(EnrollmentService.class);
+    private EnrollmentGroupCommitter committer;
+
+    @AfterEach
+    void stop() {
+        if (committer != null) {
+            committer.stop();
+        }
+    }
+
+    @Test
+    void concurrentRequestsShareOneCommitAndGetTheirOwnOutcome() throws Exception {
+        committer = start(50, 5000);
+        when(enrollmentService.enrollAll(anyList())).thenAnswer(invocation -> {
+            List<Map<String, String>> items = invocation.getArgument(0);
+            List<EnrollmentService.EnrollmentOutcome> outcomes = new ArrayList<>();
+            for (Map<String, String> item : items) {
+                outcomes.add("full".equals(item.get("courseId"))
+                        ? EnrollmentService.EnrollmentOutcome.failed(new CourseFullException("full"))
+                        : EnrollmentService.EnrollmentOutcome.enrolled(new Enrollment(item.get("courseId"), item.get("studentId"))));
+            }
+            return outcomes;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Enrollment>> results = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                String studentId = "student-" + i;
+                results.add(executor.submit(() -> committer.enroll("course-1", studentId)));
+            }
+            Future<Enrollment> full = executor.submit(() -> committer.enroll("full", "student-x"));
+
+            for (int i = 0; i < 3; i++) {
+                assertThat(results.get(i).get(5, TimeUnit.SECONDS).getStudentId()).isEqualTo("student-" + i);
+            }
+            assertThatThrownBy(() -> full.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(CourseFullException.class);
+            verify(enrollmentService, atMost(4)).enrollAll(anyList());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void requestStillBeingCommittedAfterTimeoutIsReportedAsPending() throws Exception {
+        committer = start(1, 100);
+        CountDownLatch release = new CountDownLatch(1);
+        when(enrollmentService.enrollAll(anyList())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return List.of(EnrollmentService.EnrollmentOutcome.enrolled(new Enrollment("course-1", "student-1")));
+        });
+
+        try {
+            assertThatThrownBy(() -> committer.enroll("course-1", "student-1"))
+                    .isInstanceOf(EnrollmentPendingException.class);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private EnrollmentGroupCommitter start(long lingerMillis, long resultTimeoutMillis) {
+        EnrollmentGroupCommitter started = new EnrollmentGroupCommitter(enrollmentService, new SimpleMeterRegistry(),
+                true, 200, lingerMillis, 100, resultTimeoutMillis);
+        started.start();
+        return started;
+    }
+}
@@ -0,0 +1,109 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zjgsu.ms.hxy.enrollment.model.Enrollment;
+import com.zjgsu.ms.hxy.enrollment.model.EnrollmentEventType;
+import com.zjgsu.ms.hxy.enrollment.model.EnrollmentSnapshot;
+import com.zjgsu.ms.hxy.enrollment.repository.EnrollmentRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * EnrollmentJournal 分段日志模式测试：快照序号不覆盖仍未提交事务的事件，该事务提交后重放能读到它的事件
+ * 测试方法不在测试事务中运行，各事务各自提交
+ */
+@DataJpaTest
+@Import({EnrollmentJournal.class, EnrollmentEventLog.class, EnrollmentJournalLogModeTest.Config.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class EnrollmentJournalLogModeTest {
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        ObjectMapper objectMapper() {
+            return new ObjectMapper().findAndRegisterModules();
+        }
+    }
+
+    @DynamicPropertySource
+    static void segmentLog(DynamicPropertyRegistry registry) throws IOException {
+        String directory = Files.createTempDirectory("enrollment-log").toString();
+        registry.add("enrollment.journal.segment-log.enabled", () -> "true");
+        registry.add("enrollment.journal.segment-log.dir", () -> directory);
+    }
+
+    @Autowired
+    private EnrollmentJournal journal;
+
+    @Autowired
+    private EnrollmentRepository enrollmentRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void snapshotDoesNotSkipEventOfAnOpenTransaction() throws Exception {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        CountDownLatch recorded = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // 事件已追加并刷盘，但所在事务尚未提交
+            Future<Enrollment> openTransaction = executor.submit(() -> transaction.execute(status -> {
+                Enrollment enrollment = enrollmentRepository.save(new Enrollment("course-1", "student-open"));
+                journal.record(enrollment, EnrollmentEventType.ENROLLED);
+                recorded.countDown();
+                await(commit);
+                return enrollment;
+            }));
+            assertThat(recorded.await(10, TimeUnit.SECONDS)).isTrue();
+
+            EnrollmentSnapshot snapshot = journal.takeSnapshot();
+            assertThat(snapshot.getLastEventId()).isZero();
+            assertThat(snapshot.getEnrollmentCount()).isZero();
+
+            commit.countDown();
+            String enrollmentId = openTransaction.get(10, TimeUnit.SECONDS).getId().toString();
+
+            List<String> snapshotIds = new ArrayList<>();
+            List<String> eventIds = new ArrayList<>();
+            journal.replay(entry -> snapshotIds.add(entry.enrollmentId()),
+                    event -> eventIds.add(event.getEnrollmentId()));
+            assertThat(snapshotIds).isEmpty();
+            assertThat(eventIds).containsExactly(enrollmentId);
+        } finally {
+            commit.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
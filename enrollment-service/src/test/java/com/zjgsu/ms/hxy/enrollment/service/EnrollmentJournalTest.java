@@ -0,0 +1,169 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zjgsu.ms.hxy.enrollment.model.Enrollment;
+import com.zjgsu.ms.hxy.enrollment.model.EnrollmentEvent;
+import com.zjgsu.ms.hxy.enrollment.model.EnrollmentEventType;
+import com.zjgsu.ms.hxy.enrollment.repository.EnrollmentEventRepository;
+import com.zjgsu.ms.hxy.enrollment.repository.ReconciliationCursorRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * EnrollmentJournal 测试：长事务较晚提交的事件不会被读取方跳过，并发分配的序号连续且不重复
+ * 测试方法不在测试事务中运行，事件的写入与序号分配各自提交
+ */
+@DataJpaTest(properties = "enrollment.journal.sequence-batch-size=50")
+@Import({EnrollmentJournal.class, EnrollmentJournalTest.Config.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class EnrollmentJournalTest {
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        ObjectMapper objectMapper() {
+            return new ObjectMapper();
+        }
+    }
+
+    @MockitoBean
+    private EnrollmentEventLog eventLog;
+
+    @Autowired
+    private EnrollmentJournal journal;
+
+    @Autowired
+    private EnrollmentEventRepository eventRepository;
+
+    @Autowired
+    private ReconciliationCursorRepository cursorRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void cleanUp() {
+        eventRepository.deleteAll();
+        cursorRepository.deleteAll();
+    }
+
+    @Test
+    void eventOfALongTransactionIsReadAfterItCommits() throws Exception {
+        // 空表时建立序号游标
+        journal.assignSequence();
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        Enrollment slow = enrollment("student-slow");
+        Enrollment fast = enrollment("student-fast");
+
+        CountDownLatch recorded = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // 长事务先写入事件（主键较小），较晚提交
+            Future<?> longTransaction = executor.submit(() -> transaction.executeWithoutResult(status -> {
+                journal.record(slow, EnrollmentEventType.ENROLLED);
+                recorded.countDown();
+                await(commit);
+            }));
+            assertThat(recorded.await(10, TimeUnit.SECONDS)).isTrue();
+            transaction.executeWithoutResult(status -> journal.record(fast, EnrollmentEventType.ENROLLED));
+
+            journal.assignSequence();
+            EnrollmentJournal.EventPage first = journal.getEvents(0, 10);
+            assertThat(enrollmentIds(first.items())).containsExactly(fast.getId().toString());
+
+            commit.countDown();
+            longTransaction.get(10, TimeUnit.SECONDS);
+            journal.assignSequence();
+
+            EnrollmentJournal.EventPage next = journal.getEvents(first.nextCursor(), 10);
+            assertThat(enrollmentIds(next.items())).containsExactly(slow.getId().toString());
+            assertThat(next.nextCursor()).isEqualTo(first.nextCursor() + 1);
+        } finally {
+            commit.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void concurrentSequencersAssignContiguousSeqs() throws Exception {
+        journal.assignSequence();
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        int eventCount = 200;
+        for (int i = 0; i < eventCount; i += 20) {
+            List<Enrollment> batch = new ArrayList<>();
+            for (int j = 0; j < 20; j++) {
+                batch.add(enrollment("student-" + (i + j)));
+            }
+            transaction.executeWithoutResult(status -> journal.recordAll(batch, EnrollmentEventType.ENROLLED));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> sequencers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                sequencers.add(executor.submit(journal::assignSequence));
+            }
+            for (Future<?> sequencer : sequencers) {
+                sequencer.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        // 等锁超时而放弃的一轮由下一次定时任务补上
+        journal.assignSequence();
+
+        List<Long> seqs = new ArrayList<>();
+        for (EnrollmentEvent event : journal.getEvents(0, 1000).items()) {
+            seqs.add(event.getSeq());
+        }
+        List<Long> expected = new ArrayList<>();
+        for (long seq = 1; seq <= eventCount; seq++) {
+            expected.add(seq);
+        }
+        assertThat(seqs).isEqualTo(expected);
+    }
+
+    private static Enrollment enrollment(String studentId) {
+        Enrollment enrollment = new Enrollment("course-1", studentId);
+        enrollment.setId(UUID.randomUUID());
+        return enrollment;
+    }
+
+    private static List<String> enrollmentIds(List<EnrollmentEvent> events) {
+        List<String> ids = new ArrayList<>();
+        for (EnrollmentEvent event : events) {
+            ids.add(event.getEnrollmentId());
+        }
+        return ids;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import com.zjgsu.ms.hxy.enrollment.client.CatalogClient;
+import com.zjgsu.ms.hxy.enrollment.exception.CourseFullException;
+import com.zjgsu.ms.hxy.enrollment.model.Enrollment;
+import com.zjgsu.ms.hxy.enrollment.model.EnrollmentStatus;
+import com.zjgsu.ms.hxy.enrollment.repository.EnrollmentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * EnrollmentService 测试：已退课的记录恢复为有效状态时按课程容量占用名额，课程已满时拒绝且不修改记录
+ */
+@DataJpaTest
+@Import({EnrollmentService.class, EnrollmentCounterService.class, StudentIdentityResolver.class})
+class EnrollmentServiceTest {
+
+    private final String courseId = UUID.randomUUID().toString();
+
+    @MockitoBean
+    private StudentService studentService;
+
+    @MockitoBean
+    private CatalogClient catalogClient;
+
+    @MockitoBean
+    private WaitlistService waitlistService;
+
+    @MockitoBean
+    private ActiveEnrollmentFilter activeEnrollmentFilter;
+
+    @MockitoBean
+    private GradeSummaryService gradeSummaryService;
+
+    @MockitoBean
+    private CourseStatisticsService courseStatisticsService;
+
+    @MockitoBean
+    private EnrollmentJournal enrollmentJournal;
+
+    @Autowired
+    private EnrollmentService enrollmentService;
+
+    @Autowired
+    private EnrollmentCounterService enrollmentCounterService;
+
+    @Autowired
+    private EnrollmentRepository enrollmentRepository;
+
+    private Enrollment active;
+    private Enrollment withdrawn;
+
+    @BeforeEach
+    void enrollments() {
+        active = enrollmentRepository.save(new Enrollment(courseId, UUID.randomUUID().toString()));
+        withdrawn = enrollmentRepository.save(new Enrollment(courseId, UUID.randomUUID().toString(),
+                EnrollmentStatus.WITHDRAWN, null));
+    }
+
+    @Test
+    void reactivationIsRejectedWhenTheCourseIsFull() {
+        capacity(1);
+
+        assertThatThrownBy(() -> enrollmentService.updateEnrollmentStatus(withdrawn.getId(), "enrolled"))
+                .isInstanceOf(CourseFullException.class);
+
+        assertThat(enrollmentRepository.findById(withdrawn.getId())).hasValueSatisfying(
+                enrollment -> assertThat(enrollment.getStatus()).isEqualTo(EnrollmentStatus.WITHDRAWN));
+        assertThat(enrollmentCounterService.getCourseCount(courseId)).isEqualTo(1);
+    }
+
+    @Test
+    void reactivationTakesAFreeSeat() {
+        capacity(1);
+        enrollmentService.updateEnrollmentStatus(active.getId(), EnrollmentStatus.WITHDRAWN);
+
+        assertThat(enrollmentService.updateEnrollmentStatus(withdrawn.getId(), EnrollmentStatus.COMPLETED))
+                .hasValueSatisfying(enrollment -> assertThat(enrollment.getStatus()).isEqualTo(EnrollmentStatus.COMPLETED));
+        assertThat(enrollmentCounterService.getCourseCount(courseId)).isEqualTo(1);
+        assertThat(enrollmentCounterService.getStudentCount(withdrawn.getStudentId())).isEqualTo(1);
+    }
+
+    private void capacity(int capacity) {
+        when(catalogClient.getCourse(anyString())).thenReturn(Map.of("id", courseId, "capacity", capacity));
+    }
+}
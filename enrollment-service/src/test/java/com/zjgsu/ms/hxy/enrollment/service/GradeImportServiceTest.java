@@ -0,0 +1,76 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import com.zjgsu.ms.hxy.enrollment.model.Enrollment;
+import com.zjgsu.ms.hxy.enrollment.repository.EnrollmentRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+
+/**
+ * GradeImportService 测试：大写的 UUID 与选课记录中的小写形式匹配，大小写不同的同一选课按文件内重复处理
+ */
+@DataJpaTest
+@Import({GradeImportService.class, StudentIdentityResolver.class})
+class GradeImportServiceTest {
+
+    private final String courseId = UUID.randomUUID().toString();
+    private final String studentId = UUID.randomUUID().toString();
+
+    @MockitoBean
+    private GradeSummaryService gradeSummaryService;
+
+    @MockitoBean
+    private CourseStatisticsService courseStatisticsService;
+
+    @MockitoBean
+    private EnrollmentJournal enrollmentJournal;
+
+    @Autowired
+    private GradeImportService gradeImportService;
+
+    @Autowired
+    private EnrollmentRepository enrollmentRepository;
+
+    @Test
+    void upperCaseIdsUpdateTheStoredEnrollment() {
+        UUID enrollmentId = enrollmentRepository.save(new Enrollment(courseId, studentId)).getId();
+
+        GradeImportService.GradeImportResult result = gradeImportService.importItems(List.of(
+                Map.of("courseId", upper(courseId), "studentId", upper(studentId), "grade", 90)));
+
+        assertThat(result.applied()).isTrue();
+        assertThat(result.updated()).isEqualTo(1);
+        assertThat(enrollmentRepository.findById(enrollmentId)).hasValueSatisfying(
+                enrollment -> assertThat(enrollment.getGrade()).isEqualTo(90.0));
+        verify(courseStatisticsService).invalidate(courseId);
+    }
+
+    @Test
+    void differentlyCasedRowsOfOneEnrollmentAreDuplicates() {
+        enrollmentRepository.save(new Enrollment(courseId, studentId));
+
+        GradeImportService.GradeImportResult result = gradeImportService.importItems(List.of(
+                Map.of("courseId", courseId, "studentId", studentId, "grade", 80),
+                Map.of("courseId", upper(courseId), "studentId", upper(studentId), "grade", 90)));
+
+        assertThat(result.applied()).isFalse();
+        assertThat(result.errors()).singleElement().satisfies(error -> {
+            assertThat(error.row().line()).isEqualTo(2);
+            assertThat(error.message()).isEqualTo("与第 1 行重复");
+        });
+    }
+
+    private static String upper(String id) {
+        return id.toUpperCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,99 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import com.zjgsu.ms.hxy.enrollment.client.CatalogClient;
+import com.zjgsu.ms.hxy.enrollment.exception.CatalogUnavailableException;
+import com.zjgsu.ms.hxy.enrollment.model.Enrollment;
+import com.zjgsu.ms.hxy.enrollment.model.EnrollmentStatus;
+import com.zjgsu.ms.hxy.enrollment.model.StudentGradeSummary;
+import com.zjgsu.ms.hxy.enrollment.repository.EnrollmentRepository;
+import com.zjgsu.ms.hxy.enrollment.repository.StudentGradeSummaryRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.when;
+
+/**
+ * GradeSummaryService 测试：完成时快照学分、撤销时扣减快照值，课程服务不可用时不影响选课记录的修改
+ */
+@DataJpaTest
+@Import({GradeSummaryService.class, StudentIdentityResolver.class})
+class GradeSummaryServiceTest {
+
+    @MockitoBean
+    private CatalogClient catalogClient;
+
+    @Autowired
+    private GradeSummaryService gradeSummaryService;
+
+    @Autowired
+    private EnrollmentRepository enrollmentRepository;
+
+    @Autowired
+    private StudentGradeSummaryRepository summaryRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void removingCompletionSubtractsTheSnapshotEvenIfCreditsChanged() {
+        when(catalogClient.getCourse("course-1")).thenReturn(Map.of("credits", 3));
+        Enrollment enrollment = enrollmentRepository.save(new Enrollment("course-1", "student-1"));
+
+        enrollment.setStatus(EnrollmentStatus.COMPLETED);
+        enrollment.setGrade(90.0);
+        gradeSummaryService.recordChange(enrollment, EnrollmentStatus.ENROLLED, null, EnrollmentStatus.COMPLETED, 90.0);
+        assertThat(enrollment.getCompletedCredits()).isEqualTo(3);
+        assertThat(summaryOf("student-1").getCompletedCredits()).isEqualTo(3);
+
+        // 课程学分在完成后被修改，撤销完成时仍扣减快照值
+        when(catalogClient.getCourse("course-1")).thenReturn(Map.of("credits", 5));
+        enrollment = enrollmentRepository.findById(enrollment.getId()).orElseThrow();
+        enrollment.setStatus(EnrollmentStatus.ENROLLED);
+        gradeSummaryService.recordChange(enrollment, EnrollmentStatus.COMPLETED, 90.0, EnrollmentStatus.ENROLLED, 90.0);
+
+        StudentGradeSummary summary = summaryOf("student-1");
+        assertThat(summary.getCompletedCredits()).isZero();
+        assertThat(summary.getGradedCount()).isZero();
+        assertThat(enrollment.getCompletedCredits()).isNull();
+    }
+
+    @Test
+    void catalogFailureMarksSummaryForRebuildInsteadOfFailing() {
+        summaryRepository.saveAndFlush(new StudentGradeSummary("student-1", 0, 0, 0));
+        when(catalogClient.getCourse("course-1")).thenThrow(new CatalogUnavailableException("down"));
+        Enrollment enrollment = enrollmentRepository.save(new Enrollment("course-1", "student-1"));
+
+        enrollment.setStatus(EnrollmentStatus.COMPLETED);
+        gradeSummaryService.recordChange(enrollment, EnrollmentStatus.ENROLLED, null, EnrollmentStatus.COMPLETED, null);
+
+        assertThat(enrollment.getCompletedCredits()).isNull();
+        entityManager.flush();
+        entityManager.clear();
+        assertThat(summaryRepository.findById("student-1")).isEmpty();
+    }
+
+    @Test
+    void newSummaryIsInsertedAndDoesNotOverwriteAnExistingOne() {
+        summaryRepository.saveAndFlush(new StudentGradeSummary("student-1", 1, 80, 2));
+        entityManager.clear();
+
+        // 与并发的查询同时建立汇总：INSERT 因主键冲突失败，而不是以合并覆盖已有的值
+        assertThatThrownBy(() -> summaryRepository.saveAndFlush(new StudentGradeSummary("student-1", 0, 0, 0)))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    private StudentGradeSummary summaryOf(String studentId) {
+        entityManager.flush();
+        entityManager.clear();
+        return summaryRepository.findById(studentId).orElseThrow();
+    }
+}
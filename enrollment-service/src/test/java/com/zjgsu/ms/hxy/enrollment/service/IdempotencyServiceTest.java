@@ -0,0 +1,130 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zjgsu.ms.hxy.enrollment.model.IdempotencyRecord;
+import com.zjgsu.ms.hxy.enrollment.repository.IdempotencyRecordRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * IdempotencyService 测试：执行前以 INSERT 占用幂等键，已占用的键重放或返回 409
+ * 测试方法不在测试事务中运行，占用与响应的写入各自提交，与实际请求一致
+ */
+@DataJpaTest
+@Import({IdempotencyService.class, IdempotencyServiceTest.Config.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class IdempotencyServiceTest {
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        ObjectMapper objectMapper() {
+            return new ObjectMapper();
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private IdempotencyRecordRepository recordRepository;
+
+    @AfterEach
+    void cleanUp() {
+        recordRepository.deleteAll();
+    }
+
+    @Test
+    void retryReplaysStoredResponseWithoutRunningTheActionAgain() {
+        AtomicInteger calls = new AtomicInteger();
+
+        ResponseEntity<Map<String, Object>> first = idempotencyService.execute("key-1", "enroll", "body",
+                () -> respond(HttpStatus.CREATED, calls));
+        ResponseEntity<Map<String, Object>> retry = idempotencyService.execute("key-1", "enroll", "body",
+                () -> respond(HttpStatus.CREATED, calls));
+
+        assertThat(calls).hasValue(1);
+        assertThat(first.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(retry.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(retry.getBody()).isEqualTo(first.getBody());
+    }
+
+    @Test
+    void keyClaimedByAnotherRequestReturnsConflictWithoutRunningTheAction() {
+        // 模拟其他实例已占用该键且仍在处理
+        recordRepository.saveAndFlush(new IdempotencyRecord("enroll:key-1", "hash",
+                IdempotencyRecord.PENDING_STATUS, "{}", LocalDateTime.now().plusMinutes(5)));
+        AtomicInteger calls = new AtomicInteger();
+
+        ResponseEntity<Map<String, Object>> response = idempotencyService.execute("key-1", "enroll", "body",
+                () -> respond(HttpStatus.CREATED, calls));
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+        assertThat(calls).hasValue(0);
+    }
+
+    @Test
+    void expiredClaimCanBeTakenOver() {
+        recordRepository.saveAndFlush(new IdempotencyRecord("enroll:key-1", "hash",
+                IdempotencyRecord.PENDING_STATUS, "{}", LocalDateTime.now().minusMinutes(1)));
+        AtomicInteger calls = new AtomicInteger();
+
+        ResponseEntity<Map<String, Object>> response = idempotencyService.execute("key-1", "enroll", "body",
+                () -> respond(HttpStatus.CREATED, calls));
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void serverErrorReleasesTheKeyForRetry() {
+        AtomicInteger calls = new AtomicInteger();
+
+        idempotencyService.execute("key-1", "enroll", "body", () -> respond(HttpStatus.INTERNAL_SERVER_ERROR, calls));
+        ResponseEntity<Map<String, Object>> retry = idempotencyService.execute("key-1", "enroll", "body",
+                () -> respond(HttpStatus.CREATED, calls));
+
+        assertThat(calls).hasValue(2);
+        assertThat(retry.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+    }
+
+    @Test
+    void sameKeyWithDifferentRequestIsRejected() {
+        AtomicInteger calls = new AtomicInteger();
+
+        idempotencyService.execute("key-1", "enroll", "body", () -> respond(HttpStatus.CREATED, calls));
+        ResponseEntity<Map<String, Object>> other = idempotencyService.execute("key-1", "enroll", "other-body",
+                () -> respond(HttpStatus.CREATED, calls));
+
+        assertThat(calls).hasValue(1);
+        assertThat(other.getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
+    private static ResponseEntity<Map<String, Object>> respond(HttpStatus status, AtomicInteger calls) {
+        int call = calls.incrementAndGet();
+        return ResponseEntity.status(status).body(Map.of("code", status.value(), "message", "call " + call));
+    }
+}
@@ -0,0 +1,72 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import com.zjgsu.ms.hxy.enrollment.model.Student;
+import com.zjgsu.ms.hxy.enrollment.repository.StudentRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * KeysetPage 测试：多读的一条决定是否有下一页，按游标逐页读取时每条记录恰好出现一次
+ */
+@DataJpaTest
+class KeysetPageTest {
+
+    private final String major = UUID.randomUUID().toString();
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Test
+    void extraRowMarksTheNextPage() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+
+        KeysetPage<UUID> full = KeysetPage.of(List.of(first, second), 2, id -> id);
+        assertThat(full.items()).containsExactly(first, second);
+        assertThat(full.nextCursor()).isNull();
+
+        KeysetPage<UUID> partial = KeysetPage.of(List.of(first, second, UUID.randomUUID()), 2, id -> id);
+        assertThat(partial.items()).containsExactly(first, second);
+        assertThat(partial.nextCursor()).isEqualTo(second);
+
+        assertThatThrownBy(() -> KeysetPage.checkLimit(0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> KeysetPage.checkLimit(KeysetPage.MAX_LIMIT + 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void walkingTheCursorVisitsEveryRowOnce() {
+        List<UUID> saved = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            String number = UUID.randomUUID().toString();
+            saved.add(studentRepository.save(
+                    new Student(number, "学生" + i, major, 2024, number + "@example.com")).getId());
+        }
+        // 其他专业的学生不出现在结果中
+        String other = UUID.randomUUID().toString();
+        studentRepository.save(new Student(other, "其他", "其他专业", 2024, other + "@example.com"));
+
+        List<UUID> visited = new ArrayList<>();
+        int pages = 0;
+        UUID cursor = null;
+        do {
+            List<Student> fetched = studentRepository.findPage(major, null, cursor, PageRequest.of(0, 3 + 1));
+            KeysetPage<Student> page = KeysetPage.of(fetched, 3, Student::getId);
+            page.items().forEach(student -> visited.add(student.getId()));
+            cursor = page.nextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertThat(pages).isEqualTo(3);
+        assertThat(visited).doesNotHaveDuplicates().containsExactlyInAnyOrderElementsOf(saved);
+    }
+}
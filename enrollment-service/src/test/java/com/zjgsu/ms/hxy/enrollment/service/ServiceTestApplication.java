@@ -0,0 +1,22 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import com.zjgsu.ms.hxy.enrollment.model.Enrollment;
+import com.zjgsu.ms.hxy.enrollment.repository.EnrollmentRepository;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+/**
+ * ServiceTestApplication 类
+ * 服务层切片测试（@DataJpaTest）使用的配置：只加载实体与仓库，
+ * 不加载 EnrollmentServiceApplication 中依赖服务注册与初始化数据的 Bean
+ *
+ * @author System
+ * @version 1.0
+ * @since 2024
+ */
+@SpringBootConfiguration
+@EntityScan(basePackageClasses = Enrollment.class)
+@EnableJpaRepositories(basePackageClasses = EnrollmentRepository.class)
+public class ServiceTestApplication {
+}
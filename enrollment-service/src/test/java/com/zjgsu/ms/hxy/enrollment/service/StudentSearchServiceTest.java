@@ -0,0 +1,95 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import com.zjgsu.ms.hxy.enrollment.model.Student;
+import com.zjgsu.ms.hxy.enrollment.repository.StudentRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * StudentSearchService 测试：按姓名与拼音首字母的匹配程度排序，输入提示只匹配前缀，
+ * 新建学生在事务提交后才进入索引
+ * 测试方法不在测试事务中运行，各事务各自提交
+ */
+@DataJpaTest
+@Import(StudentSearchService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StudentSearchServiceTest {
+
+    @Autowired
+    private StudentSearchService searchService;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void buildIndex() {
+        student("李张三");
+        student("张三丰");
+        student("张三");
+        searchService.rebuild();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        studentRepository.deleteAll();
+    }
+
+    @Test
+    void ranksExactThenPrefixThenContainedNames() {
+        assertThat(names(searchService.search("张三"))).containsExactly("张三", "张三丰", "李张三");
+
+        StudentSearchService.SearchPage page = searchService.search("张三", 1, 2);
+        assertThat(page.total()).isEqualTo(3);
+        assertThat(names(page.items())).containsExactly("李张三");
+    }
+
+    @Test
+    void matchesPinyinInitials() {
+        assertThat(names(searchService.search("zs"))).containsExactly("张三", "张三丰");
+        assertThat(names(searchService.search("LZS"))).containsExactly("李张三");
+    }
+
+    @Test
+    void typeaheadMatchesPrefixesOnly() {
+        List<Map<String, Object>> suggestions = searchService.typeahead("张", 10);
+
+        assertThat(suggestions).extracting(suggestion -> suggestion.get("name")).containsExactly("张三", "张三丰");
+    }
+
+    @Test
+    void newStudentIsSearchableAfterCommit() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.executeWithoutResult(status -> {
+            searchService.indexed(student("王五"));
+            assertThat(searchService.search("王五")).isEmpty();
+        });
+
+        assertThat(names(searchService.search("ww"))).containsExactly("王五");
+    }
+
+    private Student student(String name) {
+        String number = UUID.randomUUID().toString();
+        return studentRepository.save(new Student(number, name, "计算机科学", 2024, number + "@example.com"));
+    }
+
+    private static List<String> names(List<Student> students) {
+        return students.stream().map(Student::getName).toList();
+    }
+}
@@ -0,0 +1,109 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import com.zjgsu.ms.hxy.enrollment.client.CatalogClient;
+import com.zjgsu.ms.hxy.enrollment.exception.CatalogUnavailableException;
+import com.zjgsu.ms.hxy.enrollment.model.Enrollment;
+import com.zjgsu.ms.hxy.enrollment.model.EnrollmentStatus;
+import com.zjgsu.ms.hxy.enrollment.model.Student;
+import com.zjgsu.ms.hxy.enrollment.repository.EnrollmentRepository;
+import com.zjgsu.ms.hxy.enrollment.repository.StudentRepository;
+import org.assertj.core.api.InstanceOfAssertFactories;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * TimetableService 测试：以 UUID 和学号记录的在读选课合并为一张按时间表排序的课表，
+ * 课程只批量查询一次并在本地缓存，课程服务不可用时仍返回选课
+ */
+@DataJpaTest
+@Import({TimetableService.class, StudentIdentityResolver.class})
+class TimetableServiceTest {
+
+    // 服务在测试之间共用课程缓存，每个测试使用新的课程
+    private final String morningCourse = UUID.randomUUID().toString();
+    private final String afternoonCourse = UUID.randomUUID().toString();
+    private final String droppedCourse = UUID.randomUUID().toString();
+
+    @MockitoBean
+    private CatalogClient catalogClient;
+
+    @Autowired
+    private TimetableService timetableService;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private EnrollmentRepository enrollmentRepository;
+
+    private Student student;
+
+    @BeforeEach
+    void enrollments() {
+        String number = "S" + System.nanoTime();
+        student = studentRepository.save(new Student(number, "张三", "计算机科学", 2024, number + "@example.com"));
+        enrollmentRepository.save(new Enrollment(afternoonCourse, student.getId().toString()));
+        // 早期以学号记录的选课
+        enrollmentRepository.save(new Enrollment(morningCourse, number));
+        enrollmentRepository.save(new Enrollment(droppedCourse, number, EnrollmentStatus.WITHDRAWN, null));
+    }
+
+    @Test
+    void mergesEnrollmentsAndResolvesCoursesInOneBatch() {
+        when(catalogClient.getCourses(anyCollection())).thenAnswer(invocation -> {
+            Map<String, Map<String, Object>> courses = new HashMap<>();
+            for (String courseId : invocation.<Collection<String>>getArgument(0)) {
+                boolean morning = courseId.equals(morningCourse);
+                courses.put(courseId, Map.of("id", courseId, "code", morning ? "CS101" : "CS201",
+                        "scheduleId", morning ? "MON-08" : "MON-14", "credits", 3, "enrolled", 42));
+            }
+            return courses;
+        });
+
+        TimetableService.Timetable timetable = timetableService.getTimetable(student.getId()).orElseThrow();
+
+        assertThat(timetable.studentId()).isEqualTo(student.getStudentId());
+        assertThat(timetable.catalogAvailable()).isTrue();
+        assertThat(timetable.totalCredits()).isEqualTo(6);
+        assertThat(timetable.entries()).extracting(entry -> entry.get("courseId"))
+                .containsExactly(morningCourse, afternoonCourse);
+        // 选课人数等频繁变化的字段不进入课表
+        assertThat(timetable.entries()).allSatisfy(entry ->
+                assertThat(entry.get("course")).asInstanceOf(InstanceOfAssertFactories.MAP)
+                        .containsEntry("credits", 3).doesNotContainKey("enrolled"));
+
+        timetableService.getTimetable(student.getId());
+        verify(catalogClient, times(1)).getCourses(anyCollection());
+    }
+
+    @Test
+    void returnsEnrollmentsWithoutCoursesWhenCatalogIsUnavailable() {
+        when(catalogClient.getCourses(anyCollection())).thenThrow(new CatalogUnavailableException("课程服务暂时不可用"));
+
+        TimetableService.Timetable timetable = timetableService.getTimetable(student.getId()).orElseThrow();
+
+        assertThat(timetable.catalogAvailable()).isFalse();
+        assertThat(timetable.totalCredits()).isZero();
+        assertThat(timetable.entries()).hasSize(2).allSatisfy(entry -> assertThat(entry.get("course")).isNull());
+    }
+
+    @Test
+    void unknownStudentHasNoTimetable() {
+        assertThat(timetableService.getTimetable(UUID.randomUUID())).isEmpty();
+    }
+}
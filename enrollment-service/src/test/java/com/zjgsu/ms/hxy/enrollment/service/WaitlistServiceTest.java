@@ -0,0 +1,108 @@
+package com.zjgsu.ms.hxy.enrollment.service;
+
+import com.zjgsu.ms.hxy.enrollment.client.CatalogClient;
+import com.zjgsu.ms.hxy.enrollment.event.SeatReleasedEvent;
+import com.zjgsu.ms.hxy.enrollment.model.Enrollment;
+import com.zjgsu.ms.hxy.enrollment.model.EnrollmentStatus;
+import com.zjgsu.ms.hxy.enrollment.repository.EnrollmentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * WaitlistService 测试：大小写不同的课程ID与学生ID进入同一个先进先出队列，名额释放后按排队顺序递补
+ */
+@DataJpaTest
+@Import({WaitlistService.class, StudentIdentityResolver.class})
+class WaitlistServiceTest {
+
+    // 服务在测试之间共用内存中的队列，每个测试使用新的课程与学生
+    private final String courseId = UUID.randomUUID().toString();
+    private final String first = UUID.randomUUID().toString();
+    private final String second = UUID.randomUUID().toString();
+
+    @MockitoBean
+    private EnrollmentService enrollmentService;
+
+    @MockitoBean
+    private StudentService studentService;
+
+    @MockitoBean
+    private CatalogClient catalogClient;
+
+    @Autowired
+    private WaitlistService waitlistService;
+
+    @Autowired
+    private EnrollmentRepository enrollmentRepository;
+
+    private Enrollment seatHolder;
+
+    @BeforeEach
+    void fullCourse() {
+        when(catalogClient.getCourse(anyString())).thenReturn(Map.of("id", courseId, "capacity", 1));
+        when(studentService.findExistingStudentIdentifiers(anyCollection()))
+                .thenAnswer(invocation -> new HashSet<>(invocation.<Collection<String>>getArgument(0)));
+        when(enrollmentService.enrollFromWaitlist(anyString(), anyString(), anyLong())).thenReturn(true);
+        seatHolder = enrollmentRepository.save(new Enrollment(courseId, UUID.randomUUID().toString()));
+    }
+
+    @Test
+    void differentlyCasedIdsShareOneFifoQueue() {
+        Map<String, Object> firstView = waitlistService.join(upper(courseId), upper(first));
+        Map<String, Object> secondView = waitlistService.join(courseId, second);
+
+        assertThat(firstView).containsEntry("courseId", courseId).containsEntry("studentId", first)
+                .containsEntry("position", 1L);
+        assertThat(secondView).containsEntry("position", 2L).containsEntry("waitingCount", 2);
+        assertThat(waitlistService.hasWaiting(courseId)).isTrue();
+        assertThatThrownBy(() -> waitlistService.join(courseId, first))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(waitlistService.getPosition(upper(courseId), upper(second)))
+                .hasValueSatisfying(view -> assertThat(view).containsEntry("position", 2L));
+
+        assertThat(waitlistService.leave(upper(courseId), upper(first))).isTrue();
+        assertThat(waitlistService.getPosition(courseId, second))
+                .hasValueSatisfying(view -> assertThat(view).containsEntry("position", 1L));
+    }
+
+    @Test
+    void releasedSeatGoesToTheHeadOfTheQueue() {
+        waitlistService.join(upper(courseId), first);
+        waitlistService.join(courseId, upper(second));
+
+        seatHolder.setStatus(EnrollmentStatus.WITHDRAWN);
+        enrollmentRepository.save(seatHolder);
+        waitlistService.onSeatReleased(new SeatReleasedEvent(courseId));
+        waitlistService.promotePending();
+
+        verify(enrollmentService).enrollFromWaitlist(courseId, first, 1L);
+        verify(enrollmentService, never()).enrollFromWaitlist(eq(courseId), eq(second), anyLong());
+        assertThat(waitlistService.getPosition(courseId, first)).isEmpty();
+        assertThat(waitlistService.getPosition(courseId, second))
+                .hasValueSatisfying(view -> assertThat(view).containsEntry("position", 1L));
+    }
+
+    private static String upper(String id) {
+        return id.toUpperCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,187 @@
+#!/bin/bash
+# benchmark-binary-ids.sh
+# 对比 enrollments 以 VARCHAR(UUID 文本) 与 BINARY(16) 存储 course_id / student_id 时的
+# 索引大小、缓冲池命中率与点查延迟
+#
+# 用法：
+#   docker compose up -d enrollment-db
+#   ./scripts/benchmark-binary-ids.sh
+# 可调参数（环境变量）：
+#   ROWS            选课记录数，默认 10000000
+#   COURSES         课程数，默认 2000（每名学生选 8 门）
+#   BUFFER_POOL_MB  压测期间的 innodb_buffer_pool_size，默认 512，应小于 VARCHAR 表的索引总量才能体现差异
+#   LOOKUPS         每种查询的次数，默认 200000
+#
+# 数据写入独立的 ids_bench 库，不影响 enrollment_db；结果写入 benchmark-binary-ids.csv
+#
+# 说明：该脚本尚未在任何环境中运行过，仓库中没有对应的测量结果；
+# binary-ids 配置带来的收益以在目标环境运行本脚本得到的数据为准
+
+ROWS=${ROWS:-10000000}
+COURSES=${COURSES:-2000}
+BUFFER_POOL_MB=${BUFFER_POOL_MB:-512}
+LOOKUPS=${LOOKUPS:-200000}
+CONTAINER=${CONTAINER:-enrollment-db}
+MYSQL_PASSWORD=${MYSQL_PASSWORD:-root_password}
+OUTPUT="benchmark-binary-ids.csv"
+
+STUDENTS=$((ROWS / 8))
+
+mysql_exec() {
+    docker exec -i "$CONTAINER" mysql -uroot -p"$MYSQL_PASSWORD" --batch --skip-column-names ids_bench 2> /dev/null
+}
+
+echo "=== BINARY(16) 标识符基准测试（${ROWS} 条选课记录）==="
+
+docker exec -i "$CONTAINER" mysql -uroot -p"$MYSQL_PASSWORD" 2> /dev/null <<'SQL'
+DROP DATABASE IF EXISTS ids_bench;
+CREATE DATABASE ids_bench;
+SQL
+
+echo "--- 准备数据"
+mysql_exec <<SQL
+CREATE TABLE digits (d INT PRIMARY KEY);
+INSERT INTO digits VALUES (0), (1), (2), (3), (4), (5), (6), (7), (8), (9);
+
+-- 由序号生成确定的 UUID 文本，两张表使用相同的数据
+CREATE TABLE bench_courses (n INT PRIMARY KEY, uuid CHAR(36) NOT NULL, uuid_bin BINARY(16) NOT NULL);
+CREATE TABLE bench_students (n INT PRIMARY KEY, uuid CHAR(36) NOT NULL, uuid_bin BINARY(16) NOT NULL);
+
+INSERT INTO bench_courses (n, uuid, uuid_bin)
+SELECT n, u, UUID_TO_BIN(u) FROM (
+    SELECT a.d + b.d * 10 + c.d * 100 + e.d * 1000 AS n,
+           INSERT(INSERT(INSERT(INSERT(MD5(CONCAT('course-', a.d + b.d * 10 + c.d * 100 + e.d * 1000)),
+               9, 0, '-'), 14, 0, '-'), 19, 0, '-'), 24, 0, '-') AS u
+    FROM digits a, digits b, digits c, digits e
+) t WHERE n < ${COURSES};
+
+INSERT INTO bench_students (n, uuid, uuid_bin)
+SELECT n, u, UUID_TO_BIN(u) FROM (
+    SELECT a.d + b.d * 10 + c.d * 100 + e.d * 1000 + f.d * 10000 + g.d * 100000 + h.d * 1000000 AS n,
+           INSERT(INSERT(INSERT(INSERT(MD5(CONCAT('student-',
+               a.d + b.d * 10 + c.d * 100 + e.d * 1000 + f.d * 10000 + g.d * 100000 + h.d * 1000000)),
+               9, 0, '-'), 14, 0, '-'), 19, 0, '-'), 24, 0, '-') AS u
+    FROM digits a, digits b, digits c, digits e, digits f, digits g, digits h
+) t WHERE n < ${STUDENTS};
+
+-- 与 Enrollment 实体相同的表结构与索引
+CREATE TABLE enrollments_varchar (
+    id BINARY(16) NOT NULL PRIMARY KEY,
+    course_id VARCHAR(255) NOT NULL,
+    student_id VARCHAR(255) NOT NULL,
+    enrolled_at DATETIME(6) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    grade DOUBLE,
+    UNIQUE KEY uk_course_student (course_id, student_id),
+    KEY idx_course_id (course_id),
+    KEY idx_student_id (student_id),
+    KEY idx_status (status),
+    KEY idx_course_student (course_id, student_id)
+);
+CREATE TABLE enrollments_binary LIKE enrollments_varchar;
+ALTER TABLE enrollments_binary MODIFY course_id BINARY(16) NOT NULL, MODIFY student_id BINARY(16) NOT NULL;
+SQL
+
+# 每名学生选 8 门不同的课程，按学生分块写入
+CHUNK=100000
+for ((FROM = 0; FROM < STUDENTS; FROM += CHUNK)); do
+    mysql_exec <<SQL
+INSERT INTO enrollments_varchar (id, course_id, student_id, enrolled_at, status)
+SELECT UUID_TO_BIN(UUID()), c.uuid, s.uuid, NOW(6), 'ENROLLED'
+FROM bench_students s
+    JOIN (SELECT d AS k FROM digits WHERE d < 8) k
+    JOIN bench_courses c ON c.n = (s.n * 7 + k.k * 257) % ${COURSES}
+WHERE s.n >= ${FROM} AND s.n < ${FROM} + ${CHUNK};
+SQL
+done
+mysql_exec <<SQL
+INSERT INTO enrollments_binary (id, course_id, student_id, enrolled_at, status, grade)
+SELECT id, UUID_TO_BIN(course_id), UUID_TO_BIN(student_id), enrolled_at, status, grade FROM enrollments_varchar;
+ANALYZE TABLE enrollments_varchar, enrollments_binary;
+
+-- 点查：按 (course_id, student_id) 检查重复选课，按 student_id 查学生的选课
+DELIMITER \$\$
+CREATE PROCEDURE run_lookups(IN use_binary BOOLEAN, IN lookups INT, OUT pair_us DOUBLE, OUT student_us DOUBLE)
+BEGIN
+    DECLARE i INT DEFAULT 0;
+    DECLARE hits INT;
+    DECLARE started DATETIME(6);
+    DECLARE s_uuid CHAR(36);
+    DECLARE s_bin BINARY(16);
+    DECLARE c_uuid CHAR(36);
+    DECLARE c_bin BINARY(16);
+    DECLARE s_n INT;
+
+    SET started = NOW(6);
+    WHILE i < lookups DO
+        SET s_n = FLOOR(RAND() * ${STUDENTS});
+        SELECT uuid, uuid_bin INTO s_uuid, s_bin FROM bench_students WHERE n = s_n;
+        SELECT uuid, uuid_bin INTO c_uuid, c_bin FROM bench_courses WHERE n = (s_n * 7 + FLOOR(RAND() * 8) * 257) % ${COURSES};
+        IF use_binary THEN
+            SELECT COUNT(*) INTO hits FROM enrollments_binary WHERE course_id = c_bin AND student_id = s_bin;
+        ELSE
+            SELECT COUNT(*) INTO hits FROM enrollments_varchar WHERE course_id = c_uuid AND student_id = s_uuid;
+        END IF;
+        SET i = i + 1;
+    END WHILE;
+    SET pair_us = TIMESTAMPDIFF(MICROSECOND, started, NOW(6)) / lookups;
+
+    SET i = 0;
+    SET started = NOW(6);
+    WHILE i < lookups DO
+        SET s_n = FLOOR(RAND() * ${STUDENTS});
+        SELECT uuid, uuid_bin INTO s_uuid, s_bin FROM bench_students WHERE n = s_n;
+        IF use_binary THEN
+            SELECT COUNT(*) INTO hits FROM enrollments_binary WHERE student_id = s_bin;
+        ELSE
+            SELECT COUNT(*) INTO hits FROM enrollments_varchar WHERE student_id = s_uuid;
+        END IF;
+        SET i = i + 1;
+    END WHILE;
+    SET student_us = TIMESTAMPDIFF(MICROSECOND, started, NOW(6)) / lookups;
+END \$\$
+DELIMITER ;
+SQL
+
+ORIGINAL_POOL=$(echo "SELECT @@innodb_buffer_pool_size;" | mysql_exec)
+echo "SET GLOBAL innodb_buffer_pool_size = ${BUFFER_POOL_MB} * 1024 * 1024;" | mysql_exec
+sleep 5
+
+status_value() {
+    echo "SELECT VARIABLE_VALUE FROM performance_schema.global_status WHERE VARIABLE_NAME = '$1';" | mysql_exec
+}
+
+echo "layout,data_mb,index_mb,unique_mb,idx_student_mb,pair_lookup_us,student_lookup_us,buffer_pool_hit_rate" > "$OUTPUT"
+for LAYOUT in varchar binary; do
+    TABLE="enrollments_${LAYOUT}"
+    USE_BINARY=$([ "$LAYOUT" = "binary" ] && echo TRUE || echo FALSE)
+
+    SIZES=$(mysql_exec <<SQL
+SELECT ROUND(SUM(IF(index_name = 'PRIMARY', stat_value, 0)) * @@innodb_page_size / 1048576, 1),
+       ROUND(SUM(IF(index_name <> 'PRIMARY', stat_value, 0)) * @@innodb_page_size / 1048576, 1),
+       ROUND(SUM(IF(index_name = 'uk_course_student', stat_value, 0)) * @@innodb_page_size / 1048576, 1),
+       ROUND(SUM(IF(index_name = 'idx_student_id', stat_value, 0)) * @@innodb_page_size / 1048576, 1)
+FROM mysql.innodb_index_stats
+WHERE database_name = 'ids_bench' AND table_name = '${TABLE}' AND stat_name = 'size';
+SQL
+)
+    read -r DATA_MB INDEX_MB UNIQUE_MB STUDENT_IDX_MB <<< "$SIZES"
+
+    # 预热一轮后再计量
+    echo "CALL run_lookups(${USE_BINARY}, ${LOOKUPS}, @p, @s);" | mysql_exec
+    REQUESTS_BEFORE=$(status_value Innodb_buffer_pool_read_requests)
+    READS_BEFORE=$(status_value Innodb_buffer_pool_reads)
+    LATENCY=$(echo "CALL run_lookups(${USE_BINARY}, ${LOOKUPS}, @p, @s); SELECT ROUND(@p, 1), ROUND(@s, 1);" | mysql_exec)
+    REQUESTS_AFTER=$(status_value Innodb_buffer_pool_read_requests)
+    READS_AFTER=$(status_value Innodb_buffer_pool_reads)
+    read -r PAIR_US STUDENT_US <<< "$LATENCY"
+    HIT_RATE=$(awk -v r1="$REQUESTS_BEFORE" -v r2="$REQUESTS_AFTER" -v d1="$READS_BEFORE" -v d2="$READS_AFTER" \
+        'BEGIN { req = r2 - r1; if (req <= 0) print 1; else printf "%.4f", 1 - (d2 - d1) / req }')
+
+    echo "${LAYOUT},${DATA_MB},${INDEX_MB},${UNIQUE_MB},${STUDENT_IDX_MB},${PAIR_US},${STUDENT_US},${HIT_RATE}" >> "$OUTPUT"
+    echo "${LAYOUT}: 数据 ${DATA_MB}MB, 二级索引 ${INDEX_MB}MB（唯一约束 ${UNIQUE_MB}MB, idx_student_id ${STUDENT_IDX_MB}MB）"
+    echo "    重复选课检查 ${PAIR_US}us, 学生选课查询 ${STUDENT_US}us, 缓冲池命中率 ${HIT_RATE}"
+done
+
+echo "SET GLOBAL innodb_buffer_pool_size = ${ORIGINAL_POOL};" | mysql_exec
+echo -e "\n结果已写入 ${OUTPUT}（删除测试数据：DROP DATABASE ids_bench）"
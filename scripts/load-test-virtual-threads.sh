@@ -0,0 +1,70 @@
+#!/bin/bash
+# load-test-virtual-threads.sh
+# 对比线程池模型与虚拟线程模型下的最大可持续并发
+#
+# 用法：
+#   1. 线程池模型：docker compose up --build -d
+#      ./scripts/load-test-virtual-threads.sh platform
+#   2. 虚拟线程模型：JAVA_VERSION=21 VIRTUAL_THREADS_ENABLED=true docker compose up --build -d
+#      ./scripts/load-test-virtual-threads.sh virtual
+#   钉住诊断：额外设置 JAVA_OPTS=-Djdk.tracePinnedThreads=short，压测期间查看 docker logs enrollment-service
+#
+# 依赖：hey (https://github.com/rakyll/hey)、curl、jq
+# 结果写入 load-test-<模式>.csv：并发数、吞吐量、p50、p99、非 2xx 比例
+#
+# 注意：仓库中没有提交压测结果，该脚本尚未在任何环境中运行过。
+# 虚拟线程模式是否提高可持续并发需以实际运行结果为准，运行后请将两个 CSV 连同硬件与数据规模一起记录
+
+MODE=${1:-platform}
+ENROLLMENT_URL=${ENROLLMENT_URL:-http://localhost:8082}
+CATALOG_URL=${CATALOG_URL:-http://localhost:8081}
+DURATION=${DURATION:-30s}
+CONCURRENCY_LEVELS=${CONCURRENCY_LEVELS:-"50 100 200 400 800 1600 3200"}
+# p99 超过该值（秒）或错误率超过 1% 时认为不可持续
+MAX_P99=${MAX_P99:-1.0}
+OUTPUT="load-test-${MODE}.csv"
+
+if ! command -v hey > /dev/null; then
+    echo "需要安装 hey: go install github.com/rakyll/hey@latest"
+    exit 1
+fi
+
+echo "=== 虚拟线程压测（模式: ${MODE}）==="
+
+# 压测目标：两个服务各一个只读接口，请求处理时间主要花在 JDBC 等待上
+COURSE_ID=$(curl -s "${CATALOG_URL}/api/courses" | jq -r '.data[0].id')
+STUDENT_ID=$(curl -s "${ENROLLMENT_URL}/api/students" | jq -r '.data[0].studentId')
+if [ -z "$COURSE_ID" ] || [ "$COURSE_ID" = "null" ] || [ -z "$STUDENT_ID" ] || [ "$STUDENT_ID" = "null" ]; then
+    echo "请先运行 scripts/test-services.sh 准备课程和学生数据"
+    exit 1
+fi
+TARGETS=(
+    "${ENROLLMENT_URL}/api/enrollments/check-enrollment?courseId=${COURSE_ID}&studentId=${STUDENT_ID}"
+    "${CATALOG_URL}/api/courses/${COURSE_ID}"
+)
+
+echo "target,concurrency,requests_per_sec,p50_sec,p99_sec,error_ratio" > "$OUTPUT"
+for TARGET in "${TARGETS[@]}"; do
+    echo -e "\n--- ${TARGET}"
+    for C in $CONCURRENCY_LEVELS; do
+        REPORT=$(hey -z "$DURATION" -c "$C" "$TARGET")
+        RPS=$(echo "$REPORT" | awk '/Requests\/sec/ {print $2}')
+        P50=$(echo "$REPORT" | awk '/50% in/ {print $3}')
+        P99=$(echo "$REPORT" | awk '/99% in/ {print $3}')
+        TOTAL=$(echo "$REPORT" | awk '/\[[0-9]+\]/ {sum += $2} END {print sum + 0}')
+        OK=$(echo "$REPORT" | awk '/\[2[0-9][0-9]\]/ {sum += $2} END {print sum + 0}')
+        ERRORS=$(echo "$REPORT" | awk '/Error distribution/ {found=1; next} found && /\[[0-9]+\]/ {sum += $1} END {print sum + 0}')
+        ERROR_RATIO=$(awk -v ok="$OK" -v total="$TOTAL" -v errors="$ERRORS" \
+            'BEGIN { all = total + errors; if (all == 0) print 1; else printf "%.4f", 1 - ok / all }')
+
+        echo "${TARGET},${C},${RPS},${P50},${P99},${ERROR_RATIO}" >> "$OUTPUT"
+        echo "并发 ${C}: ${RPS} req/s, p50 ${P50}s, p99 ${P99}s, 错误率 ${ERROR_RATIO}"
+
+        if awk -v p99="${P99:-999}" -v max="$MAX_P99" -v err="$ERROR_RATIO" 'BEGIN { exit !(p99 > max || err > 0.01) }'; then
+            echo "并发 ${C} 已不可持续，停止加压"
+            break
+        fi
+    done
+done
+
+echo -e "\n结果已写入 ${OUTPUT}"
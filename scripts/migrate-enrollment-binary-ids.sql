@@ -0,0 +1,92 @@
+-- migrate-enrollment-binary-ids.sql
+-- 把 enrollments.course_id / student_id 从 VARCHAR(UUID 文本) 迁移为 BINARY(16)，配合 binary-ids 配置使用
+--
+-- 用法（MySQL 8.0+，在维护窗口内执行，执行前先停止 enrollment-service 并备份）：
+--   docker exec -i enrollment-db mysql -uroot -proot_password enrollment_db < scripts/migrate-enrollment-binary-ids.sql
+-- 完成后以 SPRING_PROFILES_ACTIVE=docker,binary-ids 启动 enrollment-service
+--
+-- 步骤：
+--   1. 以学号保存的 student_id 换成对应学生的 UUID
+--   2. 校验所有值都是 UUID，存在其他值时中止（不修改表结构）
+--   3. 新增 BINARY(16) 列并按主键分块回填，避免单个大事务
+--   4. 删除旧列（其上的索引与唯一约束随之删除），新列改名后按原名称重建索引
+--
+-- 回滚：从备份恢复；或新增 VARCHAR(255) 列以 BIN_TO_UUID() 回填后按相同步骤替换
+
+DELIMITER $$
+
+DROP PROCEDURE IF EXISTS migrate_enrollment_binary_ids $$
+CREATE PROCEDURE migrate_enrollment_binary_ids(IN chunk_size INT)
+BEGIN
+    DECLARE invalid_rows BIGINT;
+    DECLARE unique_name VARCHAR(64);
+    DECLARE last_id BINARY(16) DEFAULT UNHEX(REPEAT('00', 16));
+    DECLARE next_id BINARY(16);
+    DECLARE done BOOLEAN DEFAULT FALSE;
+    DECLARE chunk_offset INT DEFAULT chunk_size - 1;
+
+    -- 1. 学号 -> 学生 UUID（students.id 由 Hibernate 以 BINARY(16) 存储）
+    UPDATE enrollments e
+        JOIN students s ON e.student_id = s.student_id
+    SET e.student_id = BIN_TO_UUID(s.id);
+
+    -- 2. 校验
+    SELECT COUNT(*) INTO invalid_rows FROM enrollments
+    WHERE NOT IS_UUID(course_id) OR NOT IS_UUID(student_id) OR LENGTH(course_id) <> 36 OR LENGTH(student_id) <> 36;
+    IF invalid_rows > 0 THEN
+        SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'enrollments contains non-UUID course_id/student_id values, migration aborted';
+    END IF;
+
+    -- 记录 Hibernate 生成的唯一约束名称，重建时沿用，避免 ddl-auto=update 再建一份
+    SELECT INDEX_NAME INTO unique_name FROM information_schema.STATISTICS
+    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'enrollments' AND NON_UNIQUE = 0 AND INDEX_NAME <> 'PRIMARY'
+    GROUP BY INDEX_NAME
+    HAVING GROUP_CONCAT(COLUMN_NAME ORDER BY SEQ_IN_INDEX) = 'course_id,student_id'
+    LIMIT 1;
+    IF unique_name IS NULL THEN
+        SET unique_name = 'uk_enrollments_course_student';
+    END IF;
+
+    -- 3. 新列 + 分块回填
+    ALTER TABLE enrollments
+        ADD COLUMN course_id_bin BINARY(16) NULL,
+        ADD COLUMN student_id_bin BINARY(16) NULL;
+
+    WHILE NOT done DO
+        -- 本块最后一行的主键
+        SET next_id = NULL;
+        SELECT id INTO next_id FROM enrollments
+        WHERE id > last_id ORDER BY id LIMIT 1 OFFSET chunk_offset;
+        IF next_id IS NULL THEN
+            UPDATE enrollments
+            SET course_id_bin = UUID_TO_BIN(course_id), student_id_bin = UUID_TO_BIN(student_id)
+            WHERE id > last_id;
+            SET done = TRUE;
+        ELSE
+            UPDATE enrollments
+            SET course_id_bin = UUID_TO_BIN(course_id), student_id_bin = UUID_TO_BIN(student_id)
+            WHERE id > last_id AND id <= next_id;
+            SET last_id = next_id;
+        END IF;
+    END WHILE;
+
+    -- 4. 替换旧列并重建索引
+    ALTER TABLE enrollments DROP COLUMN course_id, DROP COLUMN student_id;
+    SET @ddl = CONCAT('ALTER TABLE enrollments',
+        ' CHANGE COLUMN course_id_bin course_id BINARY(16) NOT NULL,',
+        ' CHANGE COLUMN student_id_bin student_id BINARY(16) NOT NULL,',
+        ' ADD CONSTRAINT `', unique_name, '` UNIQUE (course_id, student_id),',
+        ' ADD INDEX idx_course_id (course_id),',
+        ' ADD INDEX idx_student_id (student_id),',
+        ' ADD INDEX idx_course_student (course_id, student_id)');
+    PREPARE stmt FROM @ddl;
+    EXECUTE stmt;
+    DEALLOCATE PREPARE stmt;
+END $$
+
+DELIMITER ;
+
+CALL migrate_enrollment_binary_ids(50000);
+DROP PROCEDURE migrate_enrollment_binary_ids;
+
+ANALYZE TABLE enrollments;